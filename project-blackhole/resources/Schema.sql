@@ -10,4 +10,17 @@ CREATE TABLE IF NOT EXISTS Tags (
     creation_date INT NOT NULL
 );
 
+-- keyset pagination of the tag searches
+CREATE INDEX IF NOT EXISTS tags_creation_date_id ON Tags (creation_date, id);
+
+DROP TABLE IF EXISTS Relations;
+
+-- directed edges of the graph, the primary key serves the expansion by source
+CREATE TABLE IF NOT EXISTS Relations (
+
+    source BIGINT NOT NULL,
+    destination BIGINT NOT NULL,
+    PRIMARY KEY (source, destination)
+);
+
 COMMIT;
\ No newline at end of file
@@ -0,0 +1,108 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryReader;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Type;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Per type cost of a single {@link DataEntry}, through the boxed API ({@link DataEntry#stream()} and
+ * {@link DataEntry#deserialize}) and through the {@link EntryWriter} and {@link EntryReader} used by the server,
+ * which write into and read from a reused buffer.</p>
+ * <p>Strings are 32 ASCII chars and raw values are 256 bytes.</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar DataEntryBenchmark -prof gc}
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataEntryBenchmark {
+
+    @Param({"BYTE", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE", "STRING", "RAW", "NULL"})
+    public Type type;
+
+    private DataEntry entry;
+    private byte[] serialized;
+    private EntryWriter writer;
+    private ByteBuffer buffer;
+    private int[] offset;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        switch(type) {
+
+            case BYTE: entry = new DataEntry(type, (byte)42); break;
+            case SHORT: entry = new DataEntry(type, (short)4_242); break;
+            case INT: entry = new DataEntry(type, 424_242); break;
+            case LONG: entry = new DataEntry(type, 42_424_242_424L); break;
+            case FLOAT: entry = new DataEntry(type, 4.2f); break;
+            case DOUBLE: entry = new DataEntry(type, 4.242); break;
+            case STRING: entry = new DataEntry(type, "blackhole-tag-name-0123456789abc"); break;
+            case RAW: entry = new DataEntry(type, new byte[256]); break;
+
+            default: entry = new DataEntry(Type.NULL, null); break;
+        }
+
+        serialized = entry.stream();
+        writer = new EntryWriter(ByteBuffer.allocate(512));
+        buffer = ByteBuffer.wrap(serialized);
+        offset = new int[1];
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    public byte[] stream() {
+
+        return(entry.stream());
+    }
+
+    @Benchmark
+    public DataEntry deserialize() {
+
+        offset[0] = 0;
+        return(DataEntry.deserialize(serialized, offset));
+    }
+
+    @Benchmark
+    public int write() {
+
+        writer.reset();
+        writer.putEntry(entry);
+
+        return(writer.position());
+    }
+
+    @Benchmark
+    public DataEntry read() {
+
+        return(new EntryReader(buffer, 0, serialized.length).next());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
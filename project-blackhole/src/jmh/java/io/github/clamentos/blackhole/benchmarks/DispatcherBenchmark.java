@@ -0,0 +1,100 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.Container;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.common.framework.Servlet;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
+import io.github.clamentos.blackhole.web.server.Dispatcher;
+import io.github.clamentos.blackhole.web.servlets.EchoServlet;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>End to end cost of {@link Dispatcher#dispatch} with the {@link EchoServlet}, without any network:
+ * header parsing, servlet lookup, response encoding into a pooled buffer and its release.</p>
+ * <p>The request carries a correlation id and a {@code RAW} entry of the given size, which the servlet never reads,
+ * so the payload size should make no difference.</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar DispatcherBenchmark -prof gc}
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+    @Param({"0", "4096"})
+    public int payload_size;
+
+    private Dispatcher dispatcher;
+    private BufferPool pool;
+    private byte[] request;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(64));
+        ByteBuffer buffer;
+
+        // only the echo servlet, the others need the database
+        Container.servlets = new Servlet[] {EchoServlet.getInstance()};
+        dispatcher = Dispatcher.getInstance();
+        pool = BufferPool.getInstance();
+
+        // ECHO resource, READ method
+        writer.putRawByte((byte)(4 | FrameFlags.CORRELATED));
+        writer.putRawByte((byte)1);
+        writer.putRawInt(12_345);
+
+        for(int i = 0; i < 32; i++) {
+
+            writer.putRawByte((byte)0);
+        }
+
+        if(payload_size > 0) {
+
+            writer.putRaw(new byte[payload_size]);
+        }
+
+        buffer = writer.flip();
+        request = new byte[buffer.limit()];
+        buffer.get(0, request);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    public int echo() {
+
+        ByteBuffer response = dispatcher.dispatch(request);
+        int length = response.limit();
+
+        pool.release(response);
+
+        return(length);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
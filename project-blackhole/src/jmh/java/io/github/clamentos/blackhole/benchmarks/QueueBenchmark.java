@@ -0,0 +1,135 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.QueueType;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Handoff throughput of the resource queues a {@link io.github.clamentos.blackhole.common.framework.WorkerManager}
+ * can be built on, with 1, 4 and 16 producers feeding a single consumer (like the log queue with one log worker).</p>
+ * <p>Producers and consumers never block: they spin on {@code offer} and {@code poll} until the measurement stops,
+ * so that the numbers show the cost of the queue itself and not the cost of parking threads.</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar QueueBenchmark}
+*/
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    private static final Object ELEMENT = new Object();
+
+    @Param({"LINKED", "ARRAY", "RING", "STEALING"})
+    public QueueType queue_type;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private BlockingQueue<Object> queue;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        queue = queue_type.create(capacity, 1);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    @Group("producers_1")
+    @GroupThreads(1)
+    public void produce1(Control control) {
+
+        produce(control);
+    }
+
+    @Benchmark
+    @Group("producers_1")
+    @GroupThreads(1)
+    public Object consume1(Control control) {
+
+        return(consume(control));
+    }
+
+    @Benchmark
+    @Group("producers_4")
+    @GroupThreads(4)
+    public void produce4(Control control) {
+
+        produce(control);
+    }
+
+    @Benchmark
+    @Group("producers_4")
+    @GroupThreads(1)
+    public Object consume4(Control control) {
+
+        return(consume(control));
+    }
+
+    @Benchmark
+    @Group("producers_16")
+    @GroupThreads(16)
+    public void produce16(Control control) {
+
+        produce(control);
+    }
+
+    @Benchmark
+    @Group("producers_16")
+    @GroupThreads(1)
+    public Object consume16(Control control) {
+
+        return(consume(control));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // spin until there is space, giving up when the iteration ends so that the other side is never waited forever
+    private void produce(Control control) {
+
+        while(queue.offer(ELEMENT) == false && control.stopMeasurement == false) {
+
+            Thread.onSpinWait();
+        }
+    }
+
+    // spin until there is something, giving up when the iteration ends
+    private Object consume(Control control) {
+
+        Object elem;
+
+        while((elem = queue.poll()) == null && control.stopMeasurement == false) {
+
+            Thread.onSpinWait();
+        }
+
+        return(elem);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
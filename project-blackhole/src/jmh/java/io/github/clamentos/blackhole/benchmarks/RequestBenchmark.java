@@ -0,0 +1,143 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.web.dtos.Request;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Cost of {@link Request#deserialize} over realistic payload mixes, in the plain and compact encodings.</p>
+ * <ul>
+ *     <li>IDS: a delete or read by id, 64 {@code INT} ids.</li>
+ *     <li>TAGS: a tag create, 32 names of 8 to 40 chars.</li>
+ *     <li>MIXED: a tag read (nullable filters, a name pattern, ids and a limit) followed by a {@code RAW} blob of 4KB.</li>
+ * </ul>
+ * <p>{@code header} only parses the header, which is all a request rejected by the session check costs.
+ * {@code full} also reads every entry through the typed {@link Payload} getters, like a servlet would.</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar RequestBenchmark -prof gc}
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+    @Param({"IDS", "TAGS", "MIXED"})
+    public String mix;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private ByteBuffer request;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(256), compact);
+
+        // TAG resource, READ method, correlated, random session id
+        writer.putRawByte((byte)(2 | FrameFlags.CORRELATED | ((compact == true) ? FrameFlags.COMPACT : 0)));
+        writer.putRawByte((byte)1);
+        writer.putRawInt(12_345);
+
+        for(int i = 0; i < 32; i++) {
+
+            writer.putRawByte((byte)(i * 31));
+        }
+
+        switch(mix) {
+
+            case "IDS":
+
+                for(int i = 0; i < 64; i++) {
+
+                    writer.putInt(1_000 + i * 7);
+                }
+
+            break;
+
+            case "TAGS":
+
+                for(int i = 0; i < 32; i++) {
+
+                    writer.putString("tag-" + "x".repeat(4 + (i * 7) % 32) + i);
+                }
+
+            break;
+
+            default:
+
+                writer.putNull();
+                writer.putNull();
+                writer.putNull();
+                writer.putNull();
+                writer.putString("%blackhole%");
+                writer.putInt(16);
+
+                for(int i = 0; i < 16; i++) {
+
+                    writer.putInt(i);
+                }
+
+                writer.putIntNullable(100);
+                writer.putRaw(new byte[4_096]);
+
+            break;
+        }
+
+        request = writer.flip();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    public Request header() {
+
+        return(Request.deserialize(request, 0, request.limit()));
+    }
+
+    @Benchmark
+    public void full(Blackhole blackhole) {
+
+        Payload payload = Request.deserialize(request, 0, request.limit()).data();
+
+        for(int i = 0; i < payload.size(); i++) {
+
+            switch(payload.getType(i)) {
+
+                case INT: blackhole.consume(payload.getInt(i)); break;
+                case STRING: blackhole.consume(payload.getString(i)); break;
+                case RAW: blackhole.consume(payload.getRaw(i)); break;
+
+                default: blackhole.consume(payload.isNull(i)); break;
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,95 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.common.framework.Reducible;
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.web.dtos.Response;
+import io.github.clamentos.blackhole.web.dtos.components.ResponseStatus;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Cost of streaming a {@link Response} carrying N {@link Tag}s, in the plain and compact encodings,
+ * with and without compression (the compressor only kicks in above its threshold, 4KB by default).</p>
+ * <p>{@code pooled} is the path taken by the server: the frame is written into a pooled buffer, which is returned
+ * once sent. {@code array} is the legacy {@link Response#stream()}, which copies the frame into a new array
+ * (and ignores {@code compact} and {@code compress}).</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar ResponseBenchmark -prof gc}
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int tags;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private Response response;
+    private BufferPool pool;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        List<Reducible> data = new ArrayList<>(tags);
+
+        for(int i = 0; i < tags; i++) {
+
+            data.add(new Tag(i, "tag-name-" + (i % 500), 1_700_000_000 + i));
+        }
+
+        response = new Response(ResponseStatus.OK, data);
+        pool = BufferPool.getInstance();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    public int pooled() {
+
+        ByteBuffer buffer = response.toBuffer(12_345, compact, compress);
+        int length = buffer.limit();
+
+        pool.release(buffer);
+
+        return(length);
+    }
+
+    @Benchmark
+    public byte[] array() {
+
+        return(response.stream());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,117 @@
+package io.github.clamentos.blackhole.benchmarks;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.QueueType;
+import io.github.clamentos.blackhole.common.framework.WaitStrategy;
+import io.github.clamentos.blackhole.common.framework.Worker;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Handoff latency from a producer to an idle {@link Worker}: the time from {@code offer} until the worker
+ * has picked the resource up and run {@link Worker#doWork}, for every queue type and a selection of wait strategies.</p>
+ * <p>Unlike {@code QueueBenchmark}, the queue is empty most of the time, so this measures how quickly a waiting worker
+ * wakes up, which is what a lightly loaded server pays on every request. Sampled, to get the percentiles.</p>
+ * <p>The producer spins while waiting, so the spinning strategies need at least two free cores to give meaningful numbers.</p>
+ * Run with: {@code mvn -P jmh package && java -jar target/benchmarks.jar WorkerBenchmark -prof gc}
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkerBenchmark {
+
+    @Param({"LINKED", "ARRAY", "RING", "STEALING"})
+    public QueueType queue_type;
+
+    @Param({"BUSY_SPIN", "PARK", "BLOCKING", "ADAPTIVE"})
+    public WaitStrategy wait_strategy;
+
+    private BlockingQueue<Long> queue;
+    private EchoWorker worker;
+    private long sequence;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Setup
+    public void setup() {
+
+        queue = queue_type.create(1_024, 1);
+        worker = new EchoWorker(QueueType.forWorker(queue, 0), wait_strategy);
+        sequence = 0;
+
+        worker.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+
+        worker.halt();
+        worker.interrupt();
+        worker.join(1_000);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Benchmark
+    public long handoff() {
+
+        long expected = ++sequence;
+
+        queue.offer(expected);
+
+        while(worker.last != expected) {
+
+            Thread.onSpinWait();
+        }
+
+        return(expected);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // publishes the last resource it has seen
+    private static final class EchoWorker extends Worker<Long> {
+
+        private volatile long last;
+
+        private EchoWorker(BlockingQueue<Long> queue, WaitStrategy wait_strategy) {
+
+            super(0, queue, wait_strategy);
+            setDaemon(true);
+        }
+
+        @Override
+        public void doWork(Long resource) {
+
+            last = resource;
+        }
+
+        @Override
+        public void catchInterrupted(InterruptedException exc) {
+
+            // halted, the loop will exit
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,188 @@
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.Arrays;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Log-linear latency histogram, in the style of HdrHistogram.</p>
+ * <p>Values (in nanoseconds) are counted in buckets whose width doubles at every power of two, each one split in
+ * {@value #SUB_BUCKETS} linear sub-buckets, so that any recorded value is known with a relative error below 1%
+ * (2 significant digits) while the whole range, from 1ns to about an hour, fits in a few thousand counters.
+ * Bigger values are clamped to the highest trackable one and still counted.</p>
+ * <p>Recording is a couple of shifts and an increment, with no allocation, so it can sit on the response path.</p>
+ * <b>This class is NOT thread safe.</b> Use one histogram per recording thread and {@link LatencyHistogram#add} them.
+*/
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF_BUCKETS = SUB_BUCKETS >>> 1;
+    private static final long MAX_VALUE = 3_600_000_000_000L;    // 1h in ns
+
+    private final long[] counts;
+    private long total;
+    private long sum;
+    private long min;
+    private long max;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new empty histogram.
+    */
+    public LatencyHistogram() {
+
+        counts = new long[index(MAX_VALUE) + 1];
+        reset();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Records a single value.
+     * @param value : The value in nanoseconds, negative values are counted as 0.
+    */
+    public void record(long value) {
+
+        value = Math.min(Math.max(value, 0), MAX_VALUE);
+
+        counts[index(value)]++;
+        total++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all the values recorded by the other histogram to this one.
+     * @param other : The histogram to add, which is not modified.
+    */
+    public void add(LatencyHistogram other) {
+
+        for(int i = 0; i < counts.length; i++) {
+
+            counts[i] += other.counts[i];
+        }
+
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes every recorded value.
+    */
+    public void reset() {
+
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return The number of recorded values.
+    */
+    public long getCount() {
+
+        return(total);
+    }
+
+    /**
+     * @return The exact mean of the recorded values, 0 if empty.
+    */
+    public double getMean() {
+
+        return((total == 0) ? 0 : (double)sum / total);
+    }
+
+    /**
+     * @return The exact smallest recorded value, 0 if empty.
+    */
+    public long getMin() {
+
+        return((total == 0) ? 0 : min);
+    }
+
+    /**
+     * @return The exact biggest recorded value, 0 if empty.
+    */
+    public long getMax() {
+
+        return(max);
+    }
+
+    /**
+     * Get the value at the given percentile: at least that percentage of the recorded values is lower or equal.
+     * As in HdrHistogram, the highest value equivalent to the found bucket is returned, capped to the exact maximum,
+     * so the result is never an underestimate.
+     * @param percentile : The percentile, between 0 and 100.
+     * @return The value at the percentile, 0 if empty.
+    */
+    public long getValueAtPercentile(double percentile) {
+
+        long target;
+        long seen = 0;
+
+        if(total == 0) {
+
+            return(0);
+        }
+
+        target = Math.max(1, (long)Math.ceil(Math.min(percentile, 100) / 100 * total));
+
+        for(int i = 0; i < counts.length; i++) {
+
+            seen += counts[i];
+
+            if(seen >= target) {
+
+                return(Math.min(highest(i), max));
+            }
+        }
+
+        return(max);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // the first SUB_BUCKETS indexes are exact, then HALF_BUCKETS per power of two
+    private static int index(long value) {
+
+        int shift;
+
+        if(value < SUB_BUCKETS) {
+
+            return((int)value);
+        }
+
+        // value >>> shift lands in [HALF_BUCKETS, SUB_BUCKETS)
+        shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+
+        return(SUB_BUCKETS + (shift - 1) * HALF_BUCKETS + (int)((value >>> shift) - HALF_BUCKETS));
+    }
+
+    // highest value that lands in the given index
+    private static long highest(int index) {
+
+        int shift;
+
+        if(index < SUB_BUCKETS) {
+
+            return(index);
+        }
+
+        shift = (index - SUB_BUCKETS) / HALF_BUCKETS + 1;
+
+        return((((long)((index - SUB_BUCKETS) % HALF_BUCKETS + HALF_BUCKETS + 1)) << shift) - 1);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
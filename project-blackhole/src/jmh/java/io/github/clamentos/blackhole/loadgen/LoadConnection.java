@@ -0,0 +1,430 @@
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>One client connection of the load generator: a sender thread writes correlated, pipelined requests
+ * and a reader thread matches the responses back by correlation id, recording the latency of every operation.</p>
+ * <p>In open loop mode (the default) the requests are sent on a fixed schedule, independent of the responses,
+ * and the latency of each one is measured from the time it was <i>supposed</i> to be sent. When the server stalls,
+ * the sender falls behind and every request that should have been sent in the meantime is charged with the stall,
+ * like a real user would be: the numbers don't suffer from coordinated omission.</p>
+ * <p>In closed loop mode a request is only sent once the previous one has been answered, and the latency is measured
+ * from the actual send. That's how most benchmarks work and it hides stalls, it's only here for comparison.</p>
+ * <p>When the server closes the connection (for example because of {@code MAX_REQUESTS_PER_CONNECTION})
+ * the unanswered requests are counted as lost and a new connection is opened for the next request.</p>
+*/
+public class LoadConnection implements Runnable {
+
+    private final int identifier;
+    private final LoadSettings settings;
+    private final String prefix;
+    private final long start;
+    private final long measure_from;
+    private final long end;
+    private final Semaphore window;
+
+    private final LatencyHistogram[] latencies;
+    private final long[] errors;
+    private final long[] sent;
+    private final AtomicLong lost;
+
+    private Link link;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new connection, nothing is opened until {@link LoadConnection#run} is called.
+     * @param identifier : The connection identifier, also used to stagger the schedules.
+     * @param settings : The load settings.
+     * @param run : A string that identifies the run, to keep the names unique across runs.
+     * @param start : The {@link System#nanoTime} at which the load starts.
+    */
+    public LoadConnection(int identifier, LoadSettings settings, String run, long start) {
+
+        this.identifier = identifier;
+        this.settings = settings;
+        prefix = run + Integer.toString(identifier, 36) + "-";
+        this.start = start;
+        measure_from = start + settings.warmup() * 1_000_000_000L;
+        end = measure_from + settings.duration() * 1_000_000_000L;
+        window = new Semaphore(1);
+
+        latencies = new LatencyHistogram[Operation.values().length];
+        errors = new long[latencies.length];
+        sent = new long[latencies.length];
+        lost = new AtomicLong();
+
+        for(int i = 0; i < latencies.length; i++) {
+
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Sends the requests until the end of the run, then waits up to 5 seconds for the last responses.
+    */
+    @Override
+    public void run() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(1_024), settings.compact());
+        SplittableRandom random = new SplittableRandom(identifier * 0x9E3779B97F4A7C15L);
+        long period = (long)(1_000_000_000L * settings.connections() / settings.rate());
+        long next = start + identifier * period / settings.connections();
+        long intended;
+        Operation operation;
+        int sequence = 0;
+
+        while(true) {
+
+            // open loop: on schedule, even if late. closed loop: after the previous response, paced by the rate
+            if(settings.closed() == true) {
+
+                if(acquire(end + 5_000_000_000L) == false) {
+
+                    break;
+                }
+
+                park(next);
+                intended = System.nanoTime();
+            }
+
+            else {
+
+                park(next);
+                intended = next;
+            }
+
+            if(intended >= end) {
+
+                break;
+            }
+
+            next += period;
+            operation = settings.pick(random);
+            sequence++;
+
+            writer.reset();
+            writer.putRawInt(0);
+            writer.putRawByte(header(operation));
+            writer.putRawByte((byte)operation.getMethod().ordinal());
+            writer.putRawInt(sequence);
+
+            for(byte value : settings.session()) {
+
+                writer.putRawByte(value);
+            }
+
+            operation.write(writer, settings, random, prefix + Integer.toString(sequence, 36));
+            writer.setRawInt(0, writer.position() - 4);
+
+            send(sequence, new Pending(operation, intended, intended >= measure_from), writer.flip());
+        }
+
+        drain(end + 5_000_000_000L);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Adds the latencies recorded by this connection to the given histograms, one per {@link Operation}.
+     * @param totals : The histograms to add to, indexed by {@link Operation#ordinal}.
+     * @param error_totals : The error counts to add to, indexed by {@link Operation#ordinal}.
+     * @param sent_totals : The sent counts to add to, indexed by {@link Operation#ordinal}.
+    */
+    public synchronized void addTo(LatencyHistogram[] totals, long[] error_totals, long[] sent_totals) {
+
+        for(int i = 0; i < latencies.length; i++) {
+
+            totals[i].add(latencies[i]);
+            error_totals[i] += errors[i];
+            sent_totals[i] += sent[i];
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of measured requests that never got a response.
+    */
+    public long getLost() {
+
+        return(lost.get());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private byte header(Operation operation) {
+
+        int header = operation.getResource().ordinal() | FrameFlags.CORRELATED;
+
+        if(settings.compact() == true) header |= FrameFlags.COMPACT;
+        if(settings.compress() == true) header |= FrameFlags.ACCEPTS_COMPRESSED;
+
+        return((byte)header);
+    }
+
+    private void send(int sequence, Pending pending, ByteBuffer frame) {
+
+        if(pending.measured == true) {
+
+            synchronized(this) {
+
+                sent[pending.operation.ordinal()]++;
+            }
+        }
+
+        try {
+
+            if(link == null || link.broken == true) {
+
+                link = new Link();
+            }
+        }
+
+        catch(IOException exc) {
+
+            fail(pending);
+            return;
+        }
+
+        // registered before writing, the response can arrive before write returns
+        link.pending.put(sequence, pending);
+
+        // the reader might have failed the link just before the put
+        if(link.broken == true && link.pending.remove(sequence) != null) {
+
+            fail(pending);
+            return;
+        }
+
+        try {
+
+            while(frame.hasRemaining() == true) {
+
+                link.channel.write(frame);
+            }
+        }
+
+        catch(IOException exc) {
+
+            link.fail();
+        }
+    }
+
+    // wait for the last responses, the ones that don't make it in time are lost
+    private void drain(long deadline) {
+
+        while(link != null && link.pending.isEmpty() == false && link.broken == false && System.nanoTime() < deadline) {
+
+            LockSupport.parkNanos(1_000_000);
+        }
+
+        if(link != null) {
+
+            link.fail();
+        }
+    }
+
+    // wait for the previous response, gives up at the deadline
+    private boolean acquire(long deadline) {
+
+        try {
+
+            while(window.tryAcquire(100, TimeUnit.MILLISECONDS) == false) {
+
+                if(System.nanoTime() >= deadline) {
+
+                    return(false);
+                }
+            }
+
+            return(true);
+        }
+
+        catch(InterruptedException exc) {
+
+            return(false);
+        }
+    }
+
+    private synchronized void complete(Pending pending, int status, long now) {
+
+        if(pending.measured == true) {
+
+            // the status is the low nibble, 0 is OK
+            if(status == 0) latencies[pending.operation.ordinal()].record(now - pending.intended);
+            else errors[pending.operation.ordinal()]++;
+        }
+
+        release();
+    }
+
+    private void fail(Pending pending) {
+
+        if(pending.measured == true) {
+
+            lost.incrementAndGet();
+        }
+
+        release();
+    }
+
+    // only the closed loop waits for the responses
+    private void release() {
+
+        if(settings.closed() == true) {
+
+            window.release();
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static void park(long deadline) {
+
+        long remaining;
+
+        while((remaining = deadline - System.nanoTime()) > 0) {
+
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // an in flight request
+    private record Pending(Operation operation, long intended, boolean measured) {}
+
+    // one socket with its reader thread, replaced when the server closes it
+    private final class Link implements Runnable {
+
+        private final SocketChannel channel;
+        private final Map<Integer, Pending> pending;
+        private volatile boolean broken;
+
+        private Link() throws IOException {
+
+            channel = SocketChannel.open(new InetSocketAddress(settings.host(), settings.port()));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            pending = new ConcurrentHashMap<>();
+            broken = false;
+
+            Thread reader = new Thread(this, "load-reader-" + identifier);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        // [length][status | flags][correlation id][entries], chunks of the same response share the correlation id
+        @Override
+        public void run() {
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            ByteBuffer header = ByteBuffer.allocate(5);
+            ByteBuffer body = ByteBuffer.allocate(65_536);
+            Pending request;
+            int size;
+            int flags;
+
+            try {
+
+                while(true) {
+
+                    read(length.clear());
+                    size = length.getInt(0);
+
+                    if(size < 5) {
+
+                        throw new IOException("Response without a correlation id, length: " + size);
+                    }
+
+                    read(header.clear());
+                    flags = header.get(0);
+
+                    // the entries are not needed, skip them
+                    for(size -= 5; size > 0; size -= body.limit()) {
+
+                        read(body.clear().limit(Math.min(size, body.capacity())));
+                    }
+
+                    if((flags & FrameFlags.CONTINUES) == 0) {
+
+                        request = pending.remove(header.getInt(1));
+
+                        if(request != null) {
+
+                            complete(request, flags & 0x0F, System.nanoTime());
+                        }
+                    }
+                }
+            }
+
+            catch(IOException exc) {
+
+                fail();
+            }
+        }
+
+        private void read(ByteBuffer buffer) throws IOException {
+
+            while(buffer.hasRemaining() == true) {
+
+                if(channel.read(buffer) == -1) {
+
+                    throw new EOFException();
+                }
+            }
+        }
+
+        private void fail() {
+
+            broken = true;
+
+            try {
+
+                channel.close();
+            }
+
+            catch(IOException exc) {
+
+                // nothing left to do with it
+            }
+
+            for(Integer sequence : pending.keySet()) {
+
+                Pending request = pending.remove(sequence);
+
+                if(request != null) {
+
+                    LoadConnection.this.fail(request);
+                }
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
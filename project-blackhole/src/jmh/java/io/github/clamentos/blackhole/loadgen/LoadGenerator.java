@@ -0,0 +1,318 @@
+// mvn -P jmh package && java -cp target/benchmarks.jar io.github.clamentos.blackhole.loadgen.LoadGenerator rate=5000 NUM_REQUEST_WORKERS=4
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.config.Container;
+import io.github.clamentos.blackhole.common.framework.ExecutionMode;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.persistence.ConnectionPool;
+import io.github.clamentos.blackhole.persistence.TagCache;
+import io.github.clamentos.blackhole.persistence.TagIndex;
+
+import java.io.IOException;
+
+import java.lang.reflect.Field;
+
+import java.net.InetSocketAddress;
+
+import java.nio.channels.SocketChannel;
+
+import java.sql.DriverManager;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Load generator for the binary protocol, to size {@code NUM_REQUEST_WORKERS}, {@code NUM_QUERY_WORKERS},
+ * {@code DB_CONNECTIONS} and the other server properties against a target request rate.</p>
+ * <p>It opens the configured number of {@link LoadConnection}s and drives a weighted mix of tag operations and echoes,
+ * in open loop by default, then prints the latency percentiles of each operation, recorded in {@link LatencyHistogram}s.
+ * See {@link LoadSettings} for the arguments.</p>
+ * <p>By default the server is started in this same JVM on the {@link StandInDatabase}, so that everything runs offline
+ * and the only tuning knobs are the server properties (upper case arguments) and the simulated database latency.
+ * Sessions are not checked and the per-connection request cap is lifted, unless set explicitly.
+ * With {@code embedded=false} an already running server is loaded instead.</p>
+ * <p>A sizing session usually fixes the rate and the database latency, then steps one property at a time
+ * (for example {@code NUM_REQUEST_WORKERS} at 1, 2, 4 and 8) until the p99 stops improving, then raises the rate until it breaks.
+ * Runs with lost requests or an achieved rate below the target are saturated: the percentiles keep growing with the duration.</p>
+*/
+public class LoadGenerator {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    //____________________________________________________________________________________________________________________________________
+
+    public static void main(String[] args) {
+
+        LoadSettings settings;
+        StandInDatabase database = null;
+        LoadConnection[] connections;
+        Thread[] senders;
+        String run;
+        long start;
+
+        try {
+
+            settings = LoadSettings.parse(args);
+
+            if(settings.embedded() == true) {
+
+                database = startEmbedded(settings);
+            }
+
+            run = Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36, 36 * 36 * 36 * 36), 36);
+            connections = new LoadConnection[settings.connections()];
+            senders = new Thread[settings.connections()];
+
+            // a little slack, so that every sender is ready before the first request is due
+            start = System.nanoTime() + 100_000_000L;
+
+            for(int i = 0; i < connections.length; i++) {
+
+                connections[i] = new LoadConnection(i, settings, run, start);
+                senders[i] = new Thread(connections[i], "load-sender-" + i);
+                senders[i].start();
+            }
+
+            System.out.println(
+
+                "Loading " + settings.host() + ":" + settings.port() + " with " + settings.connections() + " connections at " +
+                settings.rate() + " req/s, " + ((settings.closed() == true) ? "closed" : "open") + " loop, " +
+                settings.warmup() + "s warmup + " + settings.duration() + "s"
+            );
+
+            for(Thread sender : senders) {
+
+                sender.join();
+            }
+
+            report(settings, connections, database);
+
+            if(settings.embedded() == true) {
+
+                Container.web_server.stopServer();
+            }
+
+            System.exit(0);
+        }
+
+        catch(IllegalArgumentException exc) {
+
+            System.err.println("LoadGenerator.main > Bad arguments, IllegalArgumentException: " + exc.getMessage());
+            System.exit(2);
+        }
+
+        catch(Exception exc) {
+
+            System.err.println("LoadGenerator.main > Could not run, " + exc.getClass().getSimpleName() + ": " + exc.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // configure and start the server on the stand-in database, returns once it accepts connections
+    private static StandInDatabase startEmbedded(LoadSettings settings) throws Exception {
+
+        StandInDatabase database;
+        Thread server;
+        long deadline;
+
+        ConfigurationProvider.init();
+
+        ConfigurationProvider.DB_URL = StandInDatabase.URL_PREFIX + "blackhole";
+        ConfigurationProvider.SERVER_PORT = settings.port();
+        ConfigurationProvider.INIT_SCHEMA = false;
+        ConfigurationProvider.LOAD_DATA_TO_DB = false;
+        ConfigurationProvider.NEED_SESSION_FOR_TAG_CREATE = false;
+        ConfigurationProvider.NEED_SESSION_FOR_TAG_READ = false;
+        ConfigurationProvider.NEED_SESSION_FOR_TAG_UPDATE = false;
+        ConfigurationProvider.NEED_SESSION_FOR_TAG_DELETE = false;
+        ConfigurationProvider.MAX_REQUESTS_PER_CONNECTION = Integer.MAX_VALUE;
+        ConfigurationProvider.MIN_CONSOLE_LOG_LEVEL = LogLevel.ERROR;
+
+        for(Map.Entry<String, String> override : settings.overrides().entrySet()) {
+
+            set(override.getKey(), override.getValue());
+        }
+
+        database = new StandInDatabase(settings.db_seed(), settings.db_latency() * 1_000, settings.db_parse() * 1_000);
+        DriverManager.registerDriver(database);
+        Container.init();
+
+        server = new Thread(Container.web_server::start, "load-server");
+        server.setDaemon(true);
+        server.start();
+
+        deadline = System.currentTimeMillis() + 10_000;
+
+        while(true) {
+
+            try(SocketChannel probe = SocketChannel.open(new InetSocketAddress(settings.host(), settings.port()))) {
+
+                return(database);
+            }
+
+            catch(IOException exc) {
+
+                if(System.currentTimeMillis() > deadline) {
+
+                    throw new IOException("The embedded server did not start in 10 seconds: " + exc.getMessage());
+                }
+
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    // set a ConfigurationProvider field from its string value
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void set(String name, String value) throws IllegalArgumentException, IllegalAccessException {
+
+        Field field;
+        Class<?> type;
+
+        try {
+
+            field = ConfigurationProvider.class.getField(name);
+        }
+
+        catch(NoSuchFieldException exc) {
+
+            throw new IllegalArgumentException("Unknown server property: " + name);
+        }
+
+        type = field.getType();
+
+        if(type == int.class) field.setInt(null, Integer.parseInt(value));
+        else if(type == long.class) field.setLong(null, Long.parseLong(value));
+        else if(type == boolean.class) field.setBoolean(null, Boolean.parseBoolean(value));
+        else if(type == String.class) field.set(null, value);
+        else if(type.isEnum() == true) field.set(null, Enum.valueOf((Class<? extends Enum>)type, value.toUpperCase()));
+        else throw new IllegalArgumentException("Unsupported server property type: " + name + " (" + type.getSimpleName() + ")");
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static void report(LoadSettings settings, LoadConnection[] connections, StandInDatabase database) {
+
+        Operation[] operations = Operation.values();
+        LatencyHistogram[] latencies = new LatencyHistogram[operations.length];
+        LatencyHistogram all = new LatencyHistogram();
+        long[] errors = new long[operations.length];
+        long[] sent = new long[operations.length];
+        long lost = 0;
+        long total_sent = 0;
+        long total_errors = 0;
+        StringBuilder line;
+
+        for(int i = 0; i < latencies.length; i++) {
+
+            latencies[i] = new LatencyHistogram();
+        }
+
+        for(LoadConnection connection : connections) {
+
+            connection.addTo(latencies, errors, sent);
+            lost += connection.getLost();
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-8s %10s %8s %10s %10s %10s %10s %10s %10s %10s", "op", "ok", "errors", "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max"));
+
+        for(int i = 0; i <= operations.length; i++) {
+
+            LatencyHistogram histogram = (i < operations.length) ? latencies[i] : all;
+
+            if(i < operations.length) {
+
+                if(sent[i] == 0) {
+
+                    continue;
+                }
+
+                all.add(histogram);
+                total_sent += sent[i];
+                total_errors += errors[i];
+            }
+
+            line = new StringBuilder(String.format(
+
+                "%-8s %10d %8d %10s",
+                (i < operations.length) ? operations[i].name() : "ALL",
+                histogram.getCount(),
+                (i < operations.length) ? errors[i] : total_errors,
+                millis((long)histogram.getMean())
+            ));
+
+            for(double percentile : PERCENTILES) {
+
+                line.append(String.format(" %10s", millis(histogram.getValueAtPercentile(percentile))));
+            }
+
+            System.out.println(line.append(String.format(" %10s", millis(histogram.getMax()))));
+        }
+
+        System.out.println();
+        System.out.println(String.format(
+
+            "Sent %d, answered %d, lost %d. Target %.0f req/s, achieved %.0f req/s (latencies in ms, from the %s send time)",
+            total_sent,
+            all.getCount() + total_errors,
+            lost,
+            settings.rate(),
+            (all.getCount() + total_errors) / (double)settings.duration(),
+            (settings.closed() == true) ? "actual" : "intended"
+        ));
+
+        if(lost > 0 || all.getCount() + total_errors < 0.95 * settings.rate() * settings.duration()) {
+
+            System.out.println("Saturated: the server can't keep up with the target rate, the percentiles only grow with the duration");
+        }
+
+        if(database != null) {
+
+            System.out.println(String.format(
+
+                "Server: %d reactors, %d request workers (%s), %d query workers (%s), %d of %d db connections open, %d opened, %d timeouts. " +
+                "Statement cache: %d hits, %d misses, %d evictions. %d writes coalesced into %d batches. " +
+                "Tag cache: %d hits, %d misses, %d evictions, %d invalidations. Tag index: %d tags, %d searches, %d fallbacks. Stand-in db: %d statements, %d tags, %dus each",
+                ConfigurationProvider.NUM_REACTORS,
+                ConfigurationProvider.NUM_REQUEST_WORKERS,
+                ConfigurationProvider.REQUEST_EXECUTION_MODE,
+                (ConfigurationProvider.QUERY_EXECUTION_MODE == ExecutionMode.VIRTUAL) ? ConfigurationProvider.MAX_CONCURRENT_QUERIES : ConfigurationProvider.NUM_QUERY_WORKERS,
+                ConfigurationProvider.QUERY_EXECUTION_MODE,
+                ConnectionPool.getInstance().getTotal(),
+                ConfigurationProvider.DB_CONNECTIONS,
+                ConnectionPool.getInstance().getOpened(),
+                ConnectionPool.getInstance().getTimeouts(),
+                ConnectionPool.getInstance().getStatementHits(),
+                ConnectionPool.getInstance().getStatementMisses(),
+                ConnectionPool.getInstance().getStatementEvictions(),
+                Container.repository.getCoalesced(),
+                Container.repository.getBatches(),
+                TagCache.getInstance().getHits(),
+                TagCache.getInstance().getMisses(),
+                TagCache.getInstance().getEvictions(),
+                TagCache.getInstance().getInvalidations(),
+                TagIndex.getInstance(Container.repository).getSize(),
+                TagIndex.getInstance(Container.repository).getSearches(),
+                TagIndex.getInstance(Container.repository).getFallbacks(),
+                database.getExecutions(),
+                database.getSize(),
+                settings.db_latency()
+            ));
+        }
+    }
+
+    private static String millis(long nanos) {
+
+        return(String.format("%.3f", nanos / 1_000_000.0));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,197 @@
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Settings of a load run, parsed from {@code key=value} arguments.</p>
+ * <ul>
+ *     <li>host, port: the server to load (default {@code 127.0.0.1:8080}).</li>
+ *     <li>embedded: start the server in this JVM on the {@link StandInDatabase} (default {@code true}).</li>
+ *     <li>connections: number of connections (default 8).</li>
+ *     <li>rate: total requests per second, spread evenly across the connections (default 1000).</li>
+ *     <li>duration, warmup: seconds of measurement, after seconds of unrecorded load (default 30 and 5).</li>
+ *     <li>mode: {@code open} (default) or {@code closed}, see {@link LoadConnection}.</li>
+ *     <li>mix: weights of the operations, like {@code READ:70,CREATE:10,UPDATE:10,DELETE:5,ECHO:5} (the default).</li>
+ *     <li>compact, compress: send compact requests, accept compressed responses (default {@code false}).</li>
+ *     <li>batch: tags per create, update and delete (default 1).</li>
+ *     <li>read_ids: ids per read (default 16).</li>
+ *     <li>keyspace: ids are drawn from 1 to keyspace (default 10000).</li>
+ *     <li>echo_size: bytes of the echo payload (default 0).</li>
+ *     <li>db_latency: microseconds each statement takes on the stand-in database (default 200).</li>
+ *     <li>db_parse: extra microseconds each statement takes on the stand-in database until it's prepared (default 0).</li>
+ *     <li>db_seed: tags in the stand-in database at start (default: keyspace).</li>
+ *     <li>session: hex session id to send (default all zeros).</li>
+ * </ul>
+ * Upper case keys are set on the {@link io.github.clamentos.blackhole.common.config.ConfigurationProvider}
+ * of the embedded server, overriding {@code resources/Application.properties}, for example {@code NUM_REQUEST_WORKERS=4}.
+*/
+public record LoadSettings(
+
+    String host,
+    int port,
+    boolean embedded,
+    int connections,
+    double rate,
+    int duration,
+    int warmup,
+    boolean closed,
+    Operation[] operations,
+    double[] weights,
+    boolean compact,
+    boolean compress,
+    int batch,
+    int read_ids,
+    int keyspace,
+    int echo_size,
+    long db_latency,
+    long db_parse,
+    int db_seed,
+    byte[] session,
+    Map<String, String> overrides
+) {
+
+    private static final Set<String> KEYS = Set.of(
+
+        "host", "port", "embedded", "connections", "rate", "duration", "warmup", "mode", "mix", "compact", "compress",
+        "batch", "read_ids", "keyspace", "echo_size", "db_latency", "db_parse", "db_seed", "session"
+    );
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Parses the settings from the command line arguments.
+     * @param args : The {@code key=value} arguments.
+     * @return The never null settings, with the defaults for the missing keys.
+     * @throws IllegalArgumentException If an argument is malformed, unknown or out of range.
+    */
+    public static LoadSettings parse(String[] args) throws IllegalArgumentException {
+
+        HashMap<String, String> options = new HashMap<>();
+        TreeMap<String, String> overrides = new TreeMap<>();
+        String[] mix;
+        Operation[] operations;
+        double[] weights;
+        LoadSettings settings;
+        int keyspace;
+
+        for(String arg : args) {
+
+            int split = arg.indexOf('=');
+
+            if(split <= 0) {
+
+                throw new IllegalArgumentException("Arguments must be key=value, got: " + arg);
+            }
+
+            if(Character.isUpperCase(arg.charAt(0)) == true) {
+
+                overrides.put(arg.substring(0, split), arg.substring(split + 1));
+            }
+
+            else if(KEYS.contains(arg.substring(0, split)) == true) {
+
+                options.put(arg.substring(0, split), arg.substring(split + 1));
+            }
+
+            else {
+
+                throw new IllegalArgumentException("Unknown option: " + arg.substring(0, split) + ", expected one of: " + KEYS);
+            }
+        }
+
+        mix = options.getOrDefault("mix", "READ:70,CREATE:10,UPDATE:10,DELETE:5,ECHO:5").split(",");
+        operations = new Operation[mix.length];
+        weights = new double[mix.length];
+
+        // cumulative, so that picking is a scan
+        for(int i = 0; i < mix.length; i++) {
+
+            String[] parts = mix[i].trim().split(":");
+
+            operations[i] = Operation.valueOf(parts[0].trim().toUpperCase());
+            weights[i] = ((i > 0) ? weights[i - 1] : 0) + ((parts.length > 1) ? Double.parseDouble(parts[1]) : 1);
+        }
+
+        keyspace = Integer.parseInt(options.getOrDefault("keyspace", "10000"));
+
+        settings = new LoadSettings(
+
+            options.getOrDefault("host", "127.0.0.1"),
+            Integer.parseInt(options.getOrDefault("port", overrides.getOrDefault("SERVER_PORT", "8080"))),
+            Boolean.parseBoolean(options.getOrDefault("embedded", "true")),
+            Integer.parseInt(options.getOrDefault("connections", "8")),
+            Double.parseDouble(options.getOrDefault("rate", "1000")),
+            Integer.parseInt(options.getOrDefault("duration", "30")),
+            Integer.parseInt(options.getOrDefault("warmup", "5")),
+            options.getOrDefault("mode", "open").equalsIgnoreCase("closed"),
+            operations,
+            weights,
+            Boolean.parseBoolean(options.getOrDefault("compact", "false")),
+            Boolean.parseBoolean(options.getOrDefault("compress", "false")),
+            Integer.parseInt(options.getOrDefault("batch", "1")),
+            Integer.parseInt(options.getOrDefault("read_ids", "16")),
+            keyspace,
+            Integer.parseInt(options.getOrDefault("echo_size", "0")),
+            Long.parseLong(options.getOrDefault("db_latency", "200")),
+            Long.parseLong(options.getOrDefault("db_parse", "0")),
+            Integer.parseInt(options.getOrDefault("db_seed", String.valueOf(keyspace))),
+            (options.containsKey("session") == true) ? HexFormat.of().parseHex(options.get("session")) : new byte[32],
+            overrides
+        );
+
+        if(settings.connections < 1 || settings.rate <= 0 || settings.duration < 1 || settings.warmup < 0) {
+
+            throw new IllegalArgumentException("connections, rate and duration must be positive, warmup can't be negative");
+        }
+
+        if(settings.batch < 1 || settings.read_ids < 1 || settings.keyspace < 1 || settings.echo_size < 0) {
+
+            throw new IllegalArgumentException("batch, read_ids and keyspace must be positive, echo_size can't be negative");
+        }
+
+        if(settings.session.length != 32 || weights[weights.length - 1] <= 0) {
+
+            throw new IllegalArgumentException("The session id must be 32 bytes and the mix must have a positive weight");
+        }
+
+        if(settings.embedded == false && overrides.isEmpty() == false) {
+
+            throw new IllegalArgumentException("Server properties can only be set on the embedded server, got: " + overrides.keySet());
+        }
+
+        return(settings);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Picks an operation at random, according to the weights of the mix.
+     * @param random : The random source.
+     * @return The picked operation.
+    */
+    public Operation pick(SplittableRandom random) {
+
+        double point = random.nextDouble(weights[weights.length - 1]);
+
+        for(int i = 0; i < weights.length - 1; i++) {
+
+            if(point < weights[i]) {
+
+                return(operations[i]);
+            }
+        }
+
+        return(operations[operations.length - 1]);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
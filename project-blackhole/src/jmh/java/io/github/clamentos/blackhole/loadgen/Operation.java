@@ -0,0 +1,157 @@
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.web.dtos.components.Entities;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Method;
+
+import java.util.SplittableRandom;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>The requests the load generator can send, each one knowing how to write its own entries.</p>
+ * <ul>
+ *     <li>CREATE: {@code batch} new tags with unique names.</li>
+ *     <li>READ: {@code read_ids} random ids from the key space, all the fields.</li>
+ *     <li>SEARCH: the tags whose name contains a random id from the key space, all the fields.</li>
+ *     <li>UPDATE: renames {@code batch} random ids from the key space.</li>
+ *     <li>DELETE: {@code batch} random ids from the key space.</li>
+ *     <li>ECHO: a {@code RAW} entry of {@code echo_size} bytes, or nothing.</li>
+ * </ul>
+ * Ids are drawn uniformly from 1 to {@code keyspace}, which should roughly match the number of tags in the database.
+*/
+public enum Operation {
+
+    CREATE(Entities.TAG, Method.CREATE) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            for(int i = 0; i < settings.batch(); i++) {
+
+                writer.putNull();
+                writer.putString(unique + "." + i);
+                writer.putNull();
+            }
+        }
+    },
+
+    READ(Entities.TAG, Method.READ) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            writer.putByte((byte)0);
+            writer.putByte((byte)0b0111);
+            writer.putInt(settings.read_ids());
+
+            for(int i = 0; i < settings.read_ids(); i++) {
+
+                writer.putInt(id(settings, random));
+            }
+        }
+    },
+
+    SEARCH(Entities.TAG, Method.READ) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            writer.putByte((byte)1);
+            writer.putByte((byte)0b0111);
+            writer.putNull();
+            writer.putString(String.valueOf(id(settings, random)));
+            writer.putNull();
+            writer.putNull();
+        }
+    },
+
+    UPDATE(Entities.TAG, Method.UPDATE) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            for(int i = 0; i < settings.batch(); i++) {
+
+                writer.putInt(id(settings, random));
+                writer.putString("u" + unique + "." + i);
+                writer.putNull();
+            }
+        }
+    },
+
+    DELETE(Entities.TAG, Method.DELETE) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            for(int i = 0; i < settings.batch(); i++) {
+
+                writer.putInt(id(settings, random));
+            }
+        }
+    },
+
+    ECHO(Entities.ECHO, Method.READ) {
+
+        @Override
+        public void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique) {
+
+            if(settings.echo_size() > 0) {
+
+                writer.putRaw(new byte[settings.echo_size()]);
+            }
+        }
+    };
+
+    //____________________________________________________________________________________________________________________________________
+
+    private final Entities resource;
+    private final Method method;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private Operation(Entities resource, Method method) {
+
+        this.resource = resource;
+        this.method = method;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return The resource the request is sent to.
+    */
+    public Entities getResource() {
+
+        return(resource);
+    }
+
+    /**
+     * @return The request method.
+    */
+    public Method getMethod() {
+
+        return(method);
+    }
+
+    /**
+     * Writes the entries of the request, after the header.
+     * @param writer : The writer to write into.
+     * @param settings : The load settings.
+     * @param random : The random source of the calling connection.
+     * @param unique : A string that is never repeated in the same run, at most 20 chars.
+    */
+    public abstract void write(EntryWriter writer, LoadSettings settings, SplittableRandom random, String unique);
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static int id(LoadSettings settings, SplittableRandom random) {
+
+        return(random.nextInt(settings.keyspace()) + 1);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
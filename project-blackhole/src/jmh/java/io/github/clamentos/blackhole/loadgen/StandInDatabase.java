@@ -0,0 +1,1012 @@
+package io.github.clamentos.blackhole.loadgen;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>In-memory stand-in for the database, registered as a JDBC {@link Driver} for the {@value #URL_PREFIX} URLs,
+ * so that the server can be loaded without PostgreSQL. It only knows the {@code Tags} table and the statement shapes
+ * the servlets use:</p>
+ * <ul>
+ *     <li>{@code INSERT INTO Tags(columns) VALUES(?, ...)}</li>
+ *     <li>{@code UPDATE Tags SET column = ?, ... WHERE conditions}</li>
+ *     <li>{@code DELETE FROM Tags WHERE conditions}</li>
+ *     <li>{@code SELECT columns FROM Tags WHERE conditions [ORDER BY column, ... [ASC|DESC]] [LIMIT ?]}</li>
+ * </ul>
+ * <p>Conditions are joined with {@code AND} and are either {@code column op ?}, with {@code =, <>, <, <=, >, >=, LIKE, ILIKE},
+ * {@code column IN (?, ...)} or the row comparison {@code (column, column) > (?, ?)}. Anything else fails with an {@link SQLException}, like PostgreSQL would,
+ * and so do unknown columns, parameter indexes out of range, duplicate names and {@code executeQuery} on statements
+ * that return no rows.</p>
+ * <p>Every execution parks the calling thread for the configured latency, to stand in for the round trip
+ * and the work of a real database: that's what makes the number of database connections matter.
+ * The first {@value #PREPARE_THRESHOLD} executions of each statement also pay the parse cost, like the PostgreSQL driver
+ * that only switches to a server side prepared statement after as many executions of the same statement object.</p>
+ * <p>Statements run in autocommit mode unless told otherwise: then the changes are applied right away, visible to everyone,
+ * and journaled so that a rollback can undo them. There is no isolation, but the outcome of a committed or rolled back
+ * transaction is the same as on PostgreSQL.</p>
+ * <p><b>This class is thread safe.</b></p>
+*/
+public class StandInDatabase implements Driver {
+
+    /** Prefix of the JDBC URLs accepted by this driver. */
+    public static final String URL_PREFIX = "jdbc:standin:";
+
+    private static final String[] COLUMNS = {"id", "name", "creation_date"};
+
+    private static final Pattern INSERT = Pattern.compile("INSERT INTO Tags ?\\((.+)\\) VALUES ?\\((.+)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UPDATE = Pattern.compile("UPDATE Tags SET (.+?) WHERE (.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DELETE = Pattern.compile("DELETE FROM Tags(?: WHERE (.+))?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SELECT = Pattern.compile(
+
+        "SELECT (.+?) FROM Tags(?: WHERE (.+?))?(?: ORDER BY (\\w+(?: ?, ?\\w+)*)(?: (ASC|DESC))?)?( LIMIT \\?)?",
+        Pattern.CASE_INSENSITIVE
+    );
+
+    private static final Pattern CONDITION = Pattern.compile("(\\w+) ?(=|<>|<=|>=|<|>| LIKE | ILIKE ) ?\\?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROW = Pattern.compile("\\((\\w+) ?, ?(\\w+)\\) ?> ?\\( ?\\? ?, ?\\? ?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IN = Pattern.compile("(\\w+) IN ?\\(((?: ?\\? ?,)* ?\\? ?)\\)", Pattern.CASE_INSENSITIVE);
+
+    private static final int PREPARE_THRESHOLD = 5;
+
+    private final long latency;
+    private final long parse;
+    private final ConcurrentSkipListMap<Integer, Object[]> rows;
+    private final HashMap<String, Integer> names;
+    private final AtomicLong executions;
+    private int next_id;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new stand-in database with a pre-populated {@code Tags} table.
+     * @param seed : The number of tags to insert, with ids from 1 to {@code seed}.
+     * @param latency : The time, in nanoseconds, that every statement execution takes.
+     * @param parse : The extra time, in nanoseconds, that the executions of a statement take until it's prepared.
+    */
+    public StandInDatabase(int seed, long latency, long parse) {
+
+        int now = (int)(System.currentTimeMillis() / 60_000);
+
+        this.latency = latency;
+        this.parse = parse;
+        rows = new ConcurrentSkipListMap<>();
+        names = new HashMap<>();
+        executions = new AtomicLong();
+        next_id = 1;
+
+        for(int i = 0; i < seed; i++) {
+
+            rows.put(next_id, new Object[] {next_id, "seed-" + i, now - i});
+            names.put("seed-" + i, next_id++);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return The number of statements executed so far, each batch counting as one.
+    */
+    public long getExecutions() {
+
+        return(executions.get());
+    }
+
+    /**
+     * @return The number of tags currently in the table.
+    */
+    public int getSize() {
+
+        return(rows.size());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+
+        if(acceptsURL(url) == false) {
+
+            return(null);
+        }
+
+        return((Connection)proxy(Connection.class, new ConnectionHandler()));
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+
+        return(url != null && url.startsWith(URL_PREFIX));
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+
+        return(new DriverPropertyInfo[0]);
+    }
+
+    @Override
+    public int getMajorVersion() {
+
+        return(1);
+    }
+
+    @Override
+    public int getMinorVersion() {
+
+        return(0);
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+
+        return(false);
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+
+        throw new SQLFeatureNotSupportedException("No parent logger");
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // parse the statement once, when prepared, like a real driver would (without the round trip)
+    private Query parse(String sql) throws SQLException {
+
+        String normalized = sql.trim().replaceAll("\\s+", " ");
+        int placeholders = (int)normalized.chars().filter(c -> c == '?').count();
+        Matcher matcher;
+        Query query;
+        int next = 0;
+
+        if((matcher = INSERT.matcher(normalized)).matches() == true) {
+
+            query = new Query(Kind.INSERT, placeholders);
+
+            for(String column : matcher.group(1).split(",")) {
+
+                query.assignments.add(new Condition(column(column.trim()), "=", next++, 1));
+            }
+
+            if(matcher.group(2).replace(" ", "").equals("?,".repeat(next - 1) + "?") == false) {
+
+                throw new SQLException("syntax error at or near \"" + matcher.group(2) + "\"", "42601");
+            }
+
+            return(query);
+        }
+
+        if((matcher = UPDATE.matcher(normalized)).matches() == true) {
+
+            query = new Query(Kind.UPDATE, placeholders);
+
+            for(String assignment : matcher.group(1).split(",")) {
+
+                String[] parts = assignment.split("=");
+
+                if(parts.length != 2 || parts[1].trim().equals("?") == false) {
+
+                    throw new SQLException("syntax error at or near \"" + assignment.trim() + "\"", "42601");
+                }
+
+                query.assignments.add(new Condition(column(parts[0].trim()), "=", next++, 1));
+            }
+
+            conditions(query, matcher.group(2), next);
+            return(query);
+        }
+
+        if((matcher = DELETE.matcher(normalized)).matches() == true) {
+
+            query = new Query(Kind.DELETE, placeholders);
+            conditions(query, matcher.group(1), next);
+
+            return(query);
+        }
+
+        if((matcher = SELECT.matcher(normalized)).matches() == true) {
+
+            query = new Query(Kind.SELECT, placeholders);
+
+            for(String column : matcher.group(1).split(",")) {
+
+                query.columns.add(column(column.trim()));
+            }
+
+            next = conditions(query, matcher.group(2), next);
+
+            if(matcher.group(3) != null) {
+
+                for(String column : matcher.group(3).split(",")) {
+
+                    query.order.add(column(column.trim()));
+                }
+
+                query.descending = "DESC".equalsIgnoreCase(matcher.group(4));
+            }
+
+            query.limit = (matcher.group(5) != null) ? next : -1;
+            return(query);
+        }
+
+        throw new SQLException("relation or statement not supported by the stand-in database: " + normalized, "42P01");
+    }
+
+    // parse the where clause, returns the index of the next parameter
+    private int conditions(Query query, String clause, int next) throws SQLException {
+
+        Matcher matcher;
+
+        if(clause == null) {
+
+            return(next);
+        }
+
+        for(String condition : clause.split("(?i) AND ")) {
+
+            if((matcher = IN.matcher(condition.trim())).matches() == true) {
+
+                int count = (int)matcher.group(2).chars().filter(c -> c == '?').count();
+
+                query.conditions.add(new Condition(column(matcher.group(1)), "IN", next, count));
+                next += count;
+            }
+
+            else if((matcher = ROW.matcher(condition.trim())).matches() == true) {
+
+                query.conditions.add(new Condition(column(matcher.group(1)), "ROW>", next, 2, column(matcher.group(2))));
+                next += 2;
+            }
+
+            else if((matcher = CONDITION.matcher(condition.trim())).matches() == true) {
+
+                query.conditions.add(new Condition(column(matcher.group(1)), matcher.group(2).trim().toUpperCase(), next++, 1));
+            }
+
+            else {
+
+                throw new SQLException("syntax error at or near \"" + condition.trim() + "\"", "42601");
+            }
+        }
+
+        return(next);
+    }
+
+    private int column(String name) throws SQLException {
+
+        for(int i = 0; i < COLUMNS.length; i++) {
+
+            if(COLUMNS[i].equalsIgnoreCase(name) == true) {
+
+                return(i);
+            }
+        }
+
+        throw new SQLException("column \"" + name + "\" does not exist", "42703");
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // run the statement with the given parameters, returns the rows for a select or the update count
+    // the changes are added to the journal as {before, after} rows, unless it's null
+    private Object run(Query query, Object[] parameters, List<Object[][]> journal) throws SQLException {
+
+        List<Object[]> result;
+        int count = 0;
+
+        // nulls are set with a marker, so a null here is a parameter that was never set
+        for(int i = 0; i < parameters.length; i++) {
+
+            if(parameters[i] == null) {
+
+                throw new SQLException("No value specified for parameter " + (i + 1) + ".", "22023");
+            }
+        }
+
+        switch(query.kind) {
+
+            case INSERT:
+
+                Object[] row = new Object[COLUMNS.length];
+
+                for(Condition assignment : query.assignments) {
+
+                    row[assignment.column] = value(parameters[assignment.first]);
+                }
+
+                if(row[0] != null) {
+
+                    throw new SQLException("the stand-in database generates the ids, id can't be inserted", "428C9");
+                }
+
+                synchronized(names) {
+
+                    insert(row);
+                    if(journal != null) journal.add(new Object[][] {null, row});
+                }
+
+                return(1);
+
+            case UPDATE:
+
+                synchronized(names) {
+
+                    for(Object[] current : select(query, parameters)) {
+
+                        Object[] updated = current.clone();
+
+                        for(Condition assignment : query.assignments) {
+
+                            updated[assignment.column] = value(parameters[assignment.first]);
+                        }
+
+                        remove((Integer)current[0]);
+
+                        try {
+
+                            insert(updated);
+                        }
+
+                        catch(SQLException exc) {
+
+                            insert(current);
+                            throw exc;
+                        }
+
+                        if(journal != null) journal.add(new Object[][] {current, updated});
+                        count++;
+                    }
+                }
+
+                return(count);
+
+            case DELETE:
+
+                synchronized(names) {
+
+                    for(Object[] current : select(query, parameters)) {
+
+                        remove((Integer)current[0]);
+                        if(journal != null) journal.add(new Object[][] {current, null});
+                        count++;
+                    }
+                }
+
+                return(count);
+
+            default:
+
+                result = select(query, parameters);
+
+                if(query.order.isEmpty() == false) {
+
+                    result.sort((a, b) -> order(query, a, b) * ((query.descending == true) ? -1 : 1));
+                }
+
+                if(query.limit >= 0 && value(parameters[query.limit]) != null) {
+
+                    result = new ArrayList<>(result.subList(0, Math.min(result.size(), ((Number)value(parameters[query.limit])).intValue())));
+                }
+
+                return(result);
+        }
+    }
+
+    // lexicographic on the order by columns
+    private int order(Query query, Object[] a, Object[] b) {
+
+        int comparison = 0;
+
+        for(int i = 0; i < query.order.size() && comparison == 0; i++) {
+
+            comparison = compare(a[query.order.get(i)], b[query.order.get(i)]);
+        }
+
+        return(comparison);
+    }
+
+    // rows matching all the conditions, in id order
+    private List<Object[]> select(Query query, Object[] parameters) {
+
+        List<Object[]> result = new ArrayList<>();
+
+        for(Object[] row : rows.values()) {
+
+            if(matches(query, row, parameters) == true) {
+
+                result.add(row);
+            }
+        }
+
+        return(result);
+    }
+
+    private boolean matches(Query query, Object[] row, Object[] parameters) {
+
+        for(Condition condition : query.conditions) {
+
+            Object actual = row[condition.column];
+            boolean found = false;
+
+            if(condition.operator.equals("IN") == true) {
+
+                for(int i = 0; i < condition.count && found == false; i++) {
+
+                    found = compare(actual, value(parameters[condition.first + i])) == 0;
+                }
+
+                if(found == false) {
+
+                    return(false);
+                }
+
+                continue;
+            }
+
+            if(condition.operator.equals("ROW>") == true) {
+
+                int comparison = compare(actual, value(parameters[condition.first]));
+
+                if(comparison == 0) {
+
+                    comparison = compare(row[condition.other], value(parameters[condition.first + 1]));
+                }
+
+                if(comparison <= 0) {
+
+                    return(false);
+                }
+
+                continue;
+            }
+
+            Object expected = value(parameters[condition.first]);
+
+            if(actual == null || expected == null) {
+
+                return(false);
+            }
+
+            int comparison = compare(actual, expected);
+
+            switch(condition.operator) {
+
+                case "=": found = comparison == 0; break;
+                case "<>": found = comparison != 0; break;
+                case "<": found = comparison < 0; break;
+                case "<=": found = comparison <= 0; break;
+                case ">": found = comparison > 0; break;
+                case ">=": found = comparison >= 0; break;
+                case "LIKE": found = like(actual.toString(), expected.toString(), false); break;
+                case "ILIKE": found = like(actual.toString(), expected.toString(), true); break;
+
+                default: found = false; break;
+            }
+
+            if(found == false) {
+
+                return(false);
+            }
+        }
+
+        return(true);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // must hold the names lock
+    private void insert(Object[] row) throws SQLException {
+
+        if(row[1] == null || row[2] == null) {
+
+            throw new SQLException("null value violates not-null constraint", "23502");
+        }
+
+        if(names.containsKey(row[1]) == true) {
+
+            throw new SQLException("duplicate key value violates unique constraint \"tags_name_key\"", "23505");
+        }
+
+        if(row[0] == null) {
+
+            row[0] = next_id++;
+        }
+
+        names.put((String)row[1], (Integer)row[0]);
+        rows.put((Integer)row[0], row);
+    }
+
+    // undo the journaled changes, newest first
+    private void undo(List<Object[][]> journal) throws SQLException {
+
+        synchronized(names) {
+
+            for(int i = journal.size() - 1; i >= 0; i--) {
+
+                if(journal.get(i)[1] != null) remove((Integer)journal.get(i)[1][0]);
+                if(journal.get(i)[0] != null) insert(journal.get(i)[0]);
+            }
+        }
+
+        journal.clear();
+    }
+
+    // must hold the names lock
+    private void remove(Integer id) {
+
+        Object[] row = rows.remove(id);
+
+        if(row != null) {
+
+            names.remove(row[1]);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static Object value(Object parameter) {
+
+        return((parameter == Query.NULL) ? null : parameter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+
+        if(a instanceof Number && b instanceof Number) {
+
+            return(Long.compare(((Number)a).longValue(), ((Number)b).longValue()));
+        }
+
+        if(a == null || b == null) {
+
+            return((a == b) ? 0 : (a == null) ? -1 : 1);
+        }
+
+        if(a.getClass() != b.getClass()) {
+
+            return(a.toString().compareTo(b.toString()));
+        }
+
+        return(((Comparable<Object>)a).compareTo(b));
+    }
+
+    // % matches any sequence, _ any single char, \ escapes
+    private static boolean like(String value, String pattern, boolean ignore_case) {
+
+        StringBuilder regex = new StringBuilder();
+
+        for(int i = 0; i < pattern.length(); i++) {
+
+            char c = pattern.charAt(i);
+
+            if(c == '\\' && i + 1 < pattern.length()) regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            else if(c == '%') regex.append(".*");
+            else if(c == '_') regex.append('.');
+            else regex.append(Pattern.quote(String.valueOf(c)));
+        }
+
+        return(Pattern.compile(regex.toString(), (ignore_case == true) ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0).matcher(value).matches());
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+
+        return(Proxy.newProxyInstance(StandInDatabase.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    // shared by every proxy: identity based equality, anything not handled is not supported
+    private static Object common(Object proxy, Method method, Object[] args) throws SQLException {
+
+        switch(method.getName()) {
+
+            case "toString": return(proxy.getClass().getInterfaces()[0].getSimpleName() + "@stand-in");
+            case "hashCode": return(System.identityHashCode(proxy));
+            case "equals": return(proxy == args[0]);
+            case "isWrapperFor": return(false);
+            case "getWarnings": return(null);
+            case "clearWarnings": return(null);
+
+            default: throw new SQLFeatureNotSupportedException("Not supported by the stand-in database: " + method.getName());
+        }
+    }
+
+    // the simulated round trip
+    private void pay(boolean prepared) {
+
+        long cost = (prepared == true) ? latency : latency + parse;
+
+        executions.incrementAndGet();
+
+        if(cost > 0) {
+
+            LockSupport.parkNanos(cost);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private enum Kind {
+
+        SELECT,
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    // column op parameter, for IN conditions the parameters are [first, first + count), row comparisons also use the other column
+    private record Condition(int column, String operator, int first, int count, int other) {
+
+        private Condition(int column, String operator, int first, int count) {
+
+            this(column, operator, first, count, -1);
+        }
+    }
+
+    private static final class Query {
+
+        private static final Object NULL = new Object();
+
+        private final Kind kind;
+        private final int placeholders;
+        private final List<Integer> columns;
+        private final List<Condition> assignments;
+        private final List<Condition> conditions;
+        private final List<Integer> order;
+        private boolean descending;
+        private int limit;
+
+        private Query(Kind kind, int placeholders) {
+
+            this.kind = kind;
+            this.placeholders = placeholders;
+            columns = new ArrayList<>();
+            assignments = new ArrayList<>();
+            conditions = new ArrayList<>();
+            order = new ArrayList<>();
+            limit = -1;
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final List<Object[][]> journal = new ArrayList<>();
+        private boolean auto_commit = true;
+        private boolean in_transaction = false;
+        private volatile boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+
+            switch(method.getName()) {
+
+                case "prepareStatement":
+
+                    check();
+                    return(proxy(PreparedStatement.class, new StatementHandler((Connection)proxy, this, parse((String)args[0]))));
+
+                case "createStatement":
+
+                    check();
+                    return(proxy(Statement.class, new StatementHandler((Connection)proxy, this, null)));
+
+                case "isValid": return(closed == false);
+                case "isClosed": return(closed);
+                case "close": closed = true; return(null);
+
+                // turning autocommit back on commits, like JDBC wants
+                case "getAutoCommit": return(auto_commit);
+                case "setAutoCommit": if((Boolean)args[0] == true) end(false); auto_commit = (Boolean)args[0]; return(null);
+                case "commit": end(false); return(null);
+                case "rollback": end(true); return(null);
+
+                default: return(common(proxy, method, args));
+            }
+        }
+
+        private void check() throws SQLException {
+
+            if(closed == true) {
+
+                throw new SQLException("This connection has been closed.", "08003");
+            }
+        }
+
+        // the journal of the transaction, which the first statement opens, null in autocommit mode
+        private List<Object[][]> getJournal() {
+
+            in_transaction = (auto_commit == false);
+            return((auto_commit == true) ? null : journal);
+        }
+
+        // commit or rollback the open transaction, if any, one round trip
+        private void end(boolean rollback) throws SQLException {
+
+            check();
+
+            if(in_transaction == true) {
+
+                pay(true);
+                if(rollback == true) undo(journal);
+                journal.clear();
+                in_transaction = false;
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final ConnectionHandler handler;
+        private final Query query;
+        private final Object[] parameters;
+        private final List<Object[]> batch;
+        private int uses;
+        private boolean closed;
+
+        private StatementHandler(Connection connection, ConnectionHandler handler, Query query) {
+
+            this.connection = connection;
+            this.handler = handler;
+            this.query = query;
+            parameters = new Object[(query != null) ? query.placeholders : 0];
+            batch = new ArrayList<>();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+
+            Object result;
+
+            switch(method.getName()) {
+
+                case "setObject": case "setInt": case "setLong": case "setString": case "setShort": case "setByte":
+
+                    set((Integer)args[0], args[1]);
+                    return(null);
+
+                case "setNull":
+
+                    set((Integer)args[0], Query.NULL);
+                    return(null);
+
+                case "clearParameters":
+
+                    Arrays.fill(parameters, null);
+                    return(null);
+
+                // every row is already in memory
+                case "setFetchSize": return(null);
+                case "getFetchSize": return(0);
+
+                case "addBatch":
+
+                    batch.add(parameters.clone());
+                    return(null);
+
+                case "clearBatch":
+
+                    batch.clear();
+                    return(null);
+
+                case "executeBatch":
+
+                    return(executeBatch());
+
+                case "executeQuery":
+
+                    result = execute(parameters);
+
+                    if(result instanceof List<?> == false) {
+
+                        throw new SQLException("No results were returned by the query.", "02000");
+                    }
+
+                    return(proxy(ResultSet.class, new ResultHandler((Statement)proxy, query, (List<?>)result)));
+
+                case "executeUpdate":
+
+                    result = execute(parameters);
+                    return((result instanceof Integer) ? result : 0);
+
+                // plain statements only run the schema and data scripts, which are ignored
+                case "execute":
+
+                    if(query == null) {
+
+                        pay(true);
+                        return(false);
+                    }
+
+                    return(execute(parameters) instanceof List<?>);
+
+                case "getConnection": return(connection);
+                case "isClosed": return(closed);
+                case "close": closed = true; return(null);
+
+                default: return(common(proxy, method, args));
+            }
+        }
+
+        private void set(int index, Object value) throws SQLException {
+
+            if(index < 1 || index > parameters.length) {
+
+                throw new SQLException("The column index is out of range: " + index + ", number of columns: " + parameters.length + ".", "22023");
+            }
+
+            parameters[index - 1] = (value == null) ? Query.NULL : value;
+        }
+
+        private Object execute(Object[] values) throws SQLException {
+
+            if(closed == true || query == null) {
+
+                throw new SQLException("This statement has been closed.", "55000");
+            }
+
+            pay(uses++ >= PREPARE_THRESHOLD);
+
+            return(run(query, values, handler.getJournal()));
+        }
+
+        // the whole batch is one round trip, the rows before a failing one stay applied
+        private int[] executeBatch() throws SQLException {
+
+            int[] counts = new int[batch.size()];
+            int done = 0;
+
+            if(closed == true || query == null) {
+
+                throw new SQLException("This statement has been closed.", "55000");
+            }
+
+            if(query.kind == Kind.SELECT) {
+
+                throw new BatchUpdateException("A result was returned when none was expected.", "0100E", counts);
+            }
+
+            pay(uses++ >= PREPARE_THRESHOLD);
+
+            try {
+
+                for(; done < counts.length; done++) {
+
+                    counts[done] = (Integer)run(query, batch.get(done), handler.getJournal());
+                }
+            }
+
+            catch(SQLException exc) {
+
+                throw new BatchUpdateException("Batch entry " + done + " was aborted: " + exc.getMessage(), exc.getSQLState(), Arrays.copyOf(counts, done), exc);
+            }
+
+            finally {
+
+                batch.clear();
+            }
+
+            return(counts);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static final class ResultHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final Query query;
+        private final List<?> rows;
+        private int cursor;
+        private boolean was_null;
+        private boolean closed;
+
+        private ResultHandler(Statement statement, Query query, List<?> rows) {
+
+            this.statement = statement;
+            this.query = query;
+            this.rows = rows;
+            cursor = -1;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+
+            Object value;
+
+            switch(method.getName()) {
+
+                case "next":
+
+                    check();
+                    return(++cursor < rows.size());
+
+                case "getInt": value = get(args[0]); return((value == null) ? 0 : ((Number)value).intValue());
+                case "getLong": value = get(args[0]); return((value == null) ? 0L : ((Number)value).longValue());
+                case "getString": value = get(args[0]); return((value == null) ? null : value.toString());
+                case "getObject": return(get(args[0]));
+
+                case "wasNull": return(was_null);
+                case "getStatement": return(statement);
+                case "isClosed": return(closed);
+                case "close": closed = true; return(null);
+
+                default: return(common(proxy, method, args));
+            }
+        }
+
+        private void check() throws SQLException {
+
+            if(closed == true) {
+
+                throw new SQLException("This ResultSet is closed.", "55000");
+            }
+        }
+
+        private Object get(Object column) throws SQLException {
+
+            int index = (column instanceof Integer) ? (Integer)column : -1;
+            Object value;
+
+            check();
+
+            if(column instanceof String) {
+
+                for(int i = 0; i < query.columns.size(); i++) {
+
+                    if(COLUMNS[query.columns.get(i)].equalsIgnoreCase((String)column) == true) {
+
+                        index = i + 1;
+                    }
+                }
+            }
+
+            if(cursor < 0 || cursor >= rows.size()) {
+
+                throw new SQLException("ResultSet not positioned properly, perhaps you need to call next.", "24000");
+            }
+
+            if(index < 1 || index > query.columns.size()) {
+
+                throw new SQLException("The column index is out of range: " + column + ", number of columns: " + query.columns.size() + ".", "22023");
+            }
+
+            value = ((Object[])rows.get(cursor))[query.columns.get(index - 1)];
+            was_null = (value == null);
+
+            return(value);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
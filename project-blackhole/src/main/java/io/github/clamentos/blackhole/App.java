@@ -73,8 +73,7 @@ public class App {
                 }
             }
 
-            //Container.web_server.start();
-            Container.web_server.testNIO();
+            Container.web_server.start();
         }
 
         catch(Exception exc) {
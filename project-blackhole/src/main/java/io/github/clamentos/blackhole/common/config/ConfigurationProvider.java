@@ -3,8 +3,12 @@ package io.github.clamentos.blackhole.common.config;
 
 //________________________________________________________________________________________________________________________________________
 
+import io.github.clamentos.blackhole.common.framework.ExecutionMode;
+import io.github.clamentos.blackhole.common.framework.QueueType;
+import io.github.clamentos.blackhole.common.framework.WaitStrategy;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.LogPrinter;
+import io.github.clamentos.blackhole.web.server.BalancingPolicy;
 
 import java.io.IOException;
 
@@ -27,10 +31,14 @@ import java.util.Properties;
 public class ConfigurationProvider {
 
     public static int QUEUE_POLL_LIMIT = 100;
+    public static long WAIT_PARK_TIME = 50_000;    // 50us in ns
+    public static long MAX_ADAPTIVE_SPIN_TIME = 50_000;    // 50us in ns
 
     public static int NUM_LOG_WORKERS = 1;
     public static int MAX_LOG_QUEUE_SIZE = 10_000;
     public static int MAX_LOG_FILE_SIZE = 10_000_000;
+    public static WaitStrategy LOGGER_WAIT_STRATEGY = WaitStrategy.BLOCKING;
+    public static QueueType LOGGER_QUEUE_TYPE = QueueType.LINKED;
 
     public static LogLevel MIN_CONSOLE_LOG_LEVEL = LogLevel.INFO;
 
@@ -45,10 +53,33 @@ public class ConfigurationProvider {
 
     public static int SERVER_PORT = 8080;
     public static int NUM_REQUEST_WORKERS = 1;
+    public static int NUM_REACTORS = 1;
     public static int CONNECTION_TIMEOUT = 5_000;
     public static int MAX_REQUEST_QUEUE_SIZE = 1_000_000;
     public static int MAX_SERVER_START_RETRIES = 5;
     public static int STREAM_BUFFER_SIZE = 1_000;
+    public static int MAX_REQUEST_SIZE = 10_000_000;
+    public static int KEEP_ALIVE_TIMEOUT = 60_000;
+    public static int MAX_REQUESTS_PER_CONNECTION = 1_000;
+    public static int MAX_PIPELINED_REQUESTS = 64;
+    public static int RESPONSE_CHUNK_SIZE = 65_536;
+    public static int MAX_PENDING_CHUNKS = 4;
+    public static int STREAM_FETCH_SIZE = 1_000;
+    public static int MIN_POOLED_BUFFER_SIZE = 1_024;
+    public static int MAX_POOLED_BUFFER_SIZE = 1_048_576;
+    public static int BUFFER_POOL_SIZE = 256;
+    public static boolean DIRECT_BUFFERS = false;
+    public static String COMPRESSION_CODEC = "DEFLATE";
+    public static int COMPRESSION_LEVEL = 1;
+    public static int COMPRESSION_THRESHOLD = 4_096;
+
+    public static boolean KEEP_ALIVE = true;
+
+    public static BalancingPolicy REACTOR_BALANCING = BalancingPolicy.ROUND_ROBIN;
+    public static ExecutionMode REQUEST_EXECUTION_MODE = ExecutionMode.POOL;
+    public static int MAX_CONCURRENT_REQUESTS = 10_000;
+    public static WaitStrategy SERVER_WAIT_STRATEGY = WaitStrategy.ADAPTIVE;
+    public static QueueType SERVER_QUEUE_TYPE = QueueType.LINKED;
 
     public static long SESSION_DURATION = 14_400_000;    // 4h in ms
 
@@ -56,6 +87,7 @@ public class ConfigurationProvider {
     public static boolean NEED_SESSION_FOR_TAG_READ = true;
     public static boolean NEED_SESSION_FOR_TAG_UPDATE = true;
     public static boolean NEED_SESSION_FOR_TAG_DELETE = true;
+    public static boolean NEED_SESSION_FOR_GRAPH_READ = true;
     //...
 
     //____________________________________________________________________________________________________________________________________
@@ -65,8 +97,34 @@ public class ConfigurationProvider {
     public static String DB_PASSWORD = null;
 
     public static int DB_CONNECTIONS = 1;
+    public static int DB_MIN_CONNECTIONS = 1;
     public static int MAX_DB_CONNECTION_RETRIES = 5;
     public static int DB_CONNECTION_TIMEOUT = 5_000;
+    public static long DB_RETRY_BACKOFF = 100;
+    public static long DB_IDLE_TIMEOUT = 600_000;        // 10m in ms
+    public static long DB_VALIDATION_INTERVAL = 30_000;
+    public static int STATEMENT_CACHE_SIZE = 64;
+
+    public static int NUM_QUERY_WORKERS = 1;
+    public static ExecutionMode QUERY_EXECUTION_MODE = ExecutionMode.POOL;
+    public static int MAX_CONCURRENT_QUERIES = 1;
+    public static WaitStrategy REPOSITORY_WAIT_STRATEGY = WaitStrategy.ADAPTIVE;
+    public static QueueType REPOSITORY_QUEUE_TYPE = QueueType.LINKED;
+    public static int MAX_QUERY_QUEUE_SIZE = 1_000_000;
+    public static boolean COALESCE_QUERIES = true;
+    public static int MAX_QUERY_BATCH_ROWS = 1_000;
+    public static long QUERY_BATCH_LINGER = 0;
+    public static int TAG_CACHE_SIZE = 10_000;
+    public static int TAG_QUERY_CACHE_SIZE = 1_000;
+    public static int TAG_QUERY_CACHE_MAX_ROWS = 1_000;
+    public static long TAG_CACHE_TTL = 60_000;           // 1m in ms
+    public static boolean TAG_INDEX_ENABLED = true;
+    public static long TAG_INDEX_REFRESH = 300_000;      // 5m in ms
+    public static int MAX_TAG_PAGE_SIZE = 1_000;
+    public static int MAX_GRAPH_DEPTH = 16;
+    public static int MAX_GRAPH_FAN_OUT = 1_000;
+    public static int MAX_GRAPH_NODES = 100_000;
+    public static int GRAPH_FRONTIER_BATCH = 1_024;
 
     public static boolean INIT_SCHEMA = false;
     public static boolean LOAD_DATA_TO_DB = false;
@@ -91,6 +149,8 @@ public class ConfigurationProvider {
             LogPrinter.printToConsole("Loaded resources/Application.properties", LogLevel.SUCCESS);
 
             QUEUE_POLL_LIMIT = Integer.parseInt((String)prop.getOrDefault("QUEUE_POLL_LIMIT", "100"));
+            WAIT_PARK_TIME = Long.parseLong((String)prop.getOrDefault("WAIT_PARK_TIME", "50000"));
+            MAX_ADAPTIVE_SPIN_TIME = Long.parseLong((String)prop.getOrDefault("MAX_ADAPTIVE_SPIN_TIME", "50000"));
 
             NUM_LOG_WORKERS = Integer.parseInt((String)prop.getOrDefault("NUM_LOG_WORKERS", "1"));
             MAX_LOG_QUEUE_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_LOG_QUEUE_SIZE", "10000"));
@@ -104,10 +164,28 @@ public class ConfigurationProvider {
 
             SERVER_PORT = Integer.parseInt((String)prop.getOrDefault("SERVER_PORT", "8080"));
             NUM_REQUEST_WORKERS = Integer.parseInt((String)prop.getOrDefault("NUM_REQUEST_WORKERS", "1"));
+            NUM_REACTORS = Integer.parseInt((String)prop.getOrDefault("NUM_REACTORS", "1"));
             CONNECTION_TIMEOUT = Integer.parseInt((String)prop.getOrDefault("CONNECTION_TIMEOUT", "5000"));
             MAX_REQUEST_QUEUE_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_REQUEST_QUEUE_SIZE", "1000000"));
             MAX_SERVER_START_RETRIES = Integer.parseInt((String)prop.getOrDefault("MAX_SERVER_START_RETRIES", "5"));
             STREAM_BUFFER_SIZE = Integer.parseInt((String)prop.getOrDefault("STREAM_BUFFER_SIZE", "1000"));
+            MAX_REQUEST_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_REQUEST_SIZE", "10000000"));
+            KEEP_ALIVE_TIMEOUT = Integer.parseInt((String)prop.getOrDefault("KEEP_ALIVE_TIMEOUT", "60000"));
+            MAX_REQUESTS_PER_CONNECTION = Integer.parseInt((String)prop.getOrDefault("MAX_REQUESTS_PER_CONNECTION", "1000"));
+            MAX_PIPELINED_REQUESTS = Integer.parseInt((String)prop.getOrDefault("MAX_PIPELINED_REQUESTS", "64"));
+            RESPONSE_CHUNK_SIZE = Integer.parseInt((String)prop.getOrDefault("RESPONSE_CHUNK_SIZE", "65536"));
+            MAX_PENDING_CHUNKS = Integer.parseInt((String)prop.getOrDefault("MAX_PENDING_CHUNKS", "4"));
+            STREAM_FETCH_SIZE = Integer.parseInt((String)prop.getOrDefault("STREAM_FETCH_SIZE", "1000"));
+            MIN_POOLED_BUFFER_SIZE = Integer.parseInt((String)prop.getOrDefault("MIN_POOLED_BUFFER_SIZE", "1024"));
+            MAX_POOLED_BUFFER_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_POOLED_BUFFER_SIZE", "1048576"));
+            BUFFER_POOL_SIZE = Integer.parseInt((String)prop.getOrDefault("BUFFER_POOL_SIZE", "256"));
+            COMPRESSION_CODEC = (String)prop.getOrDefault("COMPRESSION_CODEC", "DEFLATE");
+            COMPRESSION_LEVEL = Integer.parseInt((String)prop.getOrDefault("COMPRESSION_LEVEL", "1"));
+            COMPRESSION_THRESHOLD = Integer.parseInt((String)prop.getOrDefault("COMPRESSION_THRESHOLD", "4096"));
+            MAX_CONCURRENT_REQUESTS = Integer.parseInt((String)prop.getOrDefault("MAX_CONCURRENT_REQUESTS", "10000"));
+
+            KEEP_ALIVE = Boolean.parseBoolean((String)prop.getOrDefault("KEEP_ALIVE", "true"));
+            DIRECT_BUFFERS = Boolean.parseBoolean((String)prop.getOrDefault("DIRECT_BUFFERS", "false"));
 
             SESSION_DURATION = Long.parseLong((String)prop.getOrDefault("SESSION_DURATION", "14400000"));
 
@@ -115,13 +193,36 @@ public class ConfigurationProvider {
             NEED_SESSION_FOR_TAG_READ = Boolean.parseBoolean((String)prop.getOrDefault("NEED_SESSION_FOR_TAG_READ", "false"));
             NEED_SESSION_FOR_TAG_UPDATE = Boolean.parseBoolean((String)prop.getOrDefault("NEED_SESSION_FOR_TAG_UPDATE", "false"));
             NEED_SESSION_FOR_TAG_DELETE = Boolean.parseBoolean((String)prop.getOrDefault("NEED_SESSION_FOR_TAG_DELETE", "false"));
+            NEED_SESSION_FOR_GRAPH_READ = Boolean.parseBoolean((String)prop.getOrDefault("NEED_SESSION_FOR_GRAPH_READ", "false"));
 
             DB_URL = (String)prop.getOrDefault("DB_URL", null);
             DB_USERNAME = (String)prop.getOrDefault("DB_USERNAME", null);
             DB_PASSWORD = (String)prop.getOrDefault("DB_PASSWORD", null);
             DB_CONNECTIONS = Integer.parseInt((String)prop.getOrDefault("DB_CONNECTIONS", "1"));
-            MAX_DB_CONNECTION_RETRIES = Integer.parseInt((String)prop.getOrDefault("MAX_DB_CONNECTION_RETRIES", "1"));
+            DB_MIN_CONNECTIONS = Integer.parseInt((String)prop.getOrDefault("DB_MIN_CONNECTIONS", "1"));
+            MAX_DB_CONNECTION_RETRIES = Integer.parseInt((String)prop.getOrDefault("MAX_DB_CONNECTION_RETRIES", "5"));
             DB_CONNECTION_TIMEOUT = Integer.parseInt((String)prop.getOrDefault("DB_CONNECTION_TIMEOUT", "5000"));
+            DB_RETRY_BACKOFF = Long.parseLong((String)prop.getOrDefault("DB_RETRY_BACKOFF", "100"));
+            DB_IDLE_TIMEOUT = Long.parseLong((String)prop.getOrDefault("DB_IDLE_TIMEOUT", "600000"));
+            DB_VALIDATION_INTERVAL = Long.parseLong((String)prop.getOrDefault("DB_VALIDATION_INTERVAL", "30000"));
+            STATEMENT_CACHE_SIZE = Integer.parseInt((String)prop.getOrDefault("STATEMENT_CACHE_SIZE", "64"));
+            NUM_QUERY_WORKERS = Integer.parseInt((String)prop.getOrDefault("NUM_QUERY_WORKERS", String.valueOf(DB_CONNECTIONS)));
+            MAX_CONCURRENT_QUERIES = Integer.parseInt((String)prop.getOrDefault("MAX_CONCURRENT_QUERIES", String.valueOf(DB_CONNECTIONS)));
+            MAX_QUERY_QUEUE_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_QUERY_QUEUE_SIZE", "1000000"));
+            COALESCE_QUERIES = Boolean.parseBoolean((String)prop.getOrDefault("COALESCE_QUERIES", "true"));
+            MAX_QUERY_BATCH_ROWS = Integer.parseInt((String)prop.getOrDefault("MAX_QUERY_BATCH_ROWS", "1000"));
+            QUERY_BATCH_LINGER = Long.parseLong((String)prop.getOrDefault("QUERY_BATCH_LINGER", "0"));
+            TAG_CACHE_SIZE = Integer.parseInt((String)prop.getOrDefault("TAG_CACHE_SIZE", "10000"));
+            TAG_QUERY_CACHE_SIZE = Integer.parseInt((String)prop.getOrDefault("TAG_QUERY_CACHE_SIZE", "1000"));
+            TAG_QUERY_CACHE_MAX_ROWS = Integer.parseInt((String)prop.getOrDefault("TAG_QUERY_CACHE_MAX_ROWS", "1000"));
+            TAG_CACHE_TTL = Long.parseLong((String)prop.getOrDefault("TAG_CACHE_TTL", "60000"));
+            TAG_INDEX_ENABLED = Boolean.parseBoolean((String)prop.getOrDefault("TAG_INDEX_ENABLED", "true"));
+            TAG_INDEX_REFRESH = Long.parseLong((String)prop.getOrDefault("TAG_INDEX_REFRESH", "300000"));
+            MAX_TAG_PAGE_SIZE = Integer.parseInt((String)prop.getOrDefault("MAX_TAG_PAGE_SIZE", "1000"));
+            MAX_GRAPH_DEPTH = Integer.parseInt((String)prop.getOrDefault("MAX_GRAPH_DEPTH", "16"));
+            MAX_GRAPH_FAN_OUT = Integer.parseInt((String)prop.getOrDefault("MAX_GRAPH_FAN_OUT", "1000"));
+            MAX_GRAPH_NODES = Integer.parseInt((String)prop.getOrDefault("MAX_GRAPH_NODES", "100000"));
+            GRAPH_FRONTIER_BATCH = Integer.parseInt((String)prop.getOrDefault("GRAPH_FRONTIER_BATCH", "1024"));
             INIT_SCHEMA = Boolean.parseBoolean((String)prop.getOrDefault("INIT_SCHEMA", "false"));
             LOAD_DATA_TO_DB = Boolean.parseBoolean((String)prop.getOrDefault("LOAD_DATA_TO_DB", "false"));
             SCHEMA_PATH = (String)prop.getOrDefault("SCHEMA_PATH", "resources/Schema.sql");
@@ -138,6 +239,25 @@ public class ConfigurationProvider {
 
                 default: MIN_CONSOLE_LOG_LEVEL = LogLevel.INFO; break;
             }
+
+            switch((String)prop.getOrDefault("REACTOR_BALANCING", "ROUND_ROBIN")) {
+
+                case "ROUND_ROBIN": REACTOR_BALANCING = BalancingPolicy.ROUND_ROBIN; break;
+                case "LEAST_LOADED": REACTOR_BALANCING = BalancingPolicy.LEAST_LOADED; break;
+
+                default: REACTOR_BALANCING = BalancingPolicy.ROUND_ROBIN; break;
+            }
+
+            REQUEST_EXECUTION_MODE = parseExecutionMode((String)prop.getOrDefault("REQUEST_EXECUTION_MODE", "POOL"));
+            QUERY_EXECUTION_MODE = parseExecutionMode((String)prop.getOrDefault("QUERY_EXECUTION_MODE", "POOL"));
+
+            LOGGER_WAIT_STRATEGY = parseWaitStrategy((String)prop.getOrDefault("LOGGER_WAIT_STRATEGY", "BLOCKING"), WaitStrategy.BLOCKING);
+            SERVER_WAIT_STRATEGY = parseWaitStrategy((String)prop.getOrDefault("SERVER_WAIT_STRATEGY", "ADAPTIVE"), WaitStrategy.ADAPTIVE);
+            REPOSITORY_WAIT_STRATEGY = parseWaitStrategy((String)prop.getOrDefault("REPOSITORY_WAIT_STRATEGY", "ADAPTIVE"), WaitStrategy.ADAPTIVE);
+
+            LOGGER_QUEUE_TYPE = parseQueueType((String)prop.getOrDefault("LOGGER_QUEUE_TYPE", "LINKED"));
+            SERVER_QUEUE_TYPE = parseQueueType((String)prop.getOrDefault("SERVER_QUEUE_TYPE", "LINKED"));
+            REPOSITORY_QUEUE_TYPE = parseQueueType((String)prop.getOrDefault("REPOSITORY_QUEUE_TYPE", "LINKED"));
         }
 
         catch(InvalidPathException | IOException exc) {
@@ -170,4 +290,48 @@ public class ConfigurationProvider {
     }
 
     //____________________________________________________________________________________________________________________________________
+
+    // same parsing for every execution mode property, unknown values fall back to the worker pool
+    private static ExecutionMode parseExecutionMode(String value) {
+
+        switch(value) {
+
+            case "POOL": return(ExecutionMode.POOL);
+            case "VIRTUAL": return(ExecutionMode.VIRTUAL);
+
+            default: return(ExecutionMode.POOL);
+        }
+    }
+
+    // same parsing for every wait strategy property, unknown values fall back to the given default
+    private static WaitStrategy parseWaitStrategy(String value, WaitStrategy fallback) {
+
+        switch(value) {
+
+            case "BUSY_SPIN": return(WaitStrategy.BUSY_SPIN);
+            case "SPIN": return(WaitStrategy.SPIN);
+            case "YIELD": return(WaitStrategy.YIELD);
+            case "PARK": return(WaitStrategy.PARK);
+            case "BLOCKING": return(WaitStrategy.BLOCKING);
+            case "ADAPTIVE": return(WaitStrategy.ADAPTIVE);
+
+            default: return(fallback);
+        }
+    }
+
+    // same parsing for every queue type property, unknown values fall back to the linked queue
+    private static QueueType parseQueueType(String value) {
+
+        switch(value) {
+
+            case "LINKED": return(QueueType.LINKED);
+            case "ARRAY": return(QueueType.ARRAY);
+            case "RING": return(QueueType.RING);
+            case "STEALING": return(QueueType.STEALING);
+
+            default: return(QueueType.LINKED);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
 }
@@ -7,10 +7,13 @@ import io.github.clamentos.blackhole.common.framework.Servlet;
 import io.github.clamentos.blackhole.persistence.Repository;
 import io.github.clamentos.blackhole.web.server.Server;
 import io.github.clamentos.blackhole.web.servlets.EchoServlet;
+import io.github.clamentos.blackhole.web.servlets.RelationServlet;
 import io.github.clamentos.blackhole.web.servlets.TagServlet;
 import io.github.clamentos.blackhole.web.servlets.UserServlet;
 import io.github.clamentos.blackhole.web.session.SessionService;
 
+import java.io.IOException;
+
 import java.security.NoSuchAlgorithmException;
 
 //________________________________________________________________________________________________________________________________________
@@ -34,16 +37,18 @@ public class Container {
      * after initializing the {@link ConfigurationProvider}.</b></p>
      * This method will instantiate and inject the specified objects (primarely the servlets).
      * @throws NoSuchAlgorithmException If the method fails to instantiate the {@link SessionService}.
+     * @throws IOException If the method fails to instantiate the {@link Server}.
     */
-    public static void init() throws NoSuchAlgorithmException {
+    public static void init() throws NoSuchAlgorithmException, IOException {
         
         repository = Repository.getInstance();
         session_service = SessionService.getInstance();
-        servlets = new Servlet[3];
+        servlets = new Servlet[4];
         
         servlets[0] = UserServlet.getInstance(repository, session_service);
         servlets[1] = TagServlet.getInstance(repository, session_service);
         servlets[2] = EchoServlet.getInstance();
+        servlets[3] = RelationServlet.getInstance(repository, session_service);
 
         web_server = Server.getInstance();
     }
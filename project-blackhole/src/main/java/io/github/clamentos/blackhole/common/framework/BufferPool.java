@@ -0,0 +1,223 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p><b>This class is a singleton.</b></p>
+ * <p>Pool of reusable I/O buffers, divided in size classes.</p>
+ * <p>Every class holds buffers of a single power of two capacity, from {@link ConfigurationProvider#MIN_POOLED_BUFFER_SIZE}
+ * up to {@link ConfigurationProvider#MAX_POOLED_BUFFER_SIZE}, and keeps at most {@link ConfigurationProvider#BUFFER_POOL_SIZE}
+ * idle buffers in a {@link RingBufferQueue}, so that leasing and returning never take a lock.
+ * Buffers are leased by one thread and usually returned by another (the selector thread, once the response is written).</p>
+ * <p>Requests bigger than the largest class are served with a fresh buffer, which is simply dropped when returned.
+ * If {@link ConfigurationProvider#DIRECT_BUFFERS} is set, the buffers are allocated off-heap.</p>
+*/
+public class BufferPool {
+
+    private static volatile BufferPool INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private final Logger LOGGER;
+
+    private final int min_shift;
+    private final boolean direct;
+    private final RingBufferQueue<ByteBuffer>[] classes;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private BufferPool(int min_size, int max_size, int pool_size, boolean direct) {
+
+        // generic arrays can't be created directly
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        RingBufferQueue<ByteBuffer>[] created = new RingBufferQueue[
+
+            shiftOf(Math.min(Math.max(min_size, max_size), 1 << 30)) - shiftOf(Math.max(1, min_size)) + 1
+        ];
+
+        LOGGER = Logger.getInstance();
+
+        min_shift = shiftOf(Math.max(1, min_size));
+        this.direct = direct;
+        classes = created;
+
+        for(int i = 0; i < classes.length; i++) {
+
+            classes[i] = new RingBufferQueue<>(Math.max(1, pool_size));
+        }
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+
+        LOGGER.log("Buffer pool instantiated with " + classes.length + " size classes", LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the BufferPool instance.
+     * If the instance doesn't exist, create it with the values configured in
+     * {@link ConfigurationProvider}.
+     * @return The BufferPool instance.
+    */
+    public static BufferPool getInstance() {
+
+        BufferPool temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new BufferPool(
+
+                    ConfigurationProvider.MIN_POOLED_BUFFER_SIZE,
+                    ConfigurationProvider.MAX_POOLED_BUFFER_SIZE,
+                    ConfigurationProvider.BUFFER_POOL_SIZE,
+                    ConfigurationProvider.DIRECT_BUFFERS
+                );
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Lease a buffer of at least the given capacity.
+     * The buffer is cleared: position is 0 and limit is equal to the capacity.
+     * @param size : The minimum capacity.
+     * @return The never null buffer.
+    */
+    public ByteBuffer acquire(int size) {
+
+        int index = shiftOf(Math.max(1, size)) - min_shift;
+        ByteBuffer buffer;
+
+        if(index < 0) {
+
+            index = 0;
+        }
+
+        if(index >= classes.length) {
+
+            misses.increment();
+            return(allocate(size));
+        }
+
+        buffer = classes[index].poll();
+
+        if(buffer == null) {
+
+            misses.increment();
+            return(allocate(1 << (index + min_shift)));
+        }
+
+        hits.increment();
+        buffer.clear();
+
+        return(buffer);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Return a buffer to the pool. The buffer must not be used anymore by the caller.
+     * Buffers whose capacity is not one of the size classes, or of the wrong kind (heap or direct), are dropped,
+     * as well as the ones that don't fit in an already full class.
+     * @param buffer : The buffer to return, can be {@code null}.
+    */
+    public void release(ByteBuffer buffer) {
+
+        int capacity;
+        int index;
+
+        if(buffer == null || buffer.isDirect() != direct || buffer.isReadOnly() == true) {
+
+            return;
+        }
+
+        // slices and wrapped arrays with an offset are views of something else
+        if(buffer.hasArray() == true && buffer.arrayOffset() != 0) {
+
+            return;
+        }
+
+        capacity = buffer.capacity();
+
+        if(Integer.bitCount(capacity) != 1) {
+
+            return;
+        }
+
+        index = shiftOf(capacity) - min_shift;
+
+        if(index >= 0 && index < classes.length) {
+
+            classes[index].offer(buffer);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of leases served with a pooled buffer.
+    */
+    public long getHits() {
+
+        return(hits.sum());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of leases that required a new allocation.
+    */
+    public long getMisses() {
+
+        return(misses.sum());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return {@code true} if the pool allocates off-heap buffers, {@code false} otherwise.
+    */
+    public boolean isDirect() {
+
+        return(direct);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private ByteBuffer allocate(int size) {
+
+        return((direct == true) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size));
+    }
+
+    // log2 of the smallest power of two not smaller than the value
+    private int shiftOf(int value) {
+
+        return(32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,48 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.nio.ByteBuffer;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Compression codec interface.</p>
+ * <p>Used to indicate that the implementing classes can compress and decompress a block of bytes in one shot.
+ * Every codec has a unique id, which is sent on the wire so that the receiver knows how to decompress the block,
+ * and a name, used to select it in the configuration.</p>
+ * <p>Both methods work on the remaining bytes of the buffers (from position to limit) and advance their positions.
+ * Implementations must be thread safe.</p>
+*/
+public interface CompressionCodec {
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return The id of the codec, written in every compressed frame. Must be in the range [0, 15].
+    */
+    byte getId();
+
+    /**
+     * @return The name of the codec, used in the configuration.
+    */
+    String getName();
+
+    /**
+     * Compress all the remaining bytes of the source into the target.
+     * @param source : The bytes to compress.
+     * @param target : The buffer to write into.
+     * @return The number of bytes written, or -1 if the compressed block doesn't fit in the target.
+    */
+    int compress(ByteBuffer source, ByteBuffer target);
+
+    /**
+     * Decompress all the remaining bytes of the source into the target.
+     * @param source : The compressed block.
+     * @param target : The buffer to write into, whose remaining space must be exactly the decompressed length.
+     * @throws IllegalArgumentException If the block is malformed or doesn't decompress to exactly the target length.
+    */
+    void decompress(ByteBuffer source, ByteBuffer target) throws IllegalArgumentException;
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,14 @@
+package io.github.clamentos.blackhole.common.framework;
+
+/**
+ * Simple enumeration of the ways a {@link WorkerManager} can execute its resources.
+ * <ul>
+ *     <li>POOL: resources are placed into the queue and consumed by the fixed pool of {@link Worker}.</li>
+ *     <li>VIRTUAL: each resource is executed on its own virtual thread, concurrency is limited by a semaphore.</li>
+ * </ul>
+*/
+public enum ExecutionMode {
+
+    POOL,
+    VIRTUAL
+}
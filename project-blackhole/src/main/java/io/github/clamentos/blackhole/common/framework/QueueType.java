@@ -0,0 +1,68 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * Simple enumeration of the resource queues a {@link WorkerManager} can be built on.
+ * <ul>
+ *     <li>LINKED: {@link LinkedBlockingQueue}, allocates a node per element and uses two locks.</li>
+ *     <li>ARRAY: {@link ArrayBlockingQueue}, preallocated but guarded by a single lock.</li>
+ *     <li>RING: {@link RingBufferQueue}, preallocated and lock-free unless a thread has to wait.</li>
+ *     <li>STEALING: {@link WorkStealingQueue}, one deque per worker, idle workers steal from busy ones.</li>
+ * </ul>
+*/
+public enum QueueType {
+
+    LINKED,
+    ARRAY,
+    RING,
+    STEALING;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Creates a new, empty, queue of this type.
+     * @param <R> R : The type of resource that the queue holds.
+     * @param capacity : The capacity of the queue.
+     * @param workers : The number of workers that will consume the queue.
+     * @return The new queue.
+    */
+    public <R> BlockingQueue<R> create(int capacity, int workers) {
+
+        switch(this) {
+
+            case ARRAY: return(new ArrayBlockingQueue<>(capacity));
+            case RING: return(new RingBufferQueue<>(capacity));
+            case STEALING: return(new WorkStealingQueue<>(capacity, workers));
+
+            default: return(new LinkedBlockingQueue<>(capacity));
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the queue that the specified worker must consume.
+     * @param <R> R : The type of resource that the queue holds.
+     * @param queue : The queue created by {@link QueueType#create}.
+     * @param worker : The worker index.
+     * @return The worker view for a {@link WorkStealingQueue}, the queue itself for all the others.
+    */
+    public static <R> BlockingQueue<R> forWorker(BlockingQueue<R> queue, int worker) {
+
+        if(queue instanceof WorkStealingQueue<R> stealing_queue) {
+
+            return(stealing_queue.getWorkerQueue(worker));
+        }
+
+        return(queue);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
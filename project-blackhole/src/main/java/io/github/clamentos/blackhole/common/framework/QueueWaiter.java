@@ -0,0 +1,197 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Fetches the resources from a queue according to a {@link WaitStrategy}.</p>
+ * <p>In {@link WaitStrategy#ADAPTIVE} mode the waiter keeps a moving average of the time it had to wait
+ * for a resource and spins for about twice that time, up to {@link ConfigurationProvider#MAX_ADAPTIVE_SPIN_TIME}.
+ * Only the waits that spinning could have covered count: the longer ones, spent blocked, decay the average instead.
+ * Under load the resources arrive while spinning and the thread never sleeps,
+ * while a quiet queue quickly drives the spin time to zero and the thread simply blocks.</p>
+ * <b>This class is NOT thread safe, each worker must have its own instance.</b>
+ * @param <R> R : The type of resource that the queue holds.
+*/
+public class QueueWaiter<R> {
+
+    private WaitStrategy wait_strategy;
+
+    private long average_wait;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new waiter with the given strategy.
+     * @param wait_strategy : The wait strategy.
+    */
+    public QueueWaiter(WaitStrategy wait_strategy) {
+
+        this.wait_strategy = wait_strategy;
+
+        average_wait = 0;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Get the next resource from the queue, waiting if necessary.
+     * @param queue : The queue to consume.
+     * @return The next resource, never {@code null}.
+     * @throws InterruptedException If interrupted while waiting.
+    */
+    public R next(BlockingQueue<R> queue) throws InterruptedException {
+
+        R elem;
+
+        switch(wait_strategy) {
+
+            case BUSY_SPIN:
+
+                while((elem = queue.poll()) == null) {
+
+                    checkInterrupted();
+                }
+
+            break;
+
+            case SPIN:
+
+                elem = spin(queue, true);
+
+            break;
+
+            case YIELD:
+
+                elem = spin(queue, false);
+
+            break;
+
+            case PARK:
+
+                while((elem = queue.poll()) == null) {
+
+                    LockSupport.parkNanos(ConfigurationProvider.WAIT_PARK_TIME);
+                    checkInterrupted();
+                }
+
+            break;
+
+            case ADAPTIVE:
+
+                elem = adaptive(queue);
+
+            break;
+
+            default:
+
+                elem = queue.take();
+
+            break;
+        }
+
+        return(elem);
+    }
+
+    /**
+     * @return The wait strategy of this waiter.
+    */
+    public WaitStrategy getWaitStrategy() {
+
+        return(wait_strategy);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // poll a limited number of times, then block
+    private R spin(BlockingQueue<R> queue, boolean on_spin_wait) throws InterruptedException {
+
+        R elem;
+
+        for(int i = 0; i < ConfigurationProvider.QUEUE_POLL_LIMIT; i++) {
+
+            elem = queue.poll();
+
+            if(elem != null) {
+
+                return(elem);
+            }
+
+            if(on_spin_wait == true) {
+
+                Thread.onSpinWait();
+            }
+
+            else {
+
+                Thread.yield();
+            }
+        }
+
+        return(queue.take());
+    }
+
+    // spin for about twice the average wait, then block
+    private R adaptive(BlockingQueue<R> queue) throws InterruptedException {
+
+        long spin_time = Math.min(average_wait * 2, ConfigurationProvider.MAX_ADAPTIVE_SPIN_TIME);
+        long start = System.nanoTime();
+        long deadline;
+        long waited;
+        R elem;
+
+        elem = queue.poll();
+
+        if(elem == null && spin_time > 0) {
+
+            deadline = start + spin_time;
+
+            while((elem = queue.poll()) == null && System.nanoTime() < deadline) {
+
+                Thread.onSpinWait();
+            }
+        }
+
+        if(elem != null) {
+
+            // exponential moving average with 1/8 weight, enough to follow bursts without jumping on every outlier
+            average_wait += ((System.nanoTime() - start) - average_wait) >> 3;
+
+            return(elem);
+        }
+
+        elem = queue.take();
+        waited = System.nanoTime() - start;
+
+        // a wait that a longer spin would have covered still counts, so that the spinning can start from zero.
+        // Longer ones are blocking time, spinning would only burn it: the average decays toward zero instead
+        if(waited <= ConfigurationProvider.MAX_ADAPTIVE_SPIN_TIME) {
+
+            average_wait += (waited - average_wait) >> 3;
+        }
+
+        else {
+
+            average_wait -= average_wait >> 3;
+        }
+
+        return(elem);
+    }
+
+    // make the non blocking strategies responsive to the interrupt used to stop the workers
+    private void checkInterrupted() throws InterruptedException {
+
+        if(Thread.interrupted() == true) {
+
+            throw new InterruptedException("Interrupted while polling the queue");
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -3,6 +3,8 @@ package io.github.clamentos.blackhole.common.framework;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+
 import java.util.List;
 
 //________________________________________________________________________________________________________________________________________
@@ -23,5 +25,19 @@ public interface Reducible {
     */
     List<DataEntry> reduce();
 
+    /**
+     * Write the entries of {@code this} directly into the writer buffer.
+     * The default implementation writes the entries of {@link Reducible#reduce()},
+     * implementing classes should override it to avoid the intermediate list and boxing.
+     * @param writer : The writer to write into.
+    */
+    default void reduce(EntryWriter writer) {
+
+        for(DataEntry entry : reduce()) {
+
+            writer.putEntry(entry);
+        }
+    }
+
     //____________________________________________________________________________________________________________________________________
-}
\ No newline at end of file
+}
@@ -0,0 +1,472 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Bounded, lock-free, multi producer multi consumer ring buffer queue.</p>
+ * <p>All the slots are preallocated and every slot carries a sequence number that tells producers
+ * and consumers whose turn it is, so that {@link RingBufferQueue#offer} and {@link RingBufferQueue#poll}
+ * only need a single CAS on the enqueue or dequeue counter. The two counters live on different
+ * cache lines to avoid false sharing between producers and consumers.</p>
+ * <p>The blocking methods first try the lock-free path and only fall back to a lock and condition
+ * when the queue is full or empty. Producers and consumers touch the lock only if somebody is actually waiting.</p>
+ * <p>The capacity is rounded up to the next power of two, with a minimum of 2.
+ * The iterator is weakly consistent and doesn't support removal.</p>
+ * <b>This class is thread safe.</b>
+ * @param <E> E : The type of element that the queue holds.
+*/
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // 16 longs = 128 bytes, enough to keep the counters apart even with adjacent line prefetching
+    private static final int PADDING = 16;
+    private static final int ENQUEUE = PADDING;
+    private static final int DEQUEUE = PADDING * 2;
+
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray counters;
+
+    private final ReentrantLock lock;
+    private final Condition not_empty;
+    private final Condition not_full;
+    private final AtomicInteger waiting_consumers;
+    private final AtomicInteger waiting_producers;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new ring buffer queue.
+     * @param capacity : The minimum capacity of the queue, rounded up to the next power of two.
+     * @throws IllegalArgumentException If {@code capacity} is not positive or too big.
+    */
+    public RingBufferQueue(int capacity) throws IllegalArgumentException {
+
+        if(capacity <= 0 || capacity > (1 << 30)) {
+
+            throw new IllegalArgumentException("Illegal ring buffer capacity: " + capacity);
+        }
+
+        // at least 2 slots, with a single one a written slot and a freed slot would have the same sequence
+        int size = (capacity <= 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+
+        mask = size - 1;
+        buffer = new Object[size];
+        sequences = new AtomicLongArray(size);
+        counters = new AtomicLongArray(PADDING * 3);
+
+        for(int i = 0; i < size; i++) {
+
+            sequences.set(i, i);
+        }
+
+        lock = new ReentrantLock();
+        not_empty = lock.newCondition();
+        not_full = lock.newCondition();
+        waiting_consumers = new AtomicInteger(0);
+        waiting_producers = new AtomicInteger(0);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean offer(E elem) {
+
+        if(elem == null) {
+
+            throw new NullPointerException();
+        }
+
+        long position = counters.get(ENQUEUE);
+        long difference;
+        int index;
+
+        while(true) {
+
+            index = (int)(position & mask);
+            difference = sequences.get(index) - position;
+
+            if(difference == 0) {
+
+                if(counters.compareAndSet(ENQUEUE, position, position + 1) == true) {
+
+                    break;
+                }
+
+                position = counters.get(ENQUEUE);
+            }
+
+            // the slot still holds the element of the previous lap: the queue is full
+            else if(difference < 0) {
+
+                return(false);
+            }
+
+            else {
+
+                position = counters.get(ENQUEUE);
+            }
+        }
+
+        buffer[index] = elem;
+        sequences.set(index, position + 1);
+        signal(waiting_consumers, not_empty);
+
+        return(true);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+
+        long position = counters.get(DEQUEUE);
+        long difference;
+        int index;
+        E elem;
+
+        while(true) {
+
+            index = (int)(position & mask);
+            difference = sequences.get(index) - (position + 1);
+
+            if(difference == 0) {
+
+                if(counters.compareAndSet(DEQUEUE, position, position + 1) == true) {
+
+                    break;
+                }
+
+                position = counters.get(DEQUEUE);
+            }
+
+            // the slot was not written yet: the queue is empty
+            else if(difference < 0) {
+
+                return(null);
+            }
+
+            else {
+
+                position = counters.get(DEQUEUE);
+            }
+        }
+
+        elem = (E)buffer[index];
+        buffer[index] = null;
+        sequences.set(index, position + mask + 1);
+        signal(waiting_producers, not_full);
+
+        return(elem);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+
+        long position = counters.get(DEQUEUE);
+        int index = (int)(position & mask);
+
+        if(sequences.get(index) == position + 1) {
+
+            return((E)buffer[index]);
+        }
+
+        return(null);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void put(E elem) throws InterruptedException {
+
+        if(offer(elem) == true) {
+
+            return;
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            // announce the wait before checking again, so that a concurrent signal can't be missed
+            waiting_producers.incrementAndGet();
+
+            while(offer(elem) == false) {
+
+                not_full.await();
+            }
+        }
+
+        finally {
+
+            waiting_producers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean offer(E elem, long timeout, TimeUnit unit) throws InterruptedException {
+
+        long nanos = unit.toNanos(timeout);
+
+        if(offer(elem) == true) {
+
+            return(true);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            // announce the wait before checking again, so that a concurrent signal can't be missed
+            waiting_producers.incrementAndGet();
+
+            while(offer(elem) == false) {
+
+                if(nanos <= 0) {
+
+                    return(false);
+                }
+
+                nanos = not_full.awaitNanos(nanos);
+            }
+
+            return(true);
+        }
+
+        finally {
+
+            waiting_producers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E take() throws InterruptedException {
+
+        E elem = poll();
+
+        if(elem != null) {
+
+            return(elem);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            // announce the wait before checking again, so that a concurrent signal can't be missed
+            waiting_consumers.incrementAndGet();
+
+            while((elem = poll()) == null) {
+
+                not_empty.await();
+            }
+
+            return(elem);
+        }
+
+        finally {
+
+            waiting_consumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+        long nanos = unit.toNanos(timeout);
+        E elem = poll();
+
+        if(elem != null) {
+
+            return(elem);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            // announce the wait before checking again, so that a concurrent signal can't be missed
+            waiting_consumers.incrementAndGet();
+
+            while((elem = poll()) == null) {
+
+                if(nanos <= 0) {
+
+                    return(null);
+                }
+
+                nanos = not_empty.awaitNanos(nanos);
+            }
+
+            return(elem);
+        }
+
+        finally {
+
+            waiting_consumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int remainingCapacity() {
+
+        return(buffer.length - size());
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int drainTo(Collection<? super E> destination) {
+
+        return(drainTo(destination, Integer.MAX_VALUE));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int drainTo(Collection<? super E> destination, int max_elements) {
+
+        int count = 0;
+        E elem;
+
+        if(destination == this) {
+
+            throw new IllegalArgumentException();
+        }
+
+        while(count < max_elements && (elem = poll()) != null) {
+
+            destination.add(elem);
+            count++;
+        }
+
+        return(count);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int size() {
+
+        long size;
+
+        // read the dequeue counter first, so that the difference is never negative
+        while(true) {
+
+            long dequeued = counters.get(DEQUEUE);
+            long enqueued = counters.get(ENQUEUE);
+
+            if(dequeued == counters.get(DEQUEUE)) {
+
+                size = enqueued - dequeued;
+                break;
+            }
+        }
+
+        return((int)Math.max(0, Math.min(size, buffer.length)));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean isEmpty() {
+
+        return(peek() == null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The iterator works on a snapshot of the elements present at the time of the call.
+    */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+
+        ArrayList<E> snapshot = new ArrayList<>();
+        long start = counters.get(DEQUEUE);
+        long end = counters.get(ENQUEUE);
+        Object elem;
+        int index;
+
+        for(long position = start; position < end; position++) {
+
+            index = (int)(position & mask);
+            elem = buffer[index];
+
+            // skip the slots that were consumed or not yet published in the meantime
+            if(sequences.get(index) == position + 1 && elem != null) {
+
+                snapshot.add((E)elem);
+            }
+        }
+
+        return(Collections.unmodifiableList(snapshot).iterator());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // wake up one waiting thread, the lock is touched only if somebody is waiting
+    private void signal(AtomicInteger waiting, Condition condition) {
+
+        if(waiting.get() > 0) {
+
+            lock.lock();
+
+            try {
+
+                condition.signal();
+            }
+
+            finally {
+
+                lock.unlock();
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,35 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+
+import java.sql.SQLException;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Row stream interface.</p>
+ * <p>Used to indicate that the implementing classes produce their rows one at a time,
+ * writing each one directly into the response buffer, instead of materializing them as a list of {@link Reducible}.
+ * Usually backed by an open database cursor, which is released by {@link RowStream#close}.</p>
+*/
+public interface RowStream {
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Write the entries of the next row into the writer buffer.
+     * @param writer : The writer to write into.
+     * @return {@code true} if a row was written, {@code false} if there are no more rows.
+     * @throws SQLException If the underlying cursor fails.
+    */
+    boolean next(EntryWriter writer) throws SQLException;
+
+    /**
+     * Release the underlying resources. Called exactly once, even if the stream was not fully consumed.
+    */
+    void close();
+
+    //____________________________________________________________________________________________________________________________________
+}
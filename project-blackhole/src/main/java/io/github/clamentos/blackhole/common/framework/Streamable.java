@@ -2,6 +2,10 @@ package io.github.clamentos.blackhole.common.framework;
 
 //________________________________________________________________________________________________________________________________________
 
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+
+//________________________________________________________________________________________________________________________________________
+
 /**
  * <p>Streamable interface.</p>
  * <p>Used to indicate that the implementing classes can be transformed into an array of bytes
@@ -18,5 +22,19 @@ public interface Streamable {
      */
     byte[] stream();
 
+    /**
+     * Write {@code this} directly into the writer buffer.
+     * The default implementation copies the result of {@link Streamable#stream()},
+     * implementing classes should override it to avoid the intermediate array.
+     * @param writer : The writer to write into.
+    */
+    default void stream(EntryWriter writer) {
+
+        for(byte b : stream()) {
+
+            writer.putRawByte(b);
+        }
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
@@ -0,0 +1,24 @@
+package io.github.clamentos.blackhole.common.framework;
+
+/**
+ * Simple enumeration of the ways a {@link Worker} can wait for the next resource in its queue.
+ * <ul>
+ *     <li>BUSY_SPIN: polls the queue in a tight loop, lowest latency but always burns a core.</li>
+ *     <li>SPIN: polls the queue up to {@code QUEUE_POLL_LIMIT} times with {@link Thread#onSpinWait},
+ *         then blocks.</li>
+ *     <li>YIELD: polls the queue up to {@code QUEUE_POLL_LIMIT} times yielding the processor in between,
+ *         then blocks.</li>
+ *     <li>PARK: polls the queue, parking the thread for {@code WAIT_PARK_TIME} nanoseconds when empty.</li>
+ *     <li>BLOCKING: blocks on the queue straight away, no CPU is used while idle.</li>
+ *     <li>ADAPTIVE: spins only as long as the observed arrival rate makes it worthwhile, then blocks.</li>
+ * </ul>
+*/
+public enum WaitStrategy {
+
+    BUSY_SPIN,
+    SPIN,
+    YIELD,
+    PARK,
+    BLOCKING,
+    ADAPTIVE
+}
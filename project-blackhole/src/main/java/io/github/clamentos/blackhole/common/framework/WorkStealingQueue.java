@@ -0,0 +1,526 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Bounded blocking queue split into one deque per worker, with work stealing.</p>
+ * <p>Producers use this object as a normal {@link BlockingQueue}: every element is pushed on the deque
+ * of a random worker, so that producers spread the work without contending on a single head.
+ * Each worker consumes through its own view, obtained with {@link WorkStealingQueue#getWorkerQueue}:
+ * the view takes from the head of the worker deque and, when that is empty, steals from the tail
+ * of the deques of the other workers.</p>
+ * <p>Threads only touch the shared lock when they have to wait, because the queue is either full or empty.</p>
+ * <b>This class is thread safe.</b>
+ * @param <E> E : The type of element that the queue holds.
+*/
+public class WorkStealingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final int capacity;
+    private final ConcurrentLinkedDeque<E>[] deques;
+    private final AtomicInteger count;
+
+    private final ReentrantLock lock;
+    private final Condition not_empty;
+    private final Condition not_full;
+    private final AtomicInteger waiting_consumers;
+    private final AtomicInteger waiting_producers;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new work stealing queue.
+     * @param capacity : The maximum number of elements across all the deques.
+     * @param workers : The number of workers, one deque will be created for each.
+     * @throws IllegalArgumentException If {@code capacity} is not positive.
+    */
+    public WorkStealingQueue(int capacity, int workers) throws IllegalArgumentException {
+
+        // generic arrays can't be created directly
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ConcurrentLinkedDeque<E>[] created = new ConcurrentLinkedDeque[Math.max(1, workers)];
+
+        if(capacity <= 0) {
+
+            throw new IllegalArgumentException("Illegal work stealing queue capacity: " + capacity);
+        }
+
+        this.capacity = capacity;
+        deques = created;
+        count = new AtomicInteger(0);
+
+        for(int i = 0; i < deques.length; i++) {
+
+            deques[i] = new ConcurrentLinkedDeque<>();
+        }
+
+        lock = new ReentrantLock();
+        not_empty = lock.newCondition();
+        not_full = lock.newCondition();
+        waiting_consumers = new AtomicInteger(0);
+        waiting_producers = new AtomicInteger(0);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Get the view of the queue that the specified worker must consume.
+     * @param worker : The worker index, between 0 and the number of workers.
+     * @return The worker view of this queue.
+    */
+    public BlockingQueue<E> getWorkerQueue(int worker) {
+
+        return(new WorkerQueue(worker % deques.length));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean offer(E elem) {
+
+        return(push(ThreadLocalRandom.current().nextInt(deques.length), elem));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E poll() {
+
+        return(steal(ThreadLocalRandom.current().nextInt(deques.length), -1));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E peek() {
+
+        E elem;
+
+        for(ConcurrentLinkedDeque<E> deque : deques) {
+
+            elem = deque.peekFirst();
+
+            if(elem != null) {
+
+                return(elem);
+            }
+        }
+
+        return(null);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void put(E elem) throws InterruptedException {
+
+        int target = ThreadLocalRandom.current().nextInt(deques.length);
+
+        if(push(target, elem) == true) {
+
+            return;
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            // announce the wait before checking again, so that a concurrent signal can't be missed
+            waiting_producers.incrementAndGet();
+
+            while(push(target, elem) == false) {
+
+                not_full.await();
+            }
+        }
+
+        finally {
+
+            waiting_producers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean offer(E elem, long timeout, TimeUnit unit) throws InterruptedException {
+
+        int target = ThreadLocalRandom.current().nextInt(deques.length);
+        long nanos = unit.toNanos(timeout);
+
+        if(push(target, elem) == true) {
+
+            return(true);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            waiting_producers.incrementAndGet();
+
+            while(push(target, elem) == false) {
+
+                if(nanos <= 0) {
+
+                    return(false);
+                }
+
+                nanos = not_full.awaitNanos(nanos);
+            }
+
+            return(true);
+        }
+
+        finally {
+
+            waiting_producers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E take() throws InterruptedException {
+
+        return(take(ThreadLocalRandom.current().nextInt(deques.length), -1));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return(poll(ThreadLocalRandom.current().nextInt(deques.length), -1, unit.toNanos(timeout)));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int remainingCapacity() {
+
+        return(capacity - count.get());
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int drainTo(Collection<? super E> destination) {
+
+        return(drainTo(destination, Integer.MAX_VALUE));
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int drainTo(Collection<? super E> destination, int max_elements) {
+
+        int drained = 0;
+        E elem;
+
+        if(destination == this) {
+
+            throw new IllegalArgumentException();
+        }
+
+        while(drained < max_elements && (elem = poll()) != null) {
+
+            destination.add(elem);
+            drained++;
+        }
+
+        return(drained);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int size() {
+
+        return(Math.max(0, count.get()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The iterator works on a snapshot of the elements present at the time of the call.
+    */
+    @Override
+    public Iterator<E> iterator() {
+
+        ArrayList<E> snapshot = new ArrayList<>();
+
+        for(ConcurrentLinkedDeque<E> deque : deques) {
+
+            snapshot.addAll(deque);
+        }
+
+        return(Collections.unmodifiableList(snapshot).iterator());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // reserve a place and push on the tail of the target deque
+    private boolean push(int target, E elem) {
+
+        int current;
+
+        if(elem == null) {
+
+            throw new NullPointerException();
+        }
+
+        do {
+
+            current = count.get();
+
+            if(current >= capacity) {
+
+                return(false);
+            }
+        }
+        while(count.compareAndSet(current, current + 1) == false);
+
+        deques[target].offerLast(elem);
+        signal(waiting_consumers, not_empty);
+
+        return(true);
+    }
+
+    // take from the head of the own deque, otherwise steal from the tail of the others
+    private E steal(int start, int owner) {
+
+        E elem = null;
+        int index;
+
+        if(owner >= 0) {
+
+            elem = deques[owner].pollFirst();
+        }
+
+        for(int i = 0; elem == null && i < deques.length; i++) {
+
+            index = (start + i) % deques.length;
+
+            if(index != owner) {
+
+                elem = deques[index].pollLast();
+            }
+        }
+
+        if(elem != null) {
+
+            count.decrementAndGet();
+            signal(waiting_producers, not_full);
+        }
+
+        return(elem);
+    }
+
+    // blocking version of steal
+    private E take(int start, int owner) throws InterruptedException {
+
+        E elem = steal(start, owner);
+
+        if(elem != null) {
+
+            return(elem);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            waiting_consumers.incrementAndGet();
+
+            while((elem = steal(start, owner)) == null) {
+
+                not_empty.await();
+            }
+
+            return(elem);
+        }
+
+        finally {
+
+            waiting_consumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    // timed version of steal
+    private E poll(int start, int owner, long nanos) throws InterruptedException {
+
+        E elem = steal(start, owner);
+
+        if(elem != null) {
+
+            return(elem);
+        }
+
+        lock.lockInterruptibly();
+
+        try {
+
+            waiting_consumers.incrementAndGet();
+
+            while((elem = steal(start, owner)) == null) {
+
+                if(nanos <= 0) {
+
+                    return(null);
+                }
+
+                nanos = not_empty.awaitNanos(nanos);
+            }
+
+            return(elem);
+        }
+
+        finally {
+
+            waiting_consumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    // wake up one waiting thread, the lock is touched only if somebody is waiting
+    private void signal(AtomicInteger waiting, Condition condition) {
+
+        if(waiting.get() > 0) {
+
+            lock.lock();
+
+            try {
+
+                condition.signal();
+            }
+
+            finally {
+
+                lock.unlock();
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // the view of a single worker: its own deque first, then the others
+    private class WorkerQueue extends AbstractQueue<E> implements BlockingQueue<E> {
+
+        private final int owner;
+
+        //________________________________________________________________________________________________________________________________
+
+        private WorkerQueue(int owner) {
+
+            this.owner = owner;
+        }
+
+        //________________________________________________________________________________________________________________________________
+
+        @Override
+        public boolean offer(E elem) {
+
+            return(push(owner, elem));
+        }
+
+        @Override
+        public E poll() {
+
+            return(steal(owner + 1, owner));
+        }
+
+        @Override
+        public E peek() {
+
+            E elem = deques[owner].peekFirst();
+
+            return((elem != null) ? elem : WorkStealingQueue.this.peek());
+        }
+
+        @Override
+        public void put(E elem) throws InterruptedException {
+
+            WorkStealingQueue.this.put(elem);
+        }
+
+        @Override
+        public boolean offer(E elem, long timeout, TimeUnit unit) throws InterruptedException {
+
+            return(WorkStealingQueue.this.offer(elem, timeout, unit));
+        }
+
+        @Override
+        public E take() throws InterruptedException {
+
+            return(WorkStealingQueue.this.take(owner + 1, owner));
+        }
+
+        @Override
+        public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+            return(WorkStealingQueue.this.poll(owner + 1, owner, unit.toNanos(timeout)));
+        }
+
+        @Override
+        public int remainingCapacity() {
+
+            return(WorkStealingQueue.this.remainingCapacity());
+        }
+
+        @Override
+        public int drainTo(Collection<? super E> destination) {
+
+            return(WorkStealingQueue.this.drainTo(destination));
+        }
+
+        @Override
+        public int drainTo(Collection<? super E> destination, int max_elements) {
+
+            return(WorkStealingQueue.this.drainTo(destination, max_elements));
+        }
+
+        @Override
+        public int size() {
+
+            return(WorkStealingQueue.this.size());
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+
+            return(WorkStealingQueue.this.iterator());
+        }
+
+        //________________________________________________________________________________________________________________________________
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
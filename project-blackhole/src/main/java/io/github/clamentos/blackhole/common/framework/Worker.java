@@ -2,7 +2,6 @@ package io.github.clamentos.blackhole.common.framework;
 
 //________________________________________________________________________________________________________________________________________
 
-import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
 import io.github.clamentos.blackhole.common.exceptions.GlobalExceptionHandler;
 
 import java.util.concurrent.BlockingQueue;
@@ -11,7 +10,8 @@ import java.util.concurrent.BlockingQueue;
 
 /**
  * <p>Abstract worker thread class that can be started and stopped.</p>
- * <p>This worker blocks and waits for resources to be placed in the queue before doing work.</p>
+ * <p>This worker waits for resources to be placed in the queue before doing work,
+ * according to its {@link WaitStrategy}.</p>
  * @param <R> R : The type of resource that the queue holds.
 */
 public abstract class Worker<R> extends Thread implements WorkerSpec {
@@ -19,6 +19,7 @@ public abstract class Worker<R> extends Thread implements WorkerSpec {
     private boolean running;
     private int identifier;
     private BlockingQueue<R> resource_queue;
+    private QueueWaiter<R> waiter;
 
     //____________________________________________________________________________________________________________________________________
 
@@ -30,9 +31,22 @@ public abstract class Worker<R> extends Thread implements WorkerSpec {
     */
     public Worker(int identifier, BlockingQueue<R> resource_queue) {
 
+        this(identifier, resource_queue, WaitStrategy.ADAPTIVE);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiates a new worker with the given resource queue and wait strategy.
+     * @param identifier : The worker identifier.
+     * @param resource_queue : The queue on which the thread will consume and do work.
+     * @param wait_strategy : How the thread waits when the queue is empty.
+    */
+    public Worker(int identifier, BlockingQueue<R> resource_queue, WaitStrategy wait_strategy) {
+
         running = false;
         this.identifier = identifier;
         this.resource_queue = resource_queue;
+        waiter = new QueueWaiter<>(wait_strategy);
     }
 
     //____________________________________________________________________________________________________________________________________
@@ -42,35 +56,13 @@ public abstract class Worker<R> extends Thread implements WorkerSpec {
 
         Thread.currentThread().setUncaughtExceptionHandler(GlobalExceptionHandler.getInstance());
 
-        boolean do_block;
-        R elem;
         running = true;
 
         while(running == true) {
 
-            do_block = true;
-
             try {
 
-                // attemp to fetch from the queue aggressively
-                for(int i = 0; i < ConfigurationProvider.QUEUE_POLL_LIMIT; i++) {
-
-                    elem = resource_queue.poll();
-
-                    if(elem != null) {
-
-                        do_block = false;
-                        doWork(elem);
-
-                        break;
-                    }
-                }
-
-                // failed to fetch aggressively, fallback on blocking mode
-                if(do_block == true) {
-
-                    doWork(resource_queue.take());
-                }
+                doWork(waiter.next(resource_queue));
             }
 
             catch(InterruptedException exc) {
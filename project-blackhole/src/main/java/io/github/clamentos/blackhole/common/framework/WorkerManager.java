@@ -2,12 +2,17 @@ package io.github.clamentos.blackhole.common.framework;
 
 //________________________________________________________________________________________________________________________________________
 
+import io.github.clamentos.blackhole.common.exceptions.GlobalExceptionHandler;
+
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
- * Abstract worker manager class that can start and stop the specified workers.
+ * <p>Abstract worker manager class that can start and stop the specified workers.</p>
+ * <p>In {@link ExecutionMode#VIRTUAL} mode the manager can also run its resources directly
+ * on virtual threads, bounded by a semaphore instead of the pool size.</p>
  * @param <R> R : The type of resource that the queue holds.
  * @param <W> W : The type of worker to be managed.
 */
@@ -16,6 +21,9 @@ public abstract class WorkerManager<R, W extends Worker<R>> implements WorkerMan
     private BlockingQueue<R> resource_queue;
     private W[] workers;
 
+    private ExecutionMode execution_mode;
+    private Semaphore permits;
+
     //____________________________________________________________________________________________________________________________________
 
     /**
@@ -27,8 +35,26 @@ public abstract class WorkerManager<R, W extends Worker<R>> implements WorkerMan
     */
     public WorkerManager(BlockingQueue<R> resource_queue, W[] workers) {
 
+        this(resource_queue, workers, ExecutionMode.POOL, 0);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiates a new worker manager
+     * with the given resource queue with the given {@link Worker} array and execution mode.
+     * @param resource_queue : The queue on which the workers will consume and do work.
+     * @param workers : The workers to manage.
+     * @param execution_mode : The execution mode.
+     * @param max_concurrency : The maximum number of resources executed at the same time
+     *                          on virtual threads. Ignored in {@link ExecutionMode#POOL} mode.
+    */
+    public WorkerManager(BlockingQueue<R> resource_queue, W[] workers, ExecutionMode execution_mode, int max_concurrency) {
+
         this.resource_queue = resource_queue;
         this.workers = workers;
+        this.execution_mode = execution_mode;
+
+        permits = (execution_mode == ExecutionMode.VIRTUAL) ? new Semaphore(Math.max(1, max_concurrency)) : null;
     }
 
     //____________________________________________________________________________________________________________________________________
@@ -43,6 +69,16 @@ public abstract class WorkerManager<R, W extends Worker<R>> implements WorkerMan
         return(resource_queue);
     }
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the execution mode.
+     * @return The execution mode of this manager.
+    */
+    public ExecutionMode getExecutionMode() {
+
+        return(execution_mode);
+    }
+
     /**
      * <p><b>This method is thread safe.</b></p>
      * {@inheritDoc}
@@ -86,6 +122,53 @@ public abstract class WorkerManager<R, W extends Worker<R>> implements WorkerMan
 
     //____________________________________________________________________________________________________________________________________
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * <p>Runs the task on a new virtual thread, as soon as a permit is available.</p>
+     * Must only be used in {@link ExecutionMode#VIRTUAL} mode.
+     * @param task : The task to run.
+    */
+    protected void runVirtual(Runnable task) {
+
+        Thread.ofVirtual().uncaughtExceptionHandler(GlobalExceptionHandler.getInstance()).start(() -> {
+
+            try {
+
+                runBounded(task);
+            }
+
+            // nobody interrupts these threads, if it ever happens the task is simply dropped
+            catch(InterruptedException exc) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * <p>Runs the task on the calling thread, blocking until a permit is available.</p>
+     * Must only be used in {@link ExecutionMode#VIRTUAL} mode.
+     * @param task : The task to run.
+     * @throws InterruptedException If interrupted while waiting for the permit.
+    */
+    protected void runBounded(Runnable task) throws InterruptedException {
+
+        permits.acquire();
+
+        try {
+
+            task.run();
+        }
+
+        finally {
+
+            permits.release();
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
     private void stopWorkers() {
 
         for(W worker : workers) {
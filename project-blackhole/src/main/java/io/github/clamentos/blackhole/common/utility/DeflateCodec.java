@@ -0,0 +1,169 @@
+package io.github.clamentos.blackhole.common.utility;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.CompressionCodec;
+import io.github.clamentos.blackhole.common.framework.RingBufferQueue;
+
+import java.nio.ByteBuffer;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>{@link CompressionCodec} based on the JDK {@link Deflater}, producing raw deflate blocks (no zlib header).</p>
+ * <p>Deflaters and inflaters hold native memory and are expensive to create,
+ * so they are kept in small lock free pools and reset before every use.</p>
+ * <b>This class is thread safe.</b>
+*/
+public class DeflateCodec implements CompressionCodec {
+
+    /** Id of the codec on the wire. */
+    public static final byte ID = 0;
+
+    private final int level;
+    private final RingBufferQueue<Deflater> deflaters;
+    private final RingBufferQueue<Inflater> inflaters;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new deflate codec.
+     * @param level : The compression level, from 0 to 9 (see {@link Deflater#setLevel}).
+     * @param pool_size : The maximum number of idle deflaters and inflaters to keep.
+    */
+    public DeflateCodec(int level, int pool_size) {
+
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+        deflaters = new RingBufferQueue<>(Math.max(1, pool_size));
+        inflaters = new RingBufferQueue<>(Math.max(1, pool_size));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public byte getId() {
+
+        return(ID);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public String getName() {
+
+        return("DEFLATE");
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int compress(ByteBuffer source, ByteBuffer target) {
+
+        Deflater deflater = deflaters.poll();
+        int start = target.position();
+
+        if(deflater == null) {
+
+            deflater = new Deflater(level, true);
+        }
+
+        try {
+
+            deflater.setInput(source);
+            deflater.finish();
+
+            while(deflater.finished() == false) {
+
+                if(target.hasRemaining() == false) {
+
+                    return(-1);
+                }
+
+                deflater.deflate(target);
+            }
+
+            return(target.position() - start);
+        }
+
+        finally {
+
+            deflater.reset();
+
+            if(deflaters.offer(deflater) == false) {
+
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void decompress(ByteBuffer source, ByteBuffer target) throws IllegalArgumentException {
+
+        Inflater inflater = inflaters.poll();
+
+        if(inflater == null) {
+
+            inflater = new Inflater(true);
+        }
+
+        try {
+
+            inflater.setInput(source);
+
+            while(inflater.finished() == false) {
+
+                // the inflater doesn't consume the end of the block without room for output,
+                // so a spare byte is offered: if it gets filled, the block is longer than declared
+                if(target.hasRemaining() == false) {
+
+                    if(inflater.inflate(new byte[1]) != 0 || inflater.finished() == false) {
+
+                        throw new IllegalArgumentException("Malformed deflate block, longer than declared");
+                    }
+
+                    break;
+                }
+
+                // no progress: the input is truncated or the block is bogus
+                if(inflater.inflate(target) == 0 && (inflater.needsInput() == true || inflater.needsDictionary() == true)) {
+
+                    throw new IllegalArgumentException("Malformed deflate block, truncated");
+                }
+            }
+
+            if(target.hasRemaining() == true) {
+
+                throw new IllegalArgumentException("Malformed deflate block, " + target.remaining() + " bytes missing");
+            }
+        }
+
+        catch(DataFormatException exc) {
+
+            throw new IllegalArgumentException("Malformed deflate block, " + exc.getMessage());
+        }
+
+        finally {
+
+            inflater.reset();
+
+            if(inflaters.offer(inflater) == false) {
+
+                inflater.end();
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,307 @@
+package io.github.clamentos.blackhole.common.utility;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.CompressionCodec;
+import io.github.clamentos.blackhole.common.framework.RingBufferQueue;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>{@link CompressionCodec} producing blocks in the LZ4 block format, without any frame header.</p>
+ * <p>This is a plain single pass implementation with a small hash table of the last positions of every 4 byte sequence:
+ * it trades compression ratio for speed, which is usually much higher than {@link DeflateCodec}.
+ * The produced blocks can be decompressed by any LZ4 implementation, given the decompressed length.</p>
+ * <p>The decompressor validates every length and offset, so malformed blocks never read or write out of bounds.</p>
+ * <b>This class is thread safe.</b>
+*/
+public class Lz4Codec implements CompressionCodec {
+
+    /** Id of the codec on the wire. */
+    public static final byte ID = 1;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 65_535;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private final RingBufferQueue<int[]> tables;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new LZ4 codec.
+     * @param pool_size : The maximum number of idle hash tables to keep.
+    */
+    public Lz4Codec(int pool_size) {
+
+        tables = new RingBufferQueue<>(Math.max(1, pool_size));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public byte getId() {
+
+        return(ID);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public String getName() {
+
+        return("LZ4");
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public int compress(ByteBuffer source, ByteBuffer target) {
+
+        int[] table = tables.poll();
+        int src = source.position();
+        int end = source.limit();
+        int dst = target.position();
+        int dst_end = target.limit();
+        int anchor = src;
+        int match_limit = end - MATCH_FIND_LIMIT;
+        int search_attempts;
+        int sequence;
+        int hash;
+        int reference;
+        int match_length;
+
+        if(table == null) {
+
+            table = new int[1 << HASH_LOG];
+        }
+
+        // the table holds positions + 1, so that 0 means empty
+        Arrays.fill(table, 0);
+
+        try {
+
+            if(end - src > MATCH_FIND_LIMIT) {
+
+                search_attempts = 1 << SKIP_TRIGGER;
+
+                while(src <= match_limit) {
+
+                    sequence = source.getInt(src);
+                    hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+                    reference = table[hash] - 1;
+                    table[hash] = src + 1;
+
+                    if(reference < 0 || src - reference > MAX_OFFSET || source.getInt(reference) != sequence) {
+
+                        // the longer nothing matches, the bigger the steps
+                        src += search_attempts++ >>> SKIP_TRIGGER;
+                        continue;
+                    }
+
+                    match_length = MIN_MATCH;
+
+                    while(src + match_length < end - LAST_LITERALS && source.get(reference + match_length) == source.get(src + match_length)) {
+
+                        match_length++;
+                    }
+
+                    dst = writeSequence(source, anchor, src - anchor, src - reference, match_length, target, dst, dst_end);
+
+                    if(dst < 0) {
+
+                        return(-1);
+                    }
+
+                    src += match_length;
+                    anchor = src;
+                    search_attempts = 1 << SKIP_TRIGGER;
+                }
+            }
+
+            dst = writeSequence(source, anchor, end - anchor, 0, 0, target, dst, dst_end);
+
+            if(dst < 0) {
+
+                return(-1);
+            }
+
+            source.position(end);
+            dst -= target.position();
+            target.position(target.position() + dst);
+
+            return(dst);
+        }
+
+        finally {
+
+            tables.offer(table);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void decompress(ByteBuffer source, ByteBuffer target) throws IllegalArgumentException {
+
+        int src = source.position();
+        int end = source.limit();
+        int dst = target.position();
+        int dst_start = dst;
+        int dst_end = target.limit();
+        int token;
+        int length;
+        int offset;
+        int b;
+
+        while(src < end) {
+
+            token = source.get(src++) & 0xFF;
+            length = token >>> 4;
+
+            if(length == 15) {
+
+                do {
+
+                    if(src >= end) throw new IllegalArgumentException("Malformed LZ4 block, truncated literal length");
+
+                    b = source.get(src++) & 0xFF;
+                    length += b;
+                }
+                while(b == 255 && length > 0);
+            }
+
+            if(length < 0 || length > end - src || length > dst_end - dst) {
+
+                throw new IllegalArgumentException("Malformed LZ4 block, literals out of bounds");
+            }
+
+            target.put(dst, source, src, length);
+            src += length;
+            dst += length;
+
+            // the last sequence has only literals
+            if(src == end) {
+
+                break;
+            }
+
+            if(end - src < 2) {
+
+                throw new IllegalArgumentException("Malformed LZ4 block, truncated offset");
+            }
+
+            offset = (source.get(src) & 0xFF) | ((source.get(src + 1) & 0xFF) << 8);
+            src += 2;
+
+            if(offset == 0 || offset > dst - dst_start) {
+
+                throw new IllegalArgumentException("Malformed LZ4 block, illegal offset: " + offset);
+            }
+
+            length = token & 0x0F;
+
+            if(length == 15) {
+
+                do {
+
+                    if(src >= end) throw new IllegalArgumentException("Malformed LZ4 block, truncated match length");
+
+                    b = source.get(src++) & 0xFF;
+                    length += b;
+                }
+                while(b == 255 && length > 0);
+            }
+
+            length += MIN_MATCH;
+
+            if(length < MIN_MATCH || length > dst_end - dst) {
+
+                throw new IllegalArgumentException("Malformed LZ4 block, match out of bounds");
+            }
+
+            // byte by byte, the match can overlap with itself
+            for(int i = 0; i < length; i++) {
+
+                target.put(dst + i, target.get(dst - offset + i));
+            }
+
+            dst += length;
+        }
+
+        if(dst != dst_end) {
+
+            throw new IllegalArgumentException("Malformed LZ4 block, " + (dst_end - dst) + " bytes missing");
+        }
+
+        source.position(end);
+        target.position(dst);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // token, literals and, if match_length is not 0, offset and match. Returns the new target position, -1 if it doesn't fit
+    private int writeSequence(ByteBuffer source, int literals, int literal_length, int offset, int match_length, ByteBuffer target, int dst, int dst_end) {
+
+        int token_position = dst;
+        int token;
+
+        // token + length bytes + literals + offset + match length bytes
+        if(dst_end - dst < 1 + literal_length / 255 + 1 + literal_length + 2 + match_length / 255 + 1) {
+
+            return(-1);
+        }
+
+        dst++;
+        token = Math.min(literal_length, 15) << 4;
+        dst = writeLength(target, dst, literal_length - 15);
+        target.put(dst, source, literals, literal_length);
+        dst += literal_length;
+
+        if(match_length != 0) {
+
+            target.put(dst++, (byte)offset);
+            target.put(dst++, (byte)(offset >>> 8));
+            token |= Math.min(match_length - MIN_MATCH, 15);
+            dst = writeLength(target, dst, match_length - MIN_MATCH - 15);
+        }
+
+        target.put(token_position, (byte)token);
+
+        return(dst);
+    }
+
+    // the part of a length that doesn't fit in the token, as a sequence of 255 terminated by a smaller byte
+    private int writeLength(ByteBuffer target, int dst, int remainder) {
+
+        if(remainder < 0) {
+
+            return(dst);
+        }
+
+        while(remainder >= 255) {
+
+            target.put(dst++, (byte)255);
+            remainder -= 255;
+        }
+
+        target.put(dst++, (byte)remainder);
+
+        return(dst);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
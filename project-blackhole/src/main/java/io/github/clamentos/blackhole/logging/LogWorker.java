@@ -3,6 +3,7 @@ package io.github.clamentos.blackhole.logging;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.WaitStrategy;
 import io.github.clamentos.blackhole.common.framework.Worker;
 
 import java.io.BufferedWriter;
@@ -29,10 +30,11 @@ public class LogWorker extends Worker<Log> {
      * Instantiates a new log worker on the given log queue.
      * @param identifier : The log worker identifier.
      * @param logs_queue : The log queue on which the thread will consume and log.
+     * @param wait_strategy : How the thread waits when the queue is empty.
     */
-    public LogWorker(int identifier, BlockingQueue<Log> logs_queue) {
+    public LogWorker(int identifier, BlockingQueue<Log> logs_queue, WaitStrategy wait_strategy) {
 
-        super(identifier, logs_queue);
+        super(identifier, logs_queue, wait_strategy);
         findEligible();
         LogPrinter.printToConsole("Log worker started", LogLevel.SUCCESS);
     }
@@ -78,10 +80,20 @@ public class LogWorker extends Worker<Log> {
 
         try {
 
-            File[] files = new File("logs/").listFiles();
+            File directory = new File("logs/");
+            File[] files;
             long last_modified = 0;
             int found = 0;
 
+            // the directory may not exist yet, for example when running from a fresh checkout
+            directory.mkdirs();
+            files = directory.listFiles();
+
+            if(files == null) {
+
+                files = new File[0];
+            }
+
             for(int i = 0; i < files.length; i++) {
 
                 if(files[i].lastModified() > last_modified) {
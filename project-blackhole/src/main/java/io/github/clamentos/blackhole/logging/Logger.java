@@ -3,10 +3,10 @@ package io.github.clamentos.blackhole.logging;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.QueueType;
 import io.github.clamentos.blackhole.common.framework.WorkerManager;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 //________________________________________________________________________________________________________________________________________
@@ -44,7 +44,7 @@ public class Logger extends WorkerManager<Log, LogWorker> {
 
         Logger temp = INSTANCE;
 
-        LinkedBlockingQueue<Log> log_queue;
+        BlockingQueue<Log> log_queue;
         LogWorker[] log_workers;
 
         if(temp == null) {
@@ -54,12 +54,12 @@ public class Logger extends WorkerManager<Log, LogWorker> {
 
             if(temp == null) {
 
-                log_queue = new LinkedBlockingQueue<>(ConfigurationProvider.MAX_LOG_QUEUE_SIZE);
                 log_workers = new LogWorker[ConfigurationProvider.NUM_LOG_WORKERS];
+                log_queue = ConfigurationProvider.LOGGER_QUEUE_TYPE.create(ConfigurationProvider.MAX_LOG_QUEUE_SIZE, log_workers.length);
 
                 for(int i = 0; i <log_workers.length; i++) {
 
-                    log_workers[i] = new LogWorker(i, log_queue);
+                    log_workers[i] = new LogWorker(i, QueueType.forWorker(log_queue, i), ConfigurationProvider.LOGGER_WAIT_STRATEGY);
                     log_workers[i].start();
                 }
 
@@ -0,0 +1,569 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Pool of database connections, shared by every query executor.</p>
+ * <p>The pool holds between {@link ConfigurationProvider#DB_MIN_CONNECTIONS} and {@link ConfigurationProvider#DB_CONNECTIONS}
+ * connections. Connections are opened on demand up to the maximum, after which the callers wait for one to be released,
+ * up to {@link ConfigurationProvider#DB_CONNECTION_TIMEOUT} milliseconds. The idle connections are handed out
+ * most recently used first, so that the extra ones stay idle and get evicted once the load goes down.</p>
+ * <p>Connections are never checked when borrowed: a background thread validates the ones that have been idle for a while,
+ * evicts the ones idle for longer than {@link ConfigurationProvider#DB_IDLE_TIMEOUT} and tops the pool up to the minimum.
+ * A connection that fails with a connection error is discarded when released instead.</p>
+ * <p>Every connection keeps its own cache of prepared statements, see {@link PooledConnection}.</p>
+ * <p>Connections are opened with up to {@link ConfigurationProvider#MAX_DB_CONNECTION_RETRIES} attempts,
+ * waiting an exponentially growing, jittered, time between them starting from {@link ConfigurationProvider#DB_RETRY_BACKOFF}.</p>
+*/
+public class ConnectionPool {
+
+    private static volatile ConnectionPool INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private final Logger LOGGER;
+    private final ReentrantLock pool_lock;
+    private final Condition released;
+    private final ArrayDeque<IdleConnection> idle;    // most recently released first
+    private int total;                                // open connections, including the ones being opened
+
+    private final AtomicLong opened;
+    private final AtomicLong discarded;
+    private final AtomicLong timeouts;
+    private final AtomicLong statement_hits;
+    private final AtomicLong statement_misses;
+    private final AtomicLong statement_evictions;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private ConnectionPool() {
+
+        Thread maintainer;
+
+        LOGGER = Logger.getInstance();
+        pool_lock = new ReentrantLock();
+        released = pool_lock.newCondition();
+        idle = new ArrayDeque<>();
+        total = 0;
+
+        opened = new AtomicLong();
+        discarded = new AtomicLong();
+        timeouts = new AtomicLong();
+        statement_hits = new AtomicLong();
+        statement_misses = new AtomicLong();
+        statement_evictions = new AtomicLong();
+
+        // also fills the pool up to the minimum, so that startup doesn't wait for the database
+        maintainer = new Thread(this::maintain, "db-pool-maintainer");
+        maintainer.setDaemon(true);
+        maintainer.start();
+
+        LOGGER.log("Connection pool instantiated, up to " + ConfigurationProvider.DB_CONNECTIONS + " connections", LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the ConnectionPool instance.
+     * If the instance doesn't exist, create it with the values configured in
+     * {@link ConfigurationProvider} and start the maintenance thread.
+     * @return The ConnectionPool instance.
+    */
+    public static ConnectionPool getInstance() {
+
+        ConnectionPool temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new ConnectionPool();
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Borrows a connection, opening a new one if none is idle and the pool is not full,
+     * or waiting for one to be released otherwise. The connection must be given back with {@link ConnectionPool#release}.
+     * @return The never null connection.
+     * @throws SQLException If no connection was released in time, if the thread was interrupted while waiting
+     * or if a new connection could not be opened.
+    */
+    public PooledConnection acquire() throws SQLException {
+
+        long remaining = TimeUnit.MILLISECONDS.toNanos(ConfigurationProvider.DB_CONNECTION_TIMEOUT);
+
+        pool_lock.lock();
+
+        try {
+
+            while(idle.isEmpty() == true) {
+
+                // reserve the slot, the connection is opened outside of the lock
+                if(total < ConfigurationProvider.DB_CONNECTIONS) {
+
+                    total++;
+                    break;
+                }
+
+                if(remaining <= 0) {
+
+                    timeouts.incrementAndGet();
+                    throw new SQLException("No database connection released within " + ConfigurationProvider.DB_CONNECTION_TIMEOUT + " ms", "08001");
+                }
+
+                remaining = released.awaitNanos(remaining);
+            }
+
+            if(idle.isEmpty() == false) {
+
+                return(idle.pollFirst().connection());
+            }
+        }
+
+        catch(InterruptedException exc) {
+
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", "08001", exc);
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+
+        try {
+
+            return(open());
+        }
+
+        catch(SQLException exc) {
+
+            forget();
+            throw exc;
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Gives a borrowed connection back to the pool.
+     * @param db_connection : The connection obtained from {@link ConnectionPool#acquire}.
+     * @param broken : {@code true} to discard the connection instead, see {@link ConnectionPool#isBroken}.
+    */
+    public void release(PooledConnection db_connection, boolean broken) {
+
+        if(broken == true) {
+
+            close(db_connection);
+            forget();
+
+            return;
+        }
+
+        pool_lock.lock();
+
+        try {
+
+            idle.offerFirst(new IdleConnection(db_connection, System.currentTimeMillis()));
+            released.signal();
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Tells whether the failure of a query means that its connection is no longer usable.
+     * @param exc : The exception the query failed with, can be {@code null}.
+     * @return {@code true} if the exception is a connection exception (SQL state class {@code 08}), {@code false} otherwise.
+    */
+    public static boolean isBroken(Exception exc) {
+
+        return(exc instanceof SQLException sql_exc && sql_exc.getSQLState() != null && sql_exc.getSQLState().startsWith("08") == true);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of open connections, borrowed or idle.
+    */
+    public int getTotal() {
+
+        pool_lock.lock();
+
+        try {
+
+            return(total);
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of idle connections.
+    */
+    public int getIdle() {
+
+        pool_lock.lock();
+
+        try {
+
+            return(idle.size());
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of connections opened so far.
+    */
+    public long getOpened() {
+
+        return(opened.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of connections closed so far, because broken, invalid or idle for too long.
+    */
+    public long getDiscarded() {
+
+        return(discarded.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of times {@link ConnectionPool#acquire} timed out.
+    */
+    public long getTimeouts() {
+
+        return(timeouts.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of statements found in the cache of their connection.
+    */
+    public long getStatementHits() {
+
+        return(statement_hits.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of statements that had to be prepared.
+    */
+    public long getStatementMisses() {
+
+        return(statement_misses.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of statements closed to make room in the cache of their connection.
+    */
+    public long getStatementEvictions() {
+
+        return(statement_evictions.get());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // statistics of the statement caches, updated by the connections
+    void countStatement(boolean hit) {
+
+        if(hit == true) statement_hits.incrementAndGet();
+        else statement_misses.incrementAndGet();
+    }
+
+    void countEviction() {
+
+        statement_evictions.incrementAndGet();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // open a new connection, with exponential backoff between the attempts
+    private PooledConnection open() throws SQLException {
+
+        long backoff = ConfigurationProvider.DB_RETRY_BACKOFF;
+        Connection db_connection;
+
+        for(int attempt = 1; ; attempt++) {
+
+            try {
+
+                db_connection = DriverManager.getConnection(
+
+                    ConfigurationProvider.DB_URL,
+                    ConfigurationProvider.DB_USERNAME,
+                    ConfigurationProvider.DB_PASSWORD
+                );
+
+                opened.incrementAndGet();
+                return(new PooledConnection(this, db_connection));
+            }
+
+            catch(SQLException exc) {
+
+                if(attempt >= ConfigurationProvider.MAX_DB_CONNECTION_RETRIES) {
+
+                    LOGGER.log("ConnectionPool.open > Retries exhausted while connecting to the database, SQLException: " + exc.getMessage(), LogLevel.ERROR);
+                    throw exc;
+                }
+
+                LOGGER.log("ConnectionPool.open > Could not connect to the database, attempt " + attempt + ", SQLException: " + exc.getMessage(), LogLevel.WARNING);
+
+                try {
+
+                    // jittered, so that the waiting threads don't all hit the database again at the same time
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+                    backoff = Math.min(backoff * 2, ConfigurationProvider.DB_CONNECTION_TIMEOUT);
+                }
+
+                catch(InterruptedException exc2) {
+
+                    Thread.currentThread().interrupt();
+                    throw exc;
+                }
+            }
+        }
+    }
+
+    // give back the slot of a connection that was closed or never opened
+    private void forget() {
+
+        pool_lock.lock();
+
+        try {
+
+            total--;
+            released.signal();
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+    }
+
+    private void close(PooledConnection db_connection) {
+
+        discarded.incrementAndGet();
+        db_connection.close();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // evict, validate and top up forever, every DB_VALIDATION_INTERVAL ms
+    private void maintain() {
+
+        while(true) {
+
+            try {
+
+                evict();
+                validate();
+                fill();
+
+                Thread.sleep(ConfigurationProvider.DB_VALIDATION_INTERVAL);
+            }
+
+            catch(InterruptedException exc) {
+
+                LOGGER.log("ConnectionPool.maintain > Interrupted, stopping the maintenance, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+                return;
+            }
+
+            catch(Exception exc) {
+
+                LOGGER.log("ConnectionPool.maintain > Maintenance failed, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.ERROR);
+            }
+        }
+    }
+
+    // close the connections idle for too long, oldest first, down to the minimum
+    private void evict() {
+
+        List<PooledConnection> evicted = new ArrayList<>();
+        long limit = System.currentTimeMillis() - ConfigurationProvider.DB_IDLE_TIMEOUT;
+
+        pool_lock.lock();
+
+        try {
+
+            while(total > ConfigurationProvider.DB_MIN_CONNECTIONS && idle.isEmpty() == false && idle.peekLast().since() < limit) {
+
+                evicted.add(idle.pollLast().connection());
+                total--;
+            }
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+
+        for(PooledConnection db_connection : evicted) {
+
+            close(db_connection);
+        }
+
+        if(evicted.isEmpty() == false) {
+
+            LOGGER.log("ConnectionPool.evict > Closed " + evicted.size() + " idle connections", LogLevel.INFO);
+        }
+    }
+
+    // check the connections that sat idle since the last round, the busy ones prove themselves by working
+    private void validate() {
+
+        List<IdleConnection> checked = new ArrayList<>();
+        long limit = System.currentTimeMillis() - ConfigurationProvider.DB_VALIDATION_INTERVAL;
+        int seconds = Math.max(1, ConfigurationProvider.DB_CONNECTION_TIMEOUT / 1_000);
+        Iterator<IdleConnection> iterator;
+        IdleConnection candidate;
+
+        pool_lock.lock();
+
+        try {
+
+            iterator = idle.descendingIterator();
+
+            while(iterator.hasNext() == true && (candidate = iterator.next()).since() < limit) {
+
+                checked.add(candidate);
+                iterator.remove();
+            }
+        }
+
+        finally {
+
+            pool_lock.unlock();
+        }
+
+        // the round trips happen outside of the lock, the checked connections are borrowed in the meantime
+        for(IdleConnection connection : checked) {
+
+            boolean valid;
+
+            try {
+
+                valid = connection.connection().getConnection().isValid(seconds);
+            }
+
+            catch(SQLException exc) {
+
+                valid = false;
+            }
+
+            if(valid == true) {
+
+                pool_lock.lock();
+
+                try {
+
+                    idle.offerLast(connection);
+                    released.signal();
+                }
+
+                finally {
+
+                    pool_lock.unlock();
+                }
+            }
+
+            else {
+
+                LOGGER.log("ConnectionPool.validate > Discarding an invalid connection", LogLevel.WARNING);
+                close(connection.connection());
+                forget();
+            }
+        }
+    }
+
+    // open connections until the minimum is reached
+    private void fill() {
+
+        while(true) {
+
+            pool_lock.lock();
+
+            try {
+
+                if(total >= ConfigurationProvider.DB_MIN_CONNECTIONS) {
+
+                    return;
+                }
+
+                total++;
+            }
+
+            finally {
+
+                pool_lock.unlock();
+            }
+
+            try {
+
+                release(open(), false);
+            }
+
+            catch(SQLException exc) {
+
+                // already logged, the next round will try again
+                forget();
+                return;
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // an idle connection and the time at which it was released
+    private record IdleConnection(PooledConnection connection, long since) {}
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,236 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.RowStream;
+import io.github.clamentos.blackhole.persistence.entities.Relation;
+import io.github.clamentos.blackhole.persistence.query.InClause;
+import io.github.clamentos.blackhole.persistence.query.QueryType;
+import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
+import io.github.clamentos.blackhole.web.dtos.actions.GraphRead;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+
+import java.sql.SQLException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>{@link RowStream} that traverses the graph of the relations breadth first, as described by a {@link GraphRead}.</p>
+ * <p>Each level is expanded with one query per {@link ConfigurationProvider#GRAPH_FRONTIER_BATCH} nodes of the frontier,
+ * instead of one per node, and only when the rows of the previous level have all been written:
+ * the client gets the first level while the next one is still being read.</p>
+ * <p>Each row is a hop {@code |parent(long)|node(long)|depth(int)|}: expansions send one for every node found,
+ * with the hop that found it first, paths send the hops from the start to the target, and reachability
+ * sends a single hop from the start to the target. Nothing is sent if the target was not found.</p>
+ * <p>Each node follows at most {@code fan_out} of its relations, in destination order, and the traversal stops
+ * after finding {@link ConfigurationProvider#MAX_GRAPH_NODES} nodes, so that a dense graph can't blow up the response
+ * nor the memory.</p>
+ * <b>This class is NOT thread safe.</b>
+*/
+public class GraphTraversal implements RowStream {
+
+    private final Repository repository;
+    private final GraphRead read;
+    private final HashMap<Long, Long> parents;
+    private final ArrayDeque<long[]> hops;
+    private List<Long> frontier;
+    private int depth;
+    private boolean done;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new traversal, nothing is queried until the first row is asked for.
+     * @param repository : The repository to query the relations with.
+     * @param read : The traversal to do.
+    */
+    public GraphTraversal(Repository repository, GraphRead read) {
+
+        this.repository = repository;
+        this.read = read;
+        parents = new HashMap<>();
+        hops = new ArrayDeque<>();
+        frontier = new ArrayList<>();
+        depth = 0;
+        done = false;
+
+        parents.put(read.start(), null);
+        frontier.add(read.start());
+
+        // already there
+        if(read.mode() >= 2 && read.target() == read.start()) {
+
+            hops.add(new long[] {read.start(), read.start(), 0});
+            done = true;
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean next(EntryWriter writer) throws SQLException {
+
+        long[] hop;
+
+        while(hops.isEmpty() == true && done == false) {
+
+            expand();
+        }
+
+        hop = hops.poll();
+
+        if(hop == null) {
+
+            return(false);
+        }
+
+        writer.putLong(hop[0]);
+        writer.putLong(hop[1]);
+        writer.putInt((int)hop[2]);
+
+        return(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Nothing stays open between two rows, so this only stops the traversal.
+    */
+    @Override
+    public void close() {
+
+        done = true;
+        hops.clear();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // finds the next level, a chunk of the frontier at a time
+    private void expand() throws SQLException {
+
+        List<Long> next = new ArrayList<>();
+        int batch = ConfigurationProvider.GRAPH_FRONTIER_BATCH;
+
+        if(frontier.isEmpty() == true || depth >= read.max_depth()) {
+
+            done = true;
+            return;
+        }
+
+        depth++;
+
+        for(int i = 0; i < frontier.size() && done == false; i += batch) {
+
+            visit(neighbors(frontier.subList(i, Math.min(i + batch, frontier.size()))), next);
+        }
+
+        frontier = next;
+    }
+
+    // the relations of the given nodes, sorted by source and destination
+    private List<Relation> neighbors(List<Long> nodes) throws SQLException {
+
+        List<List<Object>> params = new ArrayList<>();
+        QueryWrapper select;
+
+        params.add(new ArrayList<>(nodes));
+        select = new QueryWrapper(
+
+            QueryType.SELECT,
+            "SELECT source, destination FROM Relations WHERE source IN (" + InClause.placeholders(nodes.size()) + ") ORDER BY source, destination",
+            params
+        );
+
+        InClause.pad(params.get(0));
+        repository.execute(select, true);
+
+        if(select.getStatus() != 1) {
+
+            throw new SQLException("Could not expand the graph at depth " + depth, select.getException());
+        }
+
+        try {
+
+            return(Relation.mapMany(select.getResult(), 0b011));
+        }
+
+        finally {
+
+            select.close();
+        }
+    }
+
+    private void visit(List<Relation> relations, List<Long> next) {
+
+        Long source = null;
+        int followed = 0;
+
+        for(Relation relation : relations) {
+
+            // the rows of each source are contiguous
+            if(relation.source().equals(source) == false) {
+
+                source = relation.source();
+                followed = 0;
+            }
+
+            if(followed >= read.fan_out() || parents.containsKey(relation.destination()) == true) {
+
+                continue;
+            }
+
+            followed++;
+
+            if(parents.size() >= ConfigurationProvider.MAX_GRAPH_NODES) {
+
+                done = true;
+                return;
+            }
+
+            parents.put(relation.destination(), source);
+            next.add(relation.destination());
+
+            if(read.mode() < 2) {
+
+                hops.add(new long[] {source, relation.destination(), depth});
+            }
+
+            else if(relation.destination().equals(read.target()) == true) {
+
+                found();
+                return;
+            }
+        }
+    }
+
+    // the hops back from the target, by following the parents
+    private void found() {
+
+        long node = read.target();
+        int level = depth;
+
+        done = true;
+
+        if(read.mode() == 3) {
+
+            hops.add(new long[] {read.start(), read.target(), depth});
+            return;
+        }
+
+        while(parents.get(node) != null) {
+
+            hops.addFirst(new long[] {parents.get(node), node, level--});
+            node = parents.get(node);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
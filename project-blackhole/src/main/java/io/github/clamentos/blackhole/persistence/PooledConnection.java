@@ -0,0 +1,174 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Database connection of the {@link ConnectionPool}, with its own cache of prepared statements.</p>
+ * <p>The cache is an LRU keyed by the SQL text, holding at most {@link ConfigurationProvider#STATEMENT_CACHE_SIZE} statements.
+ * A statement is taken out of the cache while in use and put back once done with, so that two queries never share one,
+ * not even when the result of the first is still being read after the connection went back to the pool.
+ * Statements evicted from the cache are closed, and so are the ones put back when an equal one is already there.</p>
+ * <p>Reusing the same statement object is what lets the driver switch to a server side prepared statement
+ * (after {@code prepareThreshold} executions, for PostgreSQL), skipping the parse and plan of the query from then on.</p>
+ * <b>This class is thread safe.</b>
+*/
+public class PooledConnection {
+
+    private final ConnectionPool connection_pool;
+    private final Connection db_connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private boolean closed;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Wraps an open connection, with an empty statement cache.
+     * @param connection_pool : The pool that owns the connection, which keeps the statistics.
+     * @param db_connection : The connection to wrap.
+    */
+    PooledConnection(ConnectionPool connection_pool, Connection db_connection) {
+
+        this.connection_pool = connection_pool;
+        this.db_connection = db_connection;
+        closed = false;
+
+        // access order, the eldest entry is the least recently used
+        statements = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+
+                if(size() > ConfigurationProvider.STATEMENT_CACHE_SIZE) {
+
+                    connection_pool.countEviction();
+                    close(eldest.getValue());
+
+                    return(true);
+                }
+
+                return(false);
+            }
+        };
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The wrapped connection.
+    */
+    public Connection getConnection() {
+
+        return(db_connection);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Takes the statement for the given SQL out of the cache, or prepares a new one if not cached.
+     * The statement must be given back with {@link PooledConnection#recycle} once done with, or closed if it failed.
+     * @param sql : The SQL of the statement.
+     * @return The never null statement, for the exclusive use of the caller.
+     * @throws SQLException If the statement could not be prepared.
+    */
+    public PreparedStatement prepare(String sql) throws SQLException {
+
+        PreparedStatement statement;
+
+        synchronized(statements) {
+
+            statement = statements.remove(sql);
+        }
+
+        connection_pool.countStatement(statement != null);
+
+        if(statement == null) {
+
+            statement = db_connection.prepareStatement(sql);
+        }
+
+        return(statement);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Puts a statement obtained from {@link PooledConnection#prepare} back into the cache,
+     * evicting the least recently used one if full.
+     * @param sql : The SQL of the statement.
+     * @param statement : The statement, with its results already closed.
+    */
+    public void recycle(String sql, PreparedStatement statement) {
+
+        synchronized(statements) {
+
+            if(closed == false && ConfigurationProvider.STATEMENT_CACHE_SIZE > 0 && statements.containsKey(sql) == false) {
+
+                statements.put(sql, statement);
+                return;
+            }
+        }
+
+        close(statement);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Closes the cached statements and the connection.
+     * The statements still in use are closed when given back.
+    */
+    public void close() {
+
+        synchronized(statements) {
+
+            closed = true;
+
+            for(PreparedStatement statement : statements.values()) {
+
+                close(statement);
+            }
+
+            statements.clear();
+        }
+
+        try {
+
+            db_connection.close();
+        }
+
+        catch(SQLException exc) {
+
+            Logger.getInstance().log("PooledConnection.close > Could not close the database connection, SQLException: " + exc.getMessage(), LogLevel.NOTE);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private static void close(PreparedStatement statement) {
+
+        try {
+
+            statement.close();
+        }
+
+        catch(SQLException exc) {
+
+            Logger.getInstance().log("PooledConnection.close > Could not close the statement, SQLException: " + exc.getMessage(), LogLevel.NOTE);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -3,28 +3,32 @@ package io.github.clamentos.blackhole.persistence;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.WaitStrategy;
 import io.github.clamentos.blackhole.common.framework.Worker;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.persistence.query.QueryBatch;
 import io.github.clamentos.blackhole.persistence.query.QueryType;
 import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
- * Query thread that actually executes the queries.
+ * Query thread that actually executes the queries, each one with a connection borrowed from the {@link ConnectionPool}
+ * for the duration of the execution only.
 */
 public class QueryWorker extends Worker<QueryWrapper> {
 
     private final Logger LOGGER;
-    private Connection db_connection;
+    private final ConnectionPool connection_pool;
 
     //____________________________________________________________________________________________________________________________________
 
@@ -33,11 +37,13 @@ public class QueryWorker extends Worker<QueryWrapper> {
      * Instantiate a new {@lonk QueryWorker}.
      * @param identifier : The worker identifier.
      * @param query_queue : The resource queue from which the worker will consume.
+     * @param wait_strategy : How the thread waits when the queue is empty.
     */
-    public QueryWorker(int identifier, BlockingQueue<QueryWrapper> query_queue) {
+    public QueryWorker(int identifier, BlockingQueue<QueryWrapper> query_queue, WaitStrategy wait_strategy) {
 
-        super(identifier, query_queue);
+        super(identifier, query_queue, wait_strategy);
         LOGGER = Logger.getInstance();
+        connection_pool = ConnectionPool.getInstance();
         LOGGER.log("Query worker started", LogLevel.SUCCESS);
     }
 
@@ -51,82 +57,326 @@ public class QueryWorker extends Worker<QueryWrapper> {
     @Override
     public void doWork(QueryWrapper query) {
 
+        execute(connection_pool, query);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * {@inheritDoc}
+    */
+    @Override
+    public void catchInterrupted(InterruptedException exc) {
+
+        LOGGER.log("QueryWorker.catchInterrupted > Interrupted while waiting on queue, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Executes the query with a connection borrowed from the pool, setting its result or exception and its status.
+     * The connection is given back as soon as the query is executed, and discarded if it broke in the meantime.
+     * Selects with a fetch size are the exception: they read their rows through a cursor, in a transaction,
+     * and keep the connection until their result is closed, see {@link QueryWrapper#setFetchSize}.
+     * @param connection_pool : The pool to borrow the connection from.
+     * @param query : The query to execute.
+    */
+    public static void execute(ConnectionPool connection_pool, QueryWrapper query) {
+
+        PooledConnection db_connection;
+
+        // give the other queries a chance to join the batch
+        if(query instanceof QueryBatch batch) {
+
+            linger(batch);
+        }
+
         try {
-            
-            refresh();
-            PreparedStatement statement = db_connection.prepareStatement(query.getSql());
 
-            for(int i = 0; i < query.getParameters().size(); i++) {
+            db_connection = connection_pool.acquire();
+        }
 
-                for(int j = 0; j < query.getParameters().get(i).size(); j++) {
+        catch(SQLException exc) {
 
-                    statement.setObject(j + 1, query.getParameters().get(i).get(j));
-                }
+            query.fail(exc);
+            Logger.getInstance().log("QueryWorker.execute > Could not get a database connection, SQLException: " + exc.getMessage(), LogLevel.ERROR);
 
-                if(query.getQueryType() == QueryType.INSERT || query.getQueryType() == QueryType.UPDATE) {
+            return;
+        }
 
-                    statement.addBatch();
-                }
-            }
+        if(query.getQueryType() == QueryType.SELECT && query.getFetchSize() > 0) {
+
+            stream(connection_pool, db_connection, query);
+            return;
+        }
+
+        try {
+
+            execute(db_connection, query);
+        }
+
+        finally {
+
+            connection_pool.release(db_connection, ConnectionPool.isBroken(query.getException()));
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Executes the query on the given connection with one of its cached statements, setting its result or exception and its status.
+     * Modifying queries run as a batch, one row of parameters each, and give the statement back right away.
+     * Selects give it back when their result is closed, see {@link QueryWrapper#close}.
+     * A {@link QueryBatch} is sealed and its queries are executed together, see {@link QueryWorker#executeBatch}.
+     * @param db_connection : The database connection to use.
+     * @param query : The query to execute.
+    */
+    public static void execute(PooledConnection db_connection, QueryWrapper query) {
+
+        execute(db_connection, query, null);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Executes the query like {@link QueryWorker#execute(PooledConnection, QueryWrapper)},
+     * also running the given action once the result of a successful select is closed.
+     * @param db_connection : The database connection to use.
+     * @param query : The query to execute.
+     * @param after_close : What to do after the statement is given back, can be {@code null}.
+    */
+    public static void execute(PooledConnection db_connection, QueryWrapper query, Runnable after_close) {
+
+        PreparedStatement statement = null;
+
+        if(query instanceof QueryBatch batch) {
+
+            executeBatch(db_connection, batch);
+            return;
+        }
+
+        try {
 
-            if(query.getQueryType() == QueryType.INSERT || query.getQueryType() == QueryType.UPDATE) {
+            statement = db_connection.prepare(query.getSql());
+            bind(statement, query);
+
+            if(query.getQueryType() != QueryType.SELECT) {
 
                 statement.executeBatch();
-                query.setResult(null);
+                db_connection.recycle(query.getSql(), statement);
+                query.complete(null);
             }
 
             else {
 
-                query.setResult(statement.executeQuery());
-            }
+                // always set, the statement could come from the cache with another one
+                PreparedStatement executed = statement;
+                statement.setFetchSize(query.getFetchSize());
+
+                query.complete(statement.executeQuery(), () -> {
+
+                    db_connection.recycle(query.getSql(), executed);
+
+                    if(after_close != null) {
 
-            query.setStatus(1);
+                        after_close.run();
+                    }
+                });
+            }
         }
 
         catch(SQLException exc) {
 
+            // a failed statement is not worth keeping
+            close(statement);
+
             // TODO: decode the exc
-            query.setException(exc);
-            query.setStatus(-1);
-            LOGGER.log("QueryWorker.doWork > Could not execute query, SQLException: " + exc.getMessage(), LogLevel.ERROR);
+            query.fail(exc);
+            Logger.getInstance().log("QueryWorker.execute > Could not execute query, SQLException: " + exc.getMessage(), LogLevel.ERROR);
         }
     }
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * {@inheritDoc}
+     * <p>Seals the batch and executes its queries in a single JDBC batch, in a transaction, setting the outcome of each one.</p>
+     * <p>If the transaction fails, for example because one of the queries violates a constraint, it's rolled back
+     * and the queries are executed again one by one, each in its own batch, so that only the culprit fails.
+     * If the connection breaks instead, all the queries that are not completed yet fail.</p>
+     * @param db_connection : The database connection to use.
+     * @param batch : The batch to execute.
     */
-    @Override
-    public void catchInterrupted(InterruptedException exc) {
+    public static void executeBatch(PooledConnection db_connection, QueryBatch batch) {
 
-        LOGGER.log("QueryWorker.catchInterrupted > Interrupted while waiting on queue, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+        List<QueryWrapper> queries = batch.seal();
 
-        if(super.getRunning() == false) {
+        if(queries.size() > 1) {
 
             try {
 
-                db_connection.close();
+                executeTogether(db_connection, batch.getSql(), queries);
+                batch.complete(null);
+
+                return;
             }
 
-            catch(SQLException exc2) {
+            catch(SQLException exc) {
+
+                if(ConnectionPool.isBroken(exc) == true) {
 
-                LOGGER.log("QueryWorker.catchInterrupted > Could not close the database connection, SQLException: " + exc.getMessage(), LogLevel.ERROR);
+                    Logger.getInstance().log("QueryWorker.executeBatch > Could not execute the batch, SQLException: " + exc.getMessage(), LogLevel.ERROR);
+                    batch.fail(exc);
+
+                    return;
+                }
+
+                Logger.getInstance().log("QueryWorker.executeBatch > Batch of " + queries.size() + " queries rolled back, executing them one by one, SQLException: " + exc.getMessage(), LogLevel.NOTE);
             }
         }
+
+        for(QueryWrapper query : queries) {
+
+            execute(db_connection, query);
+
+            // no point in going on, the rest fail with the same exception
+            if(ConnectionPool.isBroken(query.getException()) == true) {
+
+                batch.fail(query.getException());
+                return;
+            }
+        }
+
+        batch.complete(null);
     }
 
     //____________________________________________________________________________________________________________________________________
 
-    private void refresh() throws SQLException {
+    // all the rows of all the queries in one transaction, the queries are completed only if it commits
+    private static void executeTogether(PooledConnection db_connection, String sql, List<QueryWrapper> queries) throws SQLException {
+
+        Connection connection = db_connection.getConnection();
+        PreparedStatement statement = null;
+
+        try {
+
+            connection.setAutoCommit(false);
+            statement = db_connection.prepare(sql);
+
+            for(QueryWrapper query : queries) {
+
+                bind(statement, query);
+            }
+
+            statement.executeBatch();
+            connection.commit();
+        }
+
+        catch(SQLException exc) {
+
+            close(statement);
+            connection.rollback();
+
+            throw exc;
+        }
+
+        finally {
 
-        if(db_connection == null || db_connection.isValid(ConfigurationProvider.DB_CONNECTION_TIMEOUT) == false) {
+            connection.setAutoCommit(true);
+        }
+
+        db_connection.recycle(sql, statement);
+
+        for(QueryWrapper query : queries) {
+
+            query.complete(null);
+        }
+    }
+
+    // the driver fetches the rows a few at a time only inside a transaction, otherwise it reads the whole result at once.
+    // So the connection stays in one, and out of the pool, until the result is closed
+    private static void stream(ConnectionPool connection_pool, PooledConnection db_connection, QueryWrapper query) {
 
-            db_connection = DriverManager.getConnection(
+        try {
+
+            db_connection.getConnection().setAutoCommit(false);
+        }
 
-                ConfigurationProvider.DB_URL,
-                ConfigurationProvider.DB_USERNAME,
-                ConfigurationProvider.DB_PASSWORD
-            );
+        catch(SQLException exc) {
+
+            query.fail(exc);
+            connection_pool.release(db_connection, true);
+            Logger.getInstance().log("QueryWorker.stream > Could not start the transaction, SQLException: " + exc.getMessage(), LogLevel.ERROR);
+
+            return;
+        }
+
+        execute(db_connection, query, () -> end(connection_pool, db_connection));
+
+        // nothing to close
+        if(query.getStatus() != 1) {
+
+            end(connection_pool, db_connection);
+        }
+    }
+
+    // ends the read only transaction of a cursor and gives the connection back
+    private static void end(ConnectionPool connection_pool, PooledConnection db_connection) {
+
+        Connection connection = db_connection.getConnection();
+        boolean broken = false;
+
+        try {
+
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+
+        catch(SQLException exc) {
+
+            broken = true;
+            Logger.getInstance().log("QueryWorker.end > Could not end the transaction, discarding the connection, SQLException: " + exc.getMessage(), LogLevel.WARNING);
+        }
+
+        connection_pool.release(db_connection, broken);
+    }
+
+    // set the parameters, each row is added to the batch unless selecting
+    private static void bind(PreparedStatement statement, QueryWrapper query) throws SQLException {
+
+        for(int i = 0; i < query.getParameters().size(); i++) {
+
+            for(int j = 0; j < query.getParameters().get(i).size(); j++) {
+
+                statement.setObject(j + 1, query.getParameters().get(i).get(j));
+            }
+
+            if(query.getQueryType() != QueryType.SELECT) {
+
+                statement.addBatch();
+            }
+        }
+    }
+
+    private static void linger(QueryBatch batch) {
+
+        long remaining;
+
+        while((remaining = batch.getOpened() + ConfigurationProvider.QUERY_BATCH_LINGER - System.nanoTime()) > 0) {
+
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void close(PreparedStatement statement) {
+
+        if(statement != null) {
+
+            try {
+
+                statement.close();
+            }
+
+            catch(SQLException exc) {
+
+                Logger.getInstance().log("QueryWorker.close > Could not close the statement, SQLException: " + exc.getMessage(), LogLevel.NOTE);
+            }
         }
     }
 
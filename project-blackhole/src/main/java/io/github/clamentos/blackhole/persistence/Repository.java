@@ -3,19 +3,34 @@ package io.github.clamentos.blackhole.persistence;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.ExecutionMode;
+import io.github.clamentos.blackhole.common.framework.QueueType;
 import io.github.clamentos.blackhole.common.framework.WorkerManager;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.persistence.query.QueryBatch;
+import io.github.clamentos.blackhole.persistence.query.QueryType;
 import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
- * Repository class responsible for managing the workers and inserting the queries into the queue.
+ * <p>Repository class responsible for managing the workers and inserting the queries into the queue.</p>
+ * <p>In {@link ExecutionMode#POOL} mode {@link ConfigurationProvider#NUM_QUERY_WORKERS} query workers execute the queries.
+ * In {@link ExecutionMode#VIRTUAL} mode there are no query workers: each query runs on a virtual thread
+ * (or directly on the caller thread when waiting), at most {@link ConfigurationProvider#MAX_CONCURRENT_QUERIES} at the same time.</p>
+ * <p>Either way, the queries borrow their connections from the {@link ConnectionPool}, so the number of concurrent queries
+ * can exceed {@link ConfigurationProvider#DB_CONNECTIONS}: the extra ones wait for a connection to be released.</p>
+ * <p>With {@link ConfigurationProvider#COALESCE_QUERIES}, inserts and updates with the same SQL are coalesced into a {@link QueryBatch}
+ * for as long as the batch waits for its turn: in the queue, for a permit or for a connection.
+ * So an idle repository executes them right away, while a busy one executes them in a single round trip.
+ * {@link ConfigurationProvider#QUERY_BATCH_LINGER} can hold each batch open for a little longer.</p>
 */
 public class Repository extends WorkerManager<QueryWrapper, QueryWorker> {
 
@@ -23,13 +38,21 @@ public class Repository extends WorkerManager<QueryWrapper, QueryWorker> {
     private static ReentrantLock lock = new ReentrantLock();
 
     private final Logger LOGGER;
+    private final ConnectionPool connection_pool;
+    private final ConcurrentHashMap<String, QueryBatch> open_batches;
+    private final AtomicLong batches;
+    private final AtomicLong coalesced;
 
     //____________________________________________________________________________________________________________________________________
 
-    private Repository(BlockingQueue<QueryWrapper> query_queue, QueryWorker[] query_workers) {
+    private Repository(BlockingQueue<QueryWrapper> query_queue, QueryWorker[] query_workers, ExecutionMode execution_mode) {
 
-        super(query_queue, query_workers);
+        super(query_queue, query_workers, execution_mode, ConfigurationProvider.MAX_CONCURRENT_QUERIES);
         LOGGER = Logger.getInstance();
+        connection_pool = ConnectionPool.getInstance();
+        open_batches = new ConcurrentHashMap<>();
+        batches = new AtomicLong();
+        coalesced = new AtomicLong();
         LOGGER.log("Repository instantiated and workers started", LogLevel.SUCCESS);
     }
 
@@ -46,7 +69,7 @@ public class Repository extends WorkerManager<QueryWrapper, QueryWorker> {
 
         Repository temp = INSTANCE;
 
-        LinkedBlockingQueue<QueryWrapper> query_queue;
+        BlockingQueue<QueryWrapper> query_queue;
         QueryWorker[] query_workers;
 
         if(temp == null) {
@@ -56,16 +79,25 @@ public class Repository extends WorkerManager<QueryWrapper, QueryWorker> {
 
             if(temp == null) {
 
-                query_queue = new LinkedBlockingQueue<>();
-                query_workers = new QueryWorker[ConfigurationProvider.DB_CONNECTIONS];
+                if(ConfigurationProvider.QUERY_EXECUTION_MODE == ExecutionMode.VIRTUAL) {
+
+                    query_workers = new QueryWorker[0];
+                }
+
+                else {
+
+                    query_workers = new QueryWorker[ConfigurationProvider.NUM_QUERY_WORKERS];
+                }
+
+                query_queue = ConfigurationProvider.REPOSITORY_QUEUE_TYPE.create(ConfigurationProvider.MAX_QUERY_QUEUE_SIZE, query_workers.length);
 
                 for(int i = 0; i < query_workers.length; i++) {
 
-                    query_workers[i] = new QueryWorker(i, query_queue);
+                    query_workers[i] = new QueryWorker(i, QueueType.forWorker(query_queue, i), ConfigurationProvider.REPOSITORY_WAIT_STRATEGY);
                     query_workers[i].start();
                 }
 
-                INSTANCE = temp = new Repository(query_queue, query_workers);
+                INSTANCE = temp = new Repository(query_queue, query_workers, ConfigurationProvider.QUERY_EXECUTION_MODE);
             }
 
             lock.unlock();
@@ -79,29 +111,139 @@ public class Repository extends WorkerManager<QueryWrapper, QueryWorker> {
     /**
      * <p><b>This method is thread safe.</b></p>
      * Inserts the query into the queue for processing.
+     * When waiting, the calling thread blocks without spinning until the query is completed.
      * @param query : The query to be added.
      * @param wait : Wait for the query to complete.
     */
     public void execute(QueryWrapper query, boolean wait) {
 
-        try {
+        // the caller is already waiting, no need to hand the query over to another thread, unless it could be coalesced
+        if(wait == true && super.getExecutionMode() == ExecutionMode.VIRTUAL && isCoalescable(query) == false) {
 
-            super.getResourceQueue().put(query);
+            try {
 
-            while(wait == true) {
+                super.runBounded(() -> executeVirtual(query));
+            }
 
-                if(query.getStatus() == 1 || query.getStatus() == -1) {
+            catch(InterruptedException exc) {
 
-                    break;
-                }
+                LOGGER.log("Repository.execute > Interrupted while waiting for a permit, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+                query.fail(exc);
+            }
+
+            return;
+        }
+
+        executeAsync(query);
+
+        if(wait == true) {
+
+            query.getCompletion().join();
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Inserts the query into the queue for processing without waiting for it.
+     * @param query : The query to be added.
+     * @return The future that completes with the query once it's executed, successfully or not.
+    */
+    public CompletableFuture<QueryWrapper> executeAsync(QueryWrapper query) {
+
+        QueryWrapper submitted = query;
+
+        if(isCoalescable(query) == true) {
+
+            submitted = coalesce(query);
+
+            // joined a batch that is already on its way
+            if(submitted == null) {
+
+                return(query.getCompletion());
+            }
+        }
+
+        if(super.getExecutionMode() == ExecutionMode.VIRTUAL) {
+
+            QueryWrapper task = submitted;
+            super.runVirtual(() -> executeVirtual(task));
+        }
+
+        else {
+
+            try {
+
+                super.getResourceQueue().put(submitted);
+            }
+
+            // the query will never be executed, complete it now so that nobody waits forever
+            catch(InterruptedException exc) {
+
+                LOGGER.log("Repository.executeAsync > Interrupted while waiting on queue, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+                submitted.fail(exc);
             }
         }
 
-        catch(InterruptedException exc) {
+        return(query.getCompletion());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of batches of coalesced queries executed or waiting to be.
+    */
+    public long getBatches() {
+
+        return(batches.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of queries that joined a batch opened by another one, each one a round trip saved.
+    */
+    public long getCoalesced() {
+
+        return(coalesced.get());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private boolean isCoalescable(QueryWrapper query) {
+
+        return(ConfigurationProvider.COALESCE_QUERIES == true && (query.getQueryType() == QueryType.INSERT || query.getQueryType() == QueryType.UPDATE));
+    }
+
+    // join the open batch with the same SQL, or open a new one. returns the new batch to submit, or null if joined
+    private QueryBatch coalesce(QueryWrapper query) {
+
+        QueryBatch batch;
+        QueryBatch fresh;
+
+        while(true) {
+
+            batch = open_batches.get(query.getSql());
+
+            if(batch != null && batch.join(query, ConfigurationProvider.MAX_QUERY_BATCH_ROWS) == true) {
 
-            LOGGER.log("Repository.execute > Interrupted while waiting on queue, InterruptedException: " + exc.getMessage(), LogLevel.NOTE);
+                coalesced.incrementAndGet();
+                return(null);
+            }
+
+            // sealed batches stay in the map until replaced, the first to replace one submits the new batch
+            fresh = new QueryBatch(query);
+
+            if((batch == null) ? open_batches.putIfAbsent(query.getSql(), fresh) == null : open_batches.replace(query.getSql(), batch, fresh) == true) {
+
+                batches.incrementAndGet();
+                return(fresh);
+            }
         }
     }
 
+    // run the query on the calling thread, the permits bound the concurrency to MAX_CONCURRENT_QUERIES
+    private void executeVirtual(QueryWrapper query) {
+
+        QueryWorker.execute(connection_pool, query);
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
@@ -0,0 +1,415 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p><b>This class is a singleton.</b></p>
+ * <p>Read-through cache of the tags, in front of the database.</p>
+ * <p>It keeps two LRU maps, both with whole rows, whatever the columns asked for:</p>
+ * <ul>
+ *     <li>The rows by id, at most {@link ConfigurationProvider#TAG_CACHE_SIZE}.</li>
+ *     <li>The rows matching a {@link Filter}, at most {@link ConfigurationProvider#TAG_QUERY_CACHE_SIZE} filters.</li>
+ * </ul>
+ * <p>Every entry expires {@link ConfigurationProvider#TAG_CACHE_TTL} milliseconds after being loaded.</p>
+ * <p>Writers must report what they changed once executed, whatever the outcome, to invalidate the affected entries.
+ * Every invalidation also bumps a generation number: readers take it before querying the database
+ * and their rows are cached only if it didn't change in the meantime, so that a read racing with a write
+ * can't put back what the write just invalidated.</p>
+*/
+public class TagCache {
+
+    private static volatile TagCache INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<Integer, Cached<Tag>> rows;
+    private final LinkedHashMap<Filter, Cached<List<Tag>>> queries;
+    private long generation;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final AtomicLong invalidations;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private TagCache() {
+
+        // access order, the eldest entry is the least recently used
+        rows = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Cached<Tag>> eldest) {
+
+                return(evict(size() > ConfigurationProvider.TAG_CACHE_SIZE));
+            }
+        };
+
+        queries = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Filter, Cached<List<Tag>>> eldest) {
+
+                return(evict(size() > ConfigurationProvider.TAG_QUERY_CACHE_SIZE));
+            }
+        };
+
+        generation = 0;
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        invalidations = new AtomicLong();
+
+        Logger.getInstance().log("Tag cache instantiated", LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the TagCache instance.
+     * If the instance doesn't exist, create it with the values configured in {@link ConfigurationProvider}.
+     * @return The TagCache instance.
+    */
+    public static TagCache getInstance() {
+
+        TagCache temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new TagCache();
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The current generation, to be passed back when caching the rows read after this call.
+    */
+    public synchronized long getGeneration() {
+
+        return(generation);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @param id : The tag id.
+     * @return The cached tag, or {@code null} if not cached or expired.
+    */
+    public synchronized Tag get(int id) {
+
+        return(lookup(rows, id));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @param filter : The filter.
+     * @return The cached tags matching the filter, or {@code null} if not cached or expired.
+    */
+    public synchronized List<Tag> get(Filter filter) {
+
+        return(lookup(queries, filter));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Caches the given tags by id, unless something was invalidated since the given generation.
+     * @param generation : The generation taken before reading the tags.
+     * @param tags : The whole tags, as read from the database.
+    */
+    public synchronized void put(long generation, List<Tag> tags) {
+
+        long expires = System.currentTimeMillis() + ConfigurationProvider.TAG_CACHE_TTL;
+
+        if(generation != this.generation || ConfigurationProvider.TAG_CACHE_SIZE <= 0) {
+
+            return;
+        }
+
+        for(Tag tag : tags) {
+
+            rows.put(tag.id(), new Cached<>(tag, expires));
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Caches the tags matching the filter, and each of them by id, unless something was invalidated since the given generation.
+     * @param generation : The generation taken before reading the tags.
+     * @param filter : The filter.
+     * @param tags : All the whole tags that match the filter, as read from the database.
+    */
+    public synchronized void put(long generation, Filter filter, List<Tag> tags) {
+
+        if(generation != this.generation || ConfigurationProvider.TAG_QUERY_CACHE_SIZE <= 0) {
+
+            return;
+        }
+
+        queries.put(filter, new Cached<>(List.copyOf(tags), System.currentTimeMillis() + ConfigurationProvider.TAG_CACHE_TTL));
+        put(generation, tags);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Invalidates the filters that the created tags match.
+     * @param tags : The created tags, with their name and creation date.
+    */
+    public synchronized void created(List<Tag> tags) {
+
+        generation++;
+        invalidate(tags, null);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Invalidates the updated tags and the filters that they matched before or match now.
+     * @param tags : The updated tags, with their id and new name.
+    */
+    public synchronized void updated(List<Tag> tags) {
+
+        List<Tag> dated = new ArrayList<>(tags.size());
+        Cached<Tag> old;
+
+        generation++;
+
+        for(Tag tag : tags) {
+
+            old = rows.remove(tag.id());
+
+            // the creation date doesn't change, without the old row any date matches
+            if(old != null) {
+
+                invalidations.incrementAndGet();
+                dated.add(new Tag(tag.id(), tag.name(), old.value().creation_date()));
+            }
+
+            else {
+
+                dated.add(new Tag(tag.id(), tag.name(), null));
+            }
+        }
+
+        invalidate(dated, dated);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Invalidates the deleted tags and the filters that matched them.
+     * @param ids : The ids of the deleted tags.
+    */
+    public synchronized void deleted(List<Integer> ids) {
+
+        generation++;
+
+        for(Integer id : ids) {
+
+            if(rows.remove(id) != null) {
+
+                invalidations.incrementAndGet();
+            }
+        }
+
+        invalidate(List.of(), ids.stream().map(id -> new Tag(id, null, null)).toList());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of lookups answered from the cache.
+    */
+    public long getHits() {
+
+        return(hits.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of lookups that had to go to the database.
+    */
+    public long getMisses() {
+
+        return(misses.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of entries dropped because the cache was full or because they expired.
+    */
+    public long getEvictions() {
+
+        return(evictions.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of entries dropped because of a write.
+    */
+    public long getInvalidations() {
+
+        return(invalidations.get());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // must hold the monitor
+    private <K, V> V lookup(LinkedHashMap<K, Cached<V>> map, K key) {
+
+        Cached<V> cached = map.get(key);
+
+        if(cached != null && cached.expires() < System.currentTimeMillis()) {
+
+            map.remove(key);
+            evictions.incrementAndGet();
+            cached = null;
+        }
+
+        if(cached == null) {
+
+            misses.incrementAndGet();
+            return(null);
+        }
+
+        hits.incrementAndGet();
+        return(cached.value());
+    }
+
+    private boolean evict(boolean full) {
+
+        if(full == true) {
+
+            evictions.incrementAndGet();
+        }
+
+        return(full);
+    }
+
+    // drop the filters that match one of the tags or that contain one of the ids, must hold the monitor
+    private void invalidate(List<Tag> matching, List<Tag> containing) {
+
+        Iterator<Map.Entry<Filter, Cached<List<Tag>>>> iterator = queries.entrySet().iterator();
+        Map.Entry<Filter, Cached<List<Tag>>> entry;
+
+        while(iterator.hasNext() == true) {
+
+            entry = iterator.next();
+
+            if(matches(entry.getKey(), matching) == true || contains(entry.getValue().value(), containing) == true) {
+
+                invalidations.incrementAndGet();
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean matches(Filter filter, List<Tag> tags) {
+
+        for(Tag tag : tags) {
+
+            if(filter.matches(tag) == true) {
+
+                return(true);
+            }
+        }
+
+        return(false);
+    }
+
+    private boolean contains(List<Tag> cached, List<Tag> tags) {
+
+        if(tags == null) {
+
+            return(false);
+        }
+
+        for(Tag tag : tags) {
+
+            for(Tag row : cached) {
+
+                if(row.id().equals(tag.id()) == true) {
+
+                    return(true);
+                }
+            }
+        }
+
+        return(false);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p>The normalized criteria of a tag search: an empty name is no name.</p>
+     * Each criterion is optional, the missing ones match everything.
+     * @param name_like : The substring that the name must contain.
+     * @param start_date : The minimum creation date.
+     * @param end_date : The maximum creation date.
+    */
+    public record Filter(String name_like, Integer start_date, Integer end_date) {
+
+        /**
+         * Instantiates a new filter, normalizing the name.
+        */
+        public Filter {
+
+            if(name_like != null && name_like.isEmpty() == true) {
+
+                name_like = null;
+            }
+        }
+
+        /**
+         * Tells whether the tag could match the filter. The missing fields of the tag match anything,
+         * and so does a name with {@code LIKE} wildcards or escapes in it.
+         * @param tag : The tag.
+         * @return {@code true} if the tag could match, {@code false} if it surely doesn't.
+        */
+        public boolean matches(Tag tag) {
+
+            if(name_like != null && tag.name() != null && isLiteral(name_like) == true && tag.name().contains(name_like) == false) return(false);
+            if(start_date != null && tag.creation_date() != null && tag.creation_date() < start_date) return(false);
+            if(end_date != null && tag.creation_date() != null && tag.creation_date() > end_date) return(false);
+
+            return(true);
+        }
+
+        // no wildcards nor escapes, LIKE compares it as is
+        private boolean isLiteral(String pattern) {
+
+            return(pattern.indexOf('%') < 0 && pattern.indexOf('_') < 0 && pattern.indexOf('\\') < 0);
+        }
+    }
+
+    // an entry of the cache, with its expiration time in ms
+    private record Cached<V>(V value, long expires) {}
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,783 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.Reducible;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.persistence.query.InClause;
+import io.github.clamentos.blackhole.persistence.query.QueryType;
+import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
+
+import java.sql.SQLException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p><b>This class is a singleton.</b></p>
+ * <p>In-memory copy of all the tags, with a trigram index over their names.</p>
+ * <p>A {@code name LIKE '%...%'} can't use a B-tree index, so every tag search is a full scan in the database.
+ * Here instead each name is split in its substrings of three characters, and each trigram points to the tags
+ * whose name contains it. The tags containing a string of three or more characters are among those containing all of its trigrams,
+ * so intersecting their sets leaves only a few candidates to check. Shorter strings just check all the names,
+ * which is cheap since names are at most 32 characters long.</p>
+ * <p>A background thread loads all the tags at startup, then again every {@link ConfigurationProvider#TAG_INDEX_REFRESH}
+ * milliseconds, to pick up the changes made by others. Until the first load completes the index is cold,
+ * and searches must go to the database. So do the searches with {@code LIKE} wildcards in them.</p>
+ * <p>Writers must report what they changed once executed, whatever the outcome. Successful updates and deletes
+ * are applied directly, while failures, which could have been partially applied, are read back from the database.
+ * Successful creates, whose ids are assigned by the database, are read back by the background thread, many at once,
+ * so that the request doesn't wait for it: until then, the searches that could match them go to the database.
+ * If a read back fails, the index goes cold until reloaded.
+ * The tags written during a reload or a read back keep their in-memory version, since the query could have read them before the write.</p>
+*/
+public class TagIndex {
+
+    private static volatile TagIndex INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private static final long COLD_RETRY = 1_000;
+
+    private final Logger LOGGER;
+    private final Consumer<QueryWrapper> executor;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock index_lock;
+    private final Thread loader;
+
+    private HashMap<Integer, Tag> tags;
+    private HashMap<String, HashSet<Integer>> trigrams;
+    private HashSet<Integer> touched;
+    private ArrayList<HashSet<Integer>> rereads;
+    private HashMap<String, Tag> pending;
+    private volatile boolean ready;
+
+    private final AtomicLong searches;
+    private final AtomicLong fallbacks;
+    private final AtomicLong loads;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private TagIndex(Repository repository) {
+
+        this(query -> repository.execute(query, true), ConfigurationProvider.TAG_INDEX_ENABLED);
+    }
+
+    /**
+     * Instantiates a new index, outside of the singleton.
+     * @param executor : The function that executes a query and waits for it to complete.
+     * @param enabled : {@code true} to track the writes and start loading the tags in the background.
+    */
+    TagIndex(Consumer<QueryWrapper> executor, boolean enabled) {
+
+        LOGGER = Logger.getInstance();
+        this.executor = executor;
+        this.enabled = enabled;
+        index_lock = new ReentrantReadWriteLock();
+        tags = new HashMap<>();
+        trigrams = new HashMap<>();
+        touched = null;
+        rereads = new ArrayList<>();
+        pending = new HashMap<>();
+        ready = false;
+
+        searches = new AtomicLong();
+        fallbacks = new AtomicLong();
+        loads = new AtomicLong();
+
+        loader = new Thread(this::maintain, "tag-index-loader");
+        loader.setDaemon(true);
+
+        if(enabled == true) {
+
+            loader.start();
+        }
+
+        LOGGER.log("Tag index instantiated", LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the TagIndex instance.
+     * If the instance doesn't exist, create it and start loading the tags in the background.
+     * @param repository : The repository to load the tags from.
+     * @return The TagIndex instance.
+    */
+    public static TagIndex getInstance(Repository repository) {
+
+        TagIndex temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new TagIndex(repository);
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return {@code true} if the index holds all the tags, {@code false} if cold.
+    */
+    public boolean isReady() {
+
+        return(ready);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Finds the tags matching the filter, sorted by id.
+     * @param filter : The filter.
+     * @return The whole matching tags, possibly none, or {@code null} if the search must go to the database.
+    */
+    public List<Tag> search(TagCache.Filter filter) {
+
+        List<Tag> found = new ArrayList<>();
+        String name_like = filter.name_like();
+        HashSet<Integer> candidates;
+
+        // LIKE wildcards and escapes are left to the database
+        if(ready == false || (name_like != null && (name_like.indexOf('%') >= 0 || name_like.indexOf('_') >= 0 || name_like.indexOf('\\') >= 0))) {
+
+            fallbacks.incrementAndGet();
+            return(null);
+        }
+
+        index_lock.readLock().lock();
+
+        try {
+
+            // could have gone cold in the meantime
+            if(ready == false) {
+
+                fallbacks.incrementAndGet();
+                return(null);
+            }
+
+            // a created tag not read back yet could be part of the result
+            for(Tag tag : pending.values()) {
+
+                if(filter.matches(tag) == true) {
+
+                    fallbacks.incrementAndGet();
+                    return(null);
+                }
+            }
+
+            candidates = candidates(name_like);
+
+            if(candidates == null) {
+
+                for(Tag tag : tags.values()) {
+
+                    if(filter.matches(tag) == true) {
+
+                        found.add(tag);
+                    }
+                }
+            }
+
+            else {
+
+                for(Integer id : candidates) {
+
+                    if(filter.matches(tags.get(id)) == true) {
+
+                        found.add(tags.get(id));
+                    }
+                }
+            }
+        }
+
+        finally {
+
+            index_lock.readLock().unlock();
+        }
+
+        searches.incrementAndGet();
+        found.sort(Comparator.comparing(Tag::id));
+
+        return(found);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Schedules the successfully created tags to be read back from the database, by name, to index them with their ids.
+     * @param created : The created tags, with their name and creation date.
+    */
+    public void created(List<Tag> created) {
+
+        if(tracking() == false) {
+
+            return;
+        }
+
+        index_lock.writeLock().lock();
+
+        try {
+
+            for(Tag tag : created) {
+
+                pending.put(tag.name(), tag);
+            }
+        }
+
+        finally {
+
+            index_lock.writeLock().unlock();
+        }
+
+        LockSupport.unpark(loader);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Applies the new names, or reads the tags back from the database if the update failed.
+     * @param updated : The updated tags, with their id and new name.
+     * @param success : {@code true} if the update succeeded.
+    */
+    public void updated(List<Tag> updated, boolean success) {
+
+        List<Object> unknown = new ArrayList<>();
+        Tag old;
+
+        if(tracking() == false) {
+
+            return;
+        }
+
+        if(success == false) {
+
+            for(Tag tag : updated) {
+
+                unknown.add(tag.id());
+            }
+        }
+
+        else {
+
+            index_lock.writeLock().lock();
+
+            try {
+
+                for(Tag tag : updated) {
+
+                    old = tags.get(tag.id());
+
+                    // the creation date doesn't change, without the old row it must be read
+                    if(old != null) apply(tag.id(), new Tag(tag.id(), tag.name(), old.creation_date()));
+                    else unknown.add(tag.id());
+                }
+            }
+
+            finally {
+
+                index_lock.writeLock().unlock();
+            }
+        }
+
+        if(unknown.isEmpty() == false) {
+
+            reread("id", unknown);
+        }
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Removes the deleted tags, or reads them back from the database if the delete failed.
+     * @param ids : The ids of the deleted tags.
+     * @param success : {@code true} if the delete succeeded.
+    */
+    public void deleted(List<Integer> ids, boolean success) {
+
+        if(tracking() == false) {
+
+            return;
+        }
+
+        if(success == false) {
+
+            reread("id", new ArrayList<>(ids));
+            return;
+        }
+
+        index_lock.writeLock().lock();
+
+        try {
+
+            for(Integer id : ids) {
+
+                apply(id, null);
+            }
+        }
+
+        finally {
+
+            index_lock.writeLock().unlock();
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of searches answered from the index.
+    */
+    public long getSearches() {
+
+        return(searches.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of searches left to the database, because cold or because of wildcards.
+    */
+    public long getFallbacks() {
+
+        return(fallbacks.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of complete loads of the tags.
+    */
+    public long getLoads() {
+
+        return(loads.get());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of tags in the index.
+    */
+    public int getSize() {
+
+        index_lock.readLock().lock();
+
+        try {
+
+            return(tags.size());
+        }
+
+        finally {
+
+            index_lock.readLock().unlock();
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private void maintain() {
+
+        long next_load = System.nanoTime();
+        long now;
+
+        while(true) {
+
+            now = System.nanoTime();
+
+            if(ready == false || (ConfigurationProvider.TAG_INDEX_REFRESH > 0 && now - next_load >= 0)) {
+
+                try {
+
+                    load();
+                }
+
+                catch(Exception exc) {
+
+                    LOGGER.log("TagIndex.maintain > Could not load the tags, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.ERROR);
+                }
+
+                now = System.nanoTime();
+                next_load = now + TimeUnit.MILLISECONDS.toNanos(ConfigurationProvider.TAG_INDEX_REFRESH);
+            }
+
+            // the creates reported while flushing go right away, the query could have taken their wake up
+            if(flush() == true) {
+
+                continue;
+            }
+
+            // retries soon while cold, woken up early by the creates or if it goes cold
+            if(ready == false) {
+
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(COLD_RETRY));
+            }
+
+            else if(ConfigurationProvider.TAG_INDEX_REFRESH > 0) {
+
+                LockSupport.parkNanos(Math.max(0, next_load - now));
+            }
+
+            else {
+
+                LockSupport.park();
+            }
+        }
+    }
+
+    // reads back all the pending creates with one query, returns true if others were reported in the meantime
+    private boolean flush() {
+
+        HashMap<String, Tag> copied;
+        List<Object> names;
+
+        index_lock.writeLock().lock();
+
+        try {
+
+            // nothing to do, or cold: the next load will read them anyway
+            if(pending.isEmpty() == true || ready == false) {
+
+                pending.clear();
+                return(false);
+            }
+
+            copied = new HashMap<>(pending);
+            names = new ArrayList<>(copied.keySet());
+        }
+
+        finally {
+
+            index_lock.writeLock().unlock();
+        }
+
+        if(reread("name", names) == false) {
+
+            return(false);
+        }
+
+        index_lock.writeLock().lock();
+
+        try {
+
+            // the names not found were deleted in the meantime, the ones created again since the copy wait for the next flush
+            for(Map.Entry<String, Tag> entry : copied.entrySet()) {
+
+                if(pending.get(entry.getKey()) == entry.getValue()) {
+
+                    pending.remove(entry.getKey());
+                }
+            }
+
+            return(pending.isEmpty() == false);
+        }
+
+        finally {
+
+            index_lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws SQLException {
+
+        HashMap<Integer, Tag> loaded = new HashMap<>();
+        HashMap<String, HashSet<Integer>> loaded_trigrams = new HashMap<>();
+        QueryWrapper select = new QueryWrapper(QueryType.SELECT, "SELECT id, name, creation_date FROM Tags", List.of(List.of()));
+        Tag tag;
+
+        index_lock.writeLock().lock();
+        touched = new HashSet<>();
+        index_lock.writeLock().unlock();
+
+        executor.accept(select);
+
+        try {
+
+            if(select.getStatus() != 1) {
+
+                throw new SQLException("Could not read the tags", select.getException());
+            }
+
+            try {
+
+                for(Reducible row : Tag.mapMany(select.getResult(), 0b0111)) {
+
+                    tag = (Tag)row;
+                    loaded.put(tag.id(), tag);
+                    index(loaded_trigrams, tag);
+                }
+            }
+
+            finally {
+
+                select.close();
+            }
+
+            index_lock.writeLock().lock();
+
+            try {
+
+                // the writes during the load win over what was read
+                for(Integer id : touched) {
+
+                    tag = loaded.remove(id);
+                    if(tag != null) unindex(loaded_trigrams, tag);
+
+                    tag = tags.get(id);
+
+                    if(tag != null) {
+
+                        loaded.put(id, tag);
+                        index(loaded_trigrams, tag);
+                    }
+                }
+
+                tags = loaded;
+                trigrams = loaded_trigrams;
+                ready = true;
+            }
+
+            finally {
+
+                index_lock.writeLock().unlock();
+            }
+
+            loads.incrementAndGet();
+            LOGGER.log("TagIndex.load > Loaded " + loaded.size() + " tags with " + loaded_trigrams.size() + " trigrams", LogLevel.INFO);
+        }
+
+        finally {
+
+            index_lock.writeLock().lock();
+            touched = null;
+            index_lock.writeLock().unlock();
+        }
+    }
+
+    // reads the rows with the given values of the column back from the database, goes cold and returns false if it fails
+    private boolean reread(String column, List<Object> values) {
+
+        List<List<Object>> params = new ArrayList<>();
+        HashSet<Integer> found = new HashSet<>();
+        HashSet<Integer> written = new HashSet<>();
+        QueryWrapper select;
+        Tag tag;
+
+        params.add(values);
+        select = new QueryWrapper(
+
+            QueryType.SELECT,
+            "SELECT id, name, creation_date FROM Tags WHERE " + column + " IN (" + InClause.placeholders(values.size()) + ")",
+            params
+        );
+
+        InClause.pad(values);
+
+        // from now on, the ids written are recorded: the query could read them before the write
+        index_lock.writeLock().lock();
+        rereads.add(written);
+        index_lock.writeLock().unlock();
+
+        try {
+
+            executor.accept(select);
+
+            if(select.getStatus() != 1) {
+
+                throw new SQLException("Could not read the tags back", select.getException());
+            }
+
+            try {
+
+                index_lock.writeLock().lock();
+
+                try {
+
+                    for(Reducible row : Tag.mapMany(select.getResult(), 0b0111)) {
+
+                        tag = (Tag)row;
+                        found.add(tag.id());
+
+                        // the writes after the query win over what was read
+                        if(written.contains(tag.id()) == false) {
+
+                            apply(tag.id(), tag);
+                        }
+                    }
+
+                    // the ids not found don't exist anymore
+                    if(column.equals("id") == true) {
+
+                        for(Object id : values) {
+
+                            if(found.contains(id) == false && written.contains(id) == false) {
+
+                                apply((Integer)id, null);
+                            }
+                        }
+                    }
+                }
+
+                finally {
+
+                    index_lock.writeLock().unlock();
+                }
+            }
+
+            finally {
+
+                select.close();
+            }
+
+            return(true);
+        }
+
+        catch(SQLException exc) {
+
+            LOGGER.log("TagIndex.reread > Going cold until reloaded, SQLException: " + exc.getMessage(), LogLevel.WARNING);
+
+            ready = false;
+            LockSupport.unpark(loader);
+
+            return(false);
+        }
+
+        finally {
+
+            index_lock.writeLock().lock();
+            rereads.removeIf(set -> set == written);
+            index_lock.writeLock().unlock();
+        }
+    }
+
+    // true if the writes must be applied, that is when ready or loading
+    private boolean tracking() {
+
+        if(enabled == false) {
+
+            return(false);
+        }
+
+        index_lock.readLock().lock();
+
+        try {
+
+            return(ready == true || touched != null);
+        }
+
+        finally {
+
+            index_lock.readLock().unlock();
+        }
+    }
+
+    // replaces the tag with the given id, or removes it if null, must hold the write lock
+    private void apply(Integer id, Tag tag) {
+
+        Tag old = tags.remove(id);
+
+        if(old != null) {
+
+            unindex(trigrams, old);
+        }
+
+        if(tag != null) {
+
+            tags.put(id, tag);
+            index(trigrams, tag);
+        }
+
+        if(touched != null) {
+
+            touched.add(id);
+        }
+
+        for(HashSet<Integer> written : rereads) {
+
+            written.add(id);
+        }
+    }
+
+    // the ids of the tags that could contain the string, null if any could
+    private HashSet<Integer> candidates(String name_like) {
+
+        HashSet<Integer> smallest = null;
+        HashSet<Integer> candidates;
+        HashSet<Integer> ids;
+
+        if(name_like == null || name_like.length() < 3) {
+
+            return(null);
+        }
+
+        for(int i = 0; i + 3 <= name_like.length(); i++) {
+
+            ids = trigrams.get(name_like.substring(i, i + 3));
+
+            if(ids == null) {
+
+                return(new HashSet<>());
+            }
+
+            if(smallest == null || ids.size() < smallest.size()) {
+
+                smallest = ids;
+            }
+        }
+
+        // starting from the rarest trigram, the others only filter
+        candidates = new HashSet<>(smallest);
+
+        for(int i = 0; i + 3 <= name_like.length(); i++) {
+
+            candidates.retainAll(trigrams.get(name_like.substring(i, i + 3)));
+        }
+
+        return(candidates);
+    }
+
+    private static void index(HashMap<String, HashSet<Integer>> trigrams, Tag tag) {
+
+        for(int i = 0; i + 3 <= tag.name().length(); i++) {
+
+            trigrams.computeIfAbsent(tag.name().substring(i, i + 3), key -> new HashSet<>()).add(tag.id());
+        }
+    }
+
+    private static void unindex(HashMap<String, HashSet<Integer>> trigrams, Tag tag) {
+
+        HashSet<Integer> ids;
+
+        for(int i = 0; i + 3 <= tag.name().length(); i++) {
+
+            ids = trigrams.get(tag.name().substring(i, i + 3));
+
+            if(ids != null) {
+
+                ids.remove(tag.id());
+                if(ids.isEmpty() == true) trigrams.remove(tag.name().substring(i, i + 3));
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -3,8 +3,9 @@ package io.github.clamentos.blackhole.persistence.entities;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
-import io.github.clamentos.blackhole.common.utility.Converter;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.sql.ResultSet;
@@ -21,7 +22,7 @@ import java.util.List;
  * The order of the fields must match the db schema.
  * <ol>
  *     <li>{@code Long source}: not null</li>
- *     <li>{@code Long name}: not null</li>
+ *     <li>{@code Long destination}: not null</li>
  * </ol>
 */
 public record Relation(
@@ -50,13 +51,24 @@ public record Relation(
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * Deserialize the list of {@link DataEntry} in a list of {@link Relation}.
-     * @param entries : The list of {@link DataEntry}.
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putLongNullable(source);
+        writer.putLongNullable(destination);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Deserialize the entries of the {@link Payload} in a list of {@link Relation}.
+     * @param entries : The request payload.
      * @return The never null list of {@link Relation}.
-     * @throw IllegalArgumentException If the input list is null, empty
-     *        or if a {@link DataEntry} is not of the correct type.
+     * @throw IllegalArgumentException If the payload is null, empty
+     *        or if an entry is not of the correct type.
     */
-    public static List<Relation> deserialize(List<DataEntry> entries) {
+    public static List<Relation> deserialize(Payload entries) {
 
         ArrayList<Relation> relations = new ArrayList<>();
         int i;
@@ -74,14 +86,14 @@ public record Relation(
 
         while(i < entries.size()) {
 
-            fields = Converter.entryToInt(entries.get(i));
+            fields = entries.getInt(i);
             i++;
 
             source = null;
             destination = null;
 
-            if((fields & 0b001) > 0) {source = Converter.entryToLong(entries.get(i)); i++;}
-            if((fields & 0b010) > 0) {destination = Converter.entryToLong(entries.get(i)); i++;}
+            if((fields & 0b001) > 0) {source = entries.getLong(i); i++;}
+            if((fields & 0b010) > 0) {destination = entries.getLong(i); i++;}
 
             relations.add(new Relation(
 
@@ -137,13 +149,15 @@ public record Relation(
     public static Relation mapSingle(ResultSet result, int columns) throws SQLException {
 
         Relation relation = null;
+        int index = 1;
 
+        // only the selected columns are in the result, in order
         if(result.next() == true) {
 
             relation = new Relation(
 
-                ((columns & 0b001) > 0) ? result.getLong(0) : null,
-                ((columns & 0b010) > 0) ? result.getLong(1) : null
+                ((columns & 0b001) > 0) ? result.getLong(index++) : null,
+                ((columns & 0b010) > 0) ? result.getLong(index++) : null
             );
         }
 
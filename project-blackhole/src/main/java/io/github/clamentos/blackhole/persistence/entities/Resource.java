@@ -2,6 +2,7 @@ package io.github.clamentos.blackhole.persistence.entities;
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.sql.Blob;
@@ -52,18 +53,38 @@ public record Resource(
 
         List<DataEntry> result = new ArrayList<>();
 
-        result.add(id == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.INT, id));
+        result.add(id == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.LONG, id));
         result.add(name == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.STRING, name));
         result.add(description == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.STRING, description));
         result.add(creation_date == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.INT, creation_date));
         result.add(last_updated == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.INT, last_updated));
         result.add(visibility == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.BYTE, visibility));
         result.add(data_hash == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.STRING, data_hash));
-        result.add(datatype == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.BYTE, data_hash));
+        result.add(datatype == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.BYTE, datatype));
         //blob...
         result.add(owner_user_id == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.INT, owner_user_id));
         result.add(basic_category_id == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.INT, basic_category_id));
 
         return(result);
     }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putLongNullable(id);
+        writer.putString(name);
+        writer.putString(description);
+        writer.putIntNullable(creation_date);
+        writer.putIntNullable(last_updated);
+        writer.putByteNullable(visibility);
+        writer.putString(data_hash);
+        writer.putByteNullable(datatype);
+        //blob...
+        writer.putIntNullable(owner_user_id);
+        writer.putIntNullable(basic_category_id);
+    }
 }
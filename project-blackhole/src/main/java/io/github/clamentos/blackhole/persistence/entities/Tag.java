@@ -3,8 +3,12 @@ package io.github.clamentos.blackhole.persistence.entities;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
-import io.github.clamentos.blackhole.common.utility.Converter;
+import io.github.clamentos.blackhole.common.framework.RowStream;
+import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
+import io.github.clamentos.blackhole.persistence.query.ResultRows;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.sql.ResultSet;
@@ -12,6 +16,7 @@ import java.sql.SQLException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 //________________________________________________________________________________________________________________________________________
 
@@ -53,13 +58,25 @@ public record Tag(
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * Deserialize the list of {@link DataEntry} in a list of {@link Tag}.
-     * @param entries : The list of {@link DataEntry}.
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putIntNullable(id);
+        writer.putString(name);
+        writer.putIntNullable(creation_date);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Deserialize the entries of the {@link Payload} in a list of {@link Tag}.
+     * @param entries : The request payload.
      * @return The never null list of {@link Tag}.
-     * @throw IllegalArgumentException If the input list is null, empty
-     *        or if a {@link DataEntry} is not of correct type.
+     * @throw IllegalArgumentException If the payload is null, empty
+     *        or if an entry is not of correct type.
     */
-    public static List<Tag> deserialize(List<DataEntry> entries) throws IllegalArgumentException {
+    public static List<Tag> deserialize(Payload entries) throws IllegalArgumentException {
 
         ArrayList<Tag> tags = new ArrayList<>();
 
@@ -72,9 +89,9 @@ public record Tag(
 
             tags.add(new Tag(
 
-                Converter.entryToIntNullable(entries.get(i)),
-                Converter.entryToString(entries.get(i + 1)),
-                Converter.entryToIntNullable(entries.get(i + 2))
+                entries.getIntNullable(i),
+                entries.getString(i + 1),
+                entries.getIntNullable(i + 2)
             ));
         }
 
@@ -125,19 +142,155 @@ public record Tag(
     public static Tag mapSingle(ResultSet result, int columns) throws SQLException {
 
         Tag tag = null;
+        int index = 1;
 
+        // only the selected columns are in the result, in order
         if(result.next() == true) {
 
             tag = new Tag(
 
-                ((columns & 0b0001) > 0) ? result.getInt(0) : null,
-                ((columns & 0b0010) > 0) ? result.getString(1) : null,
-                ((columns & 0b0100) > 0) ? result.getInt(2) : null
+                ((columns & 0b0001) > 0) ? result.getInt(index++) : null,
+                ((columns & 0b0010) > 0) ? result.getString(index++) : null,
+                ((columns & 0b0100) > 0) ? result.getInt(index++) : null
             );
         }
 
         return(tag);
     }
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Streams the {@link ResultSet} of the query as tags, without creating any {@link Tag} object.
+     * Each row is written exactly like {@link Tag#reduce(EntryWriter)} would write the mapped tag.
+     * @param query : The successfully executed query.
+     * @param columns : A checklist of the columns to consider. The positions of the bits
+     *                  indicate the index of the column. The LSB is the first column.
+     * @return The {@link RowStream} over the result, which also owns it.
+    */
+    public static RowStream streamMany(QueryWrapper query, int columns) {
+
+        return(new ResultRows(query, (row, writer) -> writeSingle(row, columns, writer)));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Streams the {@link ResultSet} of the query as tags, like {@link Tag#streamMany(QueryWrapper, int)},
+     * while also collecting them. The result must have all the columns, only the selected ones are written.
+     * Once the stream is exhausted, the collected tags are handed to the consumer,
+     * unless there were more than {@code max_rows} of them or the stream was closed early.
+     * @param query : The successfully executed query, selecting all the columns.
+     * @param columns : A checklist of the columns to write. The positions of the bits
+     *                  indicate the index of the column. The LSB is the first column.
+     * @param max_rows : The maximum number of tags to collect.
+     * @param collector : The consumer of all the tags of the result.
+     * @return The {@link RowStream} over the result, which also owns it.
+    */
+    public static RowStream streamMany(QueryWrapper query, int columns, int max_rows, Consumer<List<Tag>> collector) {
+
+        return(new CollectingRows(query, columns, max_rows, collector));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @param columns : A checklist of the columns to keep. The positions of the bits
+     *                  indicate the index of the column. The LSB is the first column.
+     * @return A copy of this tag with only the selected columns, the others are {@code null}.
+    */
+    public Tag project(int columns) {
+
+        return(new Tag(
+
+            ((columns & 0b0001) > 0) ? id : null,
+            ((columns & 0b0010) > 0) ? name : null,
+            ((columns & 0b0100) > 0) ? creation_date : null
+        ));
+    }
+
+    /**
+     * <p><b>This method is thread safe, as long as the writer is not shared.</b></p>
+     * Writes the current row of the {@link ResultSet} as a single tag.
+     * @param result : The {@link ResultSet}, positioned on the row to write.
+     * @param columns : A checklist of the columns to consider. The positions of the bits
+     *                  indicate the index of the column. The LSB is the first column.
+     * @param writer : The writer to write into.
+     * @throws SQLException If the mapping fails.
+    */
+    public static void writeSingle(ResultSet result, int columns, EntryWriter writer) throws SQLException {
+
+        int index = 1;
+
+        if((columns & 0b0001) > 0) writer.putInt(result.getInt(index++));
+        else writer.putNull();
+
+        if((columns & 0b0010) > 0) writer.putString(result.getString(index++));
+        else writer.putNull();
+
+        if((columns & 0b0100) > 0) writer.putInt(result.getInt(index++));
+        else writer.putNull();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // the stream behind streamMany with a collector
+    private static final class CollectingRows implements RowStream {
+
+        private final ResultRows rows;
+        private final Consumer<List<Tag>> collector;
+        private final int max_rows;
+        private List<Tag> collected;
+
+        private CollectingRows(QueryWrapper query, int columns, int max_rows, Consumer<List<Tag>> collector) {
+
+            this.collector = collector;
+            this.max_rows = max_rows;
+            collected = new ArrayList<>();
+
+            rows = new ResultRows(query, (row, writer) -> {
+
+                Tag tag = new Tag(row.getInt(1), row.getString(2), row.getInt(3));
+
+                collect(tag);
+                tag.project(columns).reduce(writer);
+            });
+        }
+
+        @Override
+        public boolean next(EntryWriter writer) throws SQLException {
+
+            if(rows.next(writer) == true) {
+
+                return(true);
+            }
+
+            if(collected != null) {
+
+                collector.accept(collected);
+                collected = null;
+            }
+
+            return(false);
+        }
+
+        @Override
+        public void close() {
+
+            rows.close();
+        }
+
+        private void collect(Tag tag) {
+
+            if(collected != null) {
+
+                collected.add(tag);
+
+                // too many to keep, just stream the rest
+                if(collected.size() > max_rows) {
+
+                    collected = null;
+                }
+            }
+        }
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
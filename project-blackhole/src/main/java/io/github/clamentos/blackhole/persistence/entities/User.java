@@ -3,8 +3,9 @@ package io.github.clamentos.blackhole.persistence.entities;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
-import io.github.clamentos.blackhole.common.utility.Converter;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.sql.ResultSet;
@@ -77,13 +78,30 @@ public record User(
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * Deserialize the list of {@link DataEntry} in a list of {@link User}.
-     * @param entries : The list of {@link DataEntry}.
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putIntNullable(id);
+        writer.putString(username);
+        writer.putString(email);
+        writer.putIntNullable(creation_date);
+        writer.putIntNullable(last_updated);
+        writer.putByteNullable(post_permissions);
+        writer.putString(about);
+        writer.putByteNullable(flags);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Deserialize the entries of the {@link Payload} in a list of {@link User}.
+     * @param entries : The request payload.
      * @return The never null list of {@link User}.
-     * @throw IllegalArgumentException If the input list is null, empty
-     *        or if a {@link DataEntry} is not of correct type.
+     * @throw IllegalArgumentException If the payload is null, empty
+     *        or if an entry is not of correct type.
     */
-    public static List<User> deserialize(List<DataEntry> entries) throws IllegalArgumentException {
+    public static List<User> deserialize(Payload entries) throws IllegalArgumentException {
 
         ArrayList<User> users = new ArrayList<>();
         int fields;
@@ -108,7 +126,7 @@ public record User(
 
         while(i < entries.size()) {
 
-            fields = Converter.entryToInt(entries.get(i));
+            fields = entries.getInt(i);
             i++;
 
             id = null;
@@ -121,15 +139,15 @@ public record User(
             about = null;
             flags = null;
 
-            if((fields & 0b0000000001) > 0) {id = Converter.entryToInt(entries.get(i)); i++;}
-            if((fields & 0b0000000010) > 0) {username = Converter.entryToString(entries.get(i)); i++;}
-            if((fields & 0b0000000100) > 0) {email = Converter.entryToString(entries.get(i)); i++;}
-            if((fields & 0b0000001000) > 0) {password_hash = Converter.entryToString(entries.get(i)); i++;}
-            if((fields & 0b0000010000) > 0) {creation_date = Converter.entryToInt(entries.get(i)); i++;}
-            if((fields & 0b0000100000) > 0) {last_updated = Converter.entryToInt(entries.get(i)); i++;}
-            if((fields & 0b0001000000) > 0) {post_permissions = Converter.entryToByte(entries.get(i)); i++;}
-            if((fields & 0b0010000000) > 0) {about = Converter.entryToString(entries.get(i)); i++;}
-            if((fields & 0b0100000000) > 0) {flags = Converter.entryToByte(entries.get(i)); i++;}
+            if((fields & 0b0000000001) > 0) {id = entries.getInt(i); i++;}
+            if((fields & 0b0000000010) > 0) {username = entries.getString(i); i++;}
+            if((fields & 0b0000000100) > 0) {email = entries.getString(i); i++;}
+            if((fields & 0b0000001000) > 0) {password_hash = entries.getString(i); i++;}
+            if((fields & 0b0000010000) > 0) {creation_date = entries.getInt(i); i++;}
+            if((fields & 0b0000100000) > 0) {last_updated = entries.getInt(i); i++;}
+            if((fields & 0b0001000000) > 0) {post_permissions = entries.getByte(i); i++;}
+            if((fields & 0b0010000000) > 0) {about = entries.getString(i); i++;}
+            if((fields & 0b0100000000) > 0) {flags = entries.getByte(i); i++;}
 
             users.add(new User(
 
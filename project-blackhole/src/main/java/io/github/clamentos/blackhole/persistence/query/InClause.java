@@ -0,0 +1,82 @@
+package io.github.clamentos.blackhole.persistence.query;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.List;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Builds the {@code IN (?, ...)} lists of the queries with a variable number of parameters.</p>
+ * <p>Each distinct number of placeholders is a distinct SQL text, and so a distinct cached statement.
+ * To keep their number small the lists are padded to a few sizes only: the powers of two up to {@code 1024},
+ * then the multiples of {@code 1024}. The padding repeats the last value, which doesn't change the result of {@code IN}.</p>
+ * <p><b>This class is thread safe.</b></p>
+*/
+public class InClause {
+
+    private static final int LINEAR_STEP = 1_024;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @param count : The number of values, at least 1.
+     * @return The padded number of placeholders for the given number of values.
+     * @throws IllegalArgumentException If {@code count} is less than 1.
+    */
+    public static int size(int count) throws IllegalArgumentException {
+
+        if(count < 1) {
+
+            throw new IllegalArgumentException("An IN list needs at least one value, got: " + count);
+        }
+
+        if(count > LINEAR_STEP) {
+
+            return(((count + LINEAR_STEP - 1) / LINEAR_STEP) * LINEAR_STEP);
+        }
+
+        // the smallest power of two not less than count
+        return((count == 1) ? 1 : Integer.highestOneBit(count - 1) << 1);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Builds the placeholder list for the given number of values, padded with {@link InClause#size}.
+     * @param count : The number of values, at least 1.
+     * @return The placeholders, like {@code "?,?,?,?"}, without parentheses.
+     * @throws IllegalArgumentException If {@code count} is less than 1.
+    */
+    public static String placeholders(int count) throws IllegalArgumentException {
+
+        int size = size(count);
+        StringBuilder builder = new StringBuilder(size * 2);
+
+        for(int i = 0; i < size; i++) {
+
+            builder.append((i > 0) ? ",?" : "?");
+        }
+
+        return(builder.toString());
+    }
+
+    /**
+     * <p><b>This method is thread safe, as long as the list is not shared.</b></p>
+     * Pads the values with copies of the last one, up to {@link InClause#size} of their number.
+     * @param values : The values to pad, at least one.
+     * @throws IllegalArgumentException If {@code values} is empty.
+    */
+    public static void pad(List<Object> values) throws IllegalArgumentException {
+
+        int size = size(values.size());
+        Object last = values.get(values.size() - 1);
+
+        while(values.size() < size) {
+
+            values.add(last);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,112 @@
+package io.github.clamentos.blackhole.persistence.query;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.util.ArrayList;
+import java.util.List;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Modifying queries with the same SQL, coalesced to be executed as a single JDBC batch.</p>
+ * <p>Queries can join the batch until it's sealed, which the executor does right before executing it,
+ * or until it would exceed the given number of parameter rows. The first query is always accepted, whatever its size.</p>
+ * <p>Failing the batch fails all of its queries that are not completed yet.
+ * Otherwise the outcome of each query is set by the executor, one by one.</p>
+ * <p><b>This class is thread safe.</b></p>
+*/
+public class QueryBatch extends QueryWrapper {
+
+    private final List<QueryWrapper> queries;
+    private final long opened;
+    private int rows;
+    private boolean sealed;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiate a new open batch with the given query as the first one.
+     * @param first : The first query, which sets the type and the SQL of the batch.
+    */
+    public QueryBatch(QueryWrapper first) {
+
+        super(first.getQueryType(), first.getSql(), List.of());
+
+        queries = new ArrayList<>();
+        queries.add(first);
+        opened = System.nanoTime();
+        rows = first.getParameters().size();
+        sealed = false;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Adds the query to the batch, if not sealed yet and if there is room for its rows.
+     * A batch without room is sealed, so that the following queries start a new one.
+     * @param query : The query to add, with the same SQL as the batch.
+     * @param max_rows : The maximum number of parameter rows in the batch.
+     * @return {@code true} if the query was added, {@code false} otherwise.
+    */
+    public synchronized boolean join(QueryWrapper query, int max_rows) {
+
+        if(sealed == true) {
+
+            return(false);
+        }
+
+        if(rows + query.getParameters().size() > max_rows) {
+
+            sealed = true;
+            return(false);
+        }
+
+        queries.add(query);
+        rows += query.getParameters().size();
+
+        return(true);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Seals the batch, no other query can join after this.
+     * @return The queries in the batch, in arrival order.
+    */
+    public synchronized List<QueryWrapper> seal() {
+
+        sealed = true;
+        return(queries);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The {@link System#nanoTime} at which the batch was opened.
+    */
+    public long getOpened() {
+
+        return(opened);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Seals the batch, fails its queries that are not completed yet, then the batch itself.
+     * @param exception : The cause of the failure.
+    */
+    @Override
+    public void fail(Exception exception) {
+
+        for(QueryWrapper query : seal()) {
+
+            if(query.getStatus() == 0) {
+
+                query.fail(exception);
+            }
+        }
+
+        super.fail(exception);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
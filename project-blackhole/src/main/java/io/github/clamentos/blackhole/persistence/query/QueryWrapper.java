@@ -3,24 +3,34 @@ package io.github.clamentos.blackhole.persistence.query;
 //________________________________________________________________________________________________________________________________________
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
  * <p>Custom query object that acts as a bridge between the servlets and the query workers.</p>
- * The provided getter and setter methods are all standard and thread safe.
+ * <p>The query is completed exactly once, by {@link QueryWrapper#complete} or {@link QueryWrapper#fail},
+ * which also complete the future returned by {@link QueryWrapper#getCompletion}.
+ * Every value written before the completion is visible to whoever observes it,
+ * either through the status or through the future.</p>
+ * <p>The result of a successful {@link QueryType#SELECT} must be closed with {@link QueryWrapper#close} once read,
+ * so that its statement can be reused.</p>
+ * The provided getter methods are all standard and thread safe.
 */
 public class QueryWrapper {
 
-    private AtomicInteger status;    // 0: not executed yet, 1: OK, -1: ERROR, exception will be set
-    private Exception exception;
+    private volatile int status;    // 0: not executed yet, 1: OK, -1: ERROR, exception will be set
+    private volatile Exception exception;
     private QueryType query_type;
     private String sql;
     private List<List<Object>> parameters;
-    private ResultSet result;
+    private int fetch_size;
+    private volatile ResultSet result;
+    private Runnable release;
+    private CompletableFuture<QueryWrapper> completion;
 
     //____________________________________________________________________________________________________________________________________
 
@@ -33,19 +43,22 @@ public class QueryWrapper {
     */
     public QueryWrapper(QueryType query_type, String sql, List<List<Object>> parameters) {
 
-        status = new AtomicInteger(0);
+        status = 0;
         exception = null;
         this.query_type = query_type;
         this.sql = sql;
         this.parameters = parameters;
+        fetch_size = 0;
         result = null;
+        release = null;
+        completion = new CompletableFuture<>();
     }
 
     //____________________________________________________________________________________________________________________________________
 
     public int getStatus() {
 
-        return(status.get());
+        return(status);
     }
 
     public Exception getException() {
@@ -68,26 +81,110 @@ public class QueryWrapper {
         return(parameters);
     }
 
+    public int getFetchSize() {
+
+        return(fetch_size);
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must be called before executing the query.</b></p>
+     * Sets the number of rows the driver should fetch from the database at a time, see {@link java.sql.Statement#setFetchSize}.
+     * A select with a fetch size runs in a transaction, which the driver needs to read through a cursor,
+     * and keeps its connection out of the pool until {@link QueryWrapper#close} is called:
+     * meant for results that are streamed, too big to be read at once.
+     * @param fetch_size : The number of rows, {@code 0} to read the whole result at once.
+    */
+    public void setFetchSize(int fetch_size) {
+
+        this.fetch_size = fetch_size;
+    }
+
     public ResultSet getResult() {
 
         return(result);
     }
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the completion of this query.
+     * The future always completes normally with this query, check the status to know the outcome.
+     * @return The future that completes when the query is executed.
+    */
+    public CompletableFuture<QueryWrapper> getCompletion() {
+
+        return(completion);
+    }
+
     //____________________________________________________________________________________________________________________________________
 
-    public void setStatus(int status) {
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Marks the query as successfully executed and completes the future.
+     * @param result : The query result, {@code null} for queries that don't return rows.
+    */
+    public void complete(ResultSet result) {
 
-        this.status.set(status);
+        complete(result, null);
     }
 
-    public void setException(Exception exception) {
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Marks the query as successfully executed and completes the future.
+     * @param result : The query result, {@code null} for queries that don't return rows.
+     * @param release : What to do with the statement once the result is closed, can be {@code null}.
+    */
+    public void complete(ResultSet result, Runnable release) {
 
+        // the status is written last: reading it first guarantees to see the result and the release
+        this.result = result;
+        this.release = release;
+        status = 1;
+        completion.complete(this);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Marks the query as failed and completes the future.
+     * @param exception : The cause of the failure.
+    */
+    public void fail(Exception exception) {
+
+        // the status is written last: reading it first guarantees to see the exception
         this.exception = exception;
+        status = -1;
+        completion.complete(this);
     }
-    
-    public void setResult(ResultSet result) {
 
-        this.result = result;
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Closes the result, if any, and releases its statement. Calling it more than once has no effect.
+     * @throws SQLException If the result could not be closed, the statement is released anyway.
+    */
+    public void close() throws SQLException {
+
+        Runnable temp;
+
+        synchronized(this) {
+
+            temp = release;
+            release = null;
+        }
+
+        try {
+
+            if(result != null) {
+
+                result.close();
+            }
+        }
+
+        finally {
+
+            if(temp != null) {
+
+                temp.run();
+            }
+        }
     }
 
     //____________________________________________________________________________________________________________________________________
@@ -0,0 +1,94 @@
+package io.github.clamentos.blackhole.persistence.query;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.RowStream;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>{@link RowStream} backed by the {@link ResultSet} of a query.</p>
+ * Every call to {@link ResultRows#next} advances the cursor by one row and hands it to the row writer,
+ * so no entity object is created. Closing the stream closes the query, which releases the statement that produced the result
+ * and, if the rows came from a cursor, the connection too (see {@link QueryWrapper#setFetchSize}).
+ * <b>This class is NOT thread safe.</b>
+*/
+public class ResultRows implements RowStream {
+
+    private final QueryWrapper query;
+    private final ResultSet result;
+    private final RowWriter row_writer;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new row stream on the result of the given query.
+     * @param query : The successfully executed query, with its result positioned before the first row.
+     * @param row_writer : The function that writes the current row.
+    */
+    public ResultRows(QueryWrapper query, RowWriter row_writer) {
+
+        this.query = query;
+        result = query.getResult();
+        this.row_writer = row_writer;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public boolean next(EntryWriter writer) throws SQLException {
+
+        if(result.next() == true) {
+
+            row_writer.write(result, writer);
+            return(true);
+        }
+
+        return(false);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void close() {
+
+        try {
+
+            query.close();
+        }
+
+        catch(SQLException exc) {
+
+            Logger.getInstance().log("ResultRows.close > Could not close the result, SQLException: " + exc.getMessage(), LogLevel.WARNING);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Writes the current row of a {@link ResultSet}.
+    */
+    @FunctionalInterface
+    public interface RowWriter {
+
+        /**
+         * Write the entries of the current row into the writer buffer.
+         * @param result : The result, positioned on the row to write.
+         * @param writer : The writer to write into.
+         * @throws SQLException If a column could not be read.
+        */
+        void write(ResultSet result, EntryWriter writer) throws SQLException;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,82 @@
+package io.github.clamentos.blackhole.web.dtos;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.Reducible;
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Continuation token of a paged response, sent as the first entry before the rows of the page.</p>
+ * <p>The token is the key of the last row of the page, {@code (creation_date, id)}, packed in a {@code long}:
+ * the client sends it back as is to get the next page, which starts right after that row.
+ * A {@code null} token means that there are no more pages.</p>
+*/
+public record Continuation(
+
+    Long token
+
+) implements Reducible {
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @param last : The last tag of the page, with its creation date and id.
+     * @return The continuation after the given tag.
+    */
+    public static Continuation after(Tag last) {
+
+        return(new Continuation(((long)last.creation_date() << 32) | (last.id() & 0xFFFF_FFFFL)));
+    }
+
+    /**
+     * @param token : The token.
+     * @return The creation date of the last row of the previous page.
+    */
+    public static int creationDate(long token) {
+
+        return((int)(token >> 32));
+    }
+
+    /**
+     * @param token : The token.
+     * @return The id of the last row of the previous page.
+    */
+    public static int id(long token) {
+
+        return((int)token);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public List<DataEntry> reduce() {
+
+        List<DataEntry> result = new ArrayList<>();
+
+        result.add(token == null ? new DataEntry(Type.NULL, null) : new DataEntry(Type.LONG, token));
+
+        return(result);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putLongNullable(token);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
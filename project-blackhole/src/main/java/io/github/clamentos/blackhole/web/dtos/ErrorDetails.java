@@ -4,6 +4,7 @@ package io.github.clamentos.blackhole.web.dtos;
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.util.ArrayList;
@@ -44,5 +45,15 @@ public record ErrorDetails(
         return(result);
     }
 
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putLong(timestamp);
+        writer.putString(message);
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
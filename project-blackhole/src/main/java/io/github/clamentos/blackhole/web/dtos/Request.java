@@ -2,26 +2,34 @@ package io.github.clamentos.blackhole.web.dtos;
 
 //________________________________________________________________________________________________________________________________________
 
-import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.web.dtos.components.FrameCompressor;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
 import io.github.clamentos.blackhole.web.dtos.components.Method;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 import io.github.clamentos.blackhole.web.dtos.components.Entities;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
  * <p>Request class.</p>
  * <p>This class holds all the fields and data required to handle a request.</p>
+ * <p>Only the header (resource, method, correlation id and session id) is decoded up front.
+ * The entries are kept in a lazy {@link Payload}, decoded only when the servlet reads them.
+ * The payload points into the request buffer and is only valid while the request is being handled.</p>
+ * <p>If the entries are compressed, they are decompressed up front into their own buffer,
+ * up to {@link ConfigurationProvider#MAX_REQUEST_SIZE} bytes.</p>
  * The getter methods are all thread safe and standard.
 */
 public record Request(
 
     Entities resource,
     Method method,
+    Integer correlation_id,
     byte[] session_id,
-    List<DataEntry> data
+    Payload data
 
 ) {
 
@@ -32,32 +40,54 @@ public record Request(
      * Instantiates a new {@link Request} object.
      * @param data : The input data array, usually taken from a stream.
      * @throws IllegalArgumentException If the data holds any illegal value.
-     * @throws ArrayIndexOutOfBoundsException If the data is incomplete or badly formatted.
+     * @throws IndexOutOfBoundsException If the data is incomplete or badly formatted.
     */
-    public static Request deserialize(byte[] data) throws IllegalArgumentException, ArrayIndexOutOfBoundsException {
+    public static Request deserialize(byte[] data) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return(deserialize(ByteBuffer.wrap(data), 0, data.length));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiates a new {@link Request} object reading straight from the buffer, without copying it.
+     * Only absolute gets are used, so the position and limit of the buffer are left untouched.
+     * @param buffer : The buffer holding the request.
+     * @param start : The absolute position of the first byte of the request.
+     * @param end : The absolute position after the last byte of the request.
+     * @throws IllegalArgumentException If the data holds any illegal value.
+     * @throws IndexOutOfBoundsException If the data is incomplete or badly formatted.
+    */
+    public static Request deserialize(ByteBuffer buffer, int start, int end) throws IllegalArgumentException, IndexOutOfBoundsException {
 
         Entities resource;
         Method method;
+        Integer correlation_id;
         byte[] session_id;
-        List<DataEntry> stuff;
+        ByteBuffer entries;
+        int entries_end;
+        int position;
+        byte flags;
 
-        // passed to the "DataEntry.deserialize()" so that the position can be updated.
-        // This is necessary because DataEntry size is only known at runtime and the method only returns a DataEntry,
-        // which has no length field. "start_pos" array ALWAYS contains 1 element (similar to a "pointer" to the value).
-        int[] start_pos;
+        if(end - start < 2) {
 
-        switch(data[0]) {
+            throw new IndexOutOfBoundsException("Request too short: " + (end - start) + " bytes");
+        }
+
+        flags = buffer.get(start);
+
+        switch(flags & FrameFlags.VALUE_MASK) {
 
             case 0: resource = Entities.SYSTEM; break;
             case 1: resource = Entities.USER; break;
             case 2: resource = Entities.TAG; break;
             case 3: resource = Entities.RESOURCE; break;
             case 4: resource = Entities.ECHO; break;
+            case 5: resource = Entities.RELATION; break;
 
             default: throw new IllegalArgumentException("Unknown resource type");
         }
 
-        switch(data[1]) {
+        switch(buffer.get(start + 1)) {
 
             case 0: method = Method.CREATE; break;
             case 1: method = Method.READ; break;
@@ -69,34 +99,105 @@ public record Request(
             default: throw new IllegalArgumentException("Unknown request method");
         }
 
-        start_pos = new int[1];
+        position = start + 2;
+        correlation_id = null;
+
+        if((flags & FrameFlags.CORRELATED) != 0) {
+
+            checkAvailable(position, 4, end);
+            correlation_id = buffer.getInt(position);
+            position += 4;
+        }
 
         if(method != Method.LOGIN) {
 
+            checkAvailable(position, 32, end);
             session_id = new byte[32];
+            buffer.get(position, session_id);
+            position += 32;
+        }
+
+        else {
 
-            for(int i = 0; i < session_id.length; i++) {
+            session_id = null;
+        }
 
-                session_id[i] = data[i + 2];
-            }
+        if((flags & FrameFlags.COMPRESSED) != 0) {
 
-            start_pos[0] = 34;
+            entries = FrameCompressor.getInstance().decompress(buffer, position, end, ConfigurationProvider.MAX_REQUEST_SIZE);
+            position = 0;
+            entries_end = entries.limit();
         }
 
         else {
 
-            session_id = null;
-            start_pos[0] = 2;
+            entries = buffer;
+            entries_end = end;
         }
 
-        stuff = new ArrayList<>();
+        return(new Request(resource, method, correlation_id, session_id, Payload.wrap(entries, position, entries_end, (flags & FrameFlags.COMPACT) != 0)));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Extracts the optional correlation id from the raw request without deserializing it.
+     * @param data : The input data array, usually taken from a stream.
+     * @return The correlation id, or {@code null} if the request doesn't have one
+     *         or if it's too short to hold it.
+    */
+    public static Integer peekCorrelationId(byte[] data) {
+
+        return(peekCorrelationId(ByteBuffer.wrap(data)));
+    }
 
-        while(start_pos[0] < data.length) {
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Extracts the optional correlation id from the raw request without deserializing it.
+     * @param data : The buffer holding the request, from 0 to its limit.
+     * @return The correlation id, or {@code null} if the request doesn't have one
+     *         or if it's too short to hold it.
+    */
+    public static Integer peekCorrelationId(ByteBuffer data) {
+
+        if(data.limit() < 6 || (data.get(0) & FrameFlags.CORRELATED) == 0) {
 
-            stuff.add(DataEntry.deserialize(data, start_pos));
+            return(null);
         }
 
-        return(new Request(resource, method, session_id, stuff));
+        return(data.getInt(2));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Checks if the raw request uses the compact encoding, without deserializing it.
+     * @param data : The buffer holding the request, from 0 to its limit.
+     * @return {@code true} if the {@link FrameFlags#COMPACT} flag is set, {@code false} otherwise.
+    */
+    public static boolean peekCompact(ByteBuffer data) {
+
+        return(data.limit() > 0 && (data.get(0) & FrameFlags.COMPACT) != 0);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Checks if the client of the raw request accepts compressed responses, without deserializing it.
+     * @param data : The buffer holding the request, from 0 to its limit.
+     * @return {@code true} if the {@link FrameFlags#ACCEPTS_COMPRESSED} flag is set, {@code false} otherwise.
+    */
+    public static boolean peekAcceptsCompressed(ByteBuffer data) {
+
+        return(data.limit() > 0 && (data.get(0) & FrameFlags.ACCEPTS_COMPRESSED) != 0);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // make sure the header field fits in the request
+    private static void checkAvailable(int position, int amount, int end) throws IndexOutOfBoundsException {
+
+        if(position + amount > end) {
+
+            throw new IndexOutOfBoundsException("Request too short: " + amount + " bytes needed at " + position + ", end is " + end);
+        }
     }
 
     //____________________________________________________________________________________________________________________________________
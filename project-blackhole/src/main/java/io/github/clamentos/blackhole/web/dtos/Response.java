@@ -2,73 +2,253 @@ package io.github.clamentos.blackhole.web.dtos;
 
 //________________________________________________________________________________________________________________________________________
 
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
 import io.github.clamentos.blackhole.common.exceptions.ErrorWrapper;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
 import io.github.clamentos.blackhole.common.framework.Reducible;
+import io.github.clamentos.blackhole.common.framework.RowStream;
 import io.github.clamentos.blackhole.common.framework.Streamable;
-import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.FrameCompressor;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
 import io.github.clamentos.blackhole.web.dtos.components.ResponseStatus;
 
+import java.nio.ByteBuffer;
+
+import java.sql.SQLException;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
  * <p>Response class.</p>
- * This class holds all the fields and data that can be sent through a stream.
+ * <p>This class holds all the fields and data that can be sent through a stream.</p>
+ * <p>Besides the materialized {@code data}, a response can carry a {@link RowStream}, whose rows are written
+ * after the data, straight from the database cursor. Such a response is sent by {@link Response#stream(Integer, Predicate)}
+ * as a sequence of chunks (see {@link FrameFlags#CONTINUES}), so that the length of the whole response
+ * never has to be known in advance and the client gets the first rows while the others are still being read.</p>
 */
 public record Response(
 
     ResponseStatus response_status,
-    List<Reducible> data
+    List<Reducible> data,
+    RowStream rows
 
 ) implements Streamable {
 
     //____________________________________________________________________________________________________________________________________
 
+    /**
+     * Instantiates a new {@link Response} without any row stream.
+     * @param response_status : The status of the response.
+     * @param data : The entities to send, can be {@code null}.
+    */
+    public Response(ResponseStatus response_status, List<Reducible> data) {
+
+        this(response_status, data, null);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * {@inheritDoc}
+     * The response will not carry any correlation id.
+    */
     @Override
     public byte[] stream() {
 
-        List<DataEntry> temp = new ArrayList<>();
-        byte[][] stuff;
+        return(stream((Integer)null));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The response will not carry any correlation id.
+    */
+    @Override
+    public void stream(EntryWriter writer) {
+
+        stream(writer, null);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Transform {@code this} into an array of bytes, including the 4 byte length prefix.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     *                         If present, the {@link FrameFlags#CORRELATED} flag will be set
+     *                         and the id will follow the status byte.
+     * @return A never null array of bytes representing {@code this}.
+    */
+    public byte[] stream(Integer correlation_id) {
+
+        EntryWriter writer = new EntryWriter(BufferPool.getInstance(), ConfigurationProvider.STREAM_BUFFER_SIZE);
         byte[] bytes;
-        int count;
 
-        if(data != null) {
+        stream(writer, correlation_id);
+        bytes = new byte[writer.position()];
+        writer.getBuffer().get(0, bytes);
+        writer.release();
+
+        return(bytes);
+    }
 
-            for(Reducible streamable : data) {
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Transform {@code this} into a buffer, including the 4 byte length prefix.
+     * Unlike {@link Response#stream(Integer)}, the written bytes are not copied into an array.
+     * The buffer is leased from the {@link BufferPool}, and should be returned to it once sent.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     * @return A never null buffer holding exactly the bytes representing {@code this}.
+    */
+    public ByteBuffer toBuffer(Integer correlation_id) {
+
+        return(toBuffer(correlation_id, false));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Transform {@code this} into a buffer, including the 4 byte length prefix.
+     * The buffer is leased from the {@link BufferPool}, and should be returned to it once sent.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     * @param compact : {@code true} to use the compact encoding, setting the {@link FrameFlags#COMPACT} flag.
+     * @return A never null buffer holding exactly the bytes representing {@code this}.
+    */
+    public ByteBuffer toBuffer(Integer correlation_id, boolean compact) {
+
+        return(toBuffer(correlation_id, compact, false));
+    }
 
-                temp.addAll(streamable.reduce());
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Transform {@code this} into a buffer, including the 4 byte length prefix.
+     * The buffer is leased from the {@link BufferPool}, and should be returned to it once sent.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     * @param compact : {@code true} to use the compact encoding, setting the {@link FrameFlags#COMPACT} flag.
+     * @param compress : {@code true} to let the {@link FrameCompressor} compress the entries, if big enough.
+     * @return A never null buffer holding exactly the bytes representing {@code this}.
+    */
+    public ByteBuffer toBuffer(Integer correlation_id, boolean compact, boolean compress) {
+
+        EntryWriter writer = new EntryWriter(BufferPool.getInstance(), ConfigurationProvider.STREAM_BUFFER_SIZE, compact);
+
+        stream(writer, correlation_id);
+        return(finish(writer, correlation_id, compress));
+    }
+
+    /**
+     * <p><b>This method is thread safe, as long as the writer is not shared.</b></p>
+     * Writes {@code this} directly into the writer buffer, including the 4 byte length prefix.
+     * Every {@link Reducible} writes its own entries, so no intermediate list or array is created.
+     * @param writer : The writer to write into.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     *                         If present, the {@link FrameFlags#CORRELATED} flag will be set
+     *                         and the id will follow the status byte.
+     *                         The {@link FrameFlags#COMPACT} flag follows the mode of the writer.
+    */
+    public void stream(EntryWriter writer, Integer correlation_id) {
+
+        int start = writer.position();
+
+        writeHeader(writer, correlation_id);
+        writeData(writer);
+
+        if(rows != null) {
+
+            try {
+
+                while(rows.next(writer) == true);
             }
-        }
 
-        stuff = new byte[temp.size()][];
-        count = 0;
+            // the rows written so far are discarded, the client gets the error instead
+            catch(SQLException exc) {
 
-        for(int i = 0; i < stuff.length; i++) {
+                writer.truncate(start);
+                create(exc.getMessage(), exc.getCause()).stream(writer, correlation_id);
+
+                return;
+            }
 
-            stuff[i] = temp.get(i).stream();
-            count += stuff[i].length;
+            finally {
+
+                rows.close();
+            }
         }
 
-        bytes = new byte[count + 5];
-        System.arraycopy(response_status.stream(), 0, bytes, 4, 1);
-        count = 1;
+        writer.setRawInt(start, writer.position() - start - 4);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Transform {@code this} into a sequence of chunks, each with its own length prefix.
+     * The rows are written as they come from the {@link RowStream} and, as soon as a chunk
+     * reaches {@link ConfigurationProvider#RESPONSE_CHUNK_SIZE} bytes, it's handed to the sink with
+     * the {@link FrameFlags#CONTINUES} flag set. Responses without rows always produce a single chunk.
+     * If the rows fail midway, the last chunk carries the error.
+     * All the chunks are leased from the {@link BufferPool}, and should be returned to it once sent.
+     * @param correlation_id : The correlation id of the originating request, can be {@code null}.
+     *                         If present, every chunk will carry it.
+     * @param compact : {@code true} to use the compact encoding for every chunk.
+     * @param compress : {@code true} to let the {@link FrameCompressor} compress every chunk, if big enough.
+     * @param sink : Receives every chunk except the last one, which is returned.
+     *               If it returns {@code false} the streaming stops early, because nobody is listening anymore.
+     * @return The last chunk, never {@code null}.
+    */
+    public ByteBuffer stream(Integer correlation_id, boolean compact, boolean compress, Predicate<ByteBuffer> sink) {
+
+        BufferPool pool = BufferPool.getInstance();
+        EntryWriter writer;
+        boolean listening;
+
+        if(rows == null) {
+
+            return(toBuffer(correlation_id, compact, compress));
+        }
+
+        writer = new EntryWriter(pool, ConfigurationProvider.STREAM_BUFFER_SIZE, compact);
+
+        try {
+
+            writeHeader(writer, correlation_id);
+            writeData(writer);
+
+            while(rows.next(writer) == true) {
 
-        for(int i = 0; i < stuff.length; i++) {
+                if(writer.position() >= ConfigurationProvider.RESPONSE_CHUNK_SIZE) {
 
-            System.arraycopy(stuff[i], 0, bytes, count, stuff[i].length);
-            count += stuff[i].length;
+                    writer.setRawByte(4, (byte)(writer.getBuffer().get(4) | FrameFlags.CONTINUES));
+                    writer.setRawInt(0, writer.position() - 4);
+
+                    listening = sink.test(finish(writer, correlation_id, compress));
+
+                    // the previous buffer now belongs to the channel, and more rows are likely to follow
+                    writer = new EntryWriter(pool, ConfigurationProvider.RESPONSE_CHUNK_SIZE + ConfigurationProvider.STREAM_BUFFER_SIZE, compact);
+                    writeHeader(writer, correlation_id);
+
+                    // terminate with an empty chunk
+                    if(listening == false) {
+
+                        break;
+                    }
+                }
+            }
+
+            writer.setRawInt(0, writer.position() - 4);
+
+            return(finish(writer, correlation_id, compress));
         }
 
-        count = bytes.length - 4;
-        
-        bytes[0] = (byte)(count & 0xFF000000);
-        bytes[1] = (byte)(count & 0x00FF0000);
-        bytes[2] = (byte)(count & 0x0000FF00);
-        bytes[3] = (byte)(count & 0x000000FF);
+        catch(SQLException exc) {
 
-        return(bytes);
+            writer.release();
+            return(create(exc.getMessage(), exc.getCause()).toBuffer(correlation_id, compact, compress));
+        }
+
+        finally {
+
+            rows.close();
+        }
     }
 
     public static Response create(String error_message, Throwable error) {
@@ -101,4 +281,51 @@ public record Response(
     }
 
     //____________________________________________________________________________________________________________________________________
+
+    // length placeholder, status, flags and optional correlation id
+    private void writeHeader(EntryWriter writer, Integer correlation_id) {
+
+        int start = writer.position();
+
+        writer.putRawInt(0);
+        response_status.stream(writer);
+
+        if(writer.isCompact() == true) {
+
+            writer.setRawByte(start + 4, (byte)(writer.getBuffer().get(start + 4) | FrameFlags.COMPACT));
+        }
+
+        if(correlation_id != null) {
+
+            writer.setRawByte(start + 4, (byte)(writer.getBuffer().get(start + 4) | FrameFlags.CORRELATED));
+            writer.putRawInt(correlation_id);
+        }
+    }
+
+    // flip the complete frame, compressing its entries if requested
+    private ByteBuffer finish(EntryWriter writer, Integer correlation_id, boolean compress) {
+
+        ByteBuffer frame = writer.flip();
+
+        if(compress == true) {
+
+            frame = FrameCompressor.getInstance().compress(frame, 4, (correlation_id != null) ? 9 : 5);
+        }
+
+        return(frame);
+    }
+
+    // the materialized entities, if any
+    private void writeData(EntryWriter writer) {
+
+        if(data != null) {
+
+            for(Reducible reducible : data) {
+
+                reducible.reduce(writer);
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
 }
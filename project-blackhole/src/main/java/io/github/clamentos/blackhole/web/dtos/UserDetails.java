@@ -4,6 +4,7 @@ package io.github.clamentos.blackhole.web.dtos;
 
 import io.github.clamentos.blackhole.common.framework.Reducible;
 import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
 import io.github.clamentos.blackhole.web.dtos.components.Type;
 
 import java.util.List;
@@ -27,5 +28,14 @@ public record UserDetails(
         return(List.of(new DataEntry(Type.RAW, session_id)));
     }
 
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void reduce(EntryWriter writer) {
+
+        writer.putRaw(session_id);
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
@@ -0,0 +1,77 @@
+package io.github.clamentos.blackhole.web.dtos.actions;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Traversal of the graph of the relations, starting from one node.</p>
+ * <ul>
+ *     <li>Mode 0, neighbors: the nodes one hop away.</li>
+ *     <li>Mode 1, expansion: all the nodes within {@code max_depth} hops, level by level.</li>
+ *     <li>Mode 2, shortest path: the hops from the start to the target, if within {@code max_depth}.</li>
+ *     <li>Mode 3, reachability: a single hop from the start to the target, if within {@code max_depth}.</li>
+ * </ul>
+ * The depth and the fan out default to, and are capped by, {@link ConfigurationProvider#MAX_GRAPH_DEPTH}
+ * and {@link ConfigurationProvider#MAX_GRAPH_FAN_OUT}.
+*/
+public record GraphRead(
+
+    byte mode,
+    long start,
+    Long target,
+    int max_depth,
+    int fan_out
+) {
+
+    //____________________________________________________________________________________________________________________________________
+
+    public static GraphRead deserialize(Payload entries) throws IllegalArgumentException {
+
+        byte mode;
+        long start;
+        Long target;
+        Integer max_depth;
+        Integer fan_out;
+
+        if(entries == null || entries.size() < 5) {
+
+            throw new IllegalArgumentException("A graph read needs 5 entries, got: " + ((entries == null) ? 0 : entries.size()));
+        }
+
+        mode = entries.getByte(0);
+        start = entries.getLong(1);
+        target = entries.getLongNullable(2);
+        max_depth = entries.getIntNullable(3);
+        fan_out = entries.getIntNullable(4);
+
+        if(mode < 0 || mode > 3) {
+
+            throw new IllegalArgumentException("Graph mode must be between 0 and 3, got: " + mode);
+        }
+
+        if(mode >= 2 && target == null) {
+
+            throw new IllegalArgumentException("Paths and reachability need a target");
+        }
+
+        if((max_depth != null && max_depth < 1) || (fan_out != null && fan_out < 1)) {
+
+            throw new IllegalArgumentException("Depth and fan out must be positive, got: " + max_depth + ", " + fan_out);
+        }
+
+        max_depth = (mode == 0) ? 1 : Math.min((max_depth == null) ? ConfigurationProvider.MAX_GRAPH_DEPTH : max_depth, ConfigurationProvider.MAX_GRAPH_DEPTH);
+        fan_out = Math.min((fan_out == null) ? ConfigurationProvider.MAX_GRAPH_FAN_OUT : fan_out, ConfigurationProvider.MAX_GRAPH_FAN_OUT);
+
+        return(new GraphRead(mode, start, target, max_depth, fan_out));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
+
+/*
+ * |mode(byte)|start(long)|target(long, nullable)|max_depth(int, nullable)|fan_out(int, nullable)|
+*/
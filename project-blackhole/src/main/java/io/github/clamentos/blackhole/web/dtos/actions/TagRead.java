@@ -2,10 +2,7 @@ package io.github.clamentos.blackhole.web.dtos.actions;
 
 //________________________________________________________________________________________________________________________________________
 
-import io.github.clamentos.blackhole.common.utility.Converter;
-import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
-
-import java.util.List;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 
 //________________________________________________________________________________________________________________________________________
 
@@ -17,44 +14,60 @@ public record TagRead(
     int[] ids,
     String name_like,
     Integer start_date,
-    Integer end_date
+    Integer end_date,
+    Long continuation
 ) {
 
     //____________________________________________________________________________________________________________________________________
 
-    public static TagRead deserialize(List<DataEntry> entries) throws IllegalArgumentException {
+    public static TagRead deserialize(Payload entries) throws IllegalArgumentException {
 
         byte query_mode;
         byte fields;
-        int limit;
+        Integer limit;
         int[] ids;
         String name_like;
-        int start_date;
-        int end_date;
+        Integer start_date;
+        Integer end_date;
+        Long continuation;
 
-        query_mode = Converter.entryToByte(entries.get(0));
-        fields = Converter.entryToByte(entries.get(1));
+        query_mode = entries.getByte(0);
+        fields = entries.getByte(1);
 
         if(query_mode == 0) {
 
-            ids = new int[Converter.entryToInt(entries.get(2))];
+            // the declared length can't exceed the entries actually sent
+            if(entries.getInt(2) < 0 || entries.getInt(2) > entries.size() - 3) {
+
+                throw new IllegalArgumentException("Illegal ids length: " + entries.getInt(2) + ", entries: " + entries.size());
+            }
+
+            ids = new int[entries.getInt(2)];
 
             for(int i = 0; i < ids.length; i++) {
 
-                ids[i] = Converter.entryToInt(entries.get(i + 3));
+                ids[i] = entries.getInt(i + 3);
             }
 
-            return(new TagRead(query_mode, fields, 0, ids, null, 0, 0));
+            return(new TagRead(query_mode, fields, 0, ids, null, 0, 0, null));
         }
 
         if(query_mode == 1) {
             
-            limit = Converter.entryToIntNullable(entries.get(2));
-            name_like = Converter.entryToString(entries.get(3));
-            start_date = Converter.entryToIntNullable(entries.get(4));
-            end_date = Converter.entryToIntNullable(entries.get(5));
+            limit = entries.getIntNullable(2);
+            name_like = entries.getString(3);
+            start_date = entries.getIntNullable(4);
+            end_date = entries.getIntNullable(5);
+
+            // optional, older clients don't send it
+            continuation = (entries.size() > 6) ? entries.getLongNullable(6) : null;
+
+            if(limit != null && limit < 1) {
+
+                throw new IllegalArgumentException("The limit must be positive, got: " + limit);
+            }
 
-            return(new TagRead(query_mode, fields, limit, null, name_like, start_date, end_date));
+            return(new TagRead(query_mode, fields, limit, null, name_like, start_date, end_date, continuation));
         }
 
         else {
@@ -78,15 +91,16 @@ public record TagRead(
  *     1) complex fetch:
  * 
  *         byte fields      ->  which fields to get
- *         int limit        ->  paging
+ *         int limit        ->  page size, null for all the rows at once
  *         String name_like ->  select with LIKE %name_like%
  *         int start_date   ->  select with given date interval (use end_date)
  *         int end_date
+ *         long continuation -> optional, the token of the previous page, null or missing for the first one
  * 
  * 
  * 
  * 
  * 
  * |query_mode(0)|fields(?)|ids(?)|
- * |query_mode(1)|fields(?)|limit(?)|params(?)|...|
+ * |query_mode(1)|fields(?)|limit(?)|params(?)|...|continuation(?)|
 */
\ No newline at end of file
@@ -2,8 +2,7 @@ package io.github.clamentos.blackhole.web.dtos.actions;
 
 //________________________________________________________________________________________________________________________________________
 
-import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
-import java.util.List;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
 
 //________________________________________________________________________________________________________________________________________
 
@@ -16,7 +15,7 @@ public record UserLogin(
 
     //____________________________________________________________________________________________________________________________________
 
-    public static UserLogin deserialize(List<DataEntry> entries) {
+    public static UserLogin deserialize(Payload entries) {
 
         // TODO: implement
         return(null);
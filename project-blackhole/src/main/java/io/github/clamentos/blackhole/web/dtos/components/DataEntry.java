@@ -4,10 +4,15 @@ package io.github.clamentos.blackhole.web.dtos.components;
 
 import io.github.clamentos.blackhole.common.framework.Streamable;
 
+import java.nio.ByteBuffer;
+
 //________________________________________________________________________________________________________________________________________
 
 /**
- * Simple class to represent semi-structured data.
+ * <p>Simple class to represent semi-structured data.</p>
+ * The wire format is a type tag (see {@link Type}) followed by the big endian value.
+ * Strings and raw data are prefixed by their length in bytes. The actual encoding and decoding
+ * is done by {@link EntryWriter} and {@link EntryReader}.
 */
 public record DataEntry(
 
@@ -25,94 +30,16 @@ public record DataEntry(
      * @param offset : Starting position of the buffer.
      * @return The new {@link DataEntry}.
      * @throws IllegalArgumentException If an unknown {@link Type} is found.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
     */
-    public static DataEntry deserialize(byte[] data, int[] offset) throws IllegalArgumentException {
-
-        Type type;
-        Object stuff;
-        int pos;
-
-        pos = offset[0];
-
-        switch(data[pos]) {
-
-            case 0:
-
-                type = Type.BYTE;
-                stuff = (byte)bytesToNum(data, pos + 1, 1);
-                offset[0] += 2;
-
-            break;
-
-            case 1: 
-
-                type = Type.SHORT;
-                stuff = (short)bytesToNum(data, pos + 1, 2);
-                offset[0] += 3;
-                
-            break;
-
-            case 2: 
-            
-                type = Type.INT;
-                stuff = (int)bytesToNum(data, pos + 1, 4);
-                offset[0] += 5;
-                
-            break;
-
-            case 3: 
-            
-                type = Type.LONG;
-                stuff = (long)bytesToNum(data, pos + 1, 8);
-                offset[0] += 9;
-                
-            break;
-
-            case 4: 
-            
-                type = Type.FLOAT;
-                stuff = Float.intBitsToFloat((int)bytesToNum(data, pos + 1, 4));
-                offset[0] += 5;
-                
-            break;
-
-            case 5: 
-            
-                type = Type.DOUBLE;
-                stuff = Double.longBitsToDouble((long)bytesToNum(data, pos + 1, 8));
-                offset[0] += 9;
-                
-            break;
-
-            case 6:
-            
-                type = Type.STRING;
-                stuff = new String(data, pos + 5, (int)bytesToNum(data, pos + 1, 4));
-                offset[0] += ((String)stuff).length() + 5;
-                
-            break;
-
-            case 7:
-            
-                type = Type.RAW;
-                stuff = new byte[(int)bytesToNum(data, pos + 1, 4)];
-                System.arraycopy(data, pos + 5, (byte[])stuff, 0, ((byte[])stuff).length);
-                offset[0] += ((byte[])stuff).length + 5;
-            
-            break;
-
-            case 8:
-            
-                type = Type.NULL;
-                stuff = null;
-                offset[0] += 1;
-            
-            break;
-
-            default: throw new IllegalArgumentException("Unknown type: " + data[pos]);
-        }
-
-        return(new DataEntry(type, stuff));
+    public static DataEntry deserialize(byte[] data, int[] offset) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        EntryReader reader = new EntryReader(ByteBuffer.wrap(data), offset[0], data.length);
+        DataEntry entry = reader.next();
+
+        offset[0] = reader.position();
+
+        return(entry);
     }
 
     //____________________________________________________________________________________________________________________________________
@@ -123,114 +50,24 @@ public record DataEntry(
     @Override
     public byte[] stream() {
 
-        byte[] bytes;
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16));
         byte[] result;
 
-        switch(data_type) {
-
-            case BYTE:
-
-                bytes = numToBytes(data, 1);
-                result = new byte[bytes.length + 1];
-                result[0] = 0;
-            
-            break;
-
-            case SHORT:
-
-                bytes = numToBytes(data, 2);
-                result = new byte[bytes.length + 1];
-                result[0] = 1;
-            
-            break;
-
-            case INT:
-
-                bytes = numToBytes(data, 4);
-                result = new byte[bytes.length + 1];
-                result[0] = 2;
-            
-            break;
-
-            case LONG:
-
-                bytes = numToBytes(data, 8);
-                result = new byte[bytes.length + 1];
-                result[0] = 3;
-            
-            break;
-
-            case FLOAT:
-
-                bytes = numToBytes(data, 4);
-                result = new byte[bytes.length + 1];
-                result[0] = 4;
-            
-            break;
-
-            case DOUBLE:
-
-                bytes = numToBytes(data, 8);
-                result = new byte[bytes.length + 1];
-                result[0] = 5;
-            
-            break;
-
-            case STRING:
-
-                bytes = ((String)data).getBytes();
-                result = new byte[bytes.length + 1];
-                result[0] = 6;
-            
-            break;
-
-            case RAW:
-
-                bytes = (byte[])data;
-                result = new byte[bytes.length + 1];
-                result[0] = 7;
-            
-            break;
-
-            default:
-
-                bytes = new byte[]{};
-                result = new byte[bytes.length + 1];
-                result[0] = 8;
-            
-            break;
-        }
-
-        System.arraycopy(bytes, 0, result, 1, bytes.length);
-        return(bytes);
-    }
-
-    //____________________________________________________________________________________________________________________________________
-
-    private byte[] numToBytes(Object data, int len) {
-
-        byte[] result = new byte[len];
-        long temp = (long)data;
-
-        for(int i = 0; i < result.length; i++) {
-
-            result[i] = (byte)(temp & (255 << i * 8) >> i * 8);
-        }
+        stream(writer);
+        result = new byte[writer.position()];
+        writer.getBuffer().get(0, result);
 
         return(result);
     }
 
-    private static long bytesToNum(byte[] data, int offset, int len) {
-
-        long result = 0;
-
-        for(int i = len - 1; i >= 0; i--) {
-
-            result = result | (data[i + offset] << (len - 1 - i) * 8);
-        }
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void stream(EntryWriter writer) {
 
-        return(result);
+        writer.putEntry(this);
     }
 
     //____________________________________________________________________________________________________________________________________
-}
\ No newline at end of file
+}
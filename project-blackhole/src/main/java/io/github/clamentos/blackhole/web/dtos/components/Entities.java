@@ -9,5 +9,6 @@ public enum Entities {
     USER,
     TAG,
     RESOURCE,
-    ECHO
+    ECHO,
+    RELATION
 }
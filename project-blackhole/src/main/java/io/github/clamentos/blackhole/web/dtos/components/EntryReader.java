@@ -0,0 +1,589 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Decoder that reads the {@link DataEntry} wire format straight from a {@link ByteBuffer}.</p>
+ * <p>Every value is read with absolute gets from the current read position, so the buffer position and limit
+ * are never touched and the buffer can be shared. The typed methods return primitives and check the type tag,
+ * throwing {@link IllegalArgumentException} on mismatch, like the {@code Converter.entryTo...} methods.</p>
+ * <p>In compact mode the entries are read as written by a compact {@link EntryWriter}:
+ * every {@link Type#NULL} of a run is read (or skipped) one at a time, like in the plain encoding.</p>
+ * <b>This class is NOT thread safe.</b>
+*/
+public class EntryReader {
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final boolean compact;
+    private int position;
+    private int nulls_left;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new reader on the given buffer region.
+     * @param buffer : The buffer to read from.
+     * @param start : The absolute position of the first entry.
+     * @param end : The absolute position after the last entry.
+    */
+    public EntryReader(ByteBuffer buffer, int start, int end) {
+
+        this(buffer, start, end, false);
+    }
+
+    /**
+     * Instantiates a new reader on the given buffer region.
+     * @param buffer : The buffer to read from.
+     * @param start : The absolute position of the first entry.
+     * @param end : The absolute position after the last entry.
+     * @param compact : {@code true} if the entries use the compact encoding, {@code false} otherwise.
+    */
+    public EntryReader(ByteBuffer buffer, int start, int end, boolean compact) {
+
+        this.buffer = buffer;
+        this.end = end;
+        this.compact = compact;
+        position = start;
+        nulls_left = 0;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return {@code true} if there are more entries to read, {@code false} otherwise.
+    */
+    public boolean hasNext() {
+
+        return(position < end);
+    }
+
+    /**
+     * Get the type of the next entry without consuming it.
+     * @return The type of the next entry.
+     * @throws IllegalArgumentException If the type tag is unknown.
+     * @throws IndexOutOfBoundsException If there are no more entries.
+    */
+    public Type peekType() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return(typeOf(get(position)));
+    }
+
+    /**
+     * Reads the next entry as a boxed {@link DataEntry}.
+     * @return The next entry.
+     * @throws IllegalArgumentException If the type tag is unknown.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public DataEntry next() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Type type = peekType();
+
+        switch(type) {
+
+            case BYTE: return(new DataEntry(type, readByte()));
+            case SHORT: return(new DataEntry(type, readShort()));
+            case INT: return(new DataEntry(type, readInt()));
+            case LONG: return(new DataEntry(type, readLong()));
+            case FLOAT: return(new DataEntry(type, readFloat()));
+            case DOUBLE: return(new DataEntry(type, readDouble()));
+            case STRING: return(new DataEntry(type, readString()));
+            case RAW: return(new DataEntry(type, readRaw()));
+
+            default: skip(); return(new DataEntry(Type.NULL, null));
+        }
+    }
+
+    /**
+     * Skips the next entry.
+     * @throws IllegalArgumentException If the type tag is unknown.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public void skip() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Type type = peekType();
+
+        if(compact == true) {
+
+            switch(type) {
+
+                case SHORT: case INT: case LONG: position += 1; varint(); break;
+                case STRING: case RAW: readSpan(); break;
+                case NULL: readNull(); break;
+
+                default: skipFixed(type); break;
+            }
+
+            return;
+        }
+
+        skipFixed(type);
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#STRING} or {@link Type#RAW}, without copying its value.
+     * @return The absolute position of the value in the upper 32 bits and its length in the lower 32 bits.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public long readSpan() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Type type = peekType();
+        int length;
+
+        if(type != Type.STRING && type != Type.RAW) {
+
+            throw new IllegalArgumentException("Unexpected type. Expected: STRING or RAW, got: " + type.toString());
+        }
+
+        length = lengthPrefix();
+        position += length;
+
+        return(((long)(position - length) << 32) | length);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Reads the next entry, which must be a {@link Type#BYTE}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public byte readByte() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        expect(Type.BYTE);
+        position += 2;
+        checkBounds();
+
+        return(buffer.get(position - 1));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#SHORT}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public short readShort() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        long value;
+
+        expect(Type.SHORT);
+
+        if(compact == true) {
+
+            position += 1;
+            value = zigzag(varint());
+
+            if(value != (short)value) {
+
+                throw new IllegalArgumentException("Value out of range for SHORT: " + value);
+            }
+
+            return((short)value);
+        }
+
+        position += 3;
+        checkBounds();
+
+        return(buffer.getShort(position - 2));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#INT}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public int readInt() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        long value;
+
+        expect(Type.INT);
+
+        if(compact == true) {
+
+            position += 1;
+            value = zigzag(varint());
+
+            if(value != (int)value) {
+
+                throw new IllegalArgumentException("Value out of range for INT: " + value);
+            }
+
+            return((int)value);
+        }
+
+        position += 5;
+        checkBounds();
+
+        return(buffer.getInt(position - 4));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#LONG}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public long readLong() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        expect(Type.LONG);
+
+        if(compact == true) {
+
+            position += 1;
+            return(zigzag(varint()));
+        }
+
+        position += 9;
+        checkBounds();
+
+        return(buffer.getLong(position - 8));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#FLOAT}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public float readFloat() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        expect(Type.FLOAT);
+        position += 5;
+        checkBounds();
+
+        return(buffer.getFloat(position - 4));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#DOUBLE}.
+     * @return The value.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public double readDouble() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        expect(Type.DOUBLE);
+        position += 9;
+        checkBounds();
+
+        return(buffer.getDouble(position - 8));
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#STRING} or {@link Type#NULL}.
+     * @return The value, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public String readString() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        String value;
+        int length;
+
+        if(readNull() == true) {
+
+            return(null);
+        }
+
+        expect(Type.STRING);
+        length = lengthPrefix();
+        position += length;
+
+        if(buffer.hasArray() == true) {
+
+            value = new String(buffer.array(), buffer.arrayOffset() + position - length, length, StandardCharsets.UTF_8);
+        }
+
+        else {
+
+            value = StandardCharsets.UTF_8.decode(buffer.slice(position - length, length)).toString();
+        }
+
+        return(value);
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#RAW} or {@link Type#NULL}.
+     * @return A copy of the value, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public byte[] readRaw() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        byte[] value;
+        int length;
+
+        if(readNull() == true) {
+
+            return(null);
+        }
+
+        expect(Type.RAW);
+        length = lengthPrefix();
+        position += length;
+
+        value = new byte[length];
+        buffer.get(position - length, value);
+
+        return(value);
+    }
+
+    /**
+     * Consumes the next entry only if it's a {@link Type#NULL}.
+     * @return {@code true} if the entry was a {@link Type#NULL} and was consumed, {@code false} otherwise.
+     * @throws IllegalArgumentException If the type tag is unknown.
+     * @throws IndexOutOfBoundsException If there are no more entries.
+    */
+    public boolean readNull() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        if(peekType() == Type.NULL) {
+
+            if(compact == false) {
+
+                position += 1;
+                return(true);
+            }
+
+            // the run is consumed one null at a time, the tag is left in place until the last one
+            if(nulls_left == 0) {
+
+                nulls_left = buffer.get(check(position + 1));
+
+                if(nulls_left < 1) {
+
+                    throw new IllegalArgumentException("Illegal NULL run length: " + nulls_left);
+                }
+            }
+
+            if(--nulls_left == 0) {
+
+                position += 2;
+            }
+
+            return(true);
+        }
+
+        return(false);
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#BYTE} or {@link Type#NULL}.
+     * @return The value, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public Byte readByteNullable() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((readNull() == true) ? null : readByte());
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#INT} or {@link Type#NULL}.
+     * @return The value, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public Integer readIntNullable() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((readNull() == true) ? null : readInt());
+    }
+
+    /**
+     * Reads the next entry, which must be a {@link Type#LONG} or {@link Type#NULL}.
+     * @return The value, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If the entry is incomplete.
+    */
+    public Long readLongNullable() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((readNull() == true) ? null : readLong());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return The current read position.
+    */
+    public int position() {
+
+        return(position);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // read a single byte, checking the region end
+    private byte get(int index) throws IndexOutOfBoundsException {
+
+        if(index >= end) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + index + " >= " + end);
+        }
+
+        return(buffer.get(index));
+    }
+
+    // skip an entry of the plain encoding, or of a type that the compact encoding doesn't change
+    private void skipFixed(Type type) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        switch(type) {
+
+            case BYTE: position += 2; break;
+            case SHORT: position += 3; break;
+            case INT: case FLOAT: position += 5; break;
+            case LONG: case DOUBLE: position += 9; break;
+            case STRING: case RAW: position += 5 + length(position + 1); break;
+
+            default: position += 1; break;
+        }
+
+        checkBounds();
+    }
+
+    // move past the tag and the length prefix of a variable size entry, returns the validated length
+    private int lengthPrefix() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        int length;
+
+        if(compact == true) {
+
+            position += 1;
+            return(length());
+        }
+
+        length = length(position + 1);
+        position += 5;
+
+        return(length);
+    }
+
+    // read and validate a compact varint length at the current position, moving past it
+    private int length() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        long length = varint();
+
+        if(length < 0 || length > Integer.MAX_VALUE) {
+
+            throw new IllegalArgumentException("Illegal entry length: " + length);
+        }
+
+        if(length > end - position) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + length + " bytes declared, " + (end - position) + " available");
+        }
+
+        return((int)length);
+    }
+
+    // read an unsigned LEB128 varint at the current position, moving past it
+    private long varint() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        long value = 0;
+        byte current;
+
+        for(int shift = 0; shift < 64; shift += 7) {
+
+            current = buffer.get(check(position++));
+            value |= (long)(current & 0x7F) << shift;
+
+            if(current >= 0) {
+
+                return(value);
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint, more than 10 bytes");
+    }
+
+    // inverse of the zig-zag mapping used by the writer
+    private static long zigzag(long value) {
+
+        return((value >>> 1) ^ -(value & 1));
+    }
+
+    // make sure the index is inside the region, returns it for chaining
+    private int check(int index) throws IndexOutOfBoundsException {
+
+        if(index >= end) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + index + " >= " + end);
+        }
+
+        return(index);
+    }
+
+    // read and validate the length of a variable size entry
+    private int length(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        int length;
+
+        if(index + 4 > end) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + (index + 4) + " > " + end);
+        }
+
+        length = buffer.getInt(index);
+
+        if(length < 0) {
+
+            throw new IllegalArgumentException("Negative entry length: " + length);
+        }
+
+        // checked here, adding it to the position could overflow
+        if(length > end - index - 4) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + length + " bytes declared, " + (end - index - 4) + " available");
+        }
+
+        return(length);
+    }
+
+    // make sure the entry just consumed was complete
+    private void checkBounds() throws IndexOutOfBoundsException {
+
+        if(position > end) {
+
+            throw new IndexOutOfBoundsException("Entry out of bounds: " + position + " > " + end);
+        }
+    }
+
+    // check the type of the next entry
+    private void expect(Type expected) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Type type = peekType();
+
+        if(type != expected) {
+
+            throw new IllegalArgumentException("Unexpected type. Expected: " + expected.toString() + ", got: " + type.toString());
+        }
+    }
+
+    // map the wire tag to the type
+    private static Type typeOf(byte tag) throws IllegalArgumentException {
+
+        switch(tag) {
+
+            case 0: return(Type.BYTE);
+            case 1: return(Type.SHORT);
+            case 2: return(Type.INT);
+            case 3: return(Type.LONG);
+            case 4: return(Type.FLOAT);
+            case 5: return(Type.DOUBLE);
+            case 6: return(Type.STRING);
+            case 7: return(Type.RAW);
+            case 8: return(Type.NULL);
+
+            default: throw new IllegalArgumentException("Unknown type: " + tag);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
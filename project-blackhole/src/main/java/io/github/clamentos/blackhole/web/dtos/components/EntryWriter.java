@@ -0,0 +1,581 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+
+import java.nio.ByteBuffer;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Encoder that writes the {@link DataEntry} wire format straight into a {@link ByteBuffer}.</p>
+ * <p>Every value is written with absolute puts at the current write position, so the buffer position and limit
+ * are never touched and no intermediate array or boxed object is created.
+ * Strings are encoded as UTF-8 directly into the buffer. Numbers are big endian, like the frame length prefix.</p>
+ * <p>If the buffer is too small, it's replaced with one twice as big (of the same kind, heap or direct).
+ * When the writer leases its buffers from a {@link BufferPool}, the replaced buffers are returned to it
+ * and the last one must be released by whoever ends up owning it.
+ * The writer can be reused after {@link EntryWriter#reset}.</p>
+ * <p>In compact mode (see {@link FrameFlags#COMPACT}), {@link Type#SHORT}, {@link Type#INT} and {@link Type#LONG}
+ * values are written as zig-zag varints, string and raw lengths as unsigned varints, and consecutive
+ * {@link Type#NULL} entries are merged into a single tag followed by the length of the run (at most 127, so one byte).
+ * The other types are unchanged.</p>
+ * <b>This class is NOT thread safe.</b>
+*/
+public class EntryWriter {
+
+    private static final int MAX_NULL_RUN = 127;
+
+    private final BufferPool pool;
+    private final boolean compact;
+    private ByteBuffer buffer;
+    private int position;
+    private int null_run_end;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Instantiates a new writer on the given buffer, starting from the beginning.
+     * @param buffer : The buffer to write into.
+    */
+    public EntryWriter(ByteBuffer buffer) {
+
+        this(buffer, false);
+    }
+
+    /**
+     * Instantiates a new writer on the given buffer, starting from the beginning.
+     * @param buffer : The buffer to write into.
+     * @param compact : {@code true} to use the compact encoding, {@code false} otherwise.
+    */
+    public EntryWriter(ByteBuffer buffer, boolean compact) {
+
+        pool = null;
+        this.compact = compact;
+        this.buffer = buffer;
+        position = 0;
+        null_run_end = -1;
+    }
+
+    /**
+     * Instantiates a new writer on a buffer leased from the pool, starting from the beginning.
+     * @param pool : The pool to lease the buffers from.
+     * @param size : The initial minimum capacity.
+    */
+    public EntryWriter(BufferPool pool, int size) {
+
+        this(pool, size, false);
+    }
+
+    /**
+     * Instantiates a new writer on a buffer leased from the pool, starting from the beginning.
+     * @param pool : The pool to lease the buffers from.
+     * @param size : The initial minimum capacity.
+     * @param compact : {@code true} to use the compact encoding, {@code false} otherwise.
+    */
+    public EntryWriter(BufferPool pool, int size, boolean compact) {
+
+        this.pool = pool;
+        this.compact = compact;
+        buffer = pool.acquire(size);
+        position = 0;
+        null_run_end = -1;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Writes a {@link Type#BYTE} entry.
+     * @param value : The value.
+    */
+    public void putByte(byte value) {
+
+        ensure(2);
+        buffer.put(position, (byte)Type.BYTE.getVal());
+        buffer.put(position + 1, value);
+        position += 2;
+    }
+
+    /**
+     * Writes a {@link Type#SHORT} entry.
+     * @param value : The value.
+    */
+    public void putShort(short value) {
+
+        if(compact == true) {
+
+            putVarintEntry(Type.SHORT, value);
+            return;
+        }
+
+        ensure(3);
+        buffer.put(position, (byte)Type.SHORT.getVal());
+        buffer.putShort(position + 1, value);
+        position += 3;
+    }
+
+    /**
+     * Writes a {@link Type#INT} entry.
+     * @param value : The value.
+    */
+    public void putInt(int value) {
+
+        if(compact == true) {
+
+            putVarintEntry(Type.INT, value);
+            return;
+        }
+
+        ensure(5);
+        buffer.put(position, (byte)Type.INT.getVal());
+        buffer.putInt(position + 1, value);
+        position += 5;
+    }
+
+    /**
+     * Writes a {@link Type#LONG} entry.
+     * @param value : The value.
+    */
+    public void putLong(long value) {
+
+        if(compact == true) {
+
+            putVarintEntry(Type.LONG, value);
+            return;
+        }
+
+        ensure(9);
+        buffer.put(position, (byte)Type.LONG.getVal());
+        buffer.putLong(position + 1, value);
+        position += 9;
+    }
+
+    /**
+     * Writes a {@link Type#FLOAT} entry.
+     * @param value : The value.
+    */
+    public void putFloat(float value) {
+
+        ensure(5);
+        buffer.put(position, (byte)Type.FLOAT.getVal());
+        buffer.putFloat(position + 1, value);
+        position += 5;
+    }
+
+    /**
+     * Writes a {@link Type#DOUBLE} entry.
+     * @param value : The value.
+    */
+    public void putDouble(double value) {
+
+        ensure(9);
+        buffer.put(position, (byte)Type.DOUBLE.getVal());
+        buffer.putDouble(position + 1, value);
+        position += 9;
+    }
+
+    /**
+     * Writes a {@link Type#STRING} entry, or a {@link Type#NULL} entry if the value is {@code null}.
+     * @param value : The value.
+    */
+    public void putString(String value) {
+
+        int length_position;
+
+        if(value == null) {
+
+            putNull();
+            return;
+        }
+
+        if(compact == true) {
+
+            // the varint length must be known before the bytes, so it's computed with a first pass
+            int length = utf8Length(value);
+
+            ensure(6 + length);
+            buffer.put(position, (byte)Type.STRING.getVal());
+            position += 1;
+            putVarint(length);
+            position = encode(value, position);
+
+            return;
+        }
+
+        // UTF-8 takes at most 3 bytes per char (surrogate pairs take 4 bytes for 2 chars)
+        ensure(5 + value.length() * 3);
+        buffer.put(position, (byte)Type.STRING.getVal());
+        length_position = position + 1;
+        position = encode(value, position + 5);
+
+        buffer.putInt(length_position, position - length_position - 4);
+    }
+
+    /**
+     * Writes a {@link Type#RAW} entry, or a {@link Type#NULL} entry if the value is {@code null}.
+     * @param value : The value.
+    */
+    public void putRaw(byte[] value) {
+
+        if(value == null) {
+
+            putNull();
+            return;
+        }
+
+        if(compact == true) {
+
+            ensure(6 + value.length);
+            buffer.put(position, (byte)Type.RAW.getVal());
+            position += 1;
+            putVarint(value.length);
+            buffer.put(position, value);
+            position += value.length;
+
+            return;
+        }
+
+        ensure(5 + value.length);
+        buffer.put(position, (byte)Type.RAW.getVal());
+        buffer.putInt(position + 1, value.length);
+        buffer.put(position + 5, value);
+        position += 5 + value.length;
+    }
+
+    /**
+     * Writes a {@link Type#NULL} entry.
+    */
+    public void putNull() {
+
+        byte run;
+
+        if(compact == true) {
+
+            // extend the run that ends right here, if it's not full
+            if(null_run_end == position && (run = buffer.get(position - 1)) < MAX_NULL_RUN) {
+
+                buffer.put(position - 1, (byte)(run + 1));
+                return;
+            }
+
+            ensure(2);
+            buffer.put(position, (byte)Type.NULL.getVal());
+            buffer.put(position + 1, (byte)1);
+            position += 2;
+            null_run_end = position;
+
+            return;
+        }
+
+        ensure(1);
+        buffer.put(position, (byte)Type.NULL.getVal());
+        position += 1;
+    }
+
+    /**
+     * Writes a {@link Type#INT} entry, or a {@link Type#NULL} entry if the value is {@code null}.
+     * @param value : The value.
+    */
+    public void putIntNullable(Integer value) {
+
+        if(value == null) putNull();
+        else putInt(value);
+    }
+
+    /**
+     * Writes a {@link Type#LONG} entry, or a {@link Type#NULL} entry if the value is {@code null}.
+     * @param value : The value.
+    */
+    public void putLongNullable(Long value) {
+
+        if(value == null) putNull();
+        else putLong(value);
+    }
+
+    /**
+     * Writes a {@link Type#BYTE} entry, or a {@link Type#NULL} entry if the value is {@code null}.
+     * @param value : The value.
+    */
+    public void putByteNullable(Byte value) {
+
+        if(value == null) putNull();
+        else putByte(value);
+    }
+
+    /**
+     * Writes the given entry.
+     * @param entry : The entry.
+    */
+    public void putEntry(DataEntry entry) {
+
+        switch(entry.data_type()) {
+
+            case BYTE: putByte((byte)entry.data()); break;
+            case SHORT: putShort((short)entry.data()); break;
+            case INT: putInt((int)entry.data()); break;
+            case LONG: putLong((long)entry.data()); break;
+            case FLOAT: putFloat((float)entry.data()); break;
+            case DOUBLE: putDouble((double)entry.data()); break;
+            case STRING: putString((String)entry.data()); break;
+            case RAW: putRaw((byte[])entry.data()); break;
+
+            default: putNull(); break;
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Writes raw bytes, without any type tag. Used for headers.
+     * @param value : The byte.
+    */
+    public void putRawByte(byte value) {
+
+        ensure(1);
+        buffer.put(position, value);
+        position += 1;
+    }
+
+    /**
+     * Writes a raw big endian int, without any type tag. Used for headers.
+     * @param value : The int.
+    */
+    public void putRawInt(int value) {
+
+        ensure(4);
+        buffer.putInt(position, value);
+        position += 4;
+    }
+
+    /**
+     * Overwrites a raw big endian int at the given position, without moving the write position.
+     * Used to fill the length prefixes once the payload is written.
+     * @param index : The absolute position.
+     * @param value : The int.
+    */
+    public void setRawInt(int index, int value) {
+
+        buffer.putInt(index, value);
+    }
+
+    /**
+     * Overwrites a raw byte at the given position, without moving the write position.
+     * @param index : The absolute position.
+     * @param value : The byte.
+    */
+    public void setRawByte(int index, byte value) {
+
+        buffer.put(index, value);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * @return {@code true} if the writer uses the compact encoding, {@code false} otherwise.
+    */
+    public boolean isCompact() {
+
+        return(compact);
+    }
+
+    /**
+     * @return The current write position, which is also the number of bytes written so far.
+    */
+    public int position() {
+
+        return(position);
+    }
+
+    /**
+     * Get the buffer with the written bytes. The buffer can change when it grows.
+     * @return The current buffer (position and limit are not updated by the writer).
+    */
+    public ByteBuffer getBuffer() {
+
+        return(buffer);
+    }
+
+    /**
+     * Get the written bytes, ready to be sent.
+     * The position of the buffer is set to 0 and the limit to the current write position, no bytes are copied.
+     * Nothing more can be written until {@link EntryWriter#reset} is called.
+     * @return The buffer itself, so that it can be returned to its pool once sent.
+    */
+    public ByteBuffer flip() {
+
+        return(buffer.limit(position).position(0));
+    }
+
+    /**
+     * Moves the write position back to the beginning, so that the buffer can be reused.
+    */
+    public void reset() {
+
+        buffer.clear();
+        position = 0;
+        null_run_end = -1;
+    }
+
+    /**
+     * Return the buffer to its pool, if any. The writer must not be used anymore.
+    */
+    public void release() {
+
+        if(pool != null) {
+
+            pool.release(buffer);
+        }
+
+        buffer = null;
+    }
+
+    /**
+     * Moves the write position back, discarding everything written after it.
+     * @param position : The new write position, not greater than the current one.
+     * @throws IllegalArgumentException If {@code position} is negative or ahead of the current one.
+    */
+    public void truncate(int position) throws IllegalArgumentException {
+
+        if(position < 0 || position > this.position) {
+
+            throw new IllegalArgumentException("Illegal truncate position: " + position + ", current: " + this.position);
+        }
+
+        this.position = position;
+
+        // the run may have been cut, the bytes after the position will be overwritten
+        if(null_run_end > position) {
+
+            null_run_end = -1;
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // tag followed by the zig-zag varint of the value
+    private void putVarintEntry(Type type, long value) {
+
+        ensure(11);
+        buffer.put(position, (byte)type.getVal());
+        position += 1;
+        putVarint((value << 1) ^ (value >> 63));
+    }
+
+    // unsigned LEB128, 7 bits per byte, least significant group first. The space must be ensured by the caller
+    private void putVarint(long value) {
+
+        while((value & ~0x7FL) != 0) {
+
+            buffer.put(position++, (byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put(position++, (byte)value);
+    }
+
+    // number of bytes of the UTF-8 encoding, consistent with encode
+    private static int utf8Length(String value) {
+
+        int length = 0;
+        int ch;
+
+        for(int i = 0; i < value.length(); i++) {
+
+            ch = value.charAt(i);
+
+            if(ch < 0x80) length += 1;
+            else if(ch < 0x800) length += 2;
+
+            else if(Character.isHighSurrogate((char)ch) == true && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1)) == true) {
+
+                length += 4;
+                i++;
+            }
+
+            else if(Character.isSurrogate((char)ch) == true) length += 1;
+            else length += 3;
+        }
+
+        return(length);
+    }
+
+    // encode the string as UTF-8 starting at the given index, returns the index after the last byte.
+    // The space must be ensured by the caller
+    private int encode(String value, int index) {
+
+        int ch;
+
+        for(int i = 0; i < value.length(); i++) {
+
+            ch = value.charAt(i);
+
+            if(ch < 0x80) {
+
+                buffer.put(index++, (byte)ch);
+            }
+
+            else if(ch < 0x800) {
+
+                buffer.put(index++, (byte)(0xC0 | (ch >> 6)));
+                buffer.put(index++, (byte)(0x80 | (ch & 0x3F)));
+            }
+
+            else if(Character.isHighSurrogate((char)ch) == true && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1)) == true) {
+
+                ch = Character.toCodePoint((char)ch, value.charAt(++i));
+
+                buffer.put(index++, (byte)(0xF0 | (ch >> 18)));
+                buffer.put(index++, (byte)(0x80 | ((ch >> 12) & 0x3F)));
+                buffer.put(index++, (byte)(0x80 | ((ch >> 6) & 0x3F)));
+                buffer.put(index++, (byte)(0x80 | (ch & 0x3F)));
+            }
+
+            // lone surrogates are replaced with '?', like String.getBytes does
+            else if(Character.isSurrogate((char)ch) == true) {
+
+                buffer.put(index++, (byte)'?');
+            }
+
+            else {
+
+                buffer.put(index++, (byte)(0xE0 | (ch >> 12)));
+                buffer.put(index++, (byte)(0x80 | ((ch >> 6) & 0x3F)));
+                buffer.put(index++, (byte)(0x80 | (ch & 0x3F)));
+            }
+        }
+
+        return(index);
+    }
+
+    // grow the buffer if the next write doesn't fit
+    private void ensure(int amount) {
+
+        ByteBuffer bigger;
+        int capacity;
+
+        if(position + amount > buffer.capacity()) {
+
+            capacity = Math.max(buffer.capacity() * 2, position + amount);
+
+            if(pool != null) {
+
+                bigger = pool.acquire(capacity);
+                bigger.put(0, buffer, 0, position);
+                pool.release(buffer);
+            }
+
+            else {
+
+                bigger = (buffer.isDirect() == true) ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+                bigger.put(0, buffer, 0, position);
+            }
+
+            buffer = bigger;
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,243 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.common.framework.CompressionCodec;
+import io.github.clamentos.blackhole.common.utility.DeflateCodec;
+import io.github.clamentos.blackhole.common.utility.Lz4Codec;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p><b>This class is a singleton.</b></p>
+ * <p>Compressor of the entries section of request and response frames (see {@link FrameFlags#COMPRESSED}).</p>
+ * <p>The header of a frame (length, flags, status or method, correlation and session ids) is never compressed,
+ * so it can always be inspected without decompressing anything. The entries are replaced by:
+ * {@code [codec id: 1 byte][decompressed length: 4 bytes][compressed block]}.</p>
+ * <p>Responses are compressed with the codec selected by {@link ConfigurationProvider#COMPRESSION_CODEC},
+ * only if their entries are at least {@link ConfigurationProvider#COMPRESSION_THRESHOLD} bytes long
+ * and only if that actually saves space. Requests can use any registered codec.
+ * Other codecs can be plugged in with {@link FrameCompressor#register}.</p>
+*/
+public class FrameCompressor {
+
+    private static volatile FrameCompressor INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private final Logger LOGGER;
+
+    private final CompressionCodec[] codecs;
+    private final String codec_name;
+    private final int threshold;
+    private volatile CompressionCodec codec;
+
+    private final LongAdder bytes_in;
+    private final LongAdder bytes_out;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private FrameCompressor(String codec_name, int level, int threshold) {
+
+        LOGGER = Logger.getInstance();
+
+        codecs = new CompressionCodec[16];
+        this.codec_name = codec_name;
+        this.threshold = threshold;
+
+        bytes_in = new LongAdder();
+        bytes_out = new LongAdder();
+
+        // the configured codec is selected by register, when the name matches
+        register(new DeflateCodec(level, ConfigurationProvider.NUM_REQUEST_WORKERS * 2));
+        register(new Lz4Codec(ConfigurationProvider.NUM_REQUEST_WORKERS * 2));
+
+        if(codec == null) {
+
+            codec = codecs[DeflateCodec.ID];
+            LOGGER.log("Unknown compression codec " + codec_name + ", " + codec.getName() + " will be used", LogLevel.WARNING);
+        }
+
+        LOGGER.log("Frame compressor instantiated with codec " + codec.getName(), LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the FrameCompressor instance.
+     * If the instance doesn't exist, create it with the values configured in
+     * {@link ConfigurationProvider}.
+     * @return The FrameCompressor instance.
+    */
+    public static FrameCompressor getInstance() {
+
+        FrameCompressor temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new FrameCompressor(
+
+                    ConfigurationProvider.COMPRESSION_CODEC,
+                    ConfigurationProvider.COMPRESSION_LEVEL,
+                    ConfigurationProvider.COMPRESSION_THRESHOLD
+                );
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Register a codec, replacing the one with the same id, if any.
+     * If the codec name matches {@link ConfigurationProvider#COMPRESSION_CODEC}, responses will use it from now on.
+     * @param codec : The codec to register.
+     * @throws IllegalArgumentException If the codec id is outside the range [0, 15].
+    */
+    public void register(CompressionCodec codec) throws IllegalArgumentException {
+
+        if(codec.getId() < 0 || codec.getId() >= codecs.length) {
+
+            throw new IllegalArgumentException("Illegal codec id: " + codec.getId());
+        }
+
+        lock.lock();
+        codecs[codec.getId()] = codec;
+
+        if(codec.getName().equals(codec_name) == true) {
+
+            this.codec = codec;
+        }
+
+        lock.unlock();
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Compress the entries of a complete frame, if they are big enough.
+     * If the frame is compressed, the original buffer is returned to the {@link BufferPool}
+     * and a pooled one is returned instead, with the {@link FrameFlags#COMPRESSED} flag and the length prefix updated.
+     * @param frame : The frame, from 0 to its limit, including the 4 byte length prefix.
+     * @param flags_index : The absolute position of the flags byte.
+     * @param entries_start : The absolute position of the first entry, right after the header.
+     * @return The frame to send, from 0 to its limit.
+    */
+    public ByteBuffer compress(ByteBuffer frame, int flags_index, int entries_start) {
+
+        CompressionCodec encoder = codec;
+        int length = frame.limit() - entries_start;
+        ByteBuffer target;
+        int written;
+
+        if(length < threshold || length <= 5) {
+
+            return(frame);
+        }
+
+        // only worth it if smaller than the original, so the target doesn't need to be any bigger
+        target = BufferPool.getInstance().acquire(entries_start + length);
+        written = encoder.compress(frame.slice(entries_start, length), target.slice(entries_start + 5, length - 5));
+
+        if(written < 0) {
+
+            BufferPool.getInstance().release(target);
+            return(frame);
+        }
+
+        target.put(0, frame, 0, entries_start);
+        target.put(flags_index, (byte)(frame.get(flags_index) | FrameFlags.COMPRESSED));
+        target.put(entries_start, encoder.getId());
+        target.putInt(entries_start + 1, length);
+        target.putInt(0, entries_start + 5 + written - 4);
+
+        bytes_in.add(length);
+        bytes_out.add(written + 5);
+        BufferPool.getInstance().release(frame);
+
+        return(target.limit(entries_start + 5 + written).position(0));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Decompress the entries section of a frame.
+     * The decompressed entries are placed in a new heap buffer, not leased from the pool,
+     * because they must live as long as the request that points into them.
+     * @param buffer : The buffer holding the compressed section.
+     * @param start : The absolute position of the compressed section (the codec id).
+     * @param end : The absolute position after the compressed section.
+     * @param max_length : The maximum accepted decompressed length.
+     * @return The decompressed entries, from 0 to the limit.
+     * @throws IllegalArgumentException If the codec is unknown, the declared length is illegal or the block is malformed.
+     * @throws IndexOutOfBoundsException If the section is too short.
+    */
+    public ByteBuffer decompress(ByteBuffer buffer, int start, int end, int max_length) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        CompressionCodec decoder;
+        ByteBuffer target;
+        int length;
+
+        if(end - start < 5) {
+
+            throw new IndexOutOfBoundsException("Compressed section too short: " + (end - start) + " bytes");
+        }
+
+        decoder = (buffer.get(start) >= 0 && buffer.get(start) < codecs.length) ? codecs[buffer.get(start)] : null;
+
+        if(decoder == null) {
+
+            throw new IllegalArgumentException("Unknown compression codec: " + buffer.get(start));
+        }
+
+        length = buffer.getInt(start + 1);
+
+        if(length < 0 || length > max_length) {
+
+            throw new IllegalArgumentException("Illegal decompressed length: " + length + ", max: " + max_length);
+        }
+
+        target = ByteBuffer.allocate(length);
+        decoder.decompress(buffer.slice(start + 5, end - start - 5), target);
+
+        return(target.clear());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The total size of the entries of the compressed frames, before compression.
+    */
+    public long getBytesIn() {
+
+        return(bytes_in.sum());
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The total size of the entries of the compressed frames, after compression.
+    */
+    public long getBytesOut() {
+
+        return(bytes_out.sum());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,28 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+/**
+ * <p>Simple class that holds the layout of the first byte of every request and response frame.</p>
+ * The lower nibble holds the value (the {@link Entities} id for requests,
+ * the {@link ResponseStatus} id for responses), while the upper nibble holds the flags.
+ * <ul>
+ *     <li>CORRELATED: a 4 byte correlation id follows the header, the response will echo it.</li>
+ *     <li>COMPACT: the entries use the compact encoding (zig-zag varint integers, varint lengths
+ *         and run-length encoded nulls, see {@link EntryWriter}). A compact request gets a compact response,
+ *         with the flag set, while clients that never set it keep getting the plain encoding.</li>
+ *     <li>COMPRESSED: the entries section is compressed, see {@link FrameCompressor}.</li>
+ *     <li>ACCEPTS_COMPRESSED: requests only, the client can handle compressed responses.
+ *         Responses are never compressed for clients that don't set it. Same bit as CONTINUES.</li>
+ *     <li>CONTINUES: responses only, the frame is a chunk and more chunks of the same response will follow.
+ *         The entries of all the chunks must be concatenated, the last chunk doesn't have the flag.
+ *         The status of the last chunk is the final one.</li>
+ * </ul>
+*/
+public class FrameFlags {
+
+    public static final int VALUE_MASK = 0b0000_1111;
+    public static final int CORRELATED = 0b1000_0000;
+    public static final int COMPACT = 0b0100_0000;
+    public static final int COMPRESSED = 0b0010_0000;
+    public static final int ACCEPTS_COMPRESSED = 0b0001_0000;
+    public static final int CONTINUES = 0b0001_0000;
+}
@@ -0,0 +1,433 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+//________________________________________________________________________________________________________________________________________
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Columnar representation of the entries of a request.</p>
+ * <p>Instead of one boxed {@link DataEntry} per value, the entries are kept in two parallel arrays:
+ * the type of every entry and a {@code long} slot holding its value. Integral types are stored sign extended,
+ * floating point types as their raw bits, while {@link Type#STRING} and {@link Type#RAW} entries
+ * store the offset and length of their bytes in the original buffer, so they are decoded only if accessed.</p>
+ * <p>The typed accessors check the type exactly like the {@code Converter.entryTo...} methods,
+ * throwing {@link IllegalArgumentException} on mismatch.</p>
+ * <p>Entries are decoded lazily, in order: an indexed access decodes (and validates) only the entries
+ * up to the requested one, so a request rejected before looking at its data costs nothing
+ * and a malformed entry is only detected if the servlet reads that far. Use {@link Payload#size}
+ * or {@link Payload#decode} to validate everything up front.</p>
+ * <p>Since strings and raw values point into the request buffer, the payload is only valid while the
+ * request is being handled: anything that must outlive it has to be extracted before.</p>
+ * <b>This class is NOT thread safe.</b>
+*/
+public class Payload implements Iterable<DataEntry> {
+
+    private static final Type[] TYPES = Type.values();
+
+    private final ByteBuffer buffer;
+    private EntryReader reader;
+    private byte[] types;
+    private long[] values;
+    private int decoded;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private Payload(ByteBuffer buffer, int start, int end, boolean compact) {
+
+        this.buffer = buffer;
+        reader = (start < end) ? new EntryReader(buffer, start, end, compact) : null;
+
+        // every entry takes at least 1 byte, start small and grow instead of sizing for the worst case
+        types = new byte[Math.max(0, Math.min(end - start, 16))];
+        values = new long[types.length];
+        decoded = 0;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Creates a lazy payload over the given buffer region. Nothing is decoded until accessed.
+     * @param buffer : The buffer holding the entries.
+     * @param start : The absolute position of the first entry.
+     * @param end : The absolute position after the last entry.
+     * @return The never null payload.
+    */
+    public static Payload wrap(ByteBuffer buffer, int start, int end) {
+
+        return(new Payload(buffer, start, end, false));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Creates a lazy payload over the given buffer region. Nothing is decoded until accessed.
+     * @param buffer : The buffer holding the entries.
+     * @param start : The absolute position of the first entry.
+     * @param end : The absolute position after the last entry.
+     * @param compact : {@code true} if the entries use the compact encoding (see {@link FrameFlags#COMPACT}).
+     * @return The never null payload.
+    */
+    public static Payload wrap(ByteBuffer buffer, int start, int end, boolean compact) {
+
+        return(new Payload(buffer, start, end, compact));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Decodes all the entries in the given buffer region, validating them.
+     * @param buffer : The buffer holding the entries.
+     * @param start : The absolute position of the first entry.
+     * @param end : The absolute position after the last entry.
+     * @return The never null, fully decoded, payload.
+     * @throws IllegalArgumentException If an entry has an unknown type or a negative length.
+     * @throws IndexOutOfBoundsException If an entry is incomplete.
+    */
+    public static Payload decode(ByteBuffer buffer, int start, int end) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Payload payload = new Payload(buffer, start, end, false);
+
+        payload.size();
+        return(payload);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Get the number of entries. This decodes all of them.
+     * @return The number of entries.
+     * @throws IllegalArgumentException If an entry has an unknown type or a negative length.
+     * @throws IndexOutOfBoundsException If an entry is incomplete.
+    */
+    public int size() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        while(decodeNext() == true);
+        return(decoded);
+    }
+
+    /**
+     * Checks if the entry exists, decoding the entries up to it.
+     * @param index : The index of the entry.
+     * @return {@code true} if the entry exists, {@code false} otherwise.
+     * @throws IllegalArgumentException If an entry has an unknown type or a negative length.
+     * @throws IndexOutOfBoundsException If an entry is incomplete.
+    */
+    public boolean has(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        while(decoded <= index && decodeNext() == true);
+        return(index >= 0 && index < decoded);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The entries are decoded and boxed while iterating.
+    */
+    @Override
+    public Iterator<DataEntry> iterator() {
+
+        return(new Iterator<DataEntry>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+
+                return(has(next));
+            }
+
+            @Override
+            public DataEntry next() {
+
+                if(has(next) == false) {
+
+                    throw new NoSuchElementException();
+                }
+
+                return(getEntry(next++));
+            }
+        });
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The type of the entry.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public Type getType(int index) throws IndexOutOfBoundsException {
+
+        return(TYPES[tagAt(check(index))]);
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return {@code true} if the entry is a {@link Type#NULL}, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public boolean isNull(int index) throws IndexOutOfBoundsException {
+
+        return(tagAt(check(index)) == Type.NULL.ordinal());
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#BYTE} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public byte getByte(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((byte)valueAt(expect(index, Type.BYTE, false)));
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#BYTE} entry, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public Byte getByteNullable(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((isNull(expect(index, Type.BYTE, true)) == true) ? null : (byte)values[index]);
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#SHORT} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public short getShort(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((short)valueAt(expect(index, Type.SHORT, false)));
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#INT} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public int getInt(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((int)valueAt(expect(index, Type.INT, false)));
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#INT} entry, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public Integer getIntNullable(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((isNull(expect(index, Type.INT, true)) == true) ? null : (int)values[index]);
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#LONG} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public long getLong(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return(valueAt(expect(index, Type.LONG, false)));
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#LONG} entry, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public Long getLongNullable(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return((isNull(expect(index, Type.LONG, true)) == true) ? null : values[index]);
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#FLOAT} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public float getFloat(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return(Float.intBitsToFloat((int)valueAt(expect(index, Type.FLOAT, false))));
+    }
+
+    /**
+     * @param index : The index of the entry.
+     * @return The value of the {@link Type#DOUBLE} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public double getDouble(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        return(Double.longBitsToDouble(valueAt(expect(index, Type.DOUBLE, false))));
+    }
+
+    /**
+     * Decodes the {@link Type#STRING} entry from the buffer.
+     * @param index : The index of the entry.
+     * @return The value of the entry, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public String getString(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        int offset;
+        int length;
+
+        if(isNull(expect(index, Type.STRING, true)) == true) {
+
+            return(null);
+        }
+
+        offset = (int)(values[index] >>> 32);
+        length = (int)values[index];
+
+        if(buffer.hasArray() == true) {
+
+            return(new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8));
+        }
+
+        return(StandardCharsets.UTF_8.decode(buffer.slice(offset, length)).toString());
+    }
+
+    /**
+     * Copies the {@link Type#RAW} entry from the buffer.
+     * @param index : The index of the entry.
+     * @return A copy of the value of the entry, {@code null} for a {@link Type#NULL} entry.
+     * @throws IllegalArgumentException If the entry is of another type.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public byte[] getRaw(int index) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        byte[] value;
+
+        if(isNull(expect(index, Type.RAW, true)) == true) {
+
+            return(null);
+        }
+
+        value = new byte[(int)values[index]];
+        buffer.get((int)(values[index] >>> 32), value);
+
+        return(value);
+    }
+
+    /**
+     * Boxes the entry, for the code that still works with {@link DataEntry}.
+     * @param index : The index of the entry.
+     * @return The entry.
+     * @throws IndexOutOfBoundsException If there is no such entry.
+    */
+    public DataEntry getEntry(int index) throws IndexOutOfBoundsException {
+
+        Type type = getType(index);
+
+        switch(type) {
+
+            case BYTE: return(new DataEntry(type, getByte(index)));
+            case SHORT: return(new DataEntry(type, getShort(index)));
+            case INT: return(new DataEntry(type, getInt(index)));
+            case LONG: return(new DataEntry(type, getLong(index)));
+            case FLOAT: return(new DataEntry(type, getFloat(index)));
+            case DOUBLE: return(new DataEntry(type, getDouble(index)));
+            case STRING: return(new DataEntry(type, getString(index)));
+            case RAW: return(new DataEntry(type, getRaw(index)));
+
+            default: return(new DataEntry(Type.NULL, null));
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // make sure the entry exists and is decoded
+    private int check(int index) throws IndexOutOfBoundsException {
+
+        if(has(index) == false) {
+
+            throw new IndexOutOfBoundsException("Entry index out of bounds: " + index + ", size: " + decoded);
+        }
+
+        return(index);
+    }
+
+    // decode the next entry, returns false if there are no more
+    private boolean decodeNext() throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Type type;
+
+        if(reader == null || reader.hasNext() == false) {
+
+            reader = null;
+            return(false);
+        }
+
+        if(decoded == types.length) {
+
+            types = Arrays.copyOf(types, Math.max(16, decoded * 2));
+            values = Arrays.copyOf(values, types.length);
+        }
+
+        type = reader.peekType();
+
+        switch(type) {
+
+            case BYTE: values[decoded] = reader.readByte(); break;
+            case SHORT: values[decoded] = reader.readShort(); break;
+            case INT: values[decoded] = reader.readInt(); break;
+            case LONG: values[decoded] = reader.readLong(); break;
+            case FLOAT: values[decoded] = Float.floatToRawIntBits(reader.readFloat()); break;
+            case DOUBLE: values[decoded] = Double.doubleToRawLongBits(reader.readDouble()); break;
+
+            case STRING: case RAW: values[decoded] = reader.readSpan(); break;
+
+            default: reader.skip(); break;
+        }
+
+        // the type is stored only once the entry is known to be complete
+        types[decoded] = (byte)type.ordinal();
+        decoded++;
+
+        return(true);
+    }
+
+    // the arrays may be replaced while decoding, so they are read only after the entry is checked
+    private byte tagAt(int index) {
+
+        return(types[index]);
+    }
+
+    private long valueAt(int index) {
+
+        return(values[index]);
+    }
+
+    // check the type of the entry, returns the index for chaining
+    private int expect(int index, Type expected, boolean nullable) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        byte type = tagAt(check(index));
+
+        if(type != expected.ordinal() && (nullable == false || type != Type.NULL.ordinal())) {
+
+            throw new IllegalArgumentException(
+
+                "Unexpected type. Expected: " + expected.toString() + ((nullable == true) ? " or NULL" : "") +
+                ", got: " + TYPES[type].toString()
+            );
+        }
+
+        return(index);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -56,5 +56,14 @@ public enum ResponseStatus implements Streamable {
         }
     }
 
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public void stream(EntryWriter writer) {
+
+        writer.putRawByte((byte)ordinal());
+    }
+
     //____________________________________________________________________________________________________________________________________
 }
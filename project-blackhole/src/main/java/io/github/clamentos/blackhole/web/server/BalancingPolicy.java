@@ -0,0 +1,14 @@
+package io.github.clamentos.blackhole.web.server;
+
+/**
+ * Simple enumeration of the policies used by the {@link Server} to spread the accepted connections across the {@link Reactor}s.
+ * <ul>
+ *     <li>ROUND_ROBIN: each reactor gets the next connection in turn.</li>
+ *     <li>LEAST_LOADED: the reactor currently serving the fewest connections gets the next one.</li>
+ * </ul>
+*/
+public enum BalancingPolicy {
+
+    ROUND_ROBIN,
+    LEAST_LOADED
+}
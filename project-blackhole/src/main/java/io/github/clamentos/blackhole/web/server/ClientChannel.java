@@ -0,0 +1,425 @@
+package io.github.clamentos.blackhole.web.server;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.web.dtos.components.FrameFlags;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Non blocking client connection.</p>
+ * <p>This class holds the per-connection framing state used by the {@link Reactor} selector loop.
+ * Requests are read incrementally as 4 byte length prefixed frames and the responses
+ * are queued until the selector can write them back.</p>
+ * <p>Request bodies are leased from the {@link BufferPool} and the responses are returned to it once written.</p>
+ * <p>Frames carrying a correlation id (see {@link FrameFlags#CORRELATED}) can be pipelined:
+ * the channel keeps reading while they are processed and their responses are sent in completion order.
+ * Frames without a correlation id pause the reading until every previous response has been written,
+ * so that legacy clients always get their responses in order.</p>
+ * The reading and writing methods must only be called by the selector thread,
+ * while {@link ClientChannel#send} and {@link ClientChannel#respond} can be called by any thread.
+*/
+public class ClientChannel {
+
+    private final Reactor reactor;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final BufferPool pool;
+
+    private ByteBuffer header;
+    private ByteBuffer body;
+    private ConcurrentLinkedQueue<ByteBuffer> outgoing;
+
+    private int served;
+    private boolean ordered;
+    private boolean closing;
+    private AtomicInteger in_flight;
+
+    private volatile long last_activity;
+    private volatile boolean closed;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiates a new {@link ClientChannel} on the given, already registered, socket channel.
+     * @param reactor : The reactor that owns the selector.
+     * @param channel : The accepted non blocking socket channel.
+     * @param key : The selection key of the channel.
+    */
+    public ClientChannel(Reactor reactor, SocketChannel channel, SelectionKey key) {
+
+        this.reactor = reactor;
+        this.channel = channel;
+        this.key = key;
+        pool = BufferPool.getInstance();
+
+        header = ByteBuffer.allocate(4);
+        body = null;
+        outgoing = new ConcurrentLinkedQueue<>();
+
+        served = 0;
+        ordered = false;
+        closing = false;
+        in_flight = new AtomicInteger(0);
+
+        last_activity = System.currentTimeMillis();
+        closed = false;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Reads the available bytes from the channel, advancing the current frame.
+     * Every returned frame counts as in flight until {@link ClientChannel#respond} is called for it.
+     * @return The complete frame payload (without the length prefix), from position 0 to the limit,
+     *         or {@code null} if the frame is not complete yet or if the client closed the connection.
+     *         The buffer is leased from the {@link BufferPool} and must be released once the frame is processed.
+     * @throws IOException If the channel fails or reaches the end of stream.
+     * @throws IllegalArgumentException If the declared frame length is negative or too big.
+    */
+    public ByteBuffer read() throws IOException, IllegalArgumentException {
+
+        int data_length;
+        ByteBuffer data;
+
+        if(body == null) {
+
+            if(fill(header) == false) {
+
+                return(null);
+            }
+
+            data_length = header.getInt(0);
+
+            if(data_length < 0 || data_length > ConfigurationProvider.MAX_REQUEST_SIZE) {
+
+                throw new IllegalArgumentException("Illegal frame length: " + data_length);
+            }
+
+            body = pool.acquire(data_length).limit(data_length);
+        }
+
+        if(fill(body) == false) {
+
+            return(null);
+        }
+
+        data = body.flip();
+        header.clear();
+        body = null;
+        served++;
+        in_flight.incrementAndGet();
+        ordered = (data.limit() == 0 || (data.get(0) & FrameFlags.CORRELATED) == 0);
+
+        return(data);
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Writes as many queued responses as the channel accepts, returning the written buffers to the pool.
+     * @return {@code true} if all the queued responses were fully written, {@code false} otherwise.
+     * @throws IOException If the channel fails.
+    */
+    public boolean write() throws IOException {
+
+        ByteBuffer buffer;
+
+        while((buffer = outgoing.peek()) != null) {
+
+            channel.write(buffer);
+
+            if(buffer.hasRemaining() == true) {
+
+                return(false);
+            }
+
+            outgoing.poll();
+            pool.release(buffer);
+            last_activity = System.currentTimeMillis();
+        }
+
+        return(true);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Queues the response and signals the selector that the channel has something to write.
+     * @param response : The raw response bytes, including the length prefix.
+    */
+    public void send(byte[] response) {
+
+        send(ByteBuffer.wrap(response));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Queues the response and signals the selector that the channel has something to write.
+     * The buffer is written as is, from its position to its limit, and must not be used afterwards:
+     * once written, or right away if the channel is closed, it's returned to the {@link BufferPool}.
+     * @param response : The raw response buffer, including the length prefix.
+    */
+    public void send(ByteBuffer response) {
+
+        if(closed == true) {
+
+            pool.release(response);
+            return;
+        }
+
+        outgoing.add(response);
+        reactor.requestWrite(this);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Queues the response of an in flight request and signals the selector that the channel
+     * has something to write.
+     * @param response : The raw response bytes, including the length prefix.
+    */
+    public void respond(byte[] response) {
+
+        respond(ByteBuffer.wrap(response));
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Queues the response of an in flight request and signals the selector that the channel
+     * has something to write. The buffer is written as is, from its position to its limit,
+     * and must not be used afterwards: once written, or right away if the channel is closed,
+     * it's returned to the {@link BufferPool}.
+     * @param response : The raw response buffer, including the length prefix.
+    */
+    public void respond(ByteBuffer response) {
+
+        // nobody will write it anymore
+        if(closed == true) {
+
+            in_flight.decrementAndGet();
+            pool.release(response);
+
+            return;
+        }
+
+        // queue before decrementing, so that an idle channel never has a response still to be queued
+        outgoing.add(response);
+        in_flight.decrementAndGet();
+        reactor.requestWrite(this);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Blocks the calling thread while more than the given number of responses are waiting to be written,
+     * so that a streaming response can't run ahead of a slow client and pile up in memory.
+     * @param max_pending : The maximum number of queued responses.
+     * @return {@code true} if the channel is still open, {@code false} otherwise.
+    */
+    public boolean awaitOutgoing(int max_pending) {
+
+        while(closed == false && outgoing.size() > max_pending) {
+
+            LockSupport.parkNanos(ConfigurationProvider.WAIT_PARK_TIME);
+
+            if(Thread.currentThread().isInterrupted() == true) {
+
+                return(false);
+            }
+        }
+
+        return(closed == false);
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Marks the channel to be closed as soon as the queued responses are written.
+    */
+    public void closeAfterWrite() {
+
+        closing = true;
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Checks if the channel can read the next frame right now.
+     * @return {@code true} if the connection can carry more requests and neither the ordering of a
+     *         frame without correlation id nor the pipelining limit are holding it back, {@code false} otherwise.
+    */
+    public boolean canRead() {
+
+        if(isExhausted() == true) {
+
+            return(false);
+        }
+
+        if(ordered == true) {
+
+            return(isIdle());
+        }
+
+        return(in_flight.get() < ConfigurationProvider.MAX_PIPELINED_REQUESTS);
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Checks if the channel has nothing more to do and can be closed.
+     * @return {@code true} if the connection can't carry more requests and every response
+     *         was written, {@code false} otherwise.
+    */
+    public boolean isFinished() {
+
+        return(isExhausted() == true && isIdle() == true);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return {@code true} if there are no requests in flight and no responses to write,
+     *         {@code false} otherwise.
+    */
+    public boolean isIdle() {
+
+        return(in_flight.get() == 0 && outgoing.isEmpty() == true);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return {@code true} if there are responses waiting to be written, {@code false} otherwise.
+    */
+    public boolean hasOutgoing() {
+
+        return(outgoing.isEmpty() == false);
+    }
+
+    /**
+     * <p><b>This method is NOT thread safe and must only be called by the selector thread.</b></p>
+     * Get the maximum idle time of the channel while waiting for a request.
+     * @return {@link ConfigurationProvider#CONNECTION_TIMEOUT} for fresh connections or
+     *         {@link ConfigurationProvider#KEEP_ALIVE_TIMEOUT} if the connection already served a request.
+    */
+    public int getIdleTimeout() {
+
+        return(served == 0 ? ConfigurationProvider.CONNECTION_TIMEOUT : ConfigurationProvider.KEEP_ALIVE_TIMEOUT);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Closes the channel and cancels the selection key. Subsequent calls have no effect.
+    */
+    public void close() {
+
+        if(closed == false) {
+
+            closed = true;
+            key.cancel();
+            reactor.release();
+
+            try {
+
+                channel.close();
+            }
+
+            catch(IOException exc) {
+
+                // nothing to do, the connection is gone anyway
+            }
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The selection key associated with this channel.
+    */
+    public SelectionKey getKey() {
+
+        return(key);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The timestamp, in milliseconds, of the last successful read or write.
+    */
+    public long getLastActivity() {
+
+        return(last_activity);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return {@code true} if the channel was closed, {@code false} otherwise.
+    */
+    public boolean isClosed() {
+
+        return(closed);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // no more requests can be read: marked for closing, keep-alive disabled or request cap reached
+    private boolean isExhausted() {
+
+        return(
+
+            closing == true ||
+            (served > 0 && ConfigurationProvider.KEEP_ALIVE == false) ||
+            served >= ConfigurationProvider.MAX_REQUESTS_PER_CONNECTION
+        );
+    }
+
+    // read into the buffer until full, returns true if the buffer was filled
+    private boolean fill(ByteBuffer buffer) throws IOException {
+
+        int amount;
+
+        while(buffer.hasRemaining() == true) {
+
+            amount = channel.read(buffer);
+
+            if(amount == -1) {
+
+                // the client closed the connection between two frames, nothing wrong with it
+                // (it may have only shut down its output, so the pending responses still go out)
+                if(buffer == header && header.position() == 0) {
+
+                    if(isIdle() == true) {
+
+                        close();
+                    }
+
+                    else {
+
+                        closeAfterWrite();
+                    }
+
+                    return(false);
+                }
+
+                throw new IOException("End of stream reached in the middle of a frame");
+            }
+
+            if(amount == 0) {
+
+                return(false);
+            }
+
+            last_activity = System.currentTimeMillis();
+        }
+
+        return(true);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
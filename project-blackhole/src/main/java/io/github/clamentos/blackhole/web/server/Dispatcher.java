@@ -4,6 +4,7 @@ package io.github.clamentos.blackhole.web.server;
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
 import io.github.clamentos.blackhole.common.config.Container;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
 import io.github.clamentos.blackhole.common.framework.Servlet;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.Logger;
@@ -12,6 +13,8 @@ import io.github.clamentos.blackhole.web.dtos.Response;
 import io.github.clamentos.blackhole.web.dtos.components.Entities;
 import io.github.clamentos.blackhole.web.dtos.components.ResponseStatus;
 
+import java.nio.ByteBuffer;
+
 import java.util.HashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -73,26 +76,83 @@ public class Dispatcher {
         return(temp);
     }
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Dispatch the request frame to the proper servlet and hand the response back to its channel.
+     * Responses with a row stream are sent in chunks as the rows are read, waiting for the client
+     * whenever more than {@link ConfigurationProvider#MAX_PENDING_CHUNKS} chunks are still queued.
+     * The channel always gets an answer, even if the servlet fails unexpectedly.
+     * The frame payload is returned to the {@link BufferPool} once the response is complete.
+     * @param frame : The request frame to service.
+    */
+    public void serve(RequestFrame frame) {
+
+        ClientChannel channel = frame.channel();
+        Integer correlation_id = Request.peekCorrelationId(frame.data());
+        boolean compact = Request.peekCompact(frame.data());
+        boolean compress = Request.peekAcceptsCompressed(frame.data());
+        ByteBuffer response;
+
+        try {
+
+            response = resolve(frame.data()).stream(correlation_id, compact, compress, (chunk) -> {
+
+                channel.send(chunk);
+                return(channel.awaitOutgoing(ConfigurationProvider.MAX_PENDING_CHUNKS));
+            });
+        }
+
+        // the channel must always get an answer, otherwise it would hang until the timeout.
+        // This also terminates a chunked response that failed midway
+        catch(Exception exc) {
+
+            LOGGER.log("Dispatcher.serve > Could not dispatch the request, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.WARNING);
+            response = Response.create("Could not process the request", null).toBuffer(correlation_id, compact);
+        }
+
+        BufferPool.getInstance().release(frame.data());
+        channel.respond(response);
+    }
+
     /**
      * <p><b>This method is thread safe.</b></p>
      * Dispatch the request to the proper servlet.
+     * Row streams are fully written into the returned buffer, without chunking.
      * @param raw_request : The raw request from the input stream.
-     * @return The raw response bytes.
+     * @return The raw response buffer, carrying the same correlation id and encoding of the request.
     */
-    public byte[] dispatch(byte[] raw_request) {
+    public ByteBuffer dispatch(byte[] raw_request) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(raw_request);
+
+        return(resolve(buffer).toBuffer(Request.peekCorrelationId(buffer), Request.peekCompact(buffer), Request.peekAcceptsCompressed(buffer)));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // deserialize the request and let the servlet handle it
+    private Response resolve(ByteBuffer raw_request) {
 
         Request request;
+        Servlet servlet;
 
         try {
 
-            request = Request.deserialize(raw_request);
-            return(servlets.get(request.resource()).handle(request).stream());
+            request = Request.deserialize(raw_request, 0, raw_request.limit());
+            servlet = servlets.get(request.resource());
+
+            if(servlet == null) {
+
+                return(new Response(ResponseStatus.UNKNOWN_RESOURCE_TYPE, null));
+            }
+
+            return(servlet.handle(request));
         }
 
-        catch(IllegalArgumentException | ArrayIndexOutOfBoundsException exc) {
+        catch(IllegalArgumentException | IndexOutOfBoundsException exc) {
 
-            LOGGER.log("Dispatcher.dispatch > Request was bad, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.NOTE);
-            return(new Response(ResponseStatus.ERROR, null).stream());
+            LOGGER.log("Dispatcher.resolve > Request was bad, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.NOTE);
+            return(new Response(ResponseStatus.ERROR, null));
         }
     }
 
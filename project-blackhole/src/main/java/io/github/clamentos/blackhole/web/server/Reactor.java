@@ -0,0 +1,408 @@
+package io.github.clamentos.blackhole.web.server;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+import io.github.clamentos.blackhole.common.exceptions.Error;
+import io.github.clamentos.blackhole.common.exceptions.ErrorWrapper;
+import io.github.clamentos.blackhole.common.exceptions.GlobalExceptionHandler;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.common.framework.ExecutionMode;
+import io.github.clamentos.blackhole.common.framework.WorkerManager;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.web.dtos.Request;
+import io.github.clamentos.blackhole.web.dtos.Response;
+
+import java.io.IOException;
+
+import java.net.StandardSocketOptions;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Selector thread that serves its share of the client connections.</p>
+ * <p>Each reactor owns a {@link Selector} and its own pool of {@link RequestWorker}.
+ * The connections handed over by the {@link Server} acceptor are read incrementally
+ * and only complete request frames will be placed into the reactor queue to be processed.
+ * The responses are written back by the reactor itself.</p>
+ * <p>In {@link ExecutionMode#VIRTUAL} mode the reactor has no workers and every complete frame
+ * is dispatched on its own virtual thread instead, bounded by the reactor share of
+ * {@link ConfigurationProvider#MAX_CONCURRENT_REQUESTS}.</p>
+*/
+public class Reactor extends WorkerManager<RequestFrame, RequestWorker> implements Runnable {
+
+    private final Logger LOGGER;
+    private int identifier;
+
+    private volatile boolean running;
+    private long last_sweep;
+
+    private Selector selector;
+    private ConcurrentLinkedQueue<SocketChannel> pending_accepts;
+    private ConcurrentLinkedQueue<ClientChannel> pending_writes;
+    private AtomicInteger connections;
+    private Dispatcher dispatcher;
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Instantiates a new reactor with its own selector, queue and workers.
+     * @param identifier : The reactor identifier.
+     * @param frame_queue : The queue on which the workers will consume the complete frames.
+     * @param request_workers : The workers of this reactor.
+     * @param execution_mode : How the complete frames are executed.
+     * @param max_concurrency : The maximum number of frames dispatched at the same time
+     *                          in {@link ExecutionMode#VIRTUAL} mode.
+     * @throws IOException If the selector could not be opened.
+    */
+    public Reactor(
+
+        int identifier,
+        BlockingQueue<RequestFrame> frame_queue,
+        RequestWorker[] request_workers,
+        ExecutionMode execution_mode,
+        int max_concurrency
+
+    ) throws IOException {
+
+        super(frame_queue, request_workers, execution_mode, max_concurrency);
+        LOGGER = Logger.getInstance();
+        this.identifier = identifier;
+
+        running = false;
+        last_sweep = 0;
+
+        selector = Selector.open();
+        pending_accepts = new ConcurrentLinkedQueue<>();
+        pending_writes = new ConcurrentLinkedQueue<>();
+        connections = new AtomicInteger(0);
+        dispatcher = (execution_mode == ExecutionMode.VIRTUAL) ? Dispatcher.getInstance() : null;
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * Runs the selector loop until {@link Reactor#halt} is called.
+    */
+    @Override
+    public void run() {
+
+        Iterator<SelectionKey> keys;
+        SelectionKey selected;
+
+        Thread.currentThread().setUncaughtExceptionHandler(GlobalExceptionHandler.getInstance());
+        running = true;
+        LOGGER.log("Reactor " + identifier + " started", LogLevel.SUCCESS);
+
+        while(running == true) {
+
+            try {
+
+                selector.select(Math.min(ConfigurationProvider.CONNECTION_TIMEOUT, ConfigurationProvider.KEEP_ALIVE_TIMEOUT));
+                registerAccepts();
+                registerWrites();
+
+                keys = selector.selectedKeys().iterator();
+
+                while(keys.hasNext() == true) {
+
+                    selected = keys.next();
+                    keys.remove();
+
+                    if(selected.isValid() == true) {
+
+                        serve(selected);
+                    }
+                }
+
+                sweep();
+            }
+
+            catch(IOException exc) {
+
+                LOGGER.log(
+
+                    "Reactor.run > Could not serve channels, " +
+                    exc.getClass().getSimpleName() + ": " +
+                    exc.getMessage(),
+                    LogLevel.ERROR
+                );
+            }
+        }
+
+        shutdown();
+        LOGGER.log("Reactor " + identifier + " stopped", LogLevel.NOTE);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Hands over an accepted connection to this reactor.
+     * @param client : The accepted socket channel.
+    */
+    public void register(SocketChannel client) {
+
+        connections.incrementAndGet();
+        pending_accepts.add(client);
+        selector.wakeup();
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Stops the selector loop and closes all the connections of this reactor.
+     * No {@link RequestWorker} will be affected.
+    */
+    public void halt() {
+
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The reactor identifier.
+    */
+    public int getIdentifier() {
+
+        return(identifier);
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * @return The number of connections currently served by this reactor.
+    */
+    public int getConnections() {
+
+        return(connections.get());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Signals the selector loop that the specified channel has queued responses to write.
+     * @param channel : The channel to be written.
+    */
+    void requestWrite(ClientChannel channel) {
+
+        pending_writes.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Signals that one of the channels of this reactor was closed.
+    */
+    void release() {
+
+        connections.decrementAndGet();
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // register the connections handed over by the acceptor
+    private void registerAccepts() {
+
+        SocketChannel client;
+        SelectionKey key;
+
+        while((client = pending_accepts.poll()) != null) {
+
+            try {
+
+                client.configureBlocking(false);
+
+                // responses are small and written whole, don't let Nagle hold them until the client acks the previous one
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                key = client.register(selector, SelectionKey.OP_READ);
+                key.attach(new ClientChannel(this, client, key));
+            }
+
+            catch(IOException exc) {
+
+                LOGGER.log(
+
+                    "Reactor.registerAccepts > Could not register channel, " +
+                    exc.getClass().getSimpleName() + ": " +
+                    exc.getMessage(),
+                    LogLevel.NOTE
+                );
+
+                connections.decrementAndGet();
+
+                try {
+
+                    client.close();
+                }
+
+                catch(IOException exc2) {
+
+                    // nothing to do, the connection is gone anyway
+                }
+            }
+        }
+    }
+
+    // read and write on the selected client channel
+    private void serve(SelectionKey selected) {
+
+        ClientChannel channel = (ClientChannel)selected.attachment();
+        ByteBuffer data;
+
+        try {
+
+            if(selected.isReadable() == true) {
+
+                // drain all the complete frames, as long as ordering and pipelining limits allow it
+                while(channel.canRead() == true && (data = channel.read()) != null) {
+
+                    RequestFrame frame = new RequestFrame(channel, data);
+
+                    if(super.getExecutionMode() == ExecutionMode.VIRTUAL) {
+
+                        super.runVirtual(() -> dispatcher.serve(frame));
+                    }
+
+                    else if(super.getResourceQueue().offer(frame) == false) {
+
+                        LOGGER.log("Reactor.serve > Request queue is full, rejecting request", LogLevel.WARNING);
+                        channel.respond(Response.create("Server overloaded", null).toBuffer(Request.peekCorrelationId(data), Request.peekCompact(data)));
+                        BufferPool.getInstance().release(data);
+                    }
+                }
+            }
+
+            if(selected.isValid() == true && selected.isWritable() == true) {
+
+                channel.write();
+            }
+
+            updateInterest(channel);
+        }
+
+        catch(IOException exc) {
+
+            LOGGER.log("Reactor.serve > Closing channel, IOException: " + exc.getMessage(), LogLevel.NOTE);
+            channel.close();
+        }
+
+        // answer with the error and close the channel once written
+        catch(IllegalArgumentException exc) {
+
+            LOGGER.log("Reactor.serve > Request was bad, IllegalArgumentException: " + exc.getMessage(), LogLevel.NOTE);
+            channel.closeAfterWrite();
+            channel.send(Response.create(exc.getMessage(), new ErrorWrapper(Error.BAD_FORMATTING)).stream());
+            updateInterest(channel);
+        }
+    }
+
+    // switch the channels with pending responses to write mode
+    private void registerWrites() {
+
+        ClientChannel channel;
+
+        while((channel = pending_writes.poll()) != null) {
+
+            if(channel.isClosed() == false && channel.getKey().isValid() == true) {
+
+                updateInterest(channel);
+            }
+        }
+    }
+
+    // set the interest ops according to the channel state, or close it if it's done
+    private void updateInterest(ClientChannel channel) {
+
+        int ops = 0;
+
+        if(channel.isClosed() == true) {
+
+            return;
+        }
+
+        if(channel.isFinished() == true) {
+
+            channel.close();
+            return;
+        }
+
+        if(channel.canRead() == true) {
+
+            ops |= SelectionKey.OP_READ;
+        }
+
+        if(channel.hasOutgoing() == true) {
+
+            ops |= SelectionKey.OP_WRITE;
+        }
+
+        channel.getKey().interestOps(ops);
+    }
+
+    // close the channels that were idle for too long while waiting for a request
+    private void sweep() {
+
+        long now = System.currentTimeMillis();
+        ClientChannel channel;
+
+        // no need to scan all the keys on every select
+        if(now - last_sweep < Math.min(ConfigurationProvider.CONNECTION_TIMEOUT, ConfigurationProvider.KEEP_ALIVE_TIMEOUT) / 2) {
+
+            return;
+        }
+
+        last_sweep = now;
+
+        for(SelectionKey key : selector.keys()) {
+
+            channel = (ClientChannel)key.attachment();
+
+            if(key.isValid() == true && channel.isIdle() == true &&
+               now - channel.getLastActivity() > channel.getIdleTimeout()) {
+
+                channel.close();
+            }
+        }
+    }
+
+    // close everything, used on stop
+    private void shutdown() {
+
+        SocketChannel client;
+
+        try {
+
+            for(SelectionKey key : selector.keys()) {
+
+                ((ClientChannel)key.attachment()).close();
+            }
+
+            while((client = pending_accepts.poll()) != null) {
+
+                connections.decrementAndGet();
+                client.close();
+            }
+
+            selector.close();
+        }
+
+        catch(IOException exc) {
+
+            LOGGER.log("Reactor.shutdown > Could not close the selector, IOException: " + exc.getMessage(), LogLevel.WARNING);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
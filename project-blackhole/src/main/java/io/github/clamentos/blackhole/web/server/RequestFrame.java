@@ -0,0 +1,17 @@
+package io.github.clamentos.blackhole.web.server;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+
+import java.nio.ByteBuffer;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p>Request frame.</p>
+ * Used as an item in the request queue. Holds the complete frame payload
+ * and the {@link ClientChannel} on which the response must be sent.
+ * The payload is leased from the {@link BufferPool} and goes back to it once the frame is served.
+*/
+public record RequestFrame(ClientChannel channel, ByteBuffer data) {}
@@ -3,49 +3,65 @@ package io.github.clamentos.blackhole.web.server;
 //________________________________________________________________________________________________________________________________________
 
 import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
-import io.github.clamentos.blackhole.common.framework.WorkerManager;
+import io.github.clamentos.blackhole.common.framework.BufferPool;
+import io.github.clamentos.blackhole.common.framework.ExecutionMode;
+import io.github.clamentos.blackhole.common.framework.QueueType;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.web.dtos.components.FrameCompressor;
 
 import java.io.IOException;
 
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 
-import java.util.Iterator;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 //________________________________________________________________________________________________________________________________________
 
 /**
  * <p>Server class that listens and accepts socket requests.</p>
- * Once accepted, the sockets will be placed into a queue to be processed.
+ * <p>The server thread only accepts the connections and spreads them across the {@link Reactor}s,
+ * according to the configured {@link BalancingPolicy}. Each reactor runs its own non blocking selector loop
+ * and feeds its own pool of {@link RequestWorker}, so that connections, queues and workers
+ * are never shared between reactors.</p>
+ * <p>With {@link ConfigurationProvider#REQUEST_EXECUTION_MODE} set to {@link ExecutionMode#VIRTUAL}
+ * no worker is created and the reactors dispatch each request on its own virtual thread.</p>
+ * <p>If keep-alive is enabled, the same connection will carry the following requests until the client closes it,
+ * the idle timeout fires or the per-connection request cap is reached.
+ * Requests with a correlation id can be pipelined on the same connection (see {@link ClientChannel}).</p>
 */
-public class Server extends WorkerManager<Socket, RequestWorker> {
+public class Server {
 
     private static volatile Server INSTANCE;
     private static ReentrantLock lock = new ReentrantLock();
 
     private final Logger LOGGER;
-    private boolean server_running;
-    private ServerSocket server_socket;
+    private volatile boolean server_running;
+
+    private ServerSocketChannel server_channel;
+    private Reactor[] reactors;
+    private int next_reactor;
 
     //____________________________________________________________________________________________________________________________________
 
-    private Server(BlockingQueue<Socket> socket_queue, RequestWorker[] request_workers) {
+    private Server(Reactor[] reactors) {
 
-        super(socket_queue, request_workers);
         LOGGER = Logger.getInstance();
         server_running = false;
-        LOGGER.log("Web server instantiated and workers started", LogLevel.SUCCESS);
+        this.reactors = reactors;
+        next_reactor = 0;
+
+        for(Reactor reactor : reactors) {
+
+            new Thread(reactor).start();
+        }
+
+        LOGGER.log("Web server instantiated, reactors and workers started", LogLevel.SUCCESS);
     }
 
     //____________________________________________________________________________________________________________________________________
@@ -54,36 +70,75 @@ public class Server extends WorkerManager<Socket, RequestWorker> {
      * <p><b>This method is thread safe.</b></p>
      * Get the Server instance.
      * If the instance doesn't exist, create it with the values configured in
-     * {@link ConfigurationProvider} and start the workers.
+     * {@link ConfigurationProvider} and start the reactors and the workers.
+     * The {@link ConfigurationProvider#NUM_REQUEST_WORKERS} are split evenly between the
+     * {@link ConfigurationProvider#NUM_REACTORS}, with at least one worker per reactor.
+     * In {@link ExecutionMode#VIRTUAL} mode no worker is created and the
+     * {@link ConfigurationProvider#MAX_CONCURRENT_REQUESTS} are split in the same way instead.
      * @return The Server instance.
+     * @throws IOException If the selector of any reactor could not be opened.
     */
-    public static Server getInstance() {
+    public static Server getInstance() throws IOException {
 
         Server temp = INSTANCE;
 
-        LinkedBlockingQueue<Socket> socket_queue;
+        BlockingQueue<RequestFrame> frame_queue;
         RequestWorker[] request_workers;
+        Reactor[] reactors;
+        int num_reactors;
+        int num_workers;
+        int max_concurrency;
+        boolean virtual;
 
         if(temp == null) {
 
             lock.lock();
-            temp = INSTANCE;
 
-            if(temp == null) {
+            try {
 
-                socket_queue = new LinkedBlockingQueue<>(ConfigurationProvider.MAX_REQUEST_QUEUE_SIZE);
-                request_workers = new RequestWorker[ConfigurationProvider.NUM_REQUEST_WORKERS];
+                temp = INSTANCE;
 
-                for(int i = 0; i < request_workers.length; i++) {
+                if(temp == null) {
 
-                    request_workers[i] = new RequestWorker(i, socket_queue);
-                    request_workers[i].start();
-                }
+                    num_reactors = Math.max(1, ConfigurationProvider.NUM_REACTORS);
+                    reactors = new Reactor[num_reactors];
+                    virtual = (ConfigurationProvider.REQUEST_EXECUTION_MODE == ExecutionMode.VIRTUAL);
+
+                    for(int i = 0; i < reactors.length; i++) {
+
+                        num_workers = ConfigurationProvider.NUM_REQUEST_WORKERS / num_reactors;
+                        num_workers += (i < ConfigurationProvider.NUM_REQUEST_WORKERS % num_reactors) ? 1 : 0;
+
+                        max_concurrency = ConfigurationProvider.MAX_CONCURRENT_REQUESTS / num_reactors;
+                        max_concurrency += (i < ConfigurationProvider.MAX_CONCURRENT_REQUESTS % num_reactors) ? 1 : 0;
+
+                        request_workers = new RequestWorker[(virtual == true) ? 0 : Math.max(1, num_workers)];
+                        frame_queue = ConfigurationProvider.SERVER_QUEUE_TYPE.create(ConfigurationProvider.MAX_REQUEST_QUEUE_SIZE, request_workers.length);
+
+                        for(int j = 0; j < request_workers.length; j++) {
+
+                            request_workers[j] = new RequestWorker(j, QueueType.forWorker(frame_queue, j), ConfigurationProvider.SERVER_WAIT_STRATEGY);
+                            request_workers[j].start();
+                        }
+
+                        reactors[i] = new Reactor(
+
+                            i,
+                            frame_queue,
+                            request_workers,
+                            ConfigurationProvider.REQUEST_EXECUTION_MODE,
+                            max_concurrency
+                        );
+                    }
 
-                INSTANCE = temp = new Server(socket_queue, request_workers);
+                    INSTANCE = temp = new Server(reactors);
+                }
             }
 
-            lock.unlock();
+            finally {
+
+                lock.unlock();
+            }
         }
 
         return(temp);
@@ -93,70 +148,75 @@ public class Server extends WorkerManager<Socket, RequestWorker> {
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * <p>Starts the server and listens for requests.</p>
+     * <p>Starts the server and accepts connections.</p>
      * <p>If the server is already running, this method will return without doing anything.</p>
-     * <p>If this method successfully starts the server, it will occupy the thread indefinetly.</p>
+     * <p>If this method successfully starts the server, it will occupy the thread until
+     * {@link Server#stopServer} is called.</p>
      * <p>If this method fails in starting the server, it will simply return.</p>
     */
     public void start() {
 
+        SocketChannel client;
+
         if(attempt(ConfigurationProvider.MAX_SERVER_START_RETRIES) == true) {
 
-            LOGGER.log("Web server started", LogLevel.SUCCESS);
+            LOGGER.log("Web server started with " + reactors.length + " reactors", LogLevel.SUCCESS);
 
-            while(true) {
+            while(server_running == true) {
 
                 try {
 
-                    Socket s = server_socket.accept();
-                    super.getResourceQueue().put(s);
+                    client = server_channel.accept();
+                    pick().register(client);
                 }
 
-                catch(IOException exc) {
-
-                    LOGGER.log(
+                catch(ClosedChannelException exc) {
 
-                        "Server.start > Could not accept socket, " +
-                        exc.getClass().getSimpleName() +
-                        exc.getMessage(),
-                        LogLevel.NOTE
-                    );
+                    break;
                 }
 
-                catch(InterruptedException exc) {
-
-                    if(server_running == false) {
+                catch(IOException exc) {
 
-                        LOGGER.log("Web server stopped", LogLevel.NOTE);
-                        break;
-                    }
-                    
                     LOGGER.log(
-                        
-                        "Server.start > Interrupted while waiting on queue, InterruptedException: " +
+
+                        "Server.start > Could not accept channel, " +
+                        exc.getClass().getSimpleName() + ": " +
                         exc.getMessage(),
                         LogLevel.NOTE
                     );
                 }
             }
+
+            LOGGER.log(
+
+                "Web server stopped, buffer pool hits: " + BufferPool.getInstance().getHits() +
+                ", misses: " + BufferPool.getInstance().getMisses() +
+                ", compressed bytes: " + FrameCompressor.getInstance().getBytesIn() +
+                " -> " + FrameCompressor.getInstance().getBytesOut(),
+                LogLevel.NOTE
+            );
         }
     }
 
     /**
      * <p><b>This method is thread safe.</b></p>
-     * Stops the server only. No {@link RequestWorker} will be affected.
-     * This method only sets the {@code server_running} flag to {@code false}.
-     * In order to free the server thread from the loop, a signal,
-     * via the {@code Thread.interrupt()} method, must be sent.
+     * Stops the server and the reactors, closing all the connections.
+     * No {@link RequestWorker} will be affected.
     */
     public synchronized void stopServer() {
 
         server_running = false;
+        close();
+
+        for(Reactor reactor : reactors) {
+
+            reactor.halt();
+        }
     }
 
     //____________________________________________________________________________________________________________________________________
 
-    // attemp to create the server socket with N retries
+    // attemp to bind the server channel with N retries
     private synchronized boolean attempt(int retries) {
 
         if(server_running == false) {
@@ -165,22 +225,24 @@ public class Server extends WorkerManager<Socket, RequestWorker> {
 
                 try {
 
-                    server_socket = new ServerSocket(ConfigurationProvider.SERVER_PORT);
-                    server_socket.setSoTimeout(ConfigurationProvider.CONNECTION_TIMEOUT);
+                    server_channel = ServerSocketChannel.open();
+                    server_channel.bind(new InetSocketAddress(ConfigurationProvider.SERVER_PORT));
                     server_running = true;
 
                     return(true);
                 }
 
                 catch(Exception exc) {
-    
+
                     LOGGER.log(
 
-                        "Server.attempt > Could not create server socket, " +
+                        "Server.attempt > Could not create server channel, " +
                         exc.getClass().getSimpleName() + ": " +
                         exc.getMessage(),
                         LogLevel.ERROR
                     );
+
+                    close();
                 }
 
                 try {
@@ -191,7 +253,7 @@ public class Server extends WorkerManager<Socket, RequestWorker> {
                 catch(InterruptedException exc) {
 
                     LOGGER.log(
-                        
+
                         "Server.attempt > Interrupted while waiting on retries, InterruptedException: " +
                         exc.getMessage(),
                         LogLevel.INFO
@@ -209,61 +271,54 @@ public class Server extends WorkerManager<Socket, RequestWorker> {
         return(false);
     }
 
-    //____________________________________________________________________________________________________________________________________
+    // choose the reactor for the next connection
+    private Reactor pick() {
 
-    // potential replacement for the current blocking
-    public void testNIO() {
+        Reactor selected;
 
-        Selector mux;
-        ServerSocketChannel server_socket;
-        Iterator<SelectionKey> keys;
+        switch(ConfigurationProvider.REACTOR_BALANCING) {
 
-        try {
+            case LEAST_LOADED:
 
-            mux = Selector.open();
+                selected = reactors[0];
 
-            server_socket = ServerSocketChannel.open();
-            server_socket.configureBlocking(false);
-            server_socket.register(mux, SelectionKey.OP_ACCEPT);
-            server_socket.bind(new InetSocketAddress("127.0.0.1", 8080));   // do the retries
+                for(int i = 1; i < reactors.length; i++) {
 
-            while(true) {
+                    if(reactors[i].getConnections() < selected.getConnections()) {
 
-                mux.select();
-                keys = mux.selectedKeys().iterator();
+                        selected = reactors[i];
+                    }
+                }
 
-                while(keys.hasNext()) {
+            break;
 
-                    SelectionKey selected = keys.next();
+            default:
 
-                    if(selected.isAcceptable() == true) {
+                selected = reactors[next_reactor];
+                next_reactor = (next_reactor + 1) % reactors.length;
 
-                        SocketChannel client = server_socket.accept();
-                        client.configureBlocking(false);
-                        client.register(mux, SelectionKey.OP_READ);
-                        client.socket().setSoTimeout(ConfigurationProvider.CONNECTION_TIMEOUT);
-                    }
+            break;
+        }
 
-                    if(selected.isReadable() == true) {
+        return(selected);
+    }
 
-                        // put into worker queue
-                        //...
-                    }
+    // close the server channel, used on stop and after a failed bind
+    private void close() {
 
-                    keys.remove();
-                }
+        try {
+
+            if(server_channel != null) {
+
+                server_channel.close();
             }
         }
 
-        catch(Exception exc) {
-
-            LOGGER.log(
+        catch(IOException exc) {
 
-                "Server.testNIO > Could not serve channel, " +
-                exc.getClass().getSimpleName() + ": " +
-                exc.getMessage(),
-                LogLevel.ERROR
-            );
+            LOGGER.log("Server.close > Could not close the server channel, IOException: " + exc.getMessage(), LogLevel.WARNING);
         }
     }
-}
\ No newline at end of file
+
+    //____________________________________________________________________________________________________________________________________
+}
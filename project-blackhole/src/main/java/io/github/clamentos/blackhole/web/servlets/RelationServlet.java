@@ -0,0 +1,135 @@
+package io.github.clamentos.blackhole.web.servlets;
+
+//________________________________________________________________________________________________________________________________________
+
+import io.github.clamentos.blackhole.common.framework.Reducible;
+import io.github.clamentos.blackhole.common.framework.Servlet;
+import io.github.clamentos.blackhole.logging.LogLevel;
+import io.github.clamentos.blackhole.logging.Logger;
+import io.github.clamentos.blackhole.persistence.GraphTraversal;
+import io.github.clamentos.blackhole.persistence.Repository;
+import io.github.clamentos.blackhole.web.dtos.ErrorDetails;
+import io.github.clamentos.blackhole.web.dtos.Request;
+import io.github.clamentos.blackhole.web.dtos.Response;
+import io.github.clamentos.blackhole.web.dtos.actions.GraphRead;
+import io.github.clamentos.blackhole.web.dtos.components.Entities;
+import io.github.clamentos.blackhole.web.dtos.components.Method;
+import io.github.clamentos.blackhole.web.dtos.components.ResponseStatus;
+import io.github.clamentos.blackhole.web.session.SessionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+//________________________________________________________________________________________________________________________________________
+
+/**
+ * <p><b>This class is a singleton.</b></p>
+ * <p>This class is the {@link Servlet} to traverse the graph of the relations.</p>
+ * <p>Only reads are supported, each one a {@link GraphRead}. The hops are streamed back by a {@link GraphTraversal}
+ * as each level is found, so the traversal runs while the response is being sent.</p>
+*/
+public class RelationServlet implements Servlet {
+
+    private static volatile RelationServlet INSTANCE;
+    private static ReentrantLock lock = new ReentrantLock();
+
+    private final Logger LOGGER;
+
+    private Repository repository;
+    private SessionService session_service;
+
+    //____________________________________________________________________________________________________________________________________
+
+    private RelationServlet(Repository repository, SessionService session_service) {
+
+        LOGGER = Logger.getInstance();
+        this.repository = repository;
+        this.session_service = session_service;
+        LOGGER.log("Relation servlet instantiated", LogLevel.SUCCESS);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Get the RelationServlet instance.
+     * If the instance doesn't exist, create it.
+     * @return The RelationServlet instance.
+    */
+    public static RelationServlet getInstance(Repository repository, SessionService session_service) {
+
+        RelationServlet temp = INSTANCE;
+
+        if(temp == null) {
+
+            lock.lock();
+            temp = INSTANCE;
+
+            if(temp == null) {
+
+                INSTANCE = temp = new RelationServlet(repository, session_service);
+            }
+
+            lock.unlock();
+        }
+
+        return(temp);
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * {@inheritDoc}
+     * Always {@code Resources.RELATION} in this case.
+    */
+    @Override
+    public Entities matches() {
+
+        return(Entities.RELATION);
+    }
+
+    /**
+     * {@inheritDoc}
+    */
+    @Override
+    public Response handle(Request request) {
+
+        List<Reducible> error_details;
+
+        if(request.method() == Method.READ) {
+
+            return(traverse(request));
+        }
+
+        error_details = new ArrayList<>();
+        error_details.add(new ErrorDetails("Method received: " + request.method()));
+
+        return(new Response(ResponseStatus.METHOD_NOT_ALLOWED, error_details));
+    }
+
+    //________________________________________________________________________________________________________________________________________
+
+    private Response traverse(Request request) {
+
+        GraphRead read;
+
+        try {
+
+            session_service.checkSessionGraph(request.session_id(), request.method());
+            read = GraphRead.deserialize(request.data());
+
+            // the queries run while streaming
+            return(new Response(ResponseStatus.OK, null, new GraphTraversal(repository, read)));
+        }
+
+        catch(Exception exc) {
+
+            LOGGER.log("RelationServlet.traverse > Request failed, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.WARNING);
+            return(Response.create(exc.getMessage(), exc.getCause()));
+        }
+    }
+
+    //________________________________________________________________________________________________________________________________________
+}
@@ -2,25 +2,30 @@ package io.github.clamentos.blackhole.web.servlets;
 
 //________________________________________________________________________________________________________________________________________
 
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
 import io.github.clamentos.blackhole.common.framework.Servlet;
 import io.github.clamentos.blackhole.common.framework.Reducible;
-import io.github.clamentos.blackhole.common.utility.Converter;
 import io.github.clamentos.blackhole.logging.LogLevel;
 import io.github.clamentos.blackhole.logging.Logger;
 import io.github.clamentos.blackhole.persistence.Repository;
+import io.github.clamentos.blackhole.persistence.TagCache;
+import io.github.clamentos.blackhole.persistence.TagIndex;
 import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.persistence.query.InClause;
 import io.github.clamentos.blackhole.persistence.query.QueryType;
 import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
+import io.github.clamentos.blackhole.web.dtos.Continuation;
 import io.github.clamentos.blackhole.web.dtos.ErrorDetails;
 import io.github.clamentos.blackhole.web.dtos.Request;
 import io.github.clamentos.blackhole.web.dtos.Response;
 import io.github.clamentos.blackhole.web.dtos.actions.TagRead;
-import io.github.clamentos.blackhole.web.dtos.components.DataEntry;
 import io.github.clamentos.blackhole.web.dtos.components.Entities;
 import io.github.clamentos.blackhole.web.dtos.components.ResponseStatus;
 import io.github.clamentos.blackhole.web.session.SessionService;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -28,17 +33,26 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <p><b>This class is a singleton.</b></p>
- * This class is the {@link Servlet} to manage the request for the tags.
+ * <p>This class is the {@link Servlet} to manage the request for the tags.</p>
+ * <p>Reads go through the {@link TagCache}: lookups by id are answered from the cached rows, fetching only the missing ones,
+ * and searches from the cached results of the same filter. Searches are first tried on the {@link TagIndex}, once loaded.
+ * Every write reports what it changed to both once executed.</p>
+ * <p>Searches with a limit are paged by {@code (creation_date, id)}: each page starts with its {@link Continuation},
+ * and the database only reads the rows after the previous page, never skipping over them with an {@code OFFSET}.</p>
 */
 public class TagServlet implements Servlet {
     
     private static volatile TagServlet INSTANCE;
     private static ReentrantLock lock = new ReentrantLock();
 
+    private static final Comparator<Tag> PAGE_ORDER = Comparator.comparing(Tag::creation_date).thenComparing(Tag::id);
+
     private final Logger LOGGER;
 
     private Repository repository;
     private SessionService session_service;
+    private TagCache tag_cache;
+    private TagIndex tag_index;
 
     //____________________________________________________________________________________________________________________________________
 
@@ -47,6 +61,8 @@ public class TagServlet implements Servlet {
         LOGGER = Logger.getInstance();
         this.repository = repository;
         this.session_service = session_service;
+        tag_cache = TagCache.getInstance();
+        tag_index = TagIndex.getInstance(repository);
         LOGGER.log("Tag servlet instantiated", LogLevel.SUCCESS);
     }
 
@@ -120,6 +136,7 @@ public class TagServlet implements Servlet {
     private Response createOrUpdate(Request request, boolean update) {
 
         List<Tag> tags;
+        List<Tag> created;
         List<List<Object>> parameters;
         QueryWrapper insert;
         int now;
@@ -175,6 +192,25 @@ public class TagServlet implements Servlet {
 
         repository.execute(insert, true);
 
+        // even if failed, part of a batch could have made it
+        if(update == false) {
+
+            created = tags.stream().map(tag -> new Tag(null, tag.name(), now)).toList();
+            tag_cache.created(created);
+
+            // read back in the background, what a failed batch left is picked up by the next reload
+            if(insert.getStatus() == 1) {
+
+                tag_index.created(created);
+            }
+        }
+
+        else {
+
+            tag_cache.updated(tags);
+            tag_index.updated(tags, insert.getStatus() == 1);
+        }
+
         if(insert.getStatus() == 1) {
 
             return(new Response(ResponseStatus.OK, null));
@@ -192,66 +228,115 @@ public class TagServlet implements Servlet {
     private Response read(Request request) {
 
         TagRead read;
+        TagCache.Filter filter = null;
+        List<Tag> cached;
         List<List<Object>> params = new ArrayList<>();
         ArrayList<String> columns = new ArrayList<>();
-        List<Reducible> result;
+        ArrayList<String> conditions = new ArrayList<>();
         QueryWrapper select;
         String query;
+        long generation;
+        int page = 0;
 
         try {
 
             session_service.checkSessionTag(request.session_id(), request.method());
             read = TagRead.deserialize(request.data());
 
-            if((read.fields() & 0b0001) > 0) columns.add("id");
-            if((read.fields() & 0b0010) > 0) columns.add("name");
-            if((read.fields() & 0b0100) > 0) columns.add("creation_date");
+            if((read.fields() & 0b0111) == 0) {
 
-            query = columns.toString();
-            query = query.substring(1, query.length() - 2);
-            query = "SELECT " + query + " FROM Tags WHERE ";
+                throw new IllegalArgumentException("At least one field must be selected");
+            }
+
+            params.add(new ArrayList<>());
 
             if(read.query_mode() == 0) {
 
-                query += "id IN (";
-                params.add(new ArrayList<>());
+                // nothing to look for
+                if(read.ids().length == 0) {
+
+                    return(new Response(ResponseStatus.OK, null));
+                }
+
+                if(read.ids().length <= ConfigurationProvider.TAG_QUERY_CACHE_MAX_ROWS) {
+
+                    return(readByIds(read));
+                }
 
                 for(int i = 0; i < read.ids().length; i++) {
 
-                    query += "?,";
                     params.get(0).add(read.ids()[i]);
                 }
 
-                query = query.substring(0, query.length() - 2);
-                query += ")";
+                // padded, so that the different lengths share a few cached statements
+                conditions.add("id IN (" + InClause.placeholders(read.ids().length) + ")");
+                InClause.pad(params.get(0));
             }
 
             else {
 
-                boolean concat = false;
-                params.add(new ArrayList<>());
+                filter = new TagCache.Filter(read.name_like(), read.start_date(), read.end_date());
+                cached = tag_index.search(filter);
 
-                if(read.name_like() != null && read.name_like() != "") {
+                if(cached == null) {
 
-                    query += "name LIKE %?%";
-                    params.get(0).add(read.name_like());
-                    concat = true;
+                    cached = tag_cache.get(filter);
                 }
 
-                if(read.start_date() != null) {
+                if(read.limit() != null) {
 
-                    if(concat == true) query += " AND ";
-                    query += "creation_date >= ?";
-                    params.get(0).add(read.start_date());
-                    concat = true;
+                    page = Math.min(read.limit(), ConfigurationProvider.MAX_TAG_PAGE_SIZE);
                 }
 
-                if(read.end_date() != null) {
+                if(cached != null) {
 
-                    if(concat == true) query += " AND ";
-                    query += "creation_date <= ?";
-                    params.get(0).add(read.end_date());
+                    return(new Response(ResponseStatus.OK, (page > 0) ? page(cached, read, page) : project(cached, read.fields())));
                 }
+
+                if(filter.name_like() != null) {
+
+                    conditions.add("name LIKE ?");
+                    params.get(0).add("%" + filter.name_like() + "%");
+                }
+
+                if(filter.start_date() != null) {
+
+                    conditions.add("creation_date >= ?");
+                    params.get(0).add(filter.start_date());
+                }
+
+                if(filter.end_date() != null) {
+
+                    conditions.add("creation_date <= ?");
+                    params.get(0).add(filter.end_date());
+                }
+
+                // the rows after the last one of the previous page, served by the (creation_date, id) index
+                if(page > 0 && read.continuation() != null) {
+
+                    conditions.add("(creation_date, id) > (?, ?)");
+                    params.get(0).add(Continuation.creationDate(read.continuation()));
+                    params.get(0).add(Continuation.id(read.continuation()));
+                }
+            }
+
+            // searches read all the columns, to cache whole rows whatever the fields asked for
+            if(filter != null || (read.fields() & 0b0001) > 0) columns.add("id");
+            if(filter != null || (read.fields() & 0b0010) > 0) columns.add("name");
+            if(filter != null || (read.fields() & 0b0100) > 0) columns.add("creation_date");
+
+            query = "SELECT " + String.join(", ", columns) + " FROM Tags";
+
+            if(conditions.isEmpty() == false) {
+
+                query += " WHERE " + String.join(" AND ", conditions);
+            }
+
+            // one more row, to know if there is a next page
+            if(page > 0) {
+
+                query += " ORDER BY creation_date, id LIMIT ?";
+                params.get(0).add(page + 1);
             }
 
             select = new QueryWrapper(
@@ -261,12 +346,52 @@ public class TagServlet implements Servlet {
                 params
             );
 
+            // streamed, a few rows at a time from a cursor
+            if(page == 0) {
+
+                select.setFetchSize(ConfigurationProvider.STREAM_FETCH_SIZE);
+            }
+
+            generation = tag_cache.getGeneration();
             repository.execute(select, true);
 
+            // the rows go from the cursor straight to the client, in chunks
             if(select.getStatus() == 1) {
 
-                result = Tag.mapMany(select.getResult(), read.fields());
-                return(new Response(ResponseStatus.OK, result));
+                if(page > 0) {
+
+                    try {
+
+                        cached = new ArrayList<>();
+
+                        for(Reducible row : Tag.mapMany(select.getResult(), 0b0111)) {
+
+                            cached.add((Tag)row);
+                        }
+                    }
+
+                    finally {
+
+                        select.close();
+                    }
+
+                    return(new Response(ResponseStatus.OK, page(cached, read, page)));
+                }
+
+                if(filter != null) {
+
+                    final TagCache.Filter key = filter;
+
+                    return(new Response(ResponseStatus.OK, null, Tag.streamMany(
+
+                        select,
+                        read.fields(),
+                        ConfigurationProvider.TAG_QUERY_CACHE_MAX_ROWS,
+                        tags -> tag_cache.put(generation, key, tags)
+                    )));
+                }
+
+                return(new Response(ResponseStatus.OK, null, Tag.streamMany(select, read.fields())));
             }
 
             LOGGER.log("TagServlet.read > Request failed, " + select.getException().getClass().getSimpleName() + ": " + select.getException().getMessage(), LogLevel.WARNING);
@@ -280,23 +405,140 @@ public class TagServlet implements Servlet {
 
         catch(Exception exc) {
 
-            LOGGER.log("TagServlet.createOrUpdate > Request failed, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.WARNING);
+            LOGGER.log("TagServlet.read > Request failed, " + exc.getClass().getSimpleName() + ": " + exc.getMessage(), LogLevel.WARNING);
             return(Response.create(exc.getMessage(), exc.getCause()));
         }
     }
+
+    // answers from the cached rows, fetching only the missing ones, in request order without duplicates
+    private Response readByIds(TagRead read) throws Exception {
+
+        LinkedHashMap<Integer, Tag> found = new LinkedHashMap<>();
+        List<List<Object>> params = new ArrayList<>();
+        List<Tag> fetched = new ArrayList<>();
+        QueryWrapper select;
+        long generation;
+        Tag tag;
+
+        params.add(new ArrayList<>());
+
+        for(int id : read.ids()) {
+
+            if(found.containsKey(id) == false) {
+
+                tag = tag_cache.get(id);
+                found.put(id, tag);
+
+                if(tag == null) {
+
+                    params.get(0).add(id);
+                }
+            }
+        }
+
+        if(params.get(0).isEmpty() == false) {
+
+            select = new QueryWrapper(
+
+                QueryType.SELECT,
+                "SELECT id, name, creation_date FROM Tags WHERE id IN (" + InClause.placeholders(params.get(0).size()) + ")",
+                params
+            );
+
+            InClause.pad(params.get(0));
+            generation = tag_cache.getGeneration();
+            repository.execute(select, true);
+
+            if(select.getStatus() != 1) {
+
+                LOGGER.log("TagServlet.read > Request failed, " + select.getException().getClass().getSimpleName() + ": " + select.getException().getMessage(), LogLevel.WARNING);
+
+                return(Response.create(
+
+                    select.getException().getMessage(),
+                    select.getException().getCause()
+                ));
+            }
+
+            try {
+
+                for(Reducible row : Tag.mapMany(select.getResult(), 0b0111)) {
+
+                    fetched.add((Tag)row);
+                    found.put(((Tag)row).id(), (Tag)row);
+                }
+            }
+
+            finally {
+
+                select.close();
+            }
+
+            tag_cache.put(generation, fetched);
+        }
+
+        return(new Response(ResponseStatus.OK, project(found.values(), read.fields())));
+    }
+
+    // the page after the continuation of the request, preceded by the continuation to the next one
+    private List<Reducible> page(List<Tag> tags, TagRead read, int page) {
+
+        List<Tag> sorted = new ArrayList<>();
+        List<Reducible> data = new ArrayList<>();
+        Tag last = null;
+
+        if(read.continuation() != null) {
+
+            last = new Tag(Continuation.id(read.continuation()), null, Continuation.creationDate(read.continuation()));
+        }
+
+        for(Tag tag : tags) {
+
+            if(last == null || PAGE_ORDER.compare(tag, last) > 0) {
+
+                sorted.add(tag);
+            }
+        }
+
+        sorted.sort(PAGE_ORDER);
+        data.add((sorted.size() > page) ? Continuation.after(sorted.get(page - 1)) : new Continuation(null));
+        data.addAll(project(sorted.subList(0, Math.min(page, sorted.size())), read.fields()));
+
+        return(data);
+    }
+
+    private List<Reducible> project(Iterable<Tag> tags, int fields) {
+
+        List<Reducible> projected = new ArrayList<>();
+
+        for(Tag tag : tags) {
+
+            // ids that don't exist
+            if(tag != null) {
+
+                projected.add(tag.project(fields));
+            }
+        }
+
+        return(projected);
+    }
     
     private Response delete(Request request) {
 
         List<List<Object>> ids;
+        List<Integer> deleted;
         QueryWrapper delete;
 
         try {
 
             ids = new ArrayList<>();
+            deleted = new ArrayList<>();
 
-            for(DataEntry entry : request.data()) {
+            // one row per id, deleted in a single batch
+            for(int i = 0; i < request.data().size(); i++) {
 
-                ids.get(0).add(Converter.entryToInt(entry));
+                ids.add(List.of(request.data().getInt(i)));
+                deleted.add(request.data().getInt(i));
             }
 
             delete = new QueryWrapper(
@@ -307,6 +549,8 @@ public class TagServlet implements Servlet {
             );
 
             repository.execute(delete, true);
+            tag_cache.deleted(deleted);
+            tag_index.deleted(deleted, delete.getStatus() == 1);
 
             if(delete.getStatus() == 1) {
 
@@ -133,6 +133,19 @@ public class SessionService {
         checkSession(session_id, check);
     }
 
+    /**
+     * <p><b>This method is thread safe.</b></p>
+     * Checks if the specified user is allowed to traverse the graph of the relations.
+     * @param session_id : The user {@code session_id}.
+     * @param method : The request method.
+     * @throws SecurityException If the associated {@link UserSession} doesn't specify
+     *                           enough privileges.
+     */
+    public void checkSessionGraph(byte[] session_id, Method method) throws SecurityException {
+
+        checkSession(session_id, method == Method.READ && ConfigurationProvider.NEED_SESSION_FOR_GRAPH_READ);
+    }
+
     // TODO: other session checks...
 
     //____________________________________________________________________________________________________________________________________
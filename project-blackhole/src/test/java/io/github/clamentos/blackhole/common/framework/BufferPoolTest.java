@@ -0,0 +1,118 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.clamentos.blackhole.common.config.ConfigurationProvider;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+// the pool is a singleton, so every test works on its own size class to not interfere with the others
+public class BufferPoolTest {
+
+    private final BufferPool pool = BufferPool.getInstance();
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void sizesAreRoundedUpToTheirClass() {
+
+        int min = ConfigurationProvider.MIN_POOLED_BUFFER_SIZE;
+        int max = ConfigurationProvider.MAX_POOLED_BUFFER_SIZE;
+
+        assertEquals(min, pool.acquire(0).capacity());
+        assertEquals(min, pool.acquire(1).capacity());
+        assertEquals(min, pool.acquire(min).capacity());
+        assertEquals(min * 2, pool.acquire(min + 1).capacity());
+        assertEquals(min * 4, pool.acquire(min * 3).capacity());
+        assertEquals(max, pool.acquire(max).capacity());
+        assertEquals(max, pool.acquire(max / 2 + 1).capacity());
+    }
+
+    @Test
+    public void biggerSizesGetAnExactBuffer() {
+
+        int size = ConfigurationProvider.MAX_POOLED_BUFFER_SIZE + 1;
+
+        assertEquals(size, pool.acquire(size).capacity());
+    }
+
+    @Test
+    public void acquiredBuffersAreCleared() {
+
+        int size = ConfigurationProvider.MIN_POOLED_BUFFER_SIZE * 8;
+        ByteBuffer buffer = pool.acquire(size);
+
+        buffer.putInt(42).limit(10);
+        pool.release(buffer);
+        buffer = pool.acquire(size);
+
+        assertEquals(0, buffer.position());
+        assertEquals(buffer.capacity(), buffer.limit());
+    }
+
+    @Test
+    public void releasedBuffersAreReused() {
+
+        int size = ConfigurationProvider.MIN_POOLED_BUFFER_SIZE * 16;
+        ByteBuffer buffer = pool.acquire(size);
+        long hits;
+
+        pool.release(buffer);
+        hits = pool.getHits();
+
+        // any size of the same class gets the buffer back
+        assertSame(buffer, pool.acquire(size / 2 + 1));
+        assertTrue(pool.getHits() > hits);
+    }
+
+    @Test
+    public void foreignBuffersAreDropped() {
+
+        int size = ConfigurationProvider.MIN_POOLED_BUFFER_SIZE * 32;
+        ByteBuffer owned = pool.acquire(size);
+        ByteBuffer other_kind = (pool.isDirect() == true) ? ByteBuffer.allocate(size) : ByteBuffer.allocateDirect(size);
+        ByteBuffer slice = ByteBuffer.allocate(size * 2).position(size).slice();
+        ByteBuffer read_only = ByteBuffer.allocate(size).asReadOnlyBuffer();
+        ByteBuffer odd = ByteBuffer.allocate(size - 1);
+
+        pool.release(null);
+        pool.release(other_kind);
+        pool.release(read_only);
+        pool.release(odd);
+
+        if(pool.isDirect() == false) {
+
+            pool.release(slice);
+        }
+
+        // none of them went in the class, so a new buffer is allocated
+        assertNotSame(other_kind, pool.acquire(size));
+        assertNotSame(slice, pool.acquire(size));
+        assertNotSame(read_only, pool.acquire(size));
+
+        pool.release(owned);
+        assertSame(owned, pool.acquire(size));
+    }
+
+    @Test
+    public void oversizedBuffersAreDropped() {
+
+        int size = ConfigurationProvider.MAX_POOLED_BUFFER_SIZE * 2;
+        ByteBuffer buffer = pool.acquire(size);
+
+        pool.release(buffer);
+
+        assertNotSame(buffer, pool.acquire(size));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
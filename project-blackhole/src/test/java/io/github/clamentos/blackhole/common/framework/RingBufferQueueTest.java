@@ -0,0 +1,277 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+public class RingBufferQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int CONSUMERS = 4;
+    private static final int PER_PRODUCER = 20_000;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void capacityIsRoundedToPowerOfTwo() {
+
+        assertEquals(8, new RingBufferQueue<Integer>(5).remainingCapacity());
+        assertEquals(2, new RingBufferQueue<Integer>(1).remainingCapacity());
+        assertEquals(16, new RingBufferQueue<Integer>(16).remainingCapacity());
+    }
+
+    @Test
+    public void illegalCapacityIsRejected() {
+
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferQueue<Integer>(0));
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferQueue<Integer>(-1));
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferQueue<Integer>((1 << 30) + 1));
+    }
+
+    @Test
+    public void nullIsRejected() {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+
+        assertThrows(NullPointerException.class, () -> queue.offer(null));
+    }
+
+    @Test
+    public void fullQueueRejectsOffer() {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+
+        for(int i = 0; i < 4; i++) {
+
+            assertTrue(queue.offer(i));
+        }
+
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    public void emptyQueueReturnsNull() {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void orderIsKeptAcrossWrapAround() {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+        int next_in = 0;
+        int next_out = 0;
+
+        // many laps of the ring, with the queue never completely empty
+        for(int lap = 0; lap < 100; lap++) {
+
+            while(queue.offer(next_in) == true) {
+
+                next_in++;
+            }
+
+            for(int i = 0; i < 3; i++) {
+
+                assertEquals(next_out++, queue.poll());
+            }
+        }
+
+        while(queue.isEmpty() == false) {
+
+            assertEquals(next_out++, queue.poll());
+        }
+
+        assertEquals(next_in, next_out);
+    }
+
+    @Test
+    public void timedPollTimesOut() throws InterruptedException {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void timedOfferTimesOut() throws InterruptedException {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(2);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void takeWakesUpOnOffer() throws InterruptedException {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+        AtomicInteger taken = new AtomicInteger(-1);
+
+        Thread consumer = new Thread(() -> {
+
+            try {
+
+                taken.set(queue.take());
+            }
+
+            catch(InterruptedException exc) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        consumer.start();
+        Thread.sleep(20);
+        queue.offer(42);
+        consumer.join(5_000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(42, taken.get());
+    }
+
+    @Test
+    public void putWakesUpOnPoll() throws InterruptedException {
+
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(2);
+
+        queue.offer(1);
+        queue.offer(2);
+
+        Thread producer = new Thread(() -> {
+
+            try {
+
+                queue.put(3);
+            }
+
+            catch(InterruptedException exc) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        producer.start();
+        Thread.sleep(20);
+
+        assertEquals(1, queue.poll());
+        producer.join(5_000);
+
+        assertFalse(producer.isAlive());
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+    }
+
+    @Test
+    public void concurrentProducersAndConsumersSeeEveryElementOnce() throws InterruptedException {
+
+        // small capacity, so that the sequence numbers wrap many times and both sides often wait
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(64);
+        List<Thread> threads = new ArrayList<>();
+        int[][] seen = new int[CONSUMERS][];
+        int[] counts = new int[PRODUCERS * PER_PRODUCER];
+        AtomicInteger failures = new AtomicInteger(0);
+
+        for(int p = 0; p < PRODUCERS; p++) {
+
+            int producer = p;
+
+            threads.add(new Thread(() -> {
+
+                try {
+
+                    for(int i = 0; i < PER_PRODUCER; i++) {
+
+                        queue.put(producer * PER_PRODUCER + i);
+                    }
+                }
+
+                catch(InterruptedException exc) {
+
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+
+        for(int c = 0; c < CONSUMERS; c++) {
+
+            int consumer = c;
+
+            seen[consumer] = new int[PRODUCERS * PER_PRODUCER / CONSUMERS];
+
+            threads.add(new Thread(() -> {
+
+                try {
+
+                    for(int i = 0; i < seen[consumer].length; i++) {
+
+                        seen[consumer][i] = queue.take();
+                    }
+                }
+
+                catch(InterruptedException exc) {
+
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+
+        for(Thread thread : threads) {
+
+            thread.start();
+        }
+
+        for(Thread thread : threads) {
+
+            thread.join(60_000);
+            assertFalse(thread.isAlive(), "thread stuck");
+        }
+
+        assertEquals(0, failures.get());
+        assertTrue(queue.isEmpty());
+
+        for(int c = 0; c < CONSUMERS; c++) {
+
+            // a single consumer must see the elements of each producer in the order they were put
+            int[] last = new int[PRODUCERS];
+
+            for(int p = 0; p < PRODUCERS; p++) {
+
+                last[p] = -1;
+            }
+
+            for(int elem : seen[c]) {
+
+                counts[elem]++;
+                assertTrue(elem % PER_PRODUCER > last[elem / PER_PRODUCER], "out of order: " + elem);
+                last[elem / PER_PRODUCER] = elem % PER_PRODUCER;
+            }
+        }
+
+        for(int i = 0; i < counts.length; i++) {
+
+            assertEquals(1, counts[i], "element " + i);
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,212 @@
+package io.github.clamentos.blackhole.common.framework;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+public class WorkStealingQueueTest {
+
+    @Test
+    public void illegalCapacityIsRejected() {
+
+        assertThrows(IllegalArgumentException.class, () -> new WorkStealingQueue<Integer>(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new WorkStealingQueue<Integer>(-5, 2));
+    }
+
+    @Test
+    public void nullIsRejected() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(4, 2);
+
+        assertThrows(NullPointerException.class, () -> queue.offer(null));
+        assertThrows(NullPointerException.class, () -> queue.getWorkerQueue(0).offer(null));
+    }
+
+    @Test
+    public void ownDequeIsConsumedInOrder() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(16, 2);
+        BlockingQueue<Integer> worker = queue.getWorkerQueue(0);
+
+        for(int i = 0; i < 5; i++) {
+
+            assertTrue(worker.offer(i));
+        }
+
+        for(int i = 0; i < 5; i++) {
+
+            assertEquals(i, worker.poll());
+        }
+
+        assertNull(worker.poll());
+    }
+
+    @Test
+    public void idleWorkerStealsFromTheTail() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(16, 2);
+        BlockingQueue<Integer> owner = queue.getWorkerQueue(0);
+        BlockingQueue<Integer> thief = queue.getWorkerQueue(1);
+
+        owner.offer(1);
+        owner.offer(2);
+        owner.offer(3);
+
+        // the thief takes the newest element, the owner keeps consuming from the head
+        assertEquals(3, thief.poll());
+        assertEquals(1, owner.poll());
+        assertEquals(2, thief.poll());
+        assertNull(owner.poll());
+        assertNull(thief.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void workerPrefersItsOwnDeque() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(16, 2);
+        BlockingQueue<Integer> first = queue.getWorkerQueue(0);
+        BlockingQueue<Integer> second = queue.getWorkerQueue(1);
+
+        first.offer(10);
+        second.offer(20);
+
+        assertEquals(20, second.poll());
+        assertEquals(10, first.poll());
+    }
+
+    @Test
+    public void workerIndexWrapsAround() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(16, 2);
+
+        queue.getWorkerQueue(2).offer(1);
+        queue.getWorkerQueue(2).offer(2);
+
+        // worker 2 is worker 0, so worker 1 has to steal from the tail
+        assertEquals(2, queue.getWorkerQueue(1).poll());
+        assertEquals(1, queue.getWorkerQueue(0).poll());
+    }
+
+    @Test
+    public void capacityIsSharedAcrossDeques() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(3, 2);
+
+        assertTrue(queue.getWorkerQueue(0).offer(1));
+        assertTrue(queue.getWorkerQueue(1).offer(2));
+        assertTrue(queue.offer(3));
+        assertFalse(queue.getWorkerQueue(0).offer(4));
+        assertFalse(queue.offer(5));
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        assertTrue(queue.getWorkerQueue(1).poll() != null);
+        assertTrue(queue.offer(6));
+    }
+
+    @Test
+    public void everyElementIsTakenOnce() {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(1_000, 4);
+        Set<Integer> seen = new HashSet<>();
+        Integer elem;
+        int worker = 0;
+
+        for(int i = 0; i < 1_000; i++) {
+
+            assertTrue(queue.offer(i));
+        }
+
+        while((elem = queue.getWorkerQueue(worker++).poll()) != null) {
+
+            assertTrue(seen.add(elem), "taken twice: " + elem);
+        }
+
+        assertEquals(1_000, seen.size());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void timedPollTimesOut() throws InterruptedException {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(4, 2);
+
+        assertNull(queue.getWorkerQueue(0).poll(10, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void blockedTakeIsServedBySteal() throws InterruptedException {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(4, 2);
+        AtomicInteger taken = new AtomicInteger(-1);
+
+        Thread consumer = new Thread(() -> {
+
+            try {
+
+                taken.set(queue.getWorkerQueue(1).take());
+            }
+
+            catch(InterruptedException exc) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        consumer.start();
+        Thread.sleep(20);
+        queue.getWorkerQueue(0).offer(7);
+        consumer.join(5_000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(7, taken.get());
+    }
+
+    @Test
+    public void blockedPutIsServedByPoll() throws InterruptedException {
+
+        WorkStealingQueue<Integer> queue = new WorkStealingQueue<>(1, 2);
+
+        queue.offer(1);
+
+        Thread producer = new Thread(() -> {
+
+            try {
+
+                queue.put(2);
+            }
+
+            catch(InterruptedException exc) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        producer.start();
+        Thread.sleep(20);
+
+        assertEquals(1, queue.getWorkerQueue(0).poll());
+        producer.join(5_000);
+
+        assertFalse(producer.isAlive());
+        assertEquals(2, queue.getWorkerQueue(1).poll());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,190 @@
+package io.github.clamentos.blackhole.common.utility;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.clamentos.blackhole.common.framework.CompressionCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+// the same round trips for every codec
+public class CompressionCodecTest {
+
+    private final CompressionCodec[] codecs = {
+
+        new Lz4Codec(2),
+        new DeflateCodec(6, 2)
+    };
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void emptyInputRoundTrips() {
+
+        for(CompressionCodec codec : codecs) {
+
+            roundTrip(codec, new byte[0], false);
+        }
+    }
+
+    @Test
+    public void shortInputsRoundTrip() {
+
+        Random random = new Random(1);
+        byte[] data;
+
+        // below, at and above the minimum length that LZ4 searches for matches
+        for(CompressionCodec codec : codecs) {
+
+            for(int length = 1; length < 32; length++) {
+
+                data = new byte[length];
+                random.nextBytes(data);
+                roundTrip(codec, data, false);
+            }
+        }
+    }
+
+    @Test
+    public void repetitiveInputShrinks() {
+
+        byte[] data = "{\"name\":\"tag\",\"creation_date\":1700000000},".repeat(2_000).getBytes(StandardCharsets.UTF_8);
+
+        for(CompressionCodec codec : codecs) {
+
+            assertTrue(roundTrip(codec, data, false) < data.length / 10, codec.getName());
+        }
+    }
+
+    @Test
+    public void longRunsRoundTrip() {
+
+        // overlapping matches and length fields that need many extension bytes
+        byte[] data = new byte[200_000];
+
+        data[100_000] = 1;
+
+        for(CompressionCodec codec : codecs) {
+
+            roundTrip(codec, data, false);
+        }
+    }
+
+    @Test
+    public void randomInputRoundTrips() {
+
+        Random random = new Random(2);
+        byte[] data = new byte[100_000];
+
+        random.nextBytes(data);
+
+        for(CompressionCodec codec : codecs) {
+
+            roundTrip(codec, data, false);
+        }
+    }
+
+    @Test
+    public void mixedInputRoundTrips() {
+
+        // random chunks repeated at distances both within and beyond the LZ4 window
+        Random random = new Random(3);
+        byte[] data = new byte[300_000];
+        byte[] chunk = new byte[1_000];
+
+        for(int i = 0; i < data.length; i += chunk.length) {
+
+            if(random.nextInt(3) == 0) {
+
+                random.nextBytes(chunk);
+            }
+
+            System.arraycopy(chunk, 0, data, i, chunk.length);
+        }
+
+        for(CompressionCodec codec : codecs) {
+
+            roundTrip(codec, data, false);
+            roundTrip(codec, data, true);
+        }
+    }
+
+    @Test
+    public void tooSmallTargetIsReported() {
+
+        Random random = new Random(4);
+        byte[] data = new byte[10_000];
+
+        random.nextBytes(data);
+
+        for(CompressionCodec codec : codecs) {
+
+            assertEquals(-1, codec.compress(ByteBuffer.wrap(data), ByteBuffer.allocate(data.length / 2)), codec.getName());
+        }
+    }
+
+    @Test
+    public void wrongLengthIsRejected() {
+
+        byte[] data = "some text, some text, some more text".repeat(50).getBytes(StandardCharsets.UTF_8);
+
+        for(CompressionCodec codec : codecs) {
+
+            ByteBuffer compressed = ByteBuffer.allocate(data.length + 64);
+
+            codec.compress(ByteBuffer.wrap(data), compressed);
+            compressed.flip();
+
+            assertThrows(IllegalArgumentException.class, () -> codec.decompress(compressed.duplicate(), ByteBuffer.allocate(data.length - 1)));
+            assertThrows(IllegalArgumentException.class, () -> codec.decompress(compressed.duplicate(), ByteBuffer.allocate(data.length + 1)));
+            assertThrows(IllegalArgumentException.class, () -> codec.decompress(compressed.duplicate().limit(compressed.limit() / 2), ByteBuffer.allocate(data.length)));
+        }
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // compress and decompress, checking the positions too. Returns the compressed size
+    private int roundTrip(CompressionCodec codec, byte[] data, boolean direct) {
+
+        ByteBuffer source = buffer(data.length + 7, direct).position(7);
+        ByteBuffer compressed = buffer(data.length + data.length / 255 + 64 + 3, direct).position(3);
+        ByteBuffer restored = buffer(data.length + 5, direct).position(5);
+        byte[] result = new byte[data.length];
+        int written;
+
+        source.put(data).position(7);
+        written = codec.compress(source, compressed);
+
+        assertTrue(written >= 0, codec.getName() + " could not compress " + data.length + " bytes");
+        assertEquals(source.limit(), source.position());
+        assertEquals(3 + written, compressed.position());
+
+        compressed.limit(compressed.position()).position(3);
+        codec.decompress(compressed, restored);
+
+        assertEquals(compressed.limit(), compressed.position());
+        assertEquals(restored.limit(), restored.position());
+
+        restored.get(5, result);
+        assertArrayEquals(data, result, codec.getName() + " round trip of " + data.length + " bytes");
+
+        return(written);
+    }
+
+    private ByteBuffer buffer(int capacity, boolean direct) {
+
+        return((direct == true) ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,150 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.clamentos.blackhole.persistence.TagCache.Filter;
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+// the cache is a singleton, so every test uses its own names and ids
+public class TagCacheTest {
+
+    private final TagCache cache = TagCache.getInstance();
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void literalNamesMustBeContained() {
+
+        Filter filter = new Filter("abc", null, null);
+
+        assertTrue(filter.matches(new Tag(1, "abc", 0)));
+        assertTrue(filter.matches(new Tag(1, "xxabcxx", 0)));
+        assertFalse(filter.matches(new Tag(1, "ab", 0)));
+        assertFalse(filter.matches(new Tag(1, "ABC", 0)));
+    }
+
+    @Test
+    public void wildcardsMatchAnything() {
+
+        // LIKE would decide, so any name could match
+        assertTrue(new Filter("a%c", null, null).matches(new Tag(1, "zzz", 0)));
+        assertTrue(new Filter("a_c", null, null).matches(new Tag(1, "zzz", 0)));
+        assertTrue(new Filter("%", null, null).matches(new Tag(1, "zzz", 0)));
+    }
+
+    @Test
+    public void escapesMatchAnything() {
+
+        // LIKE reads "a\%c" as "a%c": compared as is, it would never match the name it finds
+        assertTrue(new Filter("a\\%c", null, null).matches(new Tag(1, "a%c", 0)));
+        assertTrue(new Filter("a\\_c", null, null).matches(new Tag(1, "a_c", 0)));
+        assertTrue(new Filter("a\\\\c", null, null).matches(new Tag(1, "a\\c", 0)));
+    }
+
+    @Test
+    public void missingFieldsMatchAnything() {
+
+        Filter filter = new Filter("abc", 10, 20);
+
+        assertTrue(filter.matches(new Tag(1, null, 15)));
+        assertTrue(filter.matches(new Tag(1, "abc", null)));
+        assertTrue(filter.matches(new Tag(1, null, null)));
+        assertTrue(new Filter(null, null, null).matches(new Tag(1, "anything", 0)));
+    }
+
+    @Test
+    public void datesAreInclusive() {
+
+        Filter filter = new Filter(null, 10, 20);
+
+        assertFalse(filter.matches(new Tag(1, "a", 9)));
+        assertTrue(filter.matches(new Tag(1, "a", 10)));
+        assertTrue(filter.matches(new Tag(1, "a", 20)));
+        assertFalse(filter.matches(new Tag(1, "a", 21)));
+        assertTrue(new Filter(null, 10, null).matches(new Tag(1, "a", Integer.MAX_VALUE)));
+        assertTrue(new Filter(null, null, 20).matches(new Tag(1, "a", Integer.MIN_VALUE)));
+    }
+
+    @Test
+    public void emptyNameIsNoName() {
+
+        assertNull(new Filter("", null, null).name_like());
+        assertEquals(new Filter(null, 1, 2), new Filter("", 1, 2));
+    }
+
+    @Test
+    public void updateInvalidatesOldAndNewName() {
+
+        Filter old_name = new Filter("cache-old-name", null, null);
+        Filter new_name = new Filter("cache-new-name", null, null);
+        Filter other = new Filter("cache-other-name", null, null);
+        long generation = cache.getGeneration();
+
+        cache.put(generation, old_name, List.of(new Tag(1_000_001, "cache-old-name", 5)));
+        cache.put(generation, new_name, List.of());
+        cache.put(generation, other, List.of());
+        cache.updated(List.of(new Tag(1_000_001, "cache-new-name", null)));
+
+        // the old name by the id in its rows, the new one by matching the renamed tag
+        assertNull(cache.get(old_name));
+        assertNull(cache.get(new_name));
+        assertNull(cache.get(1_000_001));
+        assertNotNull(cache.get(other));
+    }
+
+    @Test
+    public void updateKeepsTheOldDate() {
+
+        Filter later = new Filter("cache-dated-new", 10, null);
+        Filter any = new Filter("cache-dated-new", null, null);
+        long generation = cache.getGeneration();
+
+        cache.put(generation, List.of(new Tag(1_000_002, "cache-dated-old", 5)));
+        cache.put(generation, later, List.of());
+        cache.put(generation, any, List.of());
+        cache.updated(List.of(new Tag(1_000_002, "cache-dated-new", null)));
+
+        // created at 5, the renamed tag can't enter a search from 10 on
+        assertNotNull(cache.get(later));
+        assertNull(cache.get(any));
+    }
+
+    @Test
+    public void updateWithoutOldRowMatchesAnyDate() {
+
+        Filter later = new Filter("cache-undated-new", 10, null);
+        long generation = cache.getGeneration();
+
+        cache.put(generation, later, List.of());
+        cache.updated(List.of(new Tag(1_000_003, "cache-undated-new", null)));
+
+        assertNull(cache.get(later));
+    }
+
+    @Test
+    public void staleGenerationIsNotCached() {
+
+        Filter filter = new Filter("cache-stale", null, null);
+        long generation = cache.getGeneration();
+
+        cache.deleted(List.of(1_000_004));
+        cache.put(generation, filter, List.of(new Tag(1_000_004, "cache-stale", 0)));
+
+        assertNull(cache.get(filter));
+        assertNull(cache.get(1_000_004));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
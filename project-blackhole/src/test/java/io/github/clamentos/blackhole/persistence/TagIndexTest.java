@@ -0,0 +1,340 @@
+package io.github.clamentos.blackhole.persistence;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.persistence.query.QueryWrapper;
+
+import java.lang.reflect.Proxy;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+// the index runs on a fake database: a map of rows, whose read backs can be held after selecting, to race writes with them
+public class TagIndexTest {
+
+    private static final long TIMEOUT = 5_000;
+
+    private final ConcurrentHashMap<Integer, Tag> database = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> selected = new LinkedBlockingQueue<>();
+    private final Semaphore proceed = new Semaphore(0);
+    private volatile boolean holding = false;
+    private volatile boolean failing = false;
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void shortNamesCheckEveryTag() {
+
+        TagIndex index = loaded(tag(1, "ab"), tag(2, "abc"), tag(3, "xabcx"), tag(4, "zz"));
+
+        assertEquals(List.of(1, 2, 3), ids(index.search(filter("ab"))));
+        assertEquals(List.of(4), ids(index.search(filter("z"))));
+        assertEquals(List.of(1, 2, 3, 4), ids(index.search(filter(null))));
+        assertEquals(List.of(1, 2, 3, 4), ids(index.search(filter(""))));
+    }
+
+    @Test
+    public void longNamesUseTheTrigrams() {
+
+        TagIndex index = loaded(tag(1, "abcd"), tag(2, "bcde"), tag(3, "xabcdex"), tag(4, "other"));
+
+        assertEquals(List.of(1, 3), ids(index.search(filter("abcd"))));
+        assertEquals(List.of(3), ids(index.search(filter("abcde"))));
+        assertEquals(List.of(1, 2, 3), ids(index.search(filter("bcd"))));
+    }
+
+    @Test
+    public void missingTrigramsFindNothing() {
+
+        TagIndex index = loaded(tag(1, "abcd"), tag(2, "bcde"));
+
+        // a trigram that no name has
+        assertEquals(List.of(), ids(index.search(filter("abq"))));
+
+        // every trigram is there, but never all in the same name
+        assertEquals(List.of(), ids(index.search(filter("abcde"))));
+    }
+
+    @Test
+    public void datesAreChecked() {
+
+        TagIndex index = loaded(new Tag(1, "alpha", 10), new Tag(2, "alphabet", 20), new Tag(3, "alpine", 30));
+
+        assertEquals(List.of(2), ids(index.search(new TagCache.Filter("alpha", 15, null))));
+        assertEquals(List.of(1, 2), ids(index.search(new TagCache.Filter("al", null, 25))));
+        assertEquals(List.of(), ids(index.search(new TagCache.Filter("alp", 31, null))));
+    }
+
+    @Test
+    public void wildcardsAndEscapesFallBack() {
+
+        TagIndex index = loaded(tag(1, "a%b"), tag(2, "a_b"), tag(3, "a\\b"));
+        long fallbacks = index.getFallbacks();
+
+        assertNull(index.search(filter("a%b")));
+        assertNull(index.search(filter("a_b")));
+        assertNull(index.search(filter("a\\b")));
+        assertNull(index.search(filter("%")));
+        assertEquals(fallbacks + 4, index.getFallbacks());
+    }
+
+    @Test
+    public void coldIndexFallsBack() {
+
+        TagIndex index;
+
+        failing = true;
+        index = new TagIndex(this::execute, true);
+
+        assertFalse(index.isReady());
+        assertNull(index.search(filter("abc")));
+        assertNull(index.search(filter(null)));
+    }
+
+    @Test
+    public void pendingCreatesFallBack() throws InterruptedException {
+
+        TagIndex index = loaded(tag(1, "existing"));
+        List<Tag> found;
+
+        holding = true;
+        database.put(2, tag(2, "created"));
+        index.created(List.of(new Tag(null, "created", 0)));
+
+        // not read back yet: only the searches that could match it go to the database
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(index.search(filter("creat")));
+        assertNull(index.search(filter(null)));
+        assertEquals(List.of(1), ids(index.search(filter("exist"))));
+
+        holding = false;
+        proceed.release();
+        found = awaitFound(index, filter("creat"));
+
+        assertEquals(List.of(2), ids(found));
+    }
+
+    @Test
+    public void deleteDuringReadBackWins() throws InterruptedException {
+
+        TagIndex index = loaded(tag(1, "alpha"), tag(2, "beta"));
+        Thread reader;
+
+        // a failed update reads the tag back: the row is selected, then the tag is deleted before it's applied
+        holding = true;
+        reader = new Thread(() -> index.updated(List.of(tag(1, "alpha")), false));
+        reader.start();
+
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        database.remove(1);
+        index.deleted(List.of(1), true);
+        proceed.release();
+        reader.join(TIMEOUT);
+
+        assertFalse(reader.isAlive());
+        assertEquals(List.of(), ids(index.search(filter("alpha"))));
+        assertEquals(List.of(2), ids(index.search(filter(null))));
+        assertEquals(1, index.getSize());
+    }
+
+    @Test
+    public void renameDuringReadBackWins() throws InterruptedException {
+
+        TagIndex index = loaded(tag(1, "alpha"));
+        Thread reader;
+
+        // a failed delete reads the tag back: the old name is selected, then the tag is renamed before it's applied
+        holding = true;
+        reader = new Thread(() -> index.deleted(List.of(1), false));
+        reader.start();
+
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        database.put(1, tag(1, "omega"));
+        index.updated(List.of(new Tag(1, "omega", null)), true);
+        proceed.release();
+        reader.join(TIMEOUT);
+
+        assertFalse(reader.isAlive());
+        assertEquals(List.of(), ids(index.search(filter("alpha"))));
+        assertEquals(List.of(1), ids(index.search(filter("omega"))));
+    }
+
+    @Test
+    public void deleteDuringFlushWins() throws InterruptedException {
+
+        TagIndex index = loaded(tag(1, "other"));
+
+        holding = true;
+        database.put(2, tag(2, "created"));
+        index.created(List.of(new Tag(null, "created", 0)));
+
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        database.remove(2);
+        index.deleted(List.of(2), true);
+        holding = false;
+        proceed.release();
+
+        assertEquals(List.of(), ids(awaitFound(index, filter("created"))));
+        assertEquals(1, index.getSize());
+    }
+
+    @Test
+    public void createAgainDuringFlushStaysPending() throws InterruptedException {
+
+        TagIndex index = loaded(tag(1, "other"));
+
+        holding = true;
+        database.put(2, tag(2, "recreated"));
+        index.created(List.of(new Tag(null, "recreated", 0)));
+
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        // deleted and created again with a new id, while the first read back is held
+        database.remove(2);
+        index.deleted(List.of(2), true);
+        database.put(3, tag(3, "recreated"));
+        index.created(List.of(new Tag(null, "recreated", 0)));
+        proceed.release();
+
+        // the new create is still pending, so it's read back again and searches fall back until then
+        assertNotNull(selected.poll(TIMEOUT, TimeUnit.MILLISECONDS), "the new create was dropped");
+        assertNull(index.search(filter("recreated")));
+
+        holding = false;
+        proceed.release();
+
+        assertEquals(List.of(3), ids(awaitFound(index, filter("recreated"))));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private TagIndex loaded(Tag... tags) {
+
+        TagIndex index;
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        for(Tag tag : tags) {
+
+            database.put(tag.id(), tag);
+        }
+
+        index = new TagIndex(this::execute, true);
+
+        while(index.isReady() == false) {
+
+            assertTrue(System.currentTimeMillis() < deadline, "never loaded");
+            Thread.onSpinWait();
+        }
+
+        return(index);
+    }
+
+    private List<Tag> awaitFound(TagIndex index, TagCache.Filter filter) throws InterruptedException {
+
+        List<Tag> found;
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while((found = index.search(filter)) == null) {
+
+            assertTrue(System.currentTimeMillis() < deadline, "still falling back");
+            Thread.sleep(1);
+        }
+
+        return(found);
+    }
+
+    // answers the queries of the index from the map, holding the read backs after selecting if asked to
+    private void execute(QueryWrapper query) {
+
+        List<Tag> rows = new ArrayList<>();
+        List<Object> values = query.getParameters().get(0);
+
+        if(failing == true) {
+
+            query.fail(new SQLException("database down"));
+            return;
+        }
+
+        for(Tag tag : database.values()) {
+
+            if(
+
+                (query.getSql().contains("WHERE name IN") == true && values.contains(tag.name()) == true) ||
+                (query.getSql().contains("WHERE id IN") == true && values.contains(tag.id()) == true) ||
+                query.getSql().contains("WHERE") == false
+            ) {
+
+                rows.add(tag);
+            }
+        }
+
+        if(holding == true && query.getSql().contains("WHERE") == true) {
+
+            selected.add(query.getSql());
+            proceed.acquireUninterruptibly();
+        }
+
+        query.complete(result(rows));
+    }
+
+    // the few methods of the result that Tag.mapMany uses
+    private ResultSet result(List<Tag> rows) {
+
+        Iterator<Tag> iterator = rows.iterator();
+        Tag[] current = new Tag[1];
+
+        return((ResultSet)Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+
+            switch(method.getName()) {
+
+                case "next": current[0] = iterator.hasNext() ? iterator.next() : null; return(current[0] != null);
+                case "getInt": return(((int)args[0] == 1) ? current[0].id() : current[0].creation_date());
+                case "getString": return(current[0].name());
+                case "close": return(null);
+
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+    }
+
+    private Tag tag(int id, String name) {
+
+        return(new Tag(id, name, 0));
+    }
+
+    private TagCache.Filter filter(String name_like) {
+
+        return(new TagCache.Filter(name_like, null, null));
+    }
+
+    private List<Integer> ids(List<Tag> tags) {
+
+        assertNotNull(tags, "the search fell back");
+        return(tags.stream().map(Tag::id).toList());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,103 @@
+package io.github.clamentos.blackhole.persistence.query;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+public class InClauseTest {
+
+    @Test
+    public void sizesAreBucketed() {
+
+        // powers of two up to 1024, then multiples of 1024
+        assertEquals(1, InClause.size(1));
+        assertEquals(2, InClause.size(2));
+        assertEquals(4, InClause.size(3));
+        assertEquals(4, InClause.size(4));
+        assertEquals(8, InClause.size(5));
+        assertEquals(1_024, InClause.size(513));
+        assertEquals(1_024, InClause.size(1_024));
+        assertEquals(2_048, InClause.size(1_025));
+        assertEquals(2_048, InClause.size(2_048));
+        assertEquals(3_072, InClause.size(2_049));
+    }
+
+    @Test
+    public void fewSizesAreUsed() {
+
+        Set<Integer> sizes = new HashSet<>();
+
+        for(int count = 1; count <= 10_000; count++) {
+
+            sizes.add(InClause.size(count));
+        }
+
+        // 11 powers of two and 9 more multiples of 1024
+        assertEquals(20, sizes.size());
+    }
+
+    @Test
+    public void illegalCountIsRejected() {
+
+        assertThrows(IllegalArgumentException.class, () -> InClause.size(0));
+        assertThrows(IllegalArgumentException.class, () -> InClause.size(-1));
+        assertThrows(IllegalArgumentException.class, () -> InClause.placeholders(0));
+    }
+
+    @Test
+    public void placeholdersArePadded() {
+
+        assertEquals("?", InClause.placeholders(1));
+        assertEquals("?,?", InClause.placeholders(2));
+        assertEquals("?,?,?,?", InClause.placeholders(3));
+        assertEquals(2_048 * 2 - 1, InClause.placeholders(1_025).length());
+    }
+
+    @Test
+    public void padRepeatsTheLastValue() {
+
+        List<Object> values = new ArrayList<>(List.of(7, 8, 9));
+        List<Object> many = new ArrayList<>();
+
+        InClause.pad(values);
+        assertEquals(List.of(7, 8, 9, 9), values);
+
+        for(int i = 0; i < 1_025; i++) {
+
+            many.add(i);
+        }
+
+        InClause.pad(many);
+        assertEquals(2_048, many.size());
+        assertEquals(1_023, many.get(1_023));
+        assertEquals(1_024, many.get(1_024));
+        assertEquals(1_024, many.get(2_047));
+    }
+
+    @Test
+    public void padKeepsFullBuckets() {
+
+        List<Object> values = new ArrayList<>(List.of("a", "b"));
+
+        InClause.pad(values);
+        assertEquals(List.of("a", "b"), values);
+    }
+
+    @Test
+    public void padRejectsEmptyList() {
+
+        assertThrows(IllegalArgumentException.class, () -> InClause.pad(new ArrayList<>()));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
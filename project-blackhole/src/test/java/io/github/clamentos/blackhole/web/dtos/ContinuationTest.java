@@ -0,0 +1,115 @@
+package io.github.clamentos.blackhole.web.dtos;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.clamentos.blackhole.persistence.entities.Tag;
+import io.github.clamentos.blackhole.web.dtos.actions.TagRead;
+import io.github.clamentos.blackhole.web.dtos.components.EntryWriter;
+import io.github.clamentos.blackhole.web.dtos.components.Payload;
+import io.github.clamentos.blackhole.web.dtos.components.Type;
+
+import java.nio.ByteBuffer;
+
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+public class ContinuationTest {
+
+    private static final int[] VALUES = {
+
+        0, 1, -1, 42, -42, 1_700_000_000, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1
+    };
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void tokenRoundTrips() {
+
+        long token;
+
+        // every date with every id, so that the sign of one half can't leak into the other
+        for(int creation_date : VALUES) {
+
+            for(int id : VALUES) {
+
+                token = Continuation.after(new Tag(id, "name", creation_date)).token();
+
+                assertEquals(creation_date, Continuation.creationDate(token), "date of (" + creation_date + ", " + id + ")");
+                assertEquals(id, Continuation.id(token), "id of (" + creation_date + ", " + id + ")");
+            }
+        }
+    }
+
+    @Test
+    public void tokenPacksDateAboveId() {
+
+        assertEquals((5L << 32) | 7L, Continuation.after(new Tag(7, null, 5)).token());
+        assertEquals(0xFFFF_FFFFL, Continuation.after(new Tag(-1, null, 0)).token());
+        assertEquals(-1L << 32, Continuation.after(new Tag(0, null, -1)).token());
+    }
+
+    @Test
+    public void tokenRoundTripsThroughTheRequest() {
+
+        for(boolean compact : new boolean[] {false, true}) {
+
+            for(int value : VALUES) {
+
+                Continuation continuation = Continuation.after(new Tag(value, "name", -value));
+                TagRead read = read(compact, continuation::reduce);
+
+                assertEquals(continuation.token(), read.continuation());
+                assertEquals(-value, Continuation.creationDate(read.continuation()));
+                assertEquals(value, Continuation.id(read.continuation()));
+            }
+        }
+    }
+
+    @Test
+    public void lastPageHasNoToken() {
+
+        Continuation last = new Continuation(null);
+
+        assertEquals(Type.NULL, last.reduce().get(0).data_type());
+        assertNull(read(false, last::reduce).continuation());
+        assertNull(read(true, last::reduce).continuation());
+
+        // older clients don't send it at all
+        assertNull(read(false, writer -> {}).continuation());
+    }
+
+    @Test
+    public void malformedTokenIsRejected() {
+
+        assertThrows(IllegalArgumentException.class, () -> read(false, writer -> writer.putInt(42)));
+        assertThrows(IllegalArgumentException.class, () -> read(true, writer -> writer.putString("42")));
+        assertThrows(IllegalArgumentException.class, () -> read(false, writer -> writer.putDouble(42.0)));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    // a complex fetch with the given continuation entry, if any
+    private TagRead read(boolean compact, Consumer<EntryWriter> token) {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(64), compact);
+
+        writer.putByte((byte)1);
+        writer.putByte((byte)0b0111);
+        writer.putIntNullable(10);
+        writer.putString("name");
+        writer.putIntNullable(null);
+        writer.putIntNullable(null);
+        token.accept(writer);
+
+        return(TagRead.deserialize(Payload.wrap(writer.getBuffer(), 0, writer.position(), compact)));
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}
@@ -0,0 +1,292 @@
+package io.github.clamentos.blackhole.web.dtos.components;
+
+//________________________________________________________________________________________________________________________________________
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+//________________________________________________________________________________________________________________________________________
+
+// round trips of the EntryWriter / EntryReader pair, mostly on the compact encoding
+public class EntryCodecTest {
+
+    private static final int[] INTS = {
+
+        0, 1, -1, 63, -64, 64, -65, 8191, -8192, 8192, -8193,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1
+    };
+
+    private static final long[] LONGS = {
+
+        0L, 1L, -1L, 63L, -64L, 64L, -65L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+        (long)Integer.MAX_VALUE + 1, (long)Integer.MIN_VALUE - 1, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+    private static final short[] SHORTS = {
+
+        0, 1, -1, 63, -64, 64, -65, Short.MAX_VALUE, Short.MIN_VALUE
+    };
+
+    //____________________________________________________________________________________________________________________________________
+
+    @Test
+    public void varintsRoundTrip() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16), true);
+        EntryReader reader;
+
+        for(short value : SHORTS) {
+
+            writer.putShort(value);
+        }
+
+        for(int value : INTS) {
+
+            writer.putInt(value);
+        }
+
+        for(long value : LONGS) {
+
+            writer.putLong(value);
+        }
+
+        reader = reader(writer, true);
+
+        for(short value : SHORTS) {
+
+            assertEquals(value, reader.readShort());
+        }
+
+        for(int value : INTS) {
+
+            assertEquals(value, reader.readInt());
+        }
+
+        for(long value : LONGS) {
+
+            assertEquals(value, reader.readLong());
+        }
+
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void varintsAreZigZagged() {
+
+        // tag byte plus 7 bits per byte of the zig-zagged value
+        assertEquals(2, sizeOfInt(0));
+        assertEquals(2, sizeOfInt(-1));
+        assertEquals(2, sizeOfInt(63));
+        assertEquals(2, sizeOfInt(-64));
+        assertEquals(3, sizeOfInt(64));
+        assertEquals(3, sizeOfInt(-65));
+        assertEquals(6, sizeOfInt(Integer.MIN_VALUE));
+        assertEquals(6, sizeOfInt(Integer.MAX_VALUE));
+        assertEquals(11, sizeOfLong(Long.MIN_VALUE));
+        assertEquals(11, sizeOfLong(Long.MAX_VALUE));
+        assertEquals(2, sizeOfLong(-1L));
+    }
+
+    @Test
+    public void varintsCanBeSkipped() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(64), true);
+        EntryReader reader;
+
+        writer.putLong(Long.MIN_VALUE);
+        writer.putInt(300);
+        writer.putShort((short)-2);
+        writer.putString("tail");
+
+        reader = reader(writer, true);
+        reader.skip();
+        reader.skip();
+        reader.skip();
+
+        assertEquals("tail", reader.readString());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void nullsAreRunLengthEncoded() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(4), true);
+        EntryReader reader;
+
+        for(int i = 0; i < 300; i++) {
+
+            writer.putNull();
+        }
+
+        // three runs of 127, 127 and 46
+        assertEquals(6, writer.position());
+        assertEquals(Type.NULL.getVal(), writer.getBuffer().get(0));
+        assertEquals(127, writer.getBuffer().get(1));
+        assertEquals(127, writer.getBuffer().get(3));
+        assertEquals(46, writer.getBuffer().get(5));
+
+        reader = reader(writer, true);
+
+        for(int i = 0; i < 300; i++) {
+
+            assertTrue(reader.hasNext());
+            assertTrue(reader.readNull(), "null " + i);
+        }
+
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void nullRunsAreBrokenByValues() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(64), true);
+        EntryReader reader;
+
+        writer.putIntNullable(null);
+        writer.putIntNullable(null);
+        writer.putIntNullable(5);
+        writer.putLongNullable(null);
+        writer.putString(null);
+        writer.putLongNullable(-7L);
+        writer.putNull();
+
+        // [NULL 2] [INT 5] [NULL 2] [LONG -7] [NULL 1]
+        assertEquals(2 + 2 + 2 + 2 + 2, writer.position());
+
+        reader = reader(writer, true);
+
+        assertNull(reader.readIntNullable());
+        assertNull(reader.readIntNullable());
+        assertEquals(5, reader.readIntNullable());
+        assertNull(reader.readLongNullable());
+        assertTrue(reader.readNull());
+        assertEquals(-7L, reader.readLongNullable());
+        assertEquals(Type.NULL, reader.peekType());
+        reader.skip();
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void nullRunsCanBeSkippedAsOneEntryPerNull() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16), true);
+        EntryReader reader;
+
+        writer.putNull();
+        writer.putNull();
+        writer.putNull();
+        writer.putInt(9);
+
+        reader = reader(writer, true);
+        reader.skip();
+        reader.skip();
+
+        assertEquals(Type.NULL, reader.next().data_type());
+        assertEquals(9, reader.readInt());
+    }
+
+    @Test
+    public void compactStringsHaveVarintLength() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(8), true);
+        String long_string = "x".repeat(200);
+        String multibyte = "caff\u00e8 \u2615 \ud83d\ude00";
+        EntryReader reader;
+
+        writer.putString("abc");
+
+        // tag, one length byte, three chars
+        assertEquals(5, writer.position());
+
+        writer.putString(long_string);
+
+        // 200 needs two varint bytes
+        assertEquals(5 + 1 + 2 + 200, writer.position());
+
+        writer.putString(multibyte);
+        writer.putString("");
+        writer.putRaw(new byte[] {1, 2, 3});
+
+        reader = reader(writer, true);
+
+        assertEquals("abc", reader.readString());
+        assertEquals(long_string, reader.readString());
+        assertEquals(multibyte, reader.readString());
+        assertEquals("", reader.readString());
+        assertArrayEquals(new byte[] {1, 2, 3}, reader.readRaw());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void plainEncodingIsUnchanged() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(64), false);
+        EntryReader reader;
+
+        writer.putInt(0);
+        writer.putLong(0L);
+        writer.putShort((short)0);
+        writer.putNull();
+        writer.putNull();
+        writer.putString("ab");
+
+        // fixed width values and one tag per null
+        assertEquals(5 + 9 + 3 + 1 + 1 + 7, writer.position());
+
+        reader = reader(writer, false);
+
+        assertEquals(0, reader.readInt());
+        assertEquals(0L, reader.readLong());
+        assertEquals((short)0, reader.readShort());
+        assertTrue(reader.readNull());
+        assertTrue(reader.readNull());
+        assertFalse(reader.readNull());
+        assertEquals("ab", reader.readString());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void wrongTypeIsRejected() {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16), true);
+        EntryReader reader;
+
+        writer.putString("a");
+        reader = reader(writer, true);
+
+        assertThrows(IllegalArgumentException.class, () -> reader.readInt());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+
+    private EntryReader reader(EntryWriter writer, boolean compact) {
+
+        return(new EntryReader(writer.getBuffer(), 0, writer.position(), compact));
+    }
+
+    private int sizeOfInt(int value) {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16), true);
+
+        writer.putInt(value);
+        return(writer.position());
+    }
+
+    private int sizeOfLong(long value) {
+
+        EntryWriter writer = new EntryWriter(ByteBuffer.allocate(16), true);
+
+        writer.putLong(value);
+        return(writer.position());
+    }
+
+    //____________________________________________________________________________________________________________________________________
+}